@@ -20,4 +20,50 @@ public interface DocumentAccessor {
 
   /** Returns the snapshot manager for this document. */
   DocumentSnapshotManager snapshot();
+
+  /**
+   * Marks the current position, so that it can be gone back to via {@link #reset(long)}. Unlike a
+   * {@link DocumentSnapshotManager#create() snapshot}, a mark is a plain number, so creating one
+   * does not allocate anything. A mark belongs to the accessor that created it, and using it with
+   * another accessor fails.
+   *
+   * <p>Accessors that only keep as much of the document as they are asked to, such as streaming
+   * readers, keep the marked position around until the mark is {@link #release(long) released}.
+   * Code that marks a position should therefore release the mark once it no longer needs it.
+   */
+  long mark();
+
+  /**
+   * Moves back, or forward, to the position recorded in the given mark, which must have been
+   * created by this accessor, and must not have been released.
+   */
+  void reset(long mark);
+
+  /**
+   * Lets go of the given mark, so that the position it records no longer has to be kept. Resetting
+   * to the same position afterwards might still work, but is not guaranteed to. This implementation
+   * does nothing, since most accessors can go back to any position anyway.
+   */
+  default void release(long mark) {}
+
+  /**
+   * Cuts the document at the current position, which means the accessor will never have to move
+   * back before it. Moving back before the cut fails with a {@link
+   * com.mmnaseri.utils.dareader.error.DocumentReaderException}, even to marks and snapshots that
+   * were made earlier, which in turn lets accessors that keep what they have read, such as
+   * streaming readers, discard everything before the cut. Marks made before the cut still need to
+   * be released.
+   *
+   * <p>This implementation does nothing, which is what accessors that cannot take advantage of cuts
+   * are expected to do.
+   */
+  default void cut() {}
+
+  /**
+   * Returns the position the document was last {@link #cut() cut} at, or {@code 0} if it has not
+   * been cut.
+   */
+  default int floor() {
+    return 0;
+  }
 }
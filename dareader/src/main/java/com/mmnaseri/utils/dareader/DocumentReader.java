@@ -1,10 +1,24 @@
 package com.mmnaseri.utils.dareader;
 
+import com.mmnaseri.utils.dareader.impl.ByteDocuments;
+import com.mmnaseri.utils.dareader.impl.FileDocuments;
+import com.mmnaseri.utils.dareader.impl.Marks;
 import com.mmnaseri.utils.dareader.impl.SimpleDocumentReader;
+import com.mmnaseri.utils.dareader.impl.StreamingDocumentReader;
 import com.mmnaseri.utils.dareader.token.TokenReader;
+import com.mmnaseri.utils.dareader.utils.CharPredicate;
+import com.mmnaseri.utils.dareader.utils.PatternCache;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.util.regex.Pattern;
 
 import static com.mmnaseri.utils.dareader.error.DocumentReaderExceptions.expectValue;
@@ -21,6 +35,63 @@ public interface DocumentReader extends DocumentAccessor, CharSequence {
     return new SimpleDocumentReader(document);
   }
 
+  /**
+   * Creates a document reader over the given UTF-8 bytes. If the bytes are all ASCII, which is
+   * verified upfront, the reader works on the bytes directly, using one byte per character.
+   *
+   * @see #of(ByteBuffer, Charset)
+   */
+  static DocumentReader of(byte[] document) {
+    return of(ByteBuffer.wrap(document), StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Creates a document reader over the remaining bytes in the given buffer, without copying them.
+   *
+   * @see ByteDocuments#view(ByteBuffer, Charset)
+   */
+  static DocumentReader of(ByteBuffer document, Charset charset) {
+    return new SimpleDocumentReader(ByteDocuments.view(document, charset));
+  }
+
+  /**
+   * Creates a document reader over the contents of the given UTF-8 file.
+   *
+   * @see #of(Path, Charset)
+   */
+  static DocumentReader of(Path path) throws IOException {
+    return of(path, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Creates a document reader over the contents of the given file. The file is mapped into memory
+   * rather than read onto the heap.
+   *
+   * @see FileDocuments#map(Path, Charset)
+   */
+  static DocumentReader of(Path path, Charset charset) throws IOException {
+    return new SimpleDocumentReader(FileDocuments.map(path, charset));
+  }
+
+  /**
+   * Creates a document reader that reads the document from the given source as needed, and only
+   * keeps as much of it in memory as can still be returned to.
+   *
+   * @see StreamingDocumentReader
+   */
+  static DocumentReader of(Reader source) {
+    return new StreamingDocumentReader(source);
+  }
+
+  /**
+   * Creates a streaming document reader over the given channel.
+   *
+   * @see #of(Reader)
+   */
+  static DocumentReader of(ReadableByteChannel source, Charset charset) {
+    return of(Channels.newReader(source, charset.newDecoder(), -1));
+  }
+
   /**
    * Reads a single character from the document. Will throw an exception if the document has no more
    * tokens.
@@ -54,6 +125,25 @@ public interface DocumentReader extends DocumentAccessor, CharSequence {
   @Nullable
   String read(Pattern pattern, int group);
 
+  /**
+   * Returns the length of the text at the current {@link #cursor()} that matches the given pattern,
+   * or {@code -1} if the pattern does not match there. Unlike {@link #read(Pattern)}, this neither
+   * moves the cursor nor copies the matched text.
+   */
+  default int match(Pattern pattern) {
+    long mark = mark();
+    try {
+      if (read(pattern) == null) {
+        return -1;
+      }
+      int length = cursor() - Marks.cursor(mark);
+      reset(mark);
+      return length;
+    } finally {
+      release(mark);
+    }
+  }
+
   /** Alias for {@link #read(Pattern)}. */
   @Nullable
   default String read(String pattern) {
@@ -63,7 +153,7 @@ public interface DocumentReader extends DocumentAccessor, CharSequence {
   /** Alias for {@link #read(Pattern, int)}. */
   @Nullable
   default String read(String pattern, int group) {
-    return read(Pattern.compile(pattern, Pattern.DOTALL | Pattern.MULTILINE), group);
+    return read(PatternCache.shared().compile(pattern), group);
   }
 
   /** Same as {@link #expect(Pattern, int)} but with the group set to {@code 0}. */
@@ -90,7 +180,7 @@ public interface DocumentReader extends DocumentAccessor, CharSequence {
   /** Alias for {@link #expect(Pattern, int)}. */
   @Nonnull
   default String expect(String pattern, int group) {
-    return expect(Pattern.compile(pattern, Pattern.DOTALL | Pattern.MULTILINE), group);
+    return expect(PatternCache.shared().compile(pattern), group);
   }
 
   /** Determines if the document at this point in the reading process matches the given pattern. */
@@ -98,9 +188,111 @@ public interface DocumentReader extends DocumentAccessor, CharSequence {
 
   /** Alias for {@link #has(Pattern)}. */
   default boolean has(String pattern) {
-    return has(Pattern.compile(pattern, Pattern.DOTALL | Pattern.MULTILINE));
+    return has(PatternCache.shared().compile(pattern));
+  }
+
+  /**
+   * Determines if the given pattern matches the document starting exactly at the current {@link
+   * #cursor()}, without consuming more than {@code lookahead} characters. Unlike {@link
+   * #has(Pattern)}, the search is not carried on to the rest of the document, so the cost of a
+   * failed match is bounded by the lookahead rather than the size of the document.
+   */
+  boolean has(Pattern pattern, int lookahead);
+
+  /** Alias for {@link #has(Pattern, int)}. */
+  default boolean has(String pattern, int lookahead) {
+    return has(PatternCache.shared().compile(pattern), lookahead);
+  }
+
+  /**
+   * Returns the character that is {@code offset} characters after the current {@link #cursor()}, or
+   * {@code -1} if the document ends before that. The cursor is not moved.
+   */
+  int peek(int offset);
+
+  /**
+   * Returns the number of consecutive characters that satisfy the given predicate, starting {@code
+   * offset} characters after the current {@link #cursor()}. The cursor is not moved.
+   */
+  int span(CharPredicate predicate, int offset);
+
+  /**
+   * Reads the longest run of characters starting at the current {@link #cursor()} that satisfy the
+   * given predicate. This does not involve the regular expression engine.
+   *
+   * <p>A return value of {@code null} means that the character at the cursor does not satisfy the
+   * predicate, and therefore the cursor hasn't moved.
+   */
+  @Nullable
+  default String readWhile(CharPredicate predicate) {
+    int length = span(predicate, 0);
+    if (length == 0) {
+      return null;
+    }
+    String value = subSequence(cursor(), cursor() + length).toString();
+    advance(length);
+    return value;
+  }
+
+  /**
+   * Same as {@link #readWhile(CharPredicate)}, but returns the number of characters that were
+   * skipped rather than their contents.
+   */
+  default int skipWhile(CharPredicate predicate) {
+    int length = span(predicate, 0);
+    advance(length);
+    return length;
+  }
+
+  /**
+   * Returns the whole of the document, if it is held in memory and does not change, in which case
+   * positions in the document can be used as indices into it. Tokens can then refer to the document
+   * instead of copying their values out of it. Returns {@code null} otherwise, as is the case for
+   * documents that are streamed, where only the text around the cursor is held in memory.
+   */
+  @Nullable
+  default CharSequence source() {
+    return null;
+  }
+
+  /**
+   * Returns a mark that does not belong to this reader in particular, and is {@link #reset(long)
+   * reset} to by moving the cursor. Readers should override this to hand out marks of their own.
+   */
+  @Override
+  default long mark() {
+    return Marks.of(Marks.UNOWNED, cursor());
+  }
+
+  /**
+   * Moves the cursor to the position recorded in the mark via {@link #rewind(int)} or {@link
+   * #advance(int)}.
+   */
+  @Override
+  default void reset(long mark) {
+    int target = Marks.cursor(mark);
+    if (target < cursor()) {
+      rewind(cursor() - target);
+    } else {
+      advance(target - cursor());
+    }
   }
 
   /** Rewinds the document to the indicated number of tokens. */
   DocumentReader rewind(int length);
+
+  /**
+   * Moves the cursor forward by the indicated number of characters in a single step. This is meant
+   * for {@link TokenReader}s that have already measured the token at the current cursor, and want
+   * to consume it without going through {@link #read()} for each character. Will throw an exception
+   * if there are fewer characters left in the document.
+   *
+   * <p>Returns a pointer to the same instance of the reader for convenience.
+   */
+  DocumentReader advance(int length);
+
+  /** Alias for {@link #advance(int)}. */
+  default DocumentReader skip(int length) {
+    return advance(length);
+  }
 }
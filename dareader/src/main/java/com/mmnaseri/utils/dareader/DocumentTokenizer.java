@@ -1,8 +1,15 @@
 package com.mmnaseri.utils.dareader;
 
+import com.mmnaseri.utils.dareader.impl.CompiledDocumentTokenizer;
+import com.mmnaseri.utils.dareader.impl.CompiledLexer;
+import com.mmnaseri.utils.dareader.impl.PipelinedDocumentTokenizer;
 import com.mmnaseri.utils.dareader.impl.SimpleDocumentTokenizer;
+import com.mmnaseri.utils.dareader.token.FrozenTokenTypeRegistry;
 import com.mmnaseri.utils.dareader.token.Token;
+import com.mmnaseri.utils.dareader.token.TokenType;
 import com.mmnaseri.utils.dareader.token.TokenTypeRegistry;
+import com.mmnaseri.utils.dareader.token.impl.TokenBuffer;
+import com.mmnaseri.utils.dareader.token.impl.TokenInterner;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -10,21 +17,47 @@ import java.util.Iterator;
 import java.util.Set;
 import java.util.Spliterator;
 import java.util.Spliterators;
+import java.util.concurrent.Executor;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
 import static com.mmnaseri.utils.dareader.error.DocumentReaderExceptions.expectValue;
+import static com.mmnaseri.utils.dareader.utils.Precondition.checkArgument;
+import static com.mmnaseri.utils.dareader.utils.Precondition.checkNotNull;
+import static java.util.stream.Collectors.toSet;
 
 /**
  * Wraps a document and tokenizes its contents. The cursor in the document can move forward and
- * backward, so this is not really a suitable candidate for parsing extremely large documents, since
- * any implementation must support arbitrarily moving back and forth in the document.
+ * backward, so, in general, implementations must support arbitrarily moving back and forth in the
+ * document. For extremely large documents, a tokenizer can be created over a streaming {@link
+ * DocumentReader} (see {@link DocumentReader#of(java.io.Reader)}), in which case moving back is
+ * only possible as far as the oldest snapshot that is still held on to.
  */
 public interface DocumentTokenizer extends DocumentAccessor {
 
-  /** Creates a factory that binds the token types to the presented set. */
+  /**
+   * Creates a factory that binds the token types to the presented set. For the best performance,
+   * pass in a {@link TokenTypeRegistry#freeze() frozen} registry.
+   */
   static DocumentTokenizerFactory with(TokenTypeRegistry registry) {
-    return document -> new SimpleDocumentTokenizer(registry, document);
+    return reader -> new SimpleDocumentTokenizer(registry, reader);
+  }
+
+  /**
+   * Creates a factory that binds the token types to the presented set, and compiles the readers of
+   * all token types that are defined by a regular expression into a single automaton, so that the
+   * type of the next token can be determined in one pass over the text, rather than by trying each
+   * of the readers in turn. The tokens read are the same as with {@link #with(TokenTypeRegistry)}.
+   *
+   * <p>Since compiling is relatively expensive, the factory should be reused. Later changes to the
+   * registry are not seen by the factory.
+   *
+   * @see CompiledLexer
+   */
+  static DocumentTokenizerFactory compiled(TokenTypeRegistry registry) {
+    FrozenTokenTypeRegistry frozen = registry.freeze();
+    CompiledLexer lexer = CompiledLexer.compile(frozen);
+    return reader -> new CompiledDocumentTokenizer(frozen, lexer, reader);
   }
 
   /**
@@ -40,10 +73,88 @@ public interface DocumentTokenizer extends DocumentAccessor {
   @Nullable
   Token next();
 
+  /**
+   * Returns the token that {@link #next()} would read, without moving the cursor, or {@code null}
+   * if no token can be read.
+   */
+  @Nullable
+  default Token peek() {
+    return peek(0);
+  }
+
+  /**
+   * Returns the token that is {@code k} tokens ahead of the cursor, without moving the cursor, so
+   * that {@code peek(0)} is the token {@link #next()} would read. Returns {@code null} if fewer
+   * than {@code k + 1} tokens can be read.
+   */
+  @Nullable
+  default Token peek(int k) {
+    checkArgument(k >= 0, "k", "k must be non-negative.");
+    long mark = mark();
+    try {
+      Token token = null;
+      for (int i = 0; i <= k; i++) {
+        token = hasNext() ? next() : null;
+        if (token == null) {
+          return null;
+        }
+      }
+      return token;
+    } finally {
+      reset(mark);
+      release(mark);
+    }
+  }
+
+  /**
+   * Reads the next token, the one {@link #peek()} returns, and fails if there is none.
+   *
+   * @throws com.mmnaseri.utils.dareader.error.DocumentReaderException if no token can be read
+   */
+  default Token consume() {
+    return expectValue(this, next());
+  }
+
+  /**
+   * Reads as many tokens as fit into the buffer, replacing whatever was in it, and returns the
+   * number of tokens read. Fewer tokens are read if the document ends, or if no token can be read
+   * at some point, which {@link #next()} then reports by returning {@code null}.
+   *
+   * <p>This default implementation reads the tokens one by one. Tokenizers that can read tokens
+   * without creating them fill the buffer directly.
+   */
+  default int nextBatch(TokenBuffer buffer) {
+    checkNotNull(buffer, "buffer cannot be null");
+    buffer.reset(null);
+    while (!buffer.isFull() && hasNext()) {
+      int start = cursor();
+      int line = buffer.tracksLines() ? line() : 0;
+      Token token = next();
+      if (token == null) {
+        break;
+      }
+      buffer.add(token, start);
+      if (buffer.tracksLines()) {
+        buffer.recordLine(line);
+      }
+    }
+    return buffer.size();
+  }
+
   /** Returns a set of tokens that could be read from this point in the document. */
   @Nonnull
   Set<Token> candidates();
 
+  /**
+   * Returns the types of the tokens that could be read from this point in the document. If the
+   * tokenizer was created over a {@link FrozenTokenTypeRegistry}, this is a {@link
+   * com.mmnaseri.utils.dareader.token.impl.TokenTypeSet}.
+   */
+  @Nonnull
+  default Set<TokenType> candidateTypes() {
+    return candidates().stream().map(Token::type).collect(toSet());
+  }
+
   /**
    * Rewinds the tokenizer by putting the token back at the top of the stack. This means that the
    * identity {@code next().rewind().next() == next()} should always hold true.
@@ -52,6 +163,29 @@ public interface DocumentTokenizer extends DocumentAccessor {
    */
   DocumentTokenizer rewind(Token token);
 
+  /**
+   * Makes the tokenizer return the tokens it reads through the given interner, so that repeated
+   * tokens share an instance, and returns this tokenizer. Tokenizers that do not support interning
+   * throw an {@link UnsupportedOperationException}.
+   *
+   * @see DocumentTokenizerFactory#interning(TokenInterner)
+   */
+  default DocumentTokenizer internWith(TokenInterner interner) {
+    throw new UnsupportedOperationException("This tokenizer does not support interning");
+  }
+
+  /**
+   * Returns a tokenizer that reads the tokens of this tokenizer on a thread of the given executor,
+   * which is allowed to get up to the given number of tokens ahead of the one reading them. Once
+   * this method is called, this tokenizer belongs to the returned one, and must not be used
+   * directly anymore.
+   *
+   * @see PipelinedDocumentTokenizer
+   */
+  default PipelinedDocumentTokenizer pipelined(Executor executor, int capacity) {
+    return new PipelinedDocumentTokenizer(this, executor, capacity);
+  }
+
   /** Returns a spliterator for this document. */
   default Spliterator<Token> spliterator() {
     return Spliterators.spliteratorUnknownSize(
@@ -1,8 +1,60 @@
 package com.mmnaseri.utils.dareader;
 
+import com.mmnaseri.utils.dareader.token.impl.TokenInterner;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+
+import static com.mmnaseri.utils.dareader.utils.Precondition.checkNotNull;
+
 /** A factory that can create tokenizers for a given document based on a registry. */
 public interface DocumentTokenizerFactory {
 
+  /** Returns a new tokenizer for the document wrapped by the given reader. */
+  DocumentTokenizer create(DocumentReader reader);
+
+  /**
+   * Returns a factory that creates the same tokenizers as this one, which return the tokens they
+   * read through the given interner. The interner can be shared between factories.
+   *
+   * @see DocumentTokenizer#internWith(TokenInterner)
+   */
+  default DocumentTokenizerFactory interning(TokenInterner interner) {
+    checkNotNull(interner, "interner cannot be null");
+    return reader -> create(reader).internWith(interner);
+  }
+
   /** Returns a new tokenizer for the given document. */
-  DocumentTokenizer create(String document);
+  default DocumentTokenizer create(String document) {
+    return create(DocumentReader.of(document));
+  }
+
+  /**
+   * Returns a new tokenizer that reads the document from the given source as it goes.
+   *
+   * @see DocumentReader#of(Reader)
+   */
+  default DocumentTokenizer create(Reader source) {
+    return create(DocumentReader.of(source));
+  }
+
+  /**
+   * Returns a new tokenizer for the given UTF-8 file.
+   *
+   * @see DocumentReader#of(Path)
+   */
+  default DocumentTokenizer create(Path path) throws IOException {
+    return create(DocumentReader.of(path));
+  }
+
+  /**
+   * Returns a new tokenizer for the given file.
+   *
+   * @see DocumentReader#of(Path, Charset)
+   */
+  default DocumentTokenizer create(Path path, Charset charset) throws IOException {
+    return create(DocumentReader.of(path, charset));
+  }
 }
@@ -1,8 +1,12 @@
 package com.mmnaseri.utils.dareader.error;
 
 import com.mmnaseri.utils.dareader.DocumentAccessor;
+import com.mmnaseri.utils.dareader.DocumentReader;
+import com.mmnaseri.utils.dareader.token.Token;
+import com.mmnaseri.utils.dareader.token.TokenType;
 
 import java.text.MessageFormat;
+import java.util.Set;
 
 /** Utility class for checking pre- and post-conditions when processing a document. */
 public final class DocumentReaderExceptions {
@@ -25,6 +29,15 @@ public final class DocumentReaderExceptions {
     }
   }
 
+  public static void expectRemaining(DocumentReader reader, int expected) {
+    if (reader.length() - reader.cursor() < expected) {
+      throw new DocumentReaderException(
+          reader,
+          MessageFormat.format(
+              "Expected to have at least {0} more characters in the document", expected));
+    }
+  }
+
   public static void expectDistance(DocumentAccessor accessor, int expected) {
     if (accessor.cursor() < expected) {
       throw new DocumentReaderException(
@@ -33,4 +46,29 @@ public final class DocumentReaderExceptions {
               "Expected to have read at least {0} characters from the document", expected));
     }
   }
+
+  /** Checks that the given position is not before where the document was last cut. */
+  public static void expectUncut(DocumentAccessor accessor, int position) {
+    if (position < accessor.floor()) {
+      throw new DocumentReaderException(
+          accessor,
+          MessageFormat.format(
+              "Cannot move back to position {0}, since the document was cut at position {1}",
+              position, accessor.floor()));
+    }
+  }
+
+  /**
+   * Checks that the token is of one of the expected types. The check is cheapest with a {@link
+   * com.mmnaseri.utils.dareader.token.impl.TokenTypeSet}.
+   */
+  public static Token expectType(DocumentAccessor accessor, Token token, Set<TokenType> expected) {
+    expectValue(accessor, token);
+    if (!expected.contains(token.type())) {
+      throw new DocumentReaderException(
+          accessor,
+          MessageFormat.format("Expected a token of type {0}, but got {1}", expected, token));
+    }
+    return token;
+  }
 }
@@ -0,0 +1,113 @@
+package com.mmnaseri.utils.dareader.exp;
+
+import com.mmnaseri.utils.dareader.DocumentTokenizer;
+import com.mmnaseri.utils.dareader.token.Token;
+import com.mmnaseri.utils.dareader.token.TokenType;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reads the first of a number of alternatives that matches, the same as chaining them via {@link
+ * ExpressionReader#or(ExpressionReader)}, but only tries the alternatives that can start with the
+ * next token. The types of the tokens each alternative can start with are {@link
+ * GrammarNode#first(ExpressionReader) worked out} the first time the choice is read, when all the
+ * rules it uses are expected to be defined, and are put in a table that maps each type to the
+ * alternatives to try, in their original order. Alternatives that can start with any token are
+ * tried no matter what the next token is.
+ */
+final class ChoiceExpressionReader implements ExpressionReader {
+
+  private final ExpressionReader[] alternatives;
+  @Nullable private volatile Prediction prediction;
+
+  ChoiceExpressionReader(ExpressionReader[] alternatives) {
+    this.alternatives = alternatives;
+  }
+
+  @Nullable
+  @Override
+  public Expression read(DocumentTokenizer tokenizer) {
+    Token token = tokenizer.peek();
+    int[] candidates = prediction().candidates(token == null ? null : token.type());
+    if (candidates.length == 0) {
+      return null;
+    }
+    long mark = tokenizer.mark();
+    try {
+      for (int candidate : candidates) {
+        Expression expression = alternatives[candidate].read(tokenizer);
+        if (expression != null) {
+          return expression;
+        }
+        tokenizer.reset(mark);
+      }
+      return null;
+    } finally {
+      tokenizer.release(mark);
+    }
+  }
+
+  private Prediction prediction() {
+    Prediction prediction = this.prediction;
+    if (prediction == null) {
+      // Working the table out more than once on a race is harmless, since it always comes out the
+      // same.
+      prediction = new Prediction(alternatives);
+      this.prediction = prediction;
+    }
+    return prediction;
+  }
+
+  /** The alternatives to try for each type of token. */
+  private static final class Prediction {
+
+    private final Map<TokenType, int[]> table = new HashMap<>();
+    private final int[] fallback;
+
+    private Prediction(ExpressionReader[] alternatives) {
+      List<Set<TokenType>> firsts = new ArrayList<>();
+      Set<TokenType> types = new LinkedHashSet<>();
+      List<Integer> fallback = new ArrayList<>();
+      for (int i = 0; i < alternatives.length; i++) {
+        Set<TokenType> first = GrammarNode.first(alternatives[i]);
+        firsts.add(first);
+        if (first == null) {
+          fallback.add(i);
+        } else {
+          types.addAll(first);
+        }
+      }
+      this.fallback = toArray(fallback);
+      for (TokenType type : types) {
+        List<Integer> candidates = new ArrayList<>();
+        for (int i = 0; i < firsts.size(); i++) {
+          if (firsts.get(i) == null || firsts.get(i).contains(type)) {
+            candidates.add(i);
+          }
+        }
+        table.put(type, toArray(candidates));
+      }
+    }
+
+    /**
+     * Returns the alternatives to try when the next token is of the given type, or when there are
+     * no more tokens.
+     */
+    int[] candidates(@Nullable TokenType type) {
+      if (type == null) {
+        return fallback;
+      }
+      return table.getOrDefault(type, fallback);
+    }
+
+    private static int[] toArray(List<Integer> list) {
+      return list.stream().mapToInt(Integer::intValue).toArray();
+    }
+  }
+}
@@ -0,0 +1,296 @@
+package com.mmnaseri.utils.dareader.exp;
+
+import com.mmnaseri.utils.dareader.DocumentTokenizer;
+import com.mmnaseri.utils.dareader.impl.Marks;
+
+import javax.annotation.Nullable;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+
+import static com.mmnaseri.utils.dareader.utils.Precondition.checkArgument;
+import static com.mmnaseri.utils.dareader.utils.Precondition.checkNotNull;
+
+/**
+ * Remembers what the expression readers {@link #memoize(ExpressionReader) memoized} with it have
+ * read at each position of a document, so that trying a reader again at the same position, as
+ * happens when the alternatives of an {@link ExpressionReader#or(ExpressionReader)} share a prefix,
+ * returns the same result and moves the tokenizer to the same position without reading anything.
+ * With every reader that is tried more than once at a position memoized, parsing takes time linear
+ * in the size of the document, the way a packrat parser does.
+ *
+ * <p>Results are keyed by the reader and the position it started at, both of which are packed into
+ * a single number, and are kept in a table that grows up to the given capacity. Once the table is
+ * full, the results that have not been used since they were last passed over are evicted first. The
+ * table is bound to the tokenizer it was last used with, and is cleared once it is used with
+ * another one. Results are only valid as long as the readers always read the same expressions at
+ * the same positions, and hits return the very same expression instance that was read the first
+ * time.
+ *
+ * <p>Once the tokenizer has been {@link DocumentTokenizer#cut() cut}, the results for positions
+ * before the cut can never be used again. They are dropped the next time the table runs out of
+ * room, before it grows or evicts anything else, so that a memo used to read a long document that
+ * is cut every so often stays small.
+ *
+ * <p>A memo can be shared by the readers of a whole grammar, and cleared at the start and end of
+ * each parse via {@link #session(ExpressionReader)}. Memos are not thread-safe.
+ *
+ * @see ExpressionReader#memoized()
+ */
+public final class ExpressionMemo {
+
+  /** The default number of results a memo shared by the readers of a grammar can hold. */
+  public static final int DEFAULT_CAPACITY = 1 << 16;
+
+  /** The number of results held by the memo of a single reader. */
+  static final int READER_CAPACITY = 1 << 10;
+
+  /** The number of slots a result can go into. */
+  private static final int PROBES = 4;
+
+  private static final int INITIAL_SIZE = 64;
+
+  /** The end position recorded for a reader that did not read anything. */
+  private static final int FAILED = -1;
+
+  private final int capacity;
+  private long[] keys = new long[0];
+  private int[] ends;
+  private Expression[] values;
+  private boolean[] used;
+  private int size;
+  private int readers;
+  @Nullable private WeakReference<DocumentTokenizer> tokenizer;
+  private int generation;
+  private int floor;
+  private long hits;
+  private long misses;
+  private long evictions;
+
+  /** Creates a memo that holds up to {@link #DEFAULT_CAPACITY} results. */
+  public ExpressionMemo() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Creates a memo that holds up to the given number of results, rounded up to a power of two. The
+   * table starts small, and only grows as needed.
+   */
+  public ExpressionMemo(int capacity) {
+    checkArgument(capacity > 0 && capacity <= 1 << 30, "capacity", "capacity is out of range.");
+    int rounded = Integer.highestOneBit(capacity);
+    this.capacity = Math.max(rounded < capacity ? rounded << 1 : rounded, PROBES);
+  }
+
+  /**
+   * Returns a reader that reads the same expressions as the given one, keeping them in this memo.
+   */
+  public ExpressionReader memoize(ExpressionReader reader) {
+    checkNotNull(reader, "reader cannot be null");
+    int id = ++readers;
+    return tokenizer -> read(id, reader, tokenizer);
+  }
+
+  /**
+   * Returns a reader that reads the same expressions as the given one, with this memo cleared
+   * before and after each time it is read. This makes a memo shared by the readers of a grammar
+   * last for a single parse.
+   */
+  public ExpressionReader session(ExpressionReader reader) {
+    checkNotNull(reader, "reader cannot be null");
+    return tokenizer -> {
+      clear();
+      try {
+        return reader.read(tokenizer);
+      } finally {
+        clear();
+      }
+    };
+  }
+
+  @Nullable
+  private Expression read(int id, ExpressionReader reader, DocumentTokenizer tokenizer) {
+    bind(tokenizer);
+    int start = tokenizer.cursor();
+    long key = (long) id << 32 | (start & 0xFFFFFFFFL);
+    int slot = find(key);
+    if (slot >= 0) {
+      hits++;
+      used[slot] = true;
+      if (ends[slot] == FAILED) {
+        return null;
+      }
+      if (ends[slot] != start) {
+        tokenizer.reset(Marks.of(generation, ends[slot]));
+      }
+      return values[slot];
+    }
+    misses++;
+    Expression expression = reader.read(tokenizer);
+    put(key, expression, expression == null ? FAILED : tokenizer.cursor(), tokenizer.floor());
+    return expression;
+  }
+
+  /** Clears this memo if it was last used with another tokenizer. */
+  private void bind(DocumentTokenizer tokenizer) {
+    if (this.tokenizer != null && this.tokenizer.get() == tokenizer) {
+      return;
+    }
+    clear();
+    this.tokenizer = new WeakReference<>(tokenizer);
+    floor = 0;
+    // The tokenizer is moved ahead on a hit via a mark of its own.
+    long mark = tokenizer.mark();
+    generation = Marks.generation(mark);
+    tokenizer.release(mark);
+  }
+
+  private static int index(long key, int mask) {
+    long hash = key * 0x9E3779B97F4A7C15L;
+    return (int) (hash ^ hash >>> 32) & mask;
+  }
+
+  private int find(long key) {
+    if (size == 0) {
+      return -1;
+    }
+    int mask = keys.length - 1;
+    int index = index(key, mask);
+    for (int i = 0; i < PROBES; i++) {
+      int slot = (index + i) & mask;
+      if (keys[slot] == key) {
+        return slot;
+      }
+      if (keys[slot] == 0) {
+        return -1;
+      }
+    }
+    return -1;
+  }
+
+  private void put(long key, @Nullable Expression expression, int end, int floor) {
+    if (keys.length == 0) {
+      allocate(Math.min(INITIAL_SIZE, capacity));
+    }
+    int slot = slot(key);
+    if (slot < 0 && floor > this.floor) {
+      // Make room by dropping the results from before the cut first.
+      this.floor = floor;
+      rehash(keys.length);
+      slot = slot(key);
+    }
+    while (slot < 0 && keys.length < capacity) {
+      rehash(keys.length * 2);
+      slot = slot(key);
+    }
+    if (slot < 0) {
+      slot = victim(key);
+      evictions++;
+    } else if (keys[slot] == 0) {
+      size++;
+    }
+    keys[slot] = key;
+    ends[slot] = end;
+    values[slot] = expression;
+    used[slot] = false;
+  }
+
+  /** Returns an empty slot for the given key, or the slot it already has, or {@code -1}. */
+  private int slot(long key) {
+    int mask = keys.length - 1;
+    int index = index(key, mask);
+    for (int i = 0; i < PROBES; i++) {
+      int slot = (index + i) & mask;
+      if (keys[slot] == 0 || keys[slot] == key) {
+        return slot;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Picks the slot to evict for the given key, which is the first of its slots that has not been
+   * used since it was last passed over. The slots that are passed over lose their second chance.
+   */
+  private int victim(long key) {
+    int mask = keys.length - 1;
+    int index = index(key, mask);
+    for (int i = 0; i < PROBES; i++) {
+      int slot = (index + i) & mask;
+      if (!used[slot]) {
+        return slot;
+      }
+      used[slot] = false;
+    }
+    return index;
+  }
+
+  private void allocate(int length) {
+    keys = new long[length];
+    ends = new int[length];
+    values = new Expression[length];
+    used = new boolean[length];
+    size = 0;
+  }
+
+  private void rehash(int length) {
+    long[] oldKeys = keys;
+    int[] oldEnds = ends;
+    Expression[] oldValues = values;
+    boolean[] oldUsed = used;
+    allocate(length);
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldKeys[i] != 0) {
+        if ((int) oldKeys[i] < floor) {
+          // The result is for a position before the cut, and can no longer be used.
+          continue;
+        }
+        int slot = slot(oldKeys[i]);
+        if (slot < 0) {
+          // Too many results hash to the same slots even after growing, so this one is dropped.
+          evictions++;
+          continue;
+        }
+        keys[slot] = oldKeys[i];
+        ends[slot] = oldEnds[i];
+        values[slot] = oldValues[i];
+        used[slot] = oldUsed[i];
+        size++;
+      }
+    }
+  }
+
+  /** Returns the number of results held by this memo. */
+  public int size() {
+    return size;
+  }
+
+  /** Returns the number of results this memo can hold. */
+  public int capacity() {
+    return capacity;
+  }
+
+  /** Returns the number of times a reader did not have to read, since the memo had its result. */
+  public long hits() {
+    return hits;
+  }
+
+  /** Returns the number of times a reader had to read, since the memo did not have its result. */
+  public long misses() {
+    return misses;
+  }
+
+  /** Returns the number of results that were dropped to make room for others. */
+  public long evictions() {
+    return evictions;
+  }
+
+  /** Forgets all results, as well as the tokenizer they were read from. */
+  public void clear() {
+    if (size > 0) {
+      Arrays.fill(keys, 0);
+      Arrays.fill(values, null);
+      size = 0;
+    }
+    tokenizer = null;
+  }
+}
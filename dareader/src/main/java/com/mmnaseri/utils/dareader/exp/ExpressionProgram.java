@@ -0,0 +1,467 @@
+package com.mmnaseri.utils.dareader.exp;
+
+import com.mmnaseri.utils.dareader.DocumentTokenizer;
+import com.mmnaseri.utils.dareader.token.Token;
+import com.mmnaseri.utils.dareader.token.TokenType;
+
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import static com.mmnaseri.utils.dareader.exp.Expression.compose;
+import static com.mmnaseri.utils.dareader.exp.Expression.empty;
+import static com.mmnaseri.utils.dareader.utils.Precondition.checkNotNull;
+
+/**
+ * A grammar made of the combinators of {@link ExpressionReader}, compiled into a flat list of
+ * instructions that a single loop runs, in the manner of the parsing machine of LPeg. Instead of
+ * each combinator calling the readers it combines, which takes a Java stack frame per level of the
+ * grammar, the machine keeps the alternatives it can fall back to, the rules it is in, and the
+ * expressions it has read so far in stacks of its own, which only grow as large as the heap allows.
+ * A program reads the very same expressions as the grammar it was compiled from.
+ *
+ * <p>Each instruction takes two slots of the program, the operation and its operand. Combinators
+ * that backtrack push a choice, which holds a {@link DocumentTokenizer#mark() mark} of the
+ * tokenizer, and pop it once what they read has succeeded. When reading fails, the machine resets
+ * the tokenizer to the mark of the latest choice, and goes on from where the choice says. {@link
+ * ExpressionRule Rules} become subroutines, and any other reader is called as it is. The
+ * alternatives of a {@link ExpressionReader#choice(ExpressionReader...) choice} that cannot start
+ * with the next token are jumped over without pushing a choice.
+ *
+ * <p>Programs are immutable and can be shared by threads, as long as the readers they call can.
+ *
+ * @see ExpressionReader#compiled()
+ */
+public final class ExpressionProgram implements ExpressionReader {
+
+  /** Calls the reader in the pool, and fails if it reads nothing. */
+  private static final int READ = 0;
+  /** Pushes a choice that goes on from the operand if reading fails. */
+  private static final int CHOICE = 1;
+  /** Pops the latest choice, and goes on from the operand. */
+  private static final int COMMIT = 2;
+  /** Moves the latest choice to where the tokenizer is, and goes on from the operand. */
+  private static final int PARTIAL_COMMIT = 3;
+  /** Pops the latest choice, and fails. */
+  private static final int FAIL_TWICE = 4;
+  /** Goes on from the operand. */
+  private static final int JUMP = 5;
+  /** Calls the rule starting at the operand. */
+  private static final int CALL = 6;
+  /** Returns from the latest rule. */
+  private static final int RETURN = 7;
+  /** Joins the two latest expressions into a composite one. */
+  private static final int CONCAT = 8;
+  /** Pushes an empty expression of the type in the pool. */
+  private static final int NEW = 9;
+  /** Wraps the latest expression in an optional one. */
+  private static final int SOME = 10;
+  /** Pushes an empty optional expression. */
+  private static final int NONE = 11;
+  /** Pushes an empty list of expressions. */
+  private static final int LIST = 12;
+  /** Adds the latest expression to the list before it. */
+  private static final int APPEND = 13;
+  /** Skips the next instruction if the latest list has as many expressions as the operand. */
+  private static final int FULL = 14;
+  /** Replaces the latest list with a composite expression. */
+  private static final int COMPOSE = 15;
+  /** Replaces the latest list with a composite expression, or an empty one if it is empty. */
+  private static final int COMPOSE_OR_EMPTY = 16;
+  /** Applies the transformer in the pool to the latest expression. */
+  private static final int APPLY = 17;
+  /** Stops with the latest expression. */
+  private static final int HALT = 18;
+  /** Skips the next instruction if the next token is of one of the types in the pool. */
+  private static final int PREDICT = 19;
+  /** Fails. */
+  private static final int FAIL = 20;
+  /** Cuts the tokenizer. */
+  private static final int CUT = 21;
+
+  /** The choice pushed before the program starts, which makes it read nothing on failure. */
+  private static final int ABORT = -1;
+
+  private static final int INITIAL_DEPTH = 16;
+
+  private final int[] code;
+  private final Object[] pool;
+
+  private ExpressionProgram(int[] code, Object[] pool) {
+    this.code = code;
+    this.pool = pool;
+  }
+
+  /** Compiles the grammar read by the given reader. All the rules it uses must be defined. */
+  public static ExpressionProgram compile(ExpressionReader reader) {
+    checkNotNull(reader, "reader cannot be null");
+    if (reader instanceof ExpressionProgram) {
+      return (ExpressionProgram) reader;
+    }
+    return new Compiler().compile(reader);
+  }
+
+  /** Returns the number of instructions in this program. */
+  public int size() {
+    return code.length / 2;
+  }
+
+  @Nullable
+  @Override
+  public Expression read(DocumentTokenizer tokenizer) {
+    return new Machine(tokenizer).run();
+  }
+
+  /** Turns a grammar into a program, one rule at a time. */
+  private static final class Compiler {
+
+    private int[] code = new int[64];
+    private int size;
+    private final List<Object> pool = new ArrayList<>();
+    private final Map<Object, Integer> indices = new IdentityHashMap<>();
+    private final Map<ExpressionRule, Integer> rules = new IdentityHashMap<>();
+    private final Map<ExpressionRule, List<Integer>> calls = new IdentityHashMap<>();
+    private final Deque<ExpressionRule> pending = new ArrayDeque<>();
+
+    ExpressionProgram compile(ExpressionReader reader) {
+      emit(reader);
+      add(HALT, 0);
+      while (!pending.isEmpty()) {
+        ExpressionRule rule = pending.poll();
+        rules.put(rule, size);
+        emit(rule.definition());
+        add(RETURN, 0);
+      }
+      for (Map.Entry<ExpressionRule, List<Integer>> entry : calls.entrySet()) {
+        for (int call : entry.getValue()) {
+          patch(call, rules.get(entry.getKey()));
+        }
+      }
+      return new ExpressionProgram(Arrays.copyOf(code, size), pool.toArray());
+    }
+
+    private void emit(ExpressionReader reader) {
+      if (reader instanceof ExpressionRule) {
+        ExpressionRule rule = (ExpressionRule) reader;
+        // Makes sure the rule is defined, before it is compiled.
+        rule.definition();
+        if (!calls.containsKey(rule)) {
+          calls.put(rule, new ArrayList<>());
+          pending.add(rule);
+        }
+        calls.get(rule).add(add(CALL, 0));
+        return;
+      }
+      if (!(reader instanceof GrammarNode)) {
+        add(READ, constant(reader));
+        return;
+      }
+      GrammarNode node = (GrammarNode) reader;
+      int choice;
+      int commit;
+      switch (node.kind()) {
+        case CHOICE:
+          choice = add(CHOICE, 0);
+          emit(node.operand(0));
+          commit = add(COMMIT, 0);
+          patch(choice, size);
+          emit(node.operand(1));
+          patch(commit, size);
+          break;
+        case SEQUENCE:
+          emit(node.operand(0));
+          emit(node.operand(1));
+          add(CONCAT, 0);
+          break;
+        case NOT:
+          choice = add(CHOICE, 0);
+          emit(node.operand(0));
+          add(FAIL_TWICE, 0);
+          patch(choice, size);
+          add(NEW, constant(node.argument()));
+          break;
+        case OPTIONAL:
+          choice = add(CHOICE, 0);
+          emit(node.operand(0));
+          add(SOME, 0);
+          commit = add(COMMIT, 0);
+          patch(choice, size);
+          add(NONE, 0);
+          patch(commit, size);
+          break;
+        case TIMES:
+          int times = (Integer) node.argument();
+          add(LIST, 0);
+          if (times > 0) {
+            int loop = size;
+            emit(node.operand(0));
+            add(APPEND, 0);
+            add(FULL, times);
+            add(JUMP, loop);
+          }
+          add(COMPOSE, 0);
+          break;
+        case REPEAT:
+          add(LIST, 0);
+          choice = add(CHOICE, 0);
+          emit(node.operand(0));
+          add(APPEND, 0);
+          add(PARTIAL_COMMIT, choice + 2);
+          patch(choice, size);
+          add(COMPOSE_OR_EMPTY, 0);
+          break;
+        case THEN:
+          emit(node.operand(0));
+          add(APPLY, constant(node.argument()));
+          break;
+        case SELECT:
+          List<Integer> commits = new ArrayList<>();
+          for (int i = 0; i < node.operands(); i++) {
+            Set<TokenType> first = GrammarNode.first(node.operand(i));
+            int skip = -1;
+            if (first != null) {
+              add(PREDICT, constant(first));
+              skip = add(JUMP, 0);
+            }
+            choice = add(CHOICE, 0);
+            emit(node.operand(i));
+            commits.add(add(COMMIT, 0));
+            patch(choice, size);
+            if (skip >= 0) {
+              patch(skip, size);
+            }
+          }
+          add(FAIL, 0);
+          for (int instruction : commits) {
+            patch(instruction, size);
+          }
+          break;
+        case STARTING_WITH:
+          emit(node.operand(0));
+          break;
+        case CUT:
+          emit(node.operand(0));
+          add(CUT, 0);
+          break;
+        default:
+          throw new IllegalStateException("Unknown combinator " + node.kind());
+      }
+    }
+
+    /** Adds an instruction, and returns where it was added. */
+    private int add(int operation, int operand) {
+      if (size + 2 > code.length) {
+        code = Arrays.copyOf(code, code.length * 2);
+      }
+      code[size] = operation;
+      code[size + 1] = operand;
+      size += 2;
+      return size - 2;
+    }
+
+    private void patch(int instruction, int operand) {
+      code[instruction + 1] = operand;
+    }
+
+    private int constant(Object value) {
+      return indices.computeIfAbsent(
+          value,
+          key -> {
+            pool.add(key);
+            return pool.size() - 1;
+          });
+    }
+  }
+
+  /** The state of a single run of the program. */
+  private final class Machine {
+
+    private final DocumentTokenizer tokenizer;
+    private Object[] values = new Object[INITIAL_DEPTH];
+    private int top;
+    private int[] returns = new int[INITIAL_DEPTH];
+    private int frames;
+    private int[] alternatives = new int[INITIAL_DEPTH];
+    private long[] marks = new long[INITIAL_DEPTH];
+    private int[] heights = new int[INITIAL_DEPTH];
+    private int[] depths = new int[INITIAL_DEPTH];
+    private int choices;
+
+    private Machine(DocumentTokenizer tokenizer) {
+      this.tokenizer = tokenizer;
+    }
+
+    @Nullable
+    @SuppressWarnings("unchecked")
+    Expression run() {
+      choice(ABORT);
+      int pc = 0;
+      try {
+        while (true) {
+          int operand = code[pc + 1];
+          switch (code[pc]) {
+            case READ:
+              Expression expression = ((ExpressionReader) pool[operand]).read(tokenizer);
+              if (expression == null) {
+                pc = fail();
+                if (pc == ABORT) {
+                  return null;
+                }
+                continue;
+              }
+              push(expression);
+              break;
+            case CHOICE:
+              choice(operand);
+              break;
+            case COMMIT:
+              tokenizer.release(marks[--choices]);
+              pc = operand;
+              continue;
+            case PARTIAL_COMMIT:
+              tokenizer.release(marks[choices - 1]);
+              marks[choices - 1] = tokenizer.mark();
+              heights[choices - 1] = top;
+              pc = operand;
+              continue;
+            case FAIL_TWICE:
+              tokenizer.release(marks[--choices]);
+              pc = fail();
+              if (pc == ABORT) {
+                return null;
+              }
+              continue;
+            case JUMP:
+              pc = operand;
+              continue;
+            case CALL:
+              if (frames == returns.length) {
+                returns = Arrays.copyOf(returns, frames * 2);
+              }
+              returns[frames++] = pc + 2;
+              pc = operand;
+              continue;
+            case RETURN:
+              pc = returns[--frames];
+              continue;
+            case CONCAT:
+              Expression second = (Expression) pop();
+              values[top - 1] = GrammarNode.concat((Expression) values[top - 1], second);
+              break;
+            case NEW:
+              push(Expression.newBuilder((ExpressionType) pool[operand]).build());
+              break;
+            case SOME:
+              values[top - 1] = Expression.optional((Expression) values[top - 1]);
+              break;
+            case NONE:
+              push(Expression.optional());
+              break;
+            case LIST:
+              push(new ArrayList<Expression>());
+              break;
+            case APPEND:
+              Expression item = (Expression) pop();
+              ((List<Expression>) values[top - 1]).add(item);
+              break;
+            case FULL:
+              if (((List<Expression>) values[top - 1]).size() >= operand) {
+                pc += 2;
+              }
+              break;
+            case COMPOSE:
+              values[top - 1] = compose((List<Expression>) values[top - 1]);
+              break;
+            case COMPOSE_OR_EMPTY:
+              List<Expression> list = (List<Expression>) values[top - 1];
+              values[top - 1] = list.isEmpty() ? empty() : compose(list);
+              break;
+            case APPLY:
+              Expression transformed =
+                  ((Function<Expression, Expression>) pool[operand])
+                      .apply((Expression) values[top - 1]);
+              if (transformed == null) {
+                pc = fail();
+                if (pc == ABORT) {
+                  return null;
+                }
+                continue;
+              }
+              values[top - 1] = transformed;
+              break;
+            case HALT:
+              return (Expression) pop();
+            case PREDICT:
+              Token token = tokenizer.peek();
+              if (token != null && ((Set<TokenType>) pool[operand]).contains(token.type())) {
+                pc += 2;
+              }
+              break;
+            case FAIL:
+              pc = fail();
+              if (pc == ABORT) {
+                return null;
+              }
+              continue;
+            case CUT:
+              tokenizer.cut();
+              break;
+            default:
+              throw new IllegalStateException("Unknown instruction " + code[pc]);
+          }
+          pc += 2;
+        }
+      } finally {
+        while (choices > 0) {
+          tokenizer.release(marks[--choices]);
+        }
+      }
+    }
+
+    private void choice(int alternative) {
+      if (choices == marks.length) {
+        int length = choices * 2;
+        alternatives = Arrays.copyOf(alternatives, length);
+        marks = Arrays.copyOf(marks, length);
+        heights = Arrays.copyOf(heights, length);
+        depths = Arrays.copyOf(depths, length);
+      }
+      alternatives[choices] = alternative;
+      marks[choices] = tokenizer.mark();
+      heights[choices] = top;
+      depths[choices] = frames;
+      choices++;
+    }
+
+    /** Goes back to the latest choice, and returns where to go on from. */
+    private int fail() {
+      int choice = --choices;
+      tokenizer.reset(marks[choice]);
+      tokenizer.release(marks[choice]);
+      Arrays.fill(values, heights[choice], top, null);
+      top = heights[choice];
+      frames = depths[choice];
+      return alternatives[choice];
+    }
+
+    private void push(Object value) {
+      if (top == values.length) {
+        values = Arrays.copyOf(values, top * 2);
+      }
+      values[top++] = value;
+    }
+
+    private Object pop() {
+      Object value = values[--top];
+      values[top] = null;
+      return value;
+    }
+  }
+}
@@ -1,18 +1,22 @@
 package com.mmnaseri.utils.dareader.exp;
 
-import com.mmnaseri.utils.dareader.DocumentSnapshot;
 import com.mmnaseri.utils.dareader.DocumentTokenizer;
+import com.mmnaseri.utils.dareader.exp.GrammarNode.Kind;
+import com.mmnaseri.utils.dareader.token.TokenType;
 
 import javax.annotation.Nullable;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.function.Function;
-import java.util.stream.Stream;
 
 import static com.mmnaseri.utils.dareader.exp.Expression.compose;
 import static com.mmnaseri.utils.dareader.exp.Expression.empty;
-import static java.util.Collections.singletonList;
-import static java.util.stream.Collectors.toList;
+import static com.mmnaseri.utils.dareader.utils.Precondition.checkArgument;
+import static com.mmnaseri.utils.dareader.utils.Precondition.checkNotNull;
+import static java.util.Collections.unmodifiableSet;
 
 /** Reads an entire expression from the input document. */
 @FunctionalInterface
@@ -30,20 +34,62 @@ public interface ExpressionReader {
    * read the other definition. If none matches, the document is reset.
    */
   default ExpressionReader or(ExpressionReader other) {
-    return tokenizer -> {
-      DocumentSnapshot snapshot = tokenizer.snapshot().create();
-      Expression expression = read(tokenizer);
-      if (expression != null) {
-        return expression;
-      }
-      tokenizer.snapshot().restore(snapshot);
-      expression = other.read(tokenizer);
-      if (expression == null) {
-        tokenizer.snapshot().restore(snapshot);
-        return null;
-      }
-      return expression;
-    };
+    return new GrammarNode(
+        Kind.CHOICE,
+        /* argument= */ null,
+        tokenizer -> {
+          long mark = tokenizer.mark();
+          try {
+            Expression expression = read(tokenizer);
+            if (expression != null) {
+              return expression;
+            }
+            tokenizer.reset(mark);
+            expression = other.read(tokenizer);
+            if (expression == null) {
+              tokenizer.reset(mark);
+            }
+            return expression;
+          } finally {
+            tokenizer.release(mark);
+          }
+        },
+        this,
+        other);
+  }
+
+  /**
+   * Returns a reader that reads the first of the given alternatives that matches, the same as
+   * chaining them via {@link #or(ExpressionReader)}, but which only tries the alternatives that can
+   * start with the next token. What each alternative can start with is worked out from the
+   * combinators it is made of, and can be declared via {@link #startingWith(TokenType...)} for
+   * readers that are not made of combinators. Alternatives that can start with any token, or with
+   * none at all, are always tried, in order.
+   */
+  static ExpressionReader choice(ExpressionReader... alternatives) {
+    checkNotNull(alternatives, "alternatives cannot be null");
+    checkArgument(
+        alternatives.length > 0, "alternatives", "There must be at least one alternative.");
+    for (ExpressionReader alternative : alternatives) {
+      checkNotNull(alternative, "alternatives cannot contain null");
+    }
+    ExpressionReader[] copy = alternatives.clone();
+    return new GrammarNode(
+        Kind.SELECT, /* argument= */ null, new ChoiceExpressionReader(copy), copy);
+  }
+
+  /**
+   * Returns a reader that reads the same expressions as this reader, and declares that they always
+   * start with a token of one of the given types, which lets a {@link #choice(ExpressionReader...)}
+   * skip this reader when the next token is of another type. The reader must never read an
+   * expression without reading a token of one of the given types first.
+   */
+  default ExpressionReader startingWith(TokenType... types) {
+    checkNotNull(types, "types cannot be null");
+    checkArgument(types.length > 0, "types", "There must be at least one type.");
+    Set<TokenType> set = new HashSet<>(Arrays.asList(types));
+    checkArgument(!set.contains(null), "types", "types cannot contain null");
+    return new GrammarNode(Kind.STARTING_WITH, unmodifiableSet(set), this::read, this);
   }
 
   /**
@@ -51,32 +97,27 @@ public interface ExpressionReader {
    * matches, returns a composition. If either fails, resets the document and returns {@code null}.
    */
   default ExpressionReader and(ExpressionReader other) {
-    return reader -> {
-      DocumentSnapshot snapshot = reader.snapshot().create();
-      Expression first = read(reader);
-      if (first == null) {
-        reader.snapshot().restore(snapshot);
-        return null;
-      }
-      Expression second = other.read(reader);
-      if (second == null) {
-        reader.snapshot().restore(snapshot);
-        return null;
-      }
-      List<Expression> left;
-      List<Expression> right;
-      if (ExpressionType.COMPOSITE.equals(first.type())) {
-        left = first.children();
-      } else {
-        left = singletonList(first);
-      }
-      if (ExpressionType.COMPOSITE.equals(second.type())) {
-        right = second.children();
-      } else {
-        right = singletonList(second);
-      }
-      return compose(Stream.concat(left.stream(), right.stream()).collect(toList()));
-    };
+    return new GrammarNode(
+        Kind.SEQUENCE,
+        /* argument= */ null,
+        reader -> {
+          long mark = reader.mark();
+          Expression first;
+          Expression second;
+          try {
+            first = read(reader);
+            second = first == null ? null : other.read(reader);
+            if (second == null) {
+              reader.reset(mark);
+              return null;
+            }
+          } finally {
+            reader.release(mark);
+          }
+          return GrammarNode.concat(first, second);
+        },
+        this,
+        other);
   }
 
   /**
@@ -94,16 +135,25 @@ public interface ExpressionReader {
    * expression with the indicated type will be created.
    */
   default ExpressionReader negate(ExpressionType type) {
-    return tokenizer -> {
-      DocumentSnapshot snapshot = tokenizer.snapshot().create();
-      Expression expression = read(tokenizer);
-      tokenizer.snapshot().restore(snapshot);
-      if (expression == null) {
-        return Expression.newBuilder(type).build();
-      } else {
-        return null;
-      }
-    };
+    return new GrammarNode(
+        Kind.NOT,
+        type,
+        tokenizer -> {
+          long mark = tokenizer.mark();
+          Expression expression;
+          try {
+            expression = read(tokenizer);
+            tokenizer.reset(mark);
+          } finally {
+            tokenizer.release(mark);
+          }
+          if (expression == null) {
+            return Expression.newBuilder(type).build();
+          } else {
+            return null;
+          }
+        },
+        this);
   }
 
   /**
@@ -111,7 +161,11 @@ public interface ExpressionReader {
    * optional will have a single child that is the matching expression.
    */
   default ExpressionReader optional() {
-    return tokenizer -> Expression.optional(read(tokenizer));
+    return new GrammarNode(
+        Kind.OPTIONAL,
+        /* argument= */ null,
+        tokenizer -> Expression.optional(read(tokenizer)),
+        this);
   }
 
   /**
@@ -119,19 +173,27 @@ public interface ExpressionReader {
    * the indicated number of times.
    */
   default ExpressionReader times(int exactly) {
-    return tokenizer -> {
-      DocumentSnapshot snapshot = tokenizer.snapshot().create();
-      List<Expression> list = new ArrayList<>();
-      for (int i = 0; i < exactly; i++) {
-        Expression expression = read(tokenizer);
-        if (expression == null) {
-          tokenizer.snapshot().restore(snapshot);
-          return null;
-        }
-        list.add(expression);
-      }
-      return compose(list);
-    };
+    return new GrammarNode(
+        Kind.TIMES,
+        exactly,
+        tokenizer -> {
+          long mark = tokenizer.mark();
+          List<Expression> list = new ArrayList<>();
+          try {
+            for (int i = 0; i < exactly; i++) {
+              Expression expression = read(tokenizer);
+              if (expression == null) {
+                tokenizer.reset(mark);
+                return null;
+              }
+              list.add(expression);
+            }
+          } finally {
+            tokenizer.release(mark);
+          }
+          return compose(list);
+        },
+        this);
   }
 
   /**
@@ -139,22 +201,33 @@ public interface ExpressionReader {
    * found, returns an empty expression.
    */
   default ExpressionReader repeated() {
-    return tokenizer -> {
-      List<Expression> list = new ArrayList<>();
-      while (true) {
-        DocumentSnapshot snapshot = tokenizer.snapshot().create();
-        Expression expression = read(tokenizer);
-        if (expression == null) {
-          tokenizer.snapshot().restore(snapshot);
-          break;
-        }
-        list.add(expression);
-      }
-      if (list.isEmpty()) {
-        return empty();
-      }
-      return compose(list);
-    };
+    return new GrammarNode(
+        Kind.REPEAT,
+        /* argument= */ null,
+        tokenizer -> {
+          List<Expression> list = new ArrayList<>();
+          while (true) {
+            long mark = tokenizer.mark();
+            Expression expression;
+            try {
+              expression = read(tokenizer);
+              if (expression == null) {
+                tokenizer.reset(mark);
+              }
+            } finally {
+              tokenizer.release(mark);
+            }
+            if (expression == null) {
+              break;
+            }
+            list.add(expression);
+          }
+          if (list.isEmpty()) {
+            return empty();
+          }
+          return compose(list);
+        },
+        this);
   }
 
   /**
@@ -173,19 +246,107 @@ public interface ExpressionReader {
             });
   }
 
+  /**
+   * Returns a reader that remembers what this reader has read at each position of the document, so
+   * that reading again at the same position, for instance after an {@link #or(ExpressionReader)}
+   * backtracks, returns the same expression without reading it again. The reader only remembers a
+   * limited number of positions, and forgets them once it is used with another tokenizer.
+   *
+   * @see #memoized(ExpressionMemo)
+   */
+  default ExpressionReader memoized() {
+    return memoized(new ExpressionMemo(ExpressionMemo.READER_CAPACITY));
+  }
+
+  /**
+   * Returns a reader that keeps what this reader reads at each position of the document in the
+   * given memo, which can be shared by all the readers of a grammar.
+   *
+   * @see ExpressionMemo#session(ExpressionReader)
+   */
+  default ExpressionReader memoized(ExpressionMemo memo) {
+    return memo.memoize(this);
+  }
+
+  /**
+   * Returns a program that reads the same expressions as this reader, with the grammar made by the
+   * combinators of this interface compiled into a flat list of instructions. The program keeps its
+   * state on the heap rather than on the thread stack, so that, with the recursive parts of the
+   * grammar written as {@link #rule(String) rules}, it can read expressions nested arbitrarily
+   * deep. Readers that were not made by the combinators are called as they are.
+   */
+  default ExpressionProgram compiled() {
+    return ExpressionProgram.compile(this);
+  }
+
+  /**
+   * Returns a new rule with the given name, which is to be {@link
+   * ExpressionRule#define(ExpressionReader) defined} later on, possibly in terms of itself.
+   */
+  static ExpressionRule rule(String name) {
+    return new ExpressionRule(name);
+  }
+
+  /**
+   * Returns a reader for operands read by the given reader, joined by the operators in the given
+   * table. The operators are applied according to their precedence and associativity in a single
+   * pass, without backtracking, and each one becomes a node of type {@link ExpressionType#BINARY},
+   * {@link ExpressionType#PREFIX} or {@link ExpressionType#POSTFIX} with its operands as children.
+   * If the expression ends with a dangling operator, nothing is read.
+   */
+  static ExpressionReader operators(ExpressionReader operand, OperatorTable table) {
+    checkNotNull(operand, "operand cannot be null");
+    checkNotNull(table, "table cannot be null");
+    return new OperatorExpressionReader(operand, table);
+  }
+
+  /**
+   * Returns a reader that reads the same expressions as this reader, and once it has read one,
+   * {@link DocumentTokenizer#cut() cuts} the tokenizer where it stopped. This declares that the
+   * alternatives that led to this reader are the only ones that can match, as is usually the case
+   * once a keyword has been read. From then on, anything that fails to read and would move the
+   * tokenizer back before the cut fails with a {@link
+   * com.mmnaseri.utils.dareader.error.DocumentReaderException} instead of trying other
+   * alternatives, while the tokenizer, and any {@link ExpressionMemo memo} used with it, can
+   * discard what they have kept from before the cut. Cuts should not be made while {@link #negate()
+   * looking ahead}, since that always moves the tokenizer back.
+   */
+  default ExpressionReader cut() {
+    return new GrammarNode(
+        Kind.CUT,
+        /* argument= */ null,
+        tokenizer -> {
+          Expression expression = read(tokenizer);
+          if (expression != null) {
+            tokenizer.cut();
+          }
+          return expression;
+        },
+        this);
+  }
+
   /**
    * Attempts to read the current expression definition and if it succeeds, calls the transformer
    * callback on the expression.
    */
   default ExpressionReader then(Function<Expression, Expression> transformer) {
-    return tokenizer -> {
-      DocumentSnapshot snapshot = tokenizer.snapshot().create();
-      Expression expression = read(tokenizer);
-      if (expression == null) {
-        tokenizer.snapshot().restore(snapshot);
-        return null;
-      }
-      return transformer.apply(expression);
-    };
+    return new GrammarNode(
+        Kind.THEN,
+        transformer,
+        tokenizer -> {
+          long mark = tokenizer.mark();
+          Expression expression;
+          try {
+            expression = read(tokenizer);
+            if (expression == null) {
+              tokenizer.reset(mark);
+              return null;
+            }
+          } finally {
+            tokenizer.release(mark);
+          }
+          return transformer.apply(expression);
+        },
+        this);
   }
 }
@@ -0,0 +1,56 @@
+package com.mmnaseri.utils.dareader.exp;
+
+import com.mmnaseri.utils.dareader.DocumentTokenizer;
+
+import javax.annotation.Nullable;
+
+import static com.mmnaseri.utils.dareader.utils.Precondition.checkNotNull;
+import static com.mmnaseri.utils.dareader.utils.Precondition.checkState;
+
+/**
+ * A named reader that is defined after it is created, so that it can refer to itself, directly or
+ * through other rules. When the grammar is {@link ExpressionReader#compiled() compiled}, each rule
+ * becomes a subroutine of the program, which makes it possible to read expressions nested deeper
+ * than the thread stack would allow.
+ *
+ * @see ExpressionReader#rule(String)
+ */
+public final class ExpressionRule implements ExpressionReader {
+
+  private final String name;
+  @Nullable private ExpressionReader definition;
+
+  ExpressionRule(String name) {
+    this.name = checkNotNull(name, "name cannot be null");
+  }
+
+  /** Defines this rule, which can only be done once. */
+  public ExpressionRule define(ExpressionReader definition) {
+    checkNotNull(definition, "definition cannot be null");
+    checkState(this.definition == null, "Rule %s is already defined", name);
+    this.definition = definition;
+    return this;
+  }
+
+  /** Returns the name of this rule. */
+  public String name() {
+    return name;
+  }
+
+  /** Returns the definition of this rule. */
+  ExpressionReader definition() {
+    checkState(definition != null, "Rule %s is not defined", name);
+    return definition;
+  }
+
+  @Nullable
+  @Override
+  public Expression read(DocumentTokenizer tokenizer) {
+    return definition().read(tokenizer);
+  }
+
+  @Override
+  public String toString() {
+    return name;
+  }
+}
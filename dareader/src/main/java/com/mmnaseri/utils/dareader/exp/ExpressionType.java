@@ -11,6 +11,9 @@ public interface ExpressionType {
   ExpressionType EMPTY = of(BASE_TAG + 1, "EMPTY");
   ExpressionType COMPOSITE = of(BASE_TAG + 2, "COMPOSITE");
   ExpressionType OPTIONAL = of(BASE_TAG + 3, "OPTIONAL");
+  ExpressionType BINARY = of(BASE_TAG + 4, "BINARY");
+  ExpressionType PREFIX = of(BASE_TAG + 5, "PREFIX");
+  ExpressionType POSTFIX = of(BASE_TAG + 6, "POSTFIX");
 
   static ExpressionType of(int tag, String name) {
     return new SimpleExpressionType(tag, name);
@@ -0,0 +1,155 @@
+package com.mmnaseri.utils.dareader.exp;
+
+import com.mmnaseri.utils.dareader.DocumentTokenizer;
+import com.mmnaseri.utils.dareader.token.TokenType;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static com.mmnaseri.utils.dareader.exp.Expression.compose;
+
+/**
+ * A reader created by one of the combinators of {@link ExpressionReader}, which remembers the
+ * combinator it was created by along with its operands. Reading it reads the operands the way the
+ * combinator says, while the grammar the nodes make up can also be {@link ExpressionProgram
+ * compiled}.
+ */
+final class GrammarNode implements ExpressionReader {
+
+  /** The combinators that make up a grammar. */
+  enum Kind {
+    /** {@link ExpressionReader#or(ExpressionReader)} */
+    CHOICE,
+    /** {@link ExpressionReader#and(ExpressionReader)} */
+    SEQUENCE,
+    /** {@link ExpressionReader#negate(ExpressionType)}, with the type as the argument. */
+    NOT,
+    /** {@link ExpressionReader#optional()} */
+    OPTIONAL,
+    /** {@link ExpressionReader#times(int)}, with the number of times as the argument. */
+    TIMES,
+    /** {@link ExpressionReader#repeated()} */
+    REPEAT,
+    /** {@link ExpressionReader#then(java.util.function.Function)}, with the transformer. */
+    THEN,
+    /** {@link ExpressionReader#choice(ExpressionReader...)} */
+    SELECT,
+    /** {@link ExpressionReader#startingWith(TokenType...)}, with the set of types. */
+    STARTING_WITH,
+    /** {@link ExpressionReader#cut()} */
+    CUT
+  }
+
+  private final Kind kind;
+  @Nullable private final Object argument;
+  private final ExpressionReader reader;
+  private final ExpressionReader[] operands;
+
+  GrammarNode(
+      Kind kind, @Nullable Object argument, ExpressionReader reader, ExpressionReader... operands) {
+    this.kind = kind;
+    this.argument = argument;
+    this.reader = reader;
+    this.operands = operands;
+  }
+
+  @Nullable
+  @Override
+  public Expression read(DocumentTokenizer tokenizer) {
+    return reader.read(tokenizer);
+  }
+
+  Kind kind() {
+    return kind;
+  }
+
+  @Nullable
+  Object argument() {
+    return argument;
+  }
+
+  ExpressionReader operand(int index) {
+    return operands[index];
+  }
+
+  int operands() {
+    return operands.length;
+  }
+
+  /**
+   * Returns the types of the tokens that expressions read by the given reader can start with, or
+   * {@code null} if they can start with any token, or with none at all. The types are worked out
+   * from the combinators that make up the reader, and the types declared via {@link
+   * ExpressionReader#startingWith(TokenType...)}. Anything else is assumed to start with any token.
+   */
+  @Nullable
+  static Set<TokenType> first(ExpressionReader reader) {
+    return first(reader, new HashSet<>());
+  }
+
+  @Nullable
+  @SuppressWarnings("unchecked")
+  private static Set<TokenType> first(ExpressionReader reader, Set<ExpressionRule> visiting) {
+    if (reader instanceof ExpressionRule) {
+      ExpressionRule rule = (ExpressionRule) reader;
+      if (!visiting.add(rule)) {
+        // A rule that can start with itself is left recursive, and is not predicted.
+        return null;
+      }
+      Set<TokenType> first = first(rule.definition(), visiting);
+      visiting.remove(rule);
+      return first;
+    }
+    if (!(reader instanceof GrammarNode)) {
+      return null;
+    }
+    GrammarNode node = (GrammarNode) reader;
+    switch (node.kind) {
+      case CHOICE:
+      case SELECT:
+        Set<TokenType> union = new HashSet<>();
+        for (ExpressionReader operand : node.operands) {
+          Set<TokenType> first = first(operand, visiting);
+          if (first == null) {
+            return null;
+          }
+          union.addAll(first);
+        }
+        return union;
+      case SEQUENCE:
+      case THEN:
+      case CUT:
+        // Readers with known types never read empty expressions, so the first part decides.
+        return first(node.operands[0], visiting);
+      case TIMES:
+        return (Integer) node.argument > 0 ? first(node.operands[0], visiting) : null;
+      case STARTING_WITH:
+        return (Set<TokenType>) node.argument;
+      default:
+        return null;
+    }
+  }
+
+  /**
+   * Joins the expressions read by the two sides of an {@link
+   * ExpressionReader#and(ExpressionReader)} into a single composite expression, taking the children
+   * of the sides that are composite themselves.
+   */
+  static Expression concat(Expression first, Expression second) {
+    List<Expression> list = new ArrayList<>();
+    if (ExpressionType.COMPOSITE.equals(first.type())) {
+      list.addAll(first.children());
+    } else {
+      list.add(first);
+    }
+    if (ExpressionType.COMPOSITE.equals(second.type())) {
+      list.addAll(second.children());
+    } else {
+      list.add(second);
+    }
+    return compose(list);
+  }
+}
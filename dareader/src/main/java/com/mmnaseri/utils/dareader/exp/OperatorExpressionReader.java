@@ -0,0 +1,94 @@
+package com.mmnaseri.utils.dareader.exp;
+
+import com.mmnaseri.utils.dareader.DocumentTokenizer;
+import com.mmnaseri.utils.dareader.exp.OperatorTable.Operator;
+import com.mmnaseri.utils.dareader.token.Token;
+
+import javax.annotation.Nullable;
+
+/**
+ * Reads operands joined by the operators of an {@link OperatorTable}, via precedence climbing. The
+ * tokens are read from left to right in a single pass: after each operand, the next token is looked
+ * at, and is only read if it is an operator that binds tighter than the one the operand was read
+ * for. Nothing is ever read twice, unless the whole expression turns out to be incomplete, in which
+ * case the tokenizer is reset to where it was.
+ *
+ * <p>Each operator becomes a single node of type {@link ExpressionType#BINARY}, {@link
+ * ExpressionType#PREFIX} or {@link ExpressionType#POSTFIX}, which holds the operator token, and has
+ * its operands as children. A lone operand is returned as it is.
+ */
+final class OperatorExpressionReader implements ExpressionReader {
+
+  private final ExpressionReader operand;
+  private final OperatorTable table;
+
+  OperatorExpressionReader(ExpressionReader operand, OperatorTable table) {
+    this.operand = operand;
+    this.table = table;
+  }
+
+  @Nullable
+  @Override
+  public Expression read(DocumentTokenizer tokenizer) {
+    long mark = tokenizer.mark();
+    try {
+      Expression expression = read(tokenizer, 0);
+      if (expression == null) {
+        tokenizer.reset(mark);
+      }
+      return expression;
+    } finally {
+      tokenizer.release(mark);
+    }
+  }
+
+  /** Reads an expression made of operators that bind at least as tight as the given power. */
+  @Nullable
+  private Expression read(DocumentTokenizer tokenizer, int power) {
+    Expression left;
+    Token token = tokenizer.peek();
+    Operator operator = token == null ? null : table.prefix(token);
+    if (operator != null) {
+      tokenizer.next();
+      Expression right = read(tokenizer, operator.right);
+      if (right == null) {
+        return null;
+      }
+      left = node(ExpressionType.PREFIX, token, right);
+    } else {
+      left = operand.read(tokenizer);
+      if (left == null) {
+        return null;
+      }
+    }
+    while ((token = tokenizer.peek()) != null) {
+      if ((operator = table.postfix(token)) != null) {
+        if (operator.left < power) {
+          break;
+        }
+        tokenizer.next();
+        left = node(ExpressionType.POSTFIX, token, left);
+        continue;
+      }
+      operator = table.infix(token);
+      if (operator == null || operator.left < power) {
+        break;
+      }
+      tokenizer.next();
+      Expression right = read(tokenizer, operator.right);
+      if (right == null) {
+        return null;
+      }
+      left = node(ExpressionType.BINARY, token, left, right);
+    }
+    return left;
+  }
+
+  private static Expression node(ExpressionType type, Token operator, Expression... operands) {
+    Expression.Builder builder = Expression.newBuilder(type).addToken(operator);
+    for (Expression operand : operands) {
+      builder.addChild(operand);
+    }
+    return builder.build();
+  }
+}
@@ -0,0 +1,103 @@
+package com.mmnaseri.utils.dareader.exp;
+
+import com.mmnaseri.utils.dareader.token.Token;
+
+import javax.annotation.Nullable;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.mmnaseri.utils.dareader.utils.Precondition.checkArgument;
+import static com.mmnaseri.utils.dareader.utils.Precondition.checkNotNull;
+
+/**
+ * The operators understood by {@link ExpressionReader#operators(ExpressionReader, OperatorTable)},
+ * along with their precedence and associativity. Operators are told apart by the values of their
+ * tokens, and the same value can be registered both as a prefix operator and as an infix or postfix
+ * operator, as is usually the case for {@code -}.
+ *
+ * <p>Operators with a higher precedence bind tighter. Internally, each precedence {@code p} is
+ * turned into a pair of binding powers, {@code 2p} on the side of the operator facing what was read
+ * before it, and {@code 2p + 1} or {@code 2p - 1} on the side facing what comes after it, for left
+ * and right associative operators respectively.
+ */
+public final class OperatorTable {
+
+  /** The side that operators of the same precedence group towards. */
+  public enum Associativity {
+    /** {@code a - b - c} is read as {@code (a - b) - c}. */
+    LEFT,
+    /** {@code a ^ b ^ c} is read as {@code a ^ (b ^ c)}. */
+    RIGHT
+  }
+
+  private final Map<String, Operator> prefix = new HashMap<>();
+  private final Map<String, Operator> infix = new HashMap<>();
+  private final Map<String, Operator> postfix = new HashMap<>();
+
+  /** Adds a left associative infix operator with the given precedence. */
+  public OperatorTable infix(String symbol, int precedence) {
+    return infix(symbol, precedence, Associativity.LEFT);
+  }
+
+  /**
+   * Adds an infix operator with the given precedence and associativity. A value cannot be both an
+   * infix and a postfix operator, since there would be no way to tell them apart.
+   */
+  public OperatorTable infix(String symbol, int precedence, Associativity associativity) {
+    checkNotNull(associativity, "associativity cannot be null");
+    checkArgument(
+        !postfix.containsKey(symbol), "symbol", "%s is already a postfix operator", symbol);
+    int power = power(symbol, precedence);
+    infix.put(
+        symbol, new Operator(power, associativity == Associativity.LEFT ? power + 1 : power - 1));
+    return this;
+  }
+
+  /** Adds a prefix operator with the given precedence. */
+  public OperatorTable prefix(String symbol, int precedence) {
+    int power = power(symbol, precedence);
+    prefix.put(symbol, new Operator(0, power));
+    return this;
+  }
+
+  /** Adds a postfix operator with the given precedence. */
+  public OperatorTable postfix(String symbol, int precedence) {
+    checkArgument(!infix.containsKey(symbol), "symbol", "%s is already an infix operator", symbol);
+    postfix.put(symbol, new Operator(power(symbol, precedence), 0));
+    return this;
+  }
+
+  private static int power(String symbol, int precedence) {
+    checkNotNull(symbol, "symbol cannot be null");
+    checkArgument(
+        precedence > 0 && precedence < 1 << 29, "precedence", "precedence is out of range.");
+    return precedence * 2;
+  }
+
+  @Nullable
+  Operator prefix(Token token) {
+    return prefix.isEmpty() ? null : prefix.get(token.value());
+  }
+
+  @Nullable
+  Operator infix(Token token) {
+    return infix.isEmpty() ? null : infix.get(token.value());
+  }
+
+  @Nullable
+  Operator postfix(Token token) {
+    return postfix.isEmpty() ? null : postfix.get(token.value());
+  }
+
+  /** The binding powers of an operator, on the side facing left and the side facing right. */
+  static final class Operator {
+
+    final int left;
+    final int right;
+
+    private Operator(int left, int right) {
+      this.left = left;
+      this.right = right;
+    }
+  }
+}
@@ -0,0 +1,66 @@
+package com.mmnaseri.utils.dareader.impl;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import static com.mmnaseri.utils.dareader.utils.Precondition.checkNotNull;
+
+/**
+ * Utility class for exposing encoded bytes as character sequences without decoding them upfront.
+ */
+public final class ByteDocuments {
+
+  private static final long HIGH_BITS = 0x8080_8080_8080_8080L;
+
+  private ByteDocuments() throws IllegalAccessException {
+    throw new IllegalAccessException("This type should not be instantiated.");
+  }
+
+  /**
+   * Returns a character sequence view over the remaining bytes in the buffer. The view reads the
+   * buffer directly, so it should not be modified afterwards.
+   *
+   * <p>ISO-8859-1 content, as well as US-ASCII and UTF-8 content that turns out to only have ASCII
+   * characters, is exposed by mapping each byte directly to a character. Other UTF-8 content falls
+   * back to being decoded incrementally, one chunk at a time. In neither case is the content
+   * copied. Content in any other encoding is decoded into a string.
+   */
+  public static CharSequence view(ByteBuffer buffer, Charset charset) {
+    checkNotNull(buffer, "buffer cannot be null");
+    checkNotNull(charset, "charset cannot be null");
+    if (StandardCharsets.ISO_8859_1.equals(charset)) {
+      return new Latin1CharSequence(buffer);
+    }
+    boolean ascii = isAscii(buffer);
+    if (ascii
+        && (StandardCharsets.US_ASCII.equals(charset) || StandardCharsets.UTF_8.equals(charset))) {
+      return new Latin1CharSequence(buffer);
+    }
+    if (StandardCharsets.UTF_8.equals(charset)) {
+      return new Utf8CharSequence(buffer);
+    }
+    return charset.decode(buffer.duplicate()).toString();
+  }
+
+  /**
+   * Determines if all the remaining bytes in the buffer are ASCII, i.e. have their top bit clear.
+   */
+  public static boolean isAscii(ByteBuffer buffer) {
+    checkNotNull(buffer, "buffer cannot be null");
+    int position = buffer.position();
+    int limit = buffer.limit();
+    // Test eight bytes at a time.
+    for (; position + Long.BYTES <= limit; position += Long.BYTES) {
+      if ((buffer.getLong(position) & HIGH_BITS) != 0) {
+        return false;
+      }
+    }
+    for (; position < limit; position++) {
+      if (buffer.get(position) < 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,149 @@
+package com.mmnaseri.utils.dareader.impl;
+
+import com.mmnaseri.utils.dareader.error.DocumentReaderException;
+import com.mmnaseri.utils.dareader.token.FrozenTokenTypeRegistry;
+import com.mmnaseri.utils.dareader.token.Token;
+import com.mmnaseri.utils.dareader.token.TokenTypeRegistry;
+import com.mmnaseri.utils.dareader.token.impl.TokenInterner;
+import com.mmnaseri.utils.dareader.utils.CharPredicate;
+
+import javax.annotation.Nullable;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+import static com.mmnaseri.utils.dareader.error.DocumentReaderExceptions.expectValue;
+
+/**
+ * A spliterator over the tokens of a part of a document, which can be split into chunks at the
+ * {@link TokenTypeRegistry#boundaries() boundaries} declared by the registry, so that the chunks
+ * can be tokenized in parallel.
+ *
+ * <p>Each chunk is tokenized by its own tokenizer, over a reader that starts at the beginning of
+ * the chunk, and knows the line it is on. To know that, the line breaks in the first half of a
+ * chunk are counted when it is split, which is far cheaper than tokenizing it. The tokens are the
+ * same as the ones a single tokenizer would read from the whole document, as long as the boundaries
+ * hold up to their promise. If a token is found to go past the end of its chunk, tokenization
+ * fails. Documents that keep decoded text around, like UTF-8 files, are read through a copy of
+ * their own for each chunk, so that the chunks do not keep replacing each other's text.
+ *
+ * <p>Until the spliterator is split, it reads through the tokenizer it was created for, which moves
+ * along with it the same way it would with a sequential spliterator. Once it has been split, that
+ * tokenizer is left where it was.
+ */
+final class ChunkedTokenSpliterator implements Spliterator<Token> {
+
+  /** Chunks smaller than this are not split any further. */
+  static final int MIN_CHUNK = 1 << 16;
+
+  private final FrozenTokenTypeRegistry registry;
+  private final CharSequence document;
+  private final CharPredicate boundaries;
+  private final int end;
+  @Nullable private final TokenInterner interner;
+  private int start;
+  private int line;
+  private int lineStart;
+  @Nullable private SimpleDocumentTokenizer tokenizer;
+  private boolean started;
+
+  ChunkedTokenSpliterator(
+      FrozenTokenTypeRegistry registry,
+      CharSequence document,
+      CharPredicate boundaries,
+      int start,
+      int end,
+      int line,
+      int lineStart,
+      @Nullable TokenInterner interner,
+      @Nullable SimpleDocumentTokenizer tokenizer) {
+    this.registry = registry;
+    this.document = document;
+    this.boundaries = boundaries;
+    this.start = start;
+    this.end = end;
+    this.line = line;
+    this.lineStart = lineStart;
+    this.interner = interner;
+    this.tokenizer = tokenizer;
+  }
+
+  @Override
+  public boolean tryAdvance(Consumer<? super Token> action) {
+    started = true;
+    if (tokenizer == null) {
+      tokenizer =
+          new SimpleDocumentTokenizer(
+              registry, new SimpleDocumentReader(view(document), start, line, lineStart));
+      if (interner != null) {
+        tokenizer.internWith(interner);
+      }
+    }
+    // Looking for the next token moves past any skipped tokens, which might end the chunk.
+    if (!tokenizer.hasNext() || tokenizer.cursor() >= end) {
+      return false;
+    }
+    Token token = expectValue(tokenizer, tokenizer.next());
+    if (tokenizer.cursor() > end) {
+      throw new DocumentReaderException(
+          tokenizer,
+          "Token " + token + " goes past the boundary at " + end + ", so it is not safe to split");
+    }
+    action.accept(token);
+    return true;
+  }
+
+  /**
+   * Splits off the first half of the chunk, right after the first boundary that comes after its
+   * middle, or returns {@code null} if the chunk is too small, or has no such boundary, or has
+   * already been started on.
+   */
+  @Override
+  public Spliterator<Token> trySplit() {
+    if (started || end - start < MIN_CHUNK * 2) {
+      return null;
+    }
+    int split = start + (end - start) / 2;
+    while (split < end && !boundaries.test(document.charAt(split))) {
+      split++;
+    }
+    // The split goes after the boundary, and splitting at the very end leaves nothing behind.
+    split++;
+    if (split >= end) {
+      return null;
+    }
+    Spliterator<Token> prefix =
+        new ChunkedTokenSpliterator(
+            registry, document, boundaries, start, split, line, lineStart, interner, null);
+    int[] breaks = {0, lineStart};
+    LineIndex.lineBreaks(
+        document,
+        start,
+        split,
+        null,
+        position -> {
+          breaks[0]++;
+          breaks[1] = position;
+        });
+    line += breaks[0];
+    lineStart = breaks[1];
+    start = split;
+    tokenizer = null;
+    return prefix;
+  }
+
+  /** Returns a view of the document for a chunk to read from on a thread of its own. */
+  private static CharSequence view(CharSequence document) {
+    return document instanceof Utf8CharSequence ? ((Utf8CharSequence) document).copy() : document;
+  }
+
+  /** Returns the number of characters left, which is as many tokens as there can be at most. */
+  @Override
+  public long estimateSize() {
+    return end - (started ? tokenizer.cursor() : start);
+  }
+
+  @Override
+  public int characteristics() {
+    return ORDERED | NONNULL | IMMUTABLE;
+  }
+}
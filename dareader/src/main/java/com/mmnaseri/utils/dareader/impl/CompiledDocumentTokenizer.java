@@ -0,0 +1,39 @@
+package com.mmnaseri.utils.dareader.impl;
+
+import com.mmnaseri.utils.dareader.DocumentReader;
+import com.mmnaseri.utils.dareader.token.Token;
+import com.mmnaseri.utils.dareader.token.TokenTypeRegistry;
+import com.mmnaseri.utils.dareader.token.impl.TokenBuffer;
+
+import javax.annotation.Nullable;
+
+import static com.mmnaseri.utils.dareader.utils.Precondition.checkNotNull;
+
+/**
+ * A document tokenizer that reads its tokens through a {@link CompiledLexer}. It recognizes the
+ * same tokens as {@link SimpleDocumentTokenizer} would for the registry the lexer was compiled
+ * from.
+ */
+public class CompiledDocumentTokenizer extends SimpleDocumentTokenizer {
+
+  private final CompiledLexer lexer;
+  private final DocumentReader reader;
+
+  public CompiledDocumentTokenizer(
+      TokenTypeRegistry registry, CompiledLexer lexer, DocumentReader reader) {
+    super(registry, reader);
+    this.lexer = checkNotNull(lexer, "lexer cannot be null");
+    this.reader = reader;
+  }
+
+  @Override
+  @Nullable
+  protected Token read() {
+    return lexer.next(reader);
+  }
+
+  @Override
+  protected boolean read(TokenBuffer buffer) {
+    return lexer.next(reader, buffer);
+  }
+}
@@ -0,0 +1,176 @@
+package com.mmnaseri.utils.dareader.impl;
+
+import com.mmnaseri.utils.dareader.DocumentReader;
+import com.mmnaseri.utils.dareader.regex.TokenAutomaton;
+import com.mmnaseri.utils.dareader.token.FrozenTokenTypeRegistry;
+import com.mmnaseri.utils.dareader.token.Token;
+import com.mmnaseri.utils.dareader.token.TokenReader;
+import com.mmnaseri.utils.dareader.token.TokenType;
+import com.mmnaseri.utils.dareader.token.TokenTypeRegistry;
+import com.mmnaseri.utils.dareader.token.impl.SimpleToken;
+import com.mmnaseri.utils.dareader.token.impl.SpanToken;
+import com.mmnaseri.utils.dareader.token.impl.TokenBuffer;
+import com.mmnaseri.utils.dareader.utils.PatternTokenReader;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static com.mmnaseri.utils.dareader.utils.Precondition.checkNotNull;
+
+/**
+ * Reads tokens the same way {@link SimpleDocumentTokenizer} does, by returning the token from the
+ * first reader, in the order of the tags, that recognizes one. The difference is that the readers
+ * that match a whole {@link Pattern} are compiled into a single {@link TokenAutomaton} upfront,
+ * which finds the first of them that matches in one pass over the text. The other readers are still
+ * tried one by one, but only the ones that come before the reader the automaton has picked.
+ *
+ * <p>The lexer is built from the token types in the registry at the time of compilation, and is not
+ * affected by changes to the registry afterwards. It has no state of its own, and can be shared
+ * between tokenizers.
+ */
+public final class CompiledLexer {
+
+  private final TokenType[] types;
+  private final TokenReader[] readers;
+  private final boolean[] compiled;
+  private final int[] positions;
+  private final TokenAutomaton automaton;
+
+  private CompiledLexer(
+      TokenType[] types,
+      TokenReader[] readers,
+      boolean[] compiled,
+      int[] positions,
+      TokenAutomaton automaton) {
+    this.types = types;
+    this.readers = readers;
+    this.compiled = compiled;
+    this.positions = positions;
+    this.automaton = automaton;
+  }
+
+  /** Compiles the token types currently in the registry. */
+  public static CompiledLexer compile(TokenTypeRegistry registry) {
+    checkNotNull(registry, "registry cannot be null");
+    FrozenTokenTypeRegistry frozen = registry.freeze();
+    TokenType[] types = new TokenType[frozen.size()];
+    TokenReader[] readers = new TokenReader[types.length];
+    List<Pattern> patterns = new ArrayList<>();
+    List<Integer> positions = new ArrayList<>();
+    for (int i = 0; i < types.length; i++) {
+      types[i] = frozen.type(i);
+      readers[i] = frozen.reader(i);
+      if (readers[i] instanceof PatternTokenReader
+          && ((PatternTokenReader) readers[i]).group() == 0) {
+        patterns.add(((PatternTokenReader) readers[i]).pattern());
+        positions.add(i);
+      }
+    }
+    TokenAutomaton automaton = TokenAutomaton.compile(patterns);
+    boolean[] compiled = new boolean[types.length];
+    for (int i = 0; i < patterns.size(); i++) {
+      compiled[positions.get(i)] = automaton.compiled(i);
+    }
+    return new CompiledLexer(
+        types,
+        readers,
+        compiled,
+        positions.stream().mapToInt(Integer::intValue).toArray(),
+        automaton);
+  }
+
+  /** Returns the number of token types whose readers have been compiled into the automaton. */
+  public int compiled() {
+    int count = 0;
+    for (boolean flag : compiled) {
+      if (flag) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /** Reads the next token from the document, or returns {@code null} if none can be recognized. */
+  @Nullable
+  public Token next(DocumentReader reader) {
+    if (!reader.hasNext()) {
+      // Let the readers decide how to deal with the end of the document.
+      return fallback(reader, types.length, true);
+    }
+    long match = automaton.match(reader);
+    if (match == TokenAutomaton.UNDECIDED) {
+      return fallback(reader, types.length, true);
+    }
+    if (match == TokenAutomaton.NO_MATCH) {
+      return fallback(reader, types.length, false);
+    }
+    // None of the compiled readers before this one match, or the automaton would have picked them.
+    int position = positions[TokenAutomaton.pattern(match)];
+    Token token = fallback(reader, position, false);
+    if (token != null) {
+      return token;
+    }
+    int start = reader.cursor();
+    int length = TokenAutomaton.length(match);
+    CharSequence source = reader.source();
+    token =
+        source != null
+            ? new SpanToken(types[position], source, start, length)
+            : new SimpleToken(
+                types[position], reader.subSequence(start, start + length).toString(), length);
+    reader.advance(length);
+    return token;
+  }
+
+  /**
+   * Reads the next token from the document into the given buffer, and returns {@code false} if none
+   * can be recognized. Tokens matched by the automaton are added to the buffer without being
+   * created.
+   */
+  public boolean next(DocumentReader reader, TokenBuffer buffer) {
+    long match = reader.hasNext() ? automaton.match(reader) : TokenAutomaton.UNDECIDED;
+    int position = types.length;
+    if (match >= 0) {
+      position = positions[TokenAutomaton.pattern(match)];
+    }
+    int start = reader.cursor();
+    Token token = fallback(reader, position, match == TokenAutomaton.UNDECIDED);
+    if (token != null) {
+      buffer.add(token, start);
+      return true;
+    }
+    if (match < 0) {
+      return false;
+    }
+    int length = TokenAutomaton.length(match);
+    buffer.add(types[position], start, length, null);
+    reader.advance(length);
+    return true;
+  }
+
+  /**
+   * Tries the readers for the token types up to the given position one by one, the same way {@link
+   * SimpleDocumentTokenizer} does. The compiled readers are skipped, unless indicated otherwise.
+   */
+  @Nullable
+  private Token fallback(DocumentReader reader, int to, boolean includeCompiled) {
+    long mark = reader.mark();
+    try {
+      for (int i = 0; i < to; i++) {
+        if (compiled[i] && !includeCompiled) {
+          continue;
+        }
+        Token token = readers[i].read(reader);
+        if (token != null) {
+          return token;
+        }
+        reader.reset(mark);
+      }
+      return null;
+    } finally {
+      reader.release(mark);
+    }
+  }
+}
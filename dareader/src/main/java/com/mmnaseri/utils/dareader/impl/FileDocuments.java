@@ -0,0 +1,41 @@
+package com.mmnaseri.utils.dareader.impl;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static com.mmnaseri.utils.dareader.utils.Precondition.checkArgument;
+import static com.mmnaseri.utils.dareader.utils.Precondition.checkNotNull;
+
+/** Utility class for exposing the contents of files as character sequences. */
+public final class FileDocuments {
+
+  private FileDocuments() throws IllegalAccessException {
+    throw new IllegalAccessException("This type should not be instantiated.");
+  }
+
+  /**
+   * Maps the given file into memory and returns a character sequence view over its contents.
+   *
+   * <p>ISO-8859-1 files, as well as US-ASCII and UTF-8 files that only contain ASCII characters,
+   * are exposed by mapping each byte directly to a character. Other UTF-8 files are decoded
+   * incrementally, one chunk at a time. In neither case are the contents of the file copied onto
+   * the heap. Files in any other encoding are decoded into a string.
+   *
+   * <p>Files larger than {@link Integer#MAX_VALUE} bytes are not supported.
+   */
+  public static CharSequence map(Path path, Charset charset) throws IOException {
+    checkNotNull(path, "path cannot be null");
+    checkNotNull(charset, "charset cannot be null");
+    MappedByteBuffer buffer;
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      checkArgument(
+          channel.size() <= Integer.MAX_VALUE, "path", "File is too large to be mapped: %s", path);
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+    return ByteDocuments.view(buffer, charset);
+  }
+}
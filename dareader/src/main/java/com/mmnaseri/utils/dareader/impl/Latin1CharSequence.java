@@ -0,0 +1,131 @@
+package com.mmnaseri.utils.dareader.impl;
+
+import com.mmnaseri.utils.dareader.utils.CharPredicate;
+
+import javax.annotation.Nonnull;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static com.mmnaseri.utils.dareader.utils.Precondition.checkArgument;
+import static com.mmnaseri.utils.dareader.utils.Precondition.checkNotNull;
+
+/**
+ * A character sequence view over a byte buffer that maps each byte to exactly one character using
+ * the ISO-8859-1 (Latin-1) encoding, which includes ASCII. The buffer is never copied, except for
+ * the parts that are explicitly turned into strings via {@link #toString()}.
+ *
+ * <p>When the buffer is backed by an array, the array is accessed directly.
+ */
+final class Latin1CharSequence implements CharSequence {
+
+  private static final long LANE_NEWLINES = 0x0A0A_0A0A_0A0A_0A0AL;
+  private static final long LANE_ONES = 0x0101_0101_0101_0101L;
+  private static final long LANE_HIGH_BITS = 0x8080_8080_8080_8080L;
+
+  private final ByteBuffer buffer;
+  private final byte[] bytes;
+  private final int offset;
+  private final int arrayOffset;
+  private final int length;
+
+  Latin1CharSequence(ByteBuffer buffer) {
+    this(buffer, buffer.position(), buffer.remaining());
+  }
+
+  private Latin1CharSequence(ByteBuffer buffer, int offset, int length) {
+    this.buffer = checkNotNull(buffer, "buffer cannot be null");
+    this.offset = offset;
+    this.length = length;
+    if (buffer.hasArray()) {
+      bytes = buffer.array();
+      arrayOffset = buffer.arrayOffset() + offset;
+    } else {
+      bytes = null;
+      arrayOffset = -1;
+    }
+  }
+
+  @Override
+  public int length() {
+    return length;
+  }
+
+  @Override
+  public char charAt(int index) {
+    if (index < 0 || index >= length) {
+      throw new IndexOutOfBoundsException("index: " + index + ", length: " + length);
+    }
+    if (bytes != null) {
+      return (char) (bytes[arrayOffset + index] & 0xFF);
+    }
+    return (char) (buffer.get(offset + index) & 0xFF);
+  }
+
+  /**
+   * Returns the index of the first line break in the given range, or {@code -1} if there is none.
+   * The bytes are tested eight at a time.
+   */
+  int nextLineBreak(int from, int to) {
+    int index = from;
+    while (index < to) {
+      for (; index + Long.BYTES <= to; index += Long.BYTES) {
+        long lanes = buffer.getLong(offset + index) ^ LANE_NEWLINES;
+        if (((lanes - LANE_ONES) & ~lanes & LANE_HIGH_BITS) != 0) {
+          // The test can report false positives above a true hit, so look at each byte.
+          break;
+        }
+      }
+      int end = Math.min(to, index + Long.BYTES);
+      for (; index < end; index++) {
+        if (charAt(index) == '\n') {
+          return index;
+        }
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the number of consecutive characters in the given range, starting at its beginning,
+   * that satisfy the predicate. This reads the bytes directly, rather than through {@link
+   * #charAt(int)}.
+   */
+  int span(CharPredicate predicate, int from, int to) {
+    int index = from;
+    if (bytes != null) {
+      while (index < to && predicate.test((char) (bytes[arrayOffset + index] & 0xFF))) {
+        index++;
+      }
+    } else {
+      while (index < to && predicate.test((char) (buffer.get(offset + index) & 0xFF))) {
+        index++;
+      }
+    }
+    return index - from;
+  }
+
+  @Override
+  public CharSequence subSequence(int start, int end) {
+    checkArgument(
+        start >= 0 && start <= end && end <= length,
+        "range",
+        "Invalid range [%d, %d) for length %d",
+        start,
+        end,
+        length);
+    return new Latin1CharSequence(buffer, offset + start, end - start);
+  }
+
+  @Nonnull
+  @Override
+  public String toString() {
+    if (bytes != null) {
+      return new String(bytes, arrayOffset, length, StandardCharsets.ISO_8859_1);
+    }
+    byte[] copy = new byte[length];
+    ByteBuffer source = buffer.duplicate();
+    source.limit(offset + length).position(offset);
+    source.get(copy);
+    return new String(copy, StandardCharsets.ISO_8859_1);
+  }
+}
@@ -0,0 +1,163 @@
+package com.mmnaseri.utils.dareader.impl;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * A lazily built index of the positions at which each line of a document starts. The index is only
+ * extended as far as the furthest position for which a line number has been requested, and lookups
+ * are done via a binary search over the recorded line starts.
+ */
+final class LineIndex {
+
+  /** The number of characters copied out of the document at a time when scanning for lines. */
+  private static final int CHUNK_SIZE = 1024;
+
+  private static final long LANE_NEWLINES = 0x000A_000A_000A_000AL;
+  private static final long LANE_ONES = 0x0001_0001_0001_0001L;
+  private static final long LANE_HIGH_BITS = 0x8000_8000_8000_8000L;
+
+  private final CharSequence document;
+  private char[] chunk;
+  private int[] starts;
+  private int lines;
+  private int scanned;
+  private int discarded;
+
+  LineIndex(CharSequence document) {
+    this(document, 0, 1, 0);
+  }
+
+  /**
+   * Creates an index that starts at the given position of the document, which is known to be on the
+   * given line, with the line starting at the given position. The index can only answer questions
+   * about the positions from the origin on, which saves having to scan the text before it.
+   */
+  LineIndex(CharSequence document, int origin, int line, int lineStart) {
+    this.document = document;
+    starts = new int[16];
+    starts[0] = lineStart;
+    lines = 1;
+    scanned = origin;
+    discarded = line - 1;
+  }
+
+  /**
+   * Returns the line number for the given cursor. The first line has a line number of {@code 1}.
+   */
+  int line(int cursor) {
+    return discarded + lineIndex(cursor) + 1;
+  }
+
+  /**
+   * Returns the character number in the line for the given cursor. The first character in the line
+   * has a number of {@code 1}.
+   */
+  int offset(int cursor) {
+    return cursor - starts[lineIndex(cursor)] + 1;
+  }
+
+  private int lineIndex(int cursor) {
+    extend(cursor);
+    // Fast path for the common case of asking about the last known line.
+    if (starts[lines - 1] <= cursor) {
+      return lines - 1;
+    }
+    int index = Arrays.binarySearch(starts, 0, lines, cursor);
+    return index >= 0 ? index : -index - 2;
+  }
+
+  /**
+   * Forgets about all the lines that end before the given position, so that the index only holds on
+   * to what is needed to answer questions about the given position and anything after it. Line
+   * breaks before the position are scanned first, so that the text before the position can then be
+   * safely thrown away.
+   */
+  void discard(int position) {
+    int index = lineIndex(position);
+    if (index > 0) {
+      System.arraycopy(starts, index, starts, 0, lines - index);
+      lines -= index;
+      discarded += index;
+    }
+  }
+
+  /** Makes sure that all line breaks appearing before the given cursor have been recorded. */
+  private void extend(int cursor) {
+    if (cursor <= scanned) {
+      return;
+    }
+    if (chunk == null && document instanceof String) {
+      chunk = new char[CHUNK_SIZE];
+    }
+    lineBreaks(document, scanned, cursor, chunk, this::add);
+    scanned = cursor;
+  }
+
+  /**
+   * Finds the line breaks between the two positions of the document, and passes the position right
+   * after each one to the given action, in order. Strings are scanned through the given buffer,
+   * which has to be at least {@link #CHUNK_SIZE} characters long.
+   */
+  static void lineBreaks(
+      CharSequence document, int from, int to, @Nullable char[] buffer, IntConsumer action) {
+    if (document instanceof String) {
+      scan((String) document, from, to, buffer == null ? new char[CHUNK_SIZE] : buffer, action);
+    } else if (document instanceof Latin1CharSequence) {
+      Latin1CharSequence bytes = (Latin1CharSequence) document;
+      int next = bytes.nextLineBreak(from, to);
+      while (next >= 0) {
+        action.accept(next + 1);
+        next = bytes.nextLineBreak(next + 1, to);
+      }
+    } else {
+      for (int i = from; i < to; i++) {
+        if (document.charAt(i) == '\n') {
+          action.accept(i + 1);
+        }
+      }
+    }
+  }
+
+  /**
+   * Scans the string in chunks, packing four characters into a single word at a time, so that words
+   * with no line breaks in them can be skipped with a single test.
+   */
+  private static void scan(String string, int from, int end, char[] chunk, IntConsumer action) {
+    for (int base = from; base < end; base += CHUNK_SIZE) {
+      int length = Math.min(CHUNK_SIZE, end - base);
+      string.getChars(base, base + length, chunk, 0);
+      int i = 0;
+      for (; i + 4 <= length; i += 4) {
+        long word =
+            chunk[i]
+                | (long) chunk[i + 1] << 16
+                | (long) chunk[i + 2] << 32
+                | (long) chunk[i + 3] << 48;
+        // Lanes equal to '\n' become zero, and the classic "has zero lane" test is then applied.
+        long lanes = word ^ LANE_NEWLINES;
+        if (((lanes - LANE_ONES) & ~lanes & LANE_HIGH_BITS) != 0) {
+          // The test can report false positives for the lanes above a true hit, so look closer.
+          for (int j = i; j < i + 4; j++) {
+            if (chunk[j] == '\n') {
+              action.accept(base + j + 1);
+            }
+          }
+        }
+      }
+      for (; i < length; i++) {
+        if (chunk[i] == '\n') {
+          action.accept(base + i + 1);
+        }
+      }
+    }
+  }
+
+  private void add(int start) {
+    if (lines == starts.length) {
+      starts = Arrays.copyOf(starts, lines * 2);
+    }
+    starts[lines++] = start;
+  }
+}
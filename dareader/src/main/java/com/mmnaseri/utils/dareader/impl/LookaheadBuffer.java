@@ -0,0 +1,130 @@
+package com.mmnaseri.utils.dareader.impl;
+
+import com.mmnaseri.utils.dareader.token.Token;
+
+import static com.mmnaseri.utils.dareader.utils.Precondition.checkState;
+
+/**
+ * A fixed-capacity ring buffer of consecutive tokens, along with the positions they start and end
+ * at. Some of the tokens are behind the cursor of the tokenizer, and have already been read, while
+ * the rest are ahead of it, and have only been peeked at. Once the buffer is full, the oldest
+ * tokens behind the cursor make room for new ones.
+ *
+ * <p>Since the cursor can be moved by restoring snapshots, the buffer is {@link #moveTo(int) told}
+ * where the cursor is before it is used. As long as the cursor is at the start of one of the
+ * tokens, or in the gap of skipped text before it, or right after the last one, the buffer carries
+ * on from there, which makes moving back by a few tokens free. Otherwise, the buffer is cleared.
+ */
+final class LookaheadBuffer {
+
+  /** The number of tokens the buffer can hold. */
+  static final int CAPACITY = 16;
+
+  private static final int MASK = CAPACITY - 1;
+
+  private final Token[] tokens = new Token[CAPACITY];
+  private final int[] starts = new int[CAPACITY];
+  private final int[] ends = new int[CAPACITY];
+  private int first;
+  private int size;
+
+  /** The index of the token at the cursor, relative to {@link #first}. */
+  private int current;
+
+  private int slot(int index) {
+    return (first + index) & MASK;
+  }
+
+  /**
+   * Lines the buffer up with the given cursor, clearing it if the cursor is not at a token. Since
+   * the gaps between the tokens only hold skipped tokens, a cursor in a gap counts as being at the
+   * token after it.
+   */
+  void moveTo(int cursor) {
+    if (current < size && at(current, cursor)) {
+      return;
+    }
+    if (size > 0 && ends[slot(size - 1)] == cursor) {
+      current = size;
+      return;
+    }
+    for (int i = 0; i < size; i++) {
+      if (at(i, cursor)) {
+        current = i;
+        return;
+      }
+    }
+    clear();
+  }
+
+  /**
+   * Determines if the given cursor is at the token with the given index, or in the gap before it.
+   */
+  private boolean at(int index, int cursor) {
+    int start = starts[slot(index)];
+    return cursor <= start && cursor >= (index == 0 ? start : ends[slot(index - 1)]);
+  }
+
+  /** Returns the number of tokens ahead of the cursor. */
+  int ahead() {
+    return size - current;
+  }
+
+  /** Returns the number of tokens behind the cursor that are still in the buffer. */
+  int behind() {
+    return current;
+  }
+
+  /**
+   * Returns the token that is the given number of tokens ahead of the cursor. Tokens behind the
+   * cursor have negative numbers, with the last one read being {@code -1}.
+   */
+  Token token(int ahead) {
+    return tokens[slot(current + ahead)];
+  }
+
+  /** Returns the position at which the token that is the given number of tokens ahead starts. */
+  int start(int ahead) {
+    return starts[slot(current + ahead)];
+  }
+
+  /** Returns the position at which the token that is the given number of tokens ahead ends. */
+  int end(int ahead) {
+    return ends[slot(current + ahead)];
+  }
+
+  /** Moves the cursor of the buffer past the token at the cursor. */
+  void consume() {
+    checkState(current < size, "There are no tokens ahead of the cursor");
+    current++;
+  }
+
+  /**
+   * Adds a token after the last one, which must end at or before the point where the new one
+   * starts, unless the buffer is empty. Anything between the two is taken to be skipped.
+   */
+  void push(int start, Token token, int end) {
+    checkState(
+        size == 0 || ends[slot(size - 1)] <= start, "Tokens in the buffer must be consecutive");
+    if (size == CAPACITY) {
+      checkState(current > 0, "The buffer is full of tokens ahead of the cursor");
+      tokens[first] = null;
+      first = (first + 1) & MASK;
+      size--;
+      current--;
+    }
+    int slot = slot(size++);
+    tokens[slot] = token;
+    starts[slot] = start;
+    ends[slot] = end;
+  }
+
+  void clear() {
+    for (int i = 0; i < size; i++) {
+      tokens[slot(i)] = null;
+    }
+    first = 0;
+    size = 0;
+    current = 0;
+  }
+}
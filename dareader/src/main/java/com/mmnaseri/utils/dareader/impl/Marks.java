@@ -0,0 +1,48 @@
+package com.mmnaseri.utils.dareader.impl;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Utility class for packing {@link com.mmnaseri.utils.dareader.DocumentAccessor#mark() marks}. A
+ * mark holds the cursor in its lower half, and the generation of the accessor that created it in
+ * its upper half. Each accessor that hands out marks takes a {@link #generation() generation} of
+ * its own, so that it can tell its own marks apart from the others by comparing two numbers.
+ */
+public final class Marks {
+
+  /**
+   * The generation of marks that do not belong to any accessor in particular. Such marks can be
+   * used with any accessor that moves its cursor the same way.
+   */
+  public static final int UNOWNED = 0;
+
+  private static final AtomicInteger GENERATIONS = new AtomicInteger();
+
+  private Marks() throws IllegalAccessException {
+    throw new IllegalAccessException("This type should not be instantiated.");
+  }
+
+  /** Returns a new generation, which is never {@link #UNOWNED}. */
+  public static int generation() {
+    int generation;
+    do {
+      generation = GENERATIONS.incrementAndGet();
+    } while (generation == UNOWNED);
+    return generation;
+  }
+
+  /** Returns the mark for the given cursor, created by the accessor of the given generation. */
+  public static long of(int generation, int cursor) {
+    return (long) generation << 32 | (cursor & 0xFFFFFFFFL);
+  }
+
+  /** Returns the generation of the accessor that created the given mark. */
+  public static int generation(long mark) {
+    return (int) (mark >>> 32);
+  }
+
+  /** Returns the cursor recorded in the given mark. */
+  public static int cursor(long mark) {
+    return (int) mark;
+  }
+}
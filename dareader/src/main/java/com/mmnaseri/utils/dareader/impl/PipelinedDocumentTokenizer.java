@@ -0,0 +1,470 @@
+package com.mmnaseri.utils.dareader.impl;
+
+import com.mmnaseri.utils.dareader.DocumentReader;
+import com.mmnaseri.utils.dareader.DocumentSnapshot;
+import com.mmnaseri.utils.dareader.DocumentSnapshotManager;
+import com.mmnaseri.utils.dareader.DocumentTokenizer;
+import com.mmnaseri.utils.dareader.error.DocumentReaderException;
+import com.mmnaseri.utils.dareader.token.Token;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.lang.ref.WeakReference;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static com.mmnaseri.utils.dareader.error.DocumentReaderExceptions.expectUncut;
+import static com.mmnaseri.utils.dareader.utils.Precondition.checkArgument;
+import static com.mmnaseri.utils.dareader.utils.Precondition.checkNotNull;
+import static com.mmnaseri.utils.dareader.utils.Precondition.checkState;
+
+/**
+ * A tokenizer that reads its tokens from another tokenizer, which is run ahead of it on a separate
+ * thread. That thread, the producer, hands the tokens over through a bounded ring buffer, which has
+ * a single writer and a single reader, and needs no locks. This lets the thread using this
+ * tokenizer, the consumer, parse the tokens while the ones after them are being read.
+ *
+ * <p>Once a token has been handed over, it is kept on the consumer's side for as long as a snapshot
+ * that was created before it is still reachable, or a {@link #mark() mark} made before it has not
+ * been released and the tokenizer has not been {@link #cut() cut} after it, along with the last few
+ * tokens before the cursor, so that restoring snapshots and rewinding tokens works the same way it
+ * does for the tokenizer being read from. Positions can only be restored if they are between two
+ * tokens.
+ *
+ * <p>Tokens are handed over with their values already copied out of the document, so that the
+ * consumer does not have to read the document while the producer is reading it.
+ *
+ * <p>The tokenizer being read from must not be used by anyone else once it has been handed to this
+ * tokenizer. Exceptions thrown by it are rethrown on the consumer's side, once the consumer gets to
+ * the point where they were thrown. If the consumer stops before the end of the document, it has to
+ * {@link #close()} this tokenizer, so that the producer stops as well.
+ *
+ * @see DocumentTokenizer#pipelined(Executor, int)
+ */
+public class PipelinedDocumentTokenizer implements DocumentTokenizer, AutoCloseable {
+
+  /** The number of tokens kept behind the cursor, besides the ones kept for the snapshots. */
+  static final int HISTORY = 16;
+
+  /** The number of times a thread checks on the other one before parking. */
+  private static final int SPINS = 64;
+
+  /** The longest a thread parks for before checking on the other one again. */
+  private static final long PARK_NANOS = 100_000;
+
+  private final DocumentTokenizer source;
+
+  // Shared between the two threads. The producer owns the tail, the consumer owns the head, and the
+  // entries in between are only written by the producer before it moves the tail past them.
+  private final TokenTrail ring;
+  private final int mask;
+  private final AtomicLong head = new AtomicLong();
+  private final AtomicLong tail = new AtomicLong();
+  private volatile boolean finished;
+  private volatile boolean closed;
+  @Nullable private volatile Thread waitingConsumer;
+  @Nullable private volatile Thread waitingProducer;
+
+  // Written by the producer before it sets the finished flag.
+  private int endCursor;
+  private int endLine;
+  private int endOffset;
+  private boolean endHasNext;
+  @Nullable private RuntimeException failure;
+
+  // Only used by the consumer. The trail holds the tokens that have been handed over, starting with
+  // the token with the given sequence number. The base is the position before that token.
+  private final TokenTrail trail = new TokenTrail(HISTORY * 4);
+  private long trailStart;
+  private int trailSize;
+  private int baseCursor;
+  private int baseLine;
+  private int baseOffset;
+  private long position;
+  private int cursor;
+  private int floor;
+  private int line;
+  private int offset;
+  private final SnapshotPins pins = new SnapshotPins();
+  private final int generation = Marks.generation();
+  private final Snapshots snapshots = new Snapshots();
+
+  /**
+   * Creates a tokenizer that reads from the given one on a thread of the given executor, which is
+   * allowed to read up to the given number of tokens, rounded up to a power of two, ahead.
+   */
+  public PipelinedDocumentTokenizer(DocumentTokenizer source, Executor executor, int capacity) {
+    this.source = checkNotNull(source, "source cannot be null");
+    checkNotNull(executor, "executor cannot be null");
+    checkArgument(capacity > 0 && capacity <= 1 << 30, "capacity", "capacity is out of range.");
+    int size = Integer.highestOneBit(capacity);
+    if (size < capacity) {
+      size <<= 1;
+    }
+    ring = new TokenTrail(size);
+    mask = size - 1;
+    baseCursor = cursor = source.cursor();
+    baseLine = line = source.line();
+    baseOffset = offset = source.offset();
+    executor.execute(this::produce);
+  }
+
+  /** Reads the tokens from the source, and hands them over until there are no more. */
+  private void produce() {
+    try {
+      while (!closed && source.hasNext()) {
+        int start = source.cursor();
+        Token token = source.next();
+        if (token == null) {
+          break;
+        }
+        // Tokens that refer to the document copy their value out of it the first time it is asked
+        // for, which is better done here than on the consumer's side.
+        token.value();
+        long index = tail.get();
+        int spins = 0;
+        while (index - head.get() > mask) {
+          if (closed) {
+            return;
+          }
+          if (++spins > SPINS) {
+            waitingProducer = Thread.currentThread();
+            if (index - head.get() > mask && !closed) {
+              LockSupport.parkNanos(this, PARK_NANOS);
+            }
+            waitingProducer = null;
+          }
+        }
+        ring.set((int) index & mask, token, start, source.cursor(), source.line(), source.offset());
+        tail.lazySet(index + 1);
+        wake(waitingConsumer);
+      }
+      endCursor = source.cursor();
+      endLine = source.line();
+      endOffset = source.offset();
+      endHasNext = source.hasNext();
+    } catch (RuntimeException e) {
+      failure = e;
+    } finally {
+      finished = true;
+      wake(waitingConsumer);
+    }
+  }
+
+  private static void wake(@Nullable Thread thread) {
+    if (thread != null) {
+      LockSupport.unpark(thread);
+    }
+  }
+
+  /**
+   * Waits until the producer has handed over a token that has not yet been taken, or has finished,
+   * and returns {@code true} if there is such a token.
+   */
+  private boolean await() {
+    long index = head.get();
+    int spins = 0;
+    while (tail.get() == index) {
+      if (finished) {
+        return tail.get() != index;
+      }
+      if (++spins > SPINS) {
+        waitingConsumer = Thread.currentThread();
+        if (tail.get() == index && !finished) {
+          LockSupport.parkNanos(this, PARK_NANOS);
+        }
+        waitingConsumer = null;
+      }
+    }
+    return true;
+  }
+
+  /** Takes the next token out of the ring, and adds it to the end of the trail. */
+  private void take() {
+    long index = head.get();
+    trail.grow(trailSize + 1);
+    ring.copy((int) index & mask, trail, trailSize++);
+    head.lazySet(index + 1);
+    wake(waitingProducer);
+  }
+
+  /**
+   * Makes sure the token with the given sequence number is in the trail, and returns {@code false}
+   * if there is no such token. Since the ring can only be emptied in order, this takes every token
+   * before it out of the ring as well, so that the producer can keep going. If the producer stopped
+   * because of an error, the error is rethrown once all the tokens before it have been taken.
+   */
+  private boolean reach(long sequence) {
+    while (trailStart + trailSize <= sequence) {
+      if (!await()) {
+        if (failure != null) {
+          throw failure;
+        }
+        return false;
+      }
+      take();
+    }
+    return true;
+  }
+
+  /** Moves to the given position in the trail. */
+  private void moveTo(long sequence) {
+    position = sequence;
+    if (sequence == trailStart) {
+      cursor = baseCursor;
+      line = baseLine;
+      offset = baseOffset;
+    } else {
+      int index = (int) (sequence - trailStart - 1);
+      cursor = trail.ends[index];
+      line = trail.lines[index];
+      offset = trail.offsets[index];
+    }
+  }
+
+  /**
+   * Forgets the tokens that are neither among the last few before the cursor, nor needed by any of
+   * the snapshots that are still reachable.
+   */
+  private void trim() {
+    if (trailSize < HISTORY * 4) {
+      return;
+    }
+    int lowWaterMark = Math.max(pins.lowWaterMark(cursor), floor);
+    long keep = Math.max(trailStart, position - HISTORY);
+    while (keep > trailStart && cursorAt(keep) > lowWaterMark) {
+      keep--;
+    }
+    int count = (int) (keep - trailStart);
+    if (count < HISTORY) {
+      return;
+    }
+    baseCursor = trail.ends[count - 1];
+    baseLine = trail.lines[count - 1];
+    baseOffset = trail.offsets[count - 1];
+    trail.drop(count, trailSize);
+    trailSize -= count;
+    trailStart = keep;
+  }
+
+  private int cursorAt(long sequence) {
+    return sequence == trailStart ? baseCursor : trail.ends[(int) (sequence - trailStart - 1)];
+  }
+
+  /**
+   * Moves to the position that is at the given cursor, which has to be between two tokens that are
+   * still kept.
+   */
+  private void restore(int target) {
+    expectUncut(this, target);
+    long low = trailStart;
+    long high = trailStart + trailSize;
+    while (low <= high) {
+      long middle = (low + high) >>> 1;
+      int at = cursorAt(middle);
+      if (at == target) {
+        moveTo(middle);
+        return;
+      }
+      if (at < target) {
+        low = middle + 1;
+      } else {
+        high = middle - 1;
+      }
+    }
+    if (finished && failure == null && target == endCursor && tail.get() == head.get()) {
+      position = trailStart + trailSize;
+      cursor = endCursor;
+      line = endLine;
+      offset = endOffset;
+      return;
+    }
+    throw new DocumentReaderException(
+        this, "Cannot move to " + target + ", which is not between two tokens that are kept");
+  }
+
+  /**
+   * Stops the producer, if it has not finished already. The tokens that have already been handed
+   * over can still be read.
+   */
+  @Override
+  public void close() {
+    closed = true;
+    wake(waitingProducer);
+  }
+
+  @Override
+  public int line() {
+    return line;
+  }
+
+  @Override
+  public int offset() {
+    return offset;
+  }
+
+  @Override
+  public int cursor() {
+    return cursor;
+  }
+
+  /**
+   * Returns {@code true} if there are more tokens, waiting for the producer to get to them if
+   * needed. Once there are no more tokens, this reports whether the tokenizer being read from had
+   * more text left, and moves the cursor to where that tokenizer stopped.
+   */
+  @Override
+  public boolean hasNext() {
+    if (reach(position)) {
+      return true;
+    }
+    if (position == trailStart + trailSize) {
+      cursor = endCursor;
+      line = endLine;
+      offset = endOffset;
+    }
+    return endHasNext;
+  }
+
+  /**
+   * Returns whether there might be more tokens, like {@link #hasNext()} does, but without waiting
+   * for the producer or moving past whatever the source skipped at the end.
+   */
+  private boolean mightHaveNext() {
+    if (position < trailStart + trailSize) {
+      return true;
+    }
+    // The producer only sets the flag once it is done with everything else.
+    boolean done = finished;
+    return tail.get() != head.get() || !done || endHasNext;
+  }
+
+  @Nullable
+  @Override
+  public Token next() {
+    if (!reach(position)) {
+      hasNext();
+      return null;
+    }
+    Token token = trail.tokens[(int) (position - trailStart)];
+    moveTo(position + 1);
+    trim();
+    return token;
+  }
+
+  @Nullable
+  @Override
+  public Token peek(int k) {
+    checkArgument(k >= 0, "k", "k must be non-negative.");
+    if (!reach(position + k)) {
+      return null;
+    }
+    return trail.tokens[(int) (position + k - trailStart)];
+  }
+
+  /**
+   * Always throws an {@link UnsupportedOperationException}, since only the tokenizer being read
+   * from can tell which other tokens could be read, and it is already ahead of the cursor.
+   */
+  @Nonnull
+  @Override
+  public Set<Token> candidates() {
+    throw new UnsupportedOperationException("A pipelined tokenizer cannot list the candidates");
+  }
+
+  @Override
+  public DocumentTokenizer rewind(Token token) {
+    checkNotNull(token, "token cannot be null");
+    if (position > trailStart) {
+      int index = (int) (position - trailStart - 1);
+      if (trail.ends[index] == cursor && trail.starts[index] == cursor - token.length()) {
+        moveTo(position - 1);
+        return this;
+      }
+    }
+    restore(cursor - token.length());
+    return this;
+  }
+
+  @Override
+  public DocumentSnapshotManager snapshot() {
+    return snapshots;
+  }
+
+  /**
+   * Marks the cursor, and keeps the tokens after it until the mark is {@link #release(long)
+   * released}.
+   */
+  @Override
+  public long mark() {
+    pins.hold(cursor);
+    return Marks.of(generation, cursor);
+  }
+
+  @Override
+  public void reset(long mark) {
+    checkOwnership(mark);
+    restore(Marks.cursor(mark));
+  }
+
+  @Override
+  public void release(long mark) {
+    checkOwnership(mark);
+    pins.release(Marks.cursor(mark));
+  }
+
+  /** Cuts the tokenizer, which is not passed on to the tokenizer being read from. */
+  @Override
+  public void cut() {
+    floor = cursor;
+  }
+
+  @Override
+  public int floor() {
+    return floor;
+  }
+
+  private void checkOwnership(long mark) {
+    checkState(
+        Marks.generation(mark) == generation,
+        "The provided mark does not belong to this document.");
+  }
+
+  /**
+   * Hands out snapshots of the position of the consumer, and keeps the tokens after them for as
+   * long as they are reachable. Since there is no reader on the consumer's side, restoring a
+   * snapshot returns {@code null}.
+   */
+  private class Snapshots implements DocumentSnapshotManager {
+
+    private WeakReference<DocumentSnapshot> last = new WeakReference<>(null);
+    private long lastPosition = -1;
+
+    @Override
+    public DocumentSnapshot create() {
+      DocumentSnapshot snapshot = last.get();
+      if (snapshot == null || lastPosition != position || snapshot.cursor() != cursor) {
+        snapshot = new ImmutableSnapshot(this, line, offset, cursor, mightHaveNext());
+        last = new WeakReference<>(snapshot);
+        lastPosition = position;
+      }
+      pins.pin(snapshot);
+      return snapshot;
+    }
+
+    @Override
+    public DocumentReader restore(DocumentSnapshot snapshot) {
+      checkNotNull(snapshot, "snapshot cannot be null");
+      checkState(knows(snapshot), "The provided snapshot does not belong to this document.");
+      PipelinedDocumentTokenizer.this.restore(snapshot.cursor());
+      return null;
+    }
+
+    @Override
+    public boolean knows(DocumentSnapshot snapshot) {
+      return snapshot.belongsTo(this);
+    }
+  }
+}
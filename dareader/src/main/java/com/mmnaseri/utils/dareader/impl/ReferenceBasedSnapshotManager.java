@@ -37,6 +37,9 @@ public class ReferenceBasedSnapshotManager implements DocumentSnapshotManager {
     checkNotNull(snapshot, "snapshot cannot be null");
     checkState(knows(snapshot), "The provided snapshot does not belong to this document.");
     restoreCallback.accept(snapshot);
+    // The reader is now in the exact state described by the snapshot, so we can hand it out the
+    // next time a snapshot is requested.
+    this.snapshot = snapshot;
     return reader;
   }
 
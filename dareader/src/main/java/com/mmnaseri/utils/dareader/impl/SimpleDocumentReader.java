@@ -2,48 +2,92 @@ package com.mmnaseri.utils.dareader.impl;
 
 import com.mmnaseri.utils.dareader.DocumentReader;
 import com.mmnaseri.utils.dareader.DocumentSnapshotManager;
+import com.mmnaseri.utils.dareader.utils.CharPredicate;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import static com.mmnaseri.utils.dareader.error.DocumentReaderExceptions.expectDistance;
 import static com.mmnaseri.utils.dareader.error.DocumentReaderExceptions.expectMore;
+import static com.mmnaseri.utils.dareader.error.DocumentReaderExceptions.expectRemaining;
+import static com.mmnaseri.utils.dareader.error.DocumentReaderExceptions.expectUncut;
 import static com.mmnaseri.utils.dareader.utils.Precondition.checkArgument;
 import static com.mmnaseri.utils.dareader.utils.Precondition.checkNotNull;
+import static com.mmnaseri.utils.dareader.utils.Precondition.checkState;
 
 /** A simple implementation for {@link DocumentReader}. */
 public class SimpleDocumentReader implements DocumentReader {
 
-  private final String document;
+  /** The maximum number of matchers kept around for reuse by a single reader. */
+  private static final int MAX_CACHED_MATCHERS = 64;
+
+  private final CharSequence document;
   private final ReferenceBasedSnapshotManager snapshotManager;
+  private final Map<Pattern, Matcher> matchers;
+  private final LineIndex lineIndex;
+  private final int generation = Marks.generation();
   private int cursor;
-  private int line;
-  private int offset;
+  private int floor;
+
+  public SimpleDocumentReader(CharSequence document) {
+    this(document, 0, 1, 0);
+  }
 
-  public SimpleDocumentReader(String document) {
-    this.document = document;
+  /**
+   * Creates a reader whose cursor starts at the given position of the document, which is known to
+   * be on the given line, with the line starting at the given position. The reader cannot move back
+   * past the position it starts at without losing track of the lines.
+   */
+  SimpleDocumentReader(CharSequence document, int start, int line, int lineStart) {
+    this.document = checkNotNull(document, "document cannot be null");
+    lineIndex = new LineIndex(document, start, line, lineStart);
     snapshotManager =
         new ReferenceBasedSnapshotManager(
             this,
             snapshot -> {
+              expectUncut(this, snapshot.cursor());
               cursor = snapshot.cursor();
-              line = snapshot.line();
-              offset = snapshot.offset();
             });
-    cursor = 0;
-    line = 1;
-    offset = 1;
+    // Patterns do not override equals/hashCode, so this is effectively an identity map with LRU
+    // eviction, which keeps one-off patterns from piling up.
+    matchers =
+        new LinkedHashMap<Pattern, Matcher>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<Pattern, Matcher> eldest) {
+            return size() > MAX_CACHED_MATCHERS;
+          }
+        };
+    cursor = start;
+  }
+
+  /** Returns the document this reader reads from. */
+  @Override
+  public CharSequence source() {
+    return document;
   }
 
-  private void move(char character) {
-    if (character == '\n') {
-      line++;
-      offset = 1;
-    } else {
-      offset++;
+  /**
+   * Returns the matcher for the given pattern bound to the region starting at the current cursor
+   * and ending at the indicated index. The matcher runs directly on the backing document, and uses
+   * transparent, non-anchoring bounds so that look-arounds and boundary matchers see the same text
+   * they would if the whole document was being matched.
+   */
+  private Matcher matcher(Pattern pattern, int end) {
+    Matcher matcher = matchers.get(pattern);
+    if (matcher == null) {
+      matcher = pattern.matcher(document).useTransparentBounds(true).useAnchoringBounds(false);
+      matchers.put(pattern, matcher);
     }
+    return matcher.region(cursor, end);
+  }
+
+  /** Moves the cursor to the indicated position and discards the cached snapshot. */
+  private void moveTo(int position) {
+    cursor = position;
     snapshotManager.reset();
   }
 
@@ -51,9 +95,8 @@ public class SimpleDocumentReader implements DocumentReader {
   public char read() {
     expectMore(this);
     // Read one character and move the cursor.
-    char character = charAt(cursor++);
-    // Make sure we update the indices correctly.
-    move(character);
+    char character = document.charAt(cursor);
+    moveTo(cursor + 1);
     return character;
   }
 
@@ -63,47 +106,74 @@ public class SimpleDocumentReader implements DocumentReader {
     expectMore(this);
     checkNotNull(pattern, "pattern cannot be null");
     checkArgument(group >= 0, "group", "group must be non-negative.");
-    Matcher matcher = pattern.matcher(this);
-    if (!matcher.find(cursor) || matcher.start() != cursor) {
+    Matcher matcher = matcher(pattern, length());
+    if (!matcher.lookingAt()) {
       return null;
     }
-    // Move the cursor according to the entire substring that matched the pattern.
-    String matched = matcher.group(0);
-    cursor += matched.length();
-    for (int i = 0; i < matched.length(); i++) {
-      move(matched.charAt(i));
-    }
-    // Return only the part of the match the we are interested in.
-    return matcher.group(group);
+    // Return only the part of the match the we are interested in, but move the cursor according to
+    // the entire substring that matched the pattern.
+    String value = matcher.group(group);
+    moveTo(matcher.end());
+    return value;
+  }
+
+  @Override
+  public int match(Pattern pattern) {
+    expectMore(this);
+    checkNotNull(pattern, "pattern cannot be null");
+    Matcher matcher = matcher(pattern, length());
+    return matcher.lookingAt() ? matcher.end() - cursor : -1;
   }
 
   @Override
   public boolean has(Pattern pattern) {
     checkNotNull(pattern, "pattern cannot be null");
-    return pattern.matcher(document).find(cursor());
+    return matcher(pattern, length()).find();
   }
 
   @Override
-  public DocumentReader rewind(int length) {
-    expectDistance(this, length);
-    // Scan the characters backward to make sure we are moving the line counter accordingly.
-    for (int i = 0; i < length; i++) {
-      cursor--;
-      if (charAt(cursor) == '\n') {
-        line--;
-      }
-    }
-    // Seek from the current position to the beginning of the current line to determine the line
-    // offset.
-    int seek = cursor;
-    offset = 1;
-    while (seek > 0 && charAt(seek - 1) != '\n') {
-      offset++;
-      seek--;
+  public boolean has(Pattern pattern, int lookahead) {
+    checkNotNull(pattern, "pattern cannot be null");
+    checkArgument(lookahead >= 0, "lookahead", "lookahead must be non-negative.");
+    return matcher(pattern, (int) Math.min(length(), (long) cursor + lookahead)).lookingAt();
+  }
+
+  @Override
+  public int peek(int offset) {
+    checkArgument(offset >= 0, "offset", "offset must be non-negative.");
+    long position = (long) cursor + offset;
+    return position < length() ? document.charAt((int) position) : -1;
+  }
+
+  @Override
+  public int span(CharPredicate predicate, int offset) {
+    checkNotNull(predicate, "predicate cannot be null");
+    checkArgument(offset >= 0, "offset", "offset must be non-negative.");
+    int length = length();
+    int start = (int) Math.min(length, (long) cursor + offset);
+    if (document instanceof Latin1CharSequence) {
+      return ((Latin1CharSequence) document).span(predicate, start, length);
     }
-    if (seek == 0) {
-      line = 1;
+    int position = start;
+    while (position < length && predicate.test(document.charAt(position))) {
+      position++;
     }
+    return position - start;
+  }
+
+  @Override
+  public DocumentReader rewind(int length) {
+    expectDistance(this, length);
+    expectUncut(this, cursor - length);
+    moveTo(cursor - length);
+    return this;
+  }
+
+  @Override
+  public DocumentReader advance(int length) {
+    checkArgument(length >= 0, "length", "length must be non-negative.");
+    expectRemaining(this, length);
+    moveTo(cursor + length);
     return this;
   }
 
@@ -112,6 +182,30 @@ public class SimpleDocumentReader implements DocumentReader {
     return snapshotManager;
   }
 
+  @Override
+  public long mark() {
+    return Marks.of(generation, cursor);
+  }
+
+  @Override
+  public void reset(long mark) {
+    checkState(
+        Marks.generation(mark) == generation,
+        "The provided mark does not belong to this document.");
+    expectUncut(this, Marks.cursor(mark));
+    moveTo(Marks.cursor(mark));
+  }
+
+  @Override
+  public void cut() {
+    floor = cursor;
+  }
+
+  @Override
+  public int floor() {
+    return floor;
+  }
+
   @Override
   public boolean hasNext() {
     return cursor < length();
@@ -119,12 +213,12 @@ public class SimpleDocumentReader implements DocumentReader {
 
   @Override
   public int line() {
-    return line;
+    return lineIndex.line(cursor);
   }
 
   @Override
   public int offset() {
-    return offset;
+    return lineIndex.offset(cursor);
   }
 
   @Override
@@ -1,33 +1,201 @@
 package com.mmnaseri.utils.dareader.impl;
 
 import com.mmnaseri.utils.dareader.DocumentReader;
-import com.mmnaseri.utils.dareader.DocumentSnapshot;
 import com.mmnaseri.utils.dareader.DocumentSnapshotManager;
 import com.mmnaseri.utils.dareader.DocumentTokenizer;
+import com.mmnaseri.utils.dareader.token.FrozenTokenTypeRegistry;
 import com.mmnaseri.utils.dareader.token.Token;
 import com.mmnaseri.utils.dareader.token.TokenReader;
 import com.mmnaseri.utils.dareader.token.TokenType;
 import com.mmnaseri.utils.dareader.token.TokenTypeRegistry;
+import com.mmnaseri.utils.dareader.token.impl.TokenBuffer;
+import com.mmnaseri.utils.dareader.token.impl.TokenInterner;
+import com.mmnaseri.utils.dareader.token.impl.TokenTypeSet;
+import com.mmnaseri.utils.dareader.token.impl.TriviaTable;
+import com.mmnaseri.utils.dareader.utils.CharPredicate;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
-import java.util.Comparator;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Set;
+import java.util.Spliterator;
 
+import static com.mmnaseri.utils.dareader.utils.Precondition.checkArgument;
 import static com.mmnaseri.utils.dareader.utils.Precondition.checkNotNull;
-import static java.util.stream.Collectors.toList;
+import static java.util.Collections.unmodifiableSet;
 
-/** A simple document tokenizer. */
+/**
+ * A simple document tokenizer. If the registry is a {@link FrozenTokenTypeRegistry}, its readers
+ * are used as they are, and only the readers that can start with the character at the cursor are
+ * tried. Otherwise, the token types are looked up again every time a token is read, so that changes
+ * to the registry are picked up, and all readers are tried.
+ *
+ * <p>The tokenizer remembers the token and the candidates it has read at each position, so that
+ * after backtracking, for instance when an {@link com.mmnaseri.utils.dareader.exp.ExpressionReader}
+ * tries another alternative, reading from the same position again only moves the cursor. This
+ * relies on the readers always reading the same token at the same position. What is remembered is
+ * forgotten once the registry is {@link TokenTypeRegistry#version() modified}.
+ *
+ * <p>The last few tokens around the cursor, including the ones that have been {@link #peek(int)
+ * peeked} at, are also kept in a small ring buffer, so that looking ahead, and moving back by a few
+ * tokens, does not even need to look up the memo.
+ *
+ * <p>Tokens of the types the registry {@link TokenTypeRegistry#isSkipped(TokenType) skips} are
+ * never returned. Whenever the tokenizer is asked about what comes next, it first moves the cursor
+ * past any such tokens without creating them. Their spans can be {@link #keepTrivia() kept} in a
+ * side table, so that the document can still be projected back from the tokens.
+ *
+ * @see TokenReader#firstCharacters()
+ */
 public class SimpleDocumentTokenizer implements DocumentTokenizer {
 
   private final TokenTypeRegistry registry;
+  @Nullable private final FrozenTokenTypeRegistry frozen;
   private final DocumentReader reader;
+  private final TokenMemo memo = new TokenMemo();
+  private final LookaheadBuffer buffer = new LookaheadBuffer();
+  private FrozenTokenTypeRegistry types;
+  private int version;
+  private boolean skipping;
+  /** Where the cursor was last moved past skipped tokens from, and to. */
+  private int skippedFrom = -1;
+
+  private int skippedTo = -1;
+  @Nullable private TriviaTable trivia;
+  @Nullable private TokenInterner interner;
+  private long attempts;
+  private long tokens;
 
   public SimpleDocumentTokenizer(TokenTypeRegistry registry, String document) {
+    this(registry, DocumentReader.of(document));
+  }
+
+  public SimpleDocumentTokenizer(TokenTypeRegistry registry, DocumentReader reader) {
     this.registry = registry;
-    reader = DocumentReader.of(document);
+    this.frozen =
+        registry instanceof FrozenTokenTypeRegistry ? (FrozenTokenTypeRegistry) registry : null;
+    this.reader = reader;
+    this.version = registry.version();
+    this.types = registry.freeze();
+    this.skipping = types.skipped().length > 0;
+  }
+
+  /**
+   * Returns the ordinals of the readers that are worth trying at the cursor, or {@code null} if all
+   * of them are. At the end of the document, all readers are tried, so that they can decide how to
+   * deal with it.
+   */
+  @Nullable
+  private int[] dispatch(FrozenTokenTypeRegistry types) {
+    if (frozen == null || !reader.hasNext()) {
+      return null;
+    }
+    return types.candidates((char) reader.peek(0));
+  }
+
+  /**
+   * Forgets everything read so far if the registry has changed since, and takes a new frozen view
+   * of it.
+   */
+  private void sync() {
+    int current = registry.version();
+    if (current != version) {
+      memo.clear();
+      buffer.clear();
+      version = current;
+      types = registry.freeze();
+      skipping = types.skipped().length > 0;
+    }
+  }
+
+  /**
+   * Forgets everything read so far if the registry has changed since, and lines up the lookahead
+   * buffer with the cursor.
+   */
+  private void refresh() {
+    sync();
+    buffer.moveTo(trimmed());
+  }
+
+  /**
+   * Returns the cursor, moved back to where the tokens before it ended if it was last moved past
+   * skipped tokens, so that it lines up with the tokens that were read.
+   */
+  private int trimmed() {
+    int cursor = reader.cursor();
+    return cursor == skippedTo ? skippedFrom : cursor;
+  }
+
+  /**
+   * Moves the cursor past the tokens of skipped types at the cursor, if there are any. The readers
+   * are still tried in the order of their tags, up to the last one for a skipped type, so that a
+   * token is only skipped if it is the token that would have been read.
+   */
+  private void skipTrivia() {
+    sync();
+    if (!skipping) {
+      return;
+    }
+    int from = reader.cursor();
+    while (reader.hasNext()) {
+      int[] ordinals = dispatch(types);
+      int count = ordinals == null ? types.size() : ordinals.length;
+      int last = -1;
+      for (int i = 0; i < count; i++) {
+        if (types.isSkipped(ordinals == null ? i : ordinals[i])) {
+          last = i;
+        }
+      }
+      int start = reader.cursor();
+      int length = 0;
+      int skipped = -1;
+      for (int i = 0; i <= last && length == 0; i++) {
+        int ordinal = ordinals == null ? i : ordinals[i];
+        attempts++;
+        length = types.reader(ordinal).skip(reader);
+        if (length > 0 && types.isSkipped(ordinal)) {
+          skipped = ordinal;
+        }
+      }
+      if (skipped < 0) {
+        // Either nothing is skipped here, or a token that is not skipped takes precedence.
+        if (length > 0) {
+          reader.rewind(length);
+        }
+        return;
+      }
+      if (trivia != null) {
+        String value =
+            reader.source() == null ? reader.subSequence(start, start + length).toString() : null;
+        trivia.add(types.type(skipped), start, length, value);
+      }
+      skippedFrom = from;
+      skippedTo = reader.cursor();
+    }
+  }
+
+  /**
+   * Starts keeping the spans of the tokens that are skipped from here on, if it has not started
+   * already, and returns the table they are kept in.
+   */
+  public TriviaTable keepTrivia() {
+    if (trivia == null) {
+      trivia = new TriviaTable(reader.source());
+    }
+    return trivia;
+  }
+
+  /**
+   * Returns the number of times a reader has been tried while reading the {@link #tokens()}. Tokens
+   * that are read again at a position the tokenizer remembers take no attempts.
+   */
+  public long attempts() {
+    return attempts;
+  }
+
+  /** Returns the number of tokens that have been read via {@link #next()} so far. */
+  public long tokens() {
+    return tokens;
   }
 
   @Override
@@ -47,6 +215,7 @@ public class SimpleDocumentTokenizer implements DocumentTokenizer {
 
   @Override
   public boolean hasNext() {
+    skipTrivia();
     return reader.hasNext();
   }
 
@@ -55,47 +224,314 @@ public class SimpleDocumentTokenizer implements DocumentTokenizer {
     return reader.snapshot();
   }
 
+  @Override
+  public long mark() {
+    return reader.mark();
+  }
+
+  @Override
+  public void reset(long mark) {
+    reader.reset(mark);
+  }
+
+  @Override
+  public void release(long mark) {
+    reader.release(mark);
+  }
+
+  @Override
+  public void cut() {
+    reader.cut();
+  }
+
+  @Override
+  public int floor() {
+    return reader.floor();
+  }
+
   @Override
   @Nullable
   public Token next() {
-    List<TokenReader> readers =
-        registry.tokenTypes().stream()
-            .sorted(Comparator.comparing(TokenType::tag))
-            .map(registry::reader)
-            .collect(toList());
-    DocumentSnapshot snapshot = snapshot().create();
-    for (TokenReader tokenReader : readers) {
-      Token token = tokenReader.read(reader);
-      if (token == null) {
-        snapshot().restore(snapshot);
-      } else {
-        return token;
+    skipTrivia();
+    refresh();
+    if (buffer.ahead() > 0) {
+      Token token = buffer.token(0);
+      reader.advance(buffer.end(0) - reader.cursor());
+      buffer.consume();
+      return count(token);
+    }
+    int start = reader.cursor();
+    Token token = lex();
+    if (token != null) {
+      buffer.push(start, token, reader.cursor());
+      buffer.consume();
+    }
+    return count(token);
+  }
+
+  /**
+   * Returns the token that is {@code k} tokens ahead of the cursor. Up to {@link
+   * LookaheadBuffer#CAPACITY} tokens ahead are served from the lookahead buffer, and reading them
+   * afterwards does not lex them again.
+   */
+  @Override
+  @Nullable
+  public Token peek(int k) {
+    checkArgument(k >= 0, "k", "k must be non-negative.");
+    if (k >= LookaheadBuffer.CAPACITY) {
+      return DocumentTokenizer.super.peek(k);
+    }
+    skipTrivia();
+    refresh();
+    if (buffer.ahead() <= k) {
+      long mark = reader.mark();
+      if (buffer.ahead() > 0) {
+        reader.advance(buffer.end(buffer.ahead() - 1) - reader.cursor());
+      }
+      while (buffer.ahead() <= k) {
+        skipTrivia();
+        if (!reader.hasNext()) {
+          break;
+        }
+        int start = reader.cursor();
+        Token token = lex();
+        if (token == null) {
+          break;
+        }
+        buffer.push(start, token, reader.cursor());
+      }
+      reader.reset(mark);
+      reader.release(mark);
+    }
+    return buffer.ahead() > k ? buffer.token(k) : null;
+  }
+
+  /**
+   * Reads the tokens straight into the buffer, without creating them, as long as their readers
+   * {@link TokenReader#read(DocumentReader, TokenBuffer) support} it. Tokens read this way are not
+   * remembered, since that would mean creating them.
+   */
+  @Override
+  public int nextBatch(TokenBuffer buffer) {
+    checkNotNull(buffer, "buffer cannot be null");
+    skipTrivia();
+    refresh();
+    buffer.reset(reader);
+    while (!buffer.isFull()) {
+      skipTrivia();
+      if (!reader.hasNext()) {
+        break;
+      }
+      int line = buffer.tracksLines() ? reader.line() : 0;
+      if (this.buffer.ahead() > 0) {
+        // Tokens that have been peeked at are already there to take.
+        buffer.add(this.buffer.token(0), this.buffer.start(0));
+        reader.advance(this.buffer.end(0) - reader.cursor());
+        this.buffer.consume();
+      } else if (!read(buffer)) {
+        break;
+      }
+      tokens++;
+      if (buffer.tracksLines()) {
+        buffer.recordLine(line);
+      }
+    }
+    return buffer.size();
+  }
+
+  /**
+   * Reads the next token into the given buffer by trying the readers one by one, and returns {@code
+   * false} if none of them can read a token, in which case the cursor is left where it was.
+   */
+  protected boolean read(TokenBuffer buffer) {
+    sync();
+    int[] ordinals = dispatch(types);
+    int count = ordinals == null ? types.size() : ordinals.length;
+    int start = reader.cursor();
+    for (int i = 0; i < count; i++) {
+      attempts++;
+      if (types.reader(ordinals == null ? i : ordinals[i]).read(reader, buffer)) {
+        return true;
+      }
+      // The buffer holds on to the text it was filled from, so moving back is always possible.
+      if (reader.cursor() != start) {
+        reader.rewind(reader.cursor() - start);
       }
     }
-    return null;
+    return false;
   }
 
+  /** Reads the token at the cursor, unless it is already in the memo. */
+  @Nullable
+  private Token lex() {
+    if (!reader.hasNext()) {
+      return read();
+    }
+    int cursor = reader.cursor();
+    int slot = memo.find(cursor);
+    if (slot >= 0 && memo.hasToken(slot)) {
+      reader.advance(memo.end(slot) - cursor);
+      return memo.token(slot);
+    }
+    Token token = read();
+    if (token != null && interner != null) {
+      token = interner.intern(token);
+    }
+    memo.putToken(cursor, token, reader.cursor());
+    return token;
+  }
+
+  @Nullable
+  private Token count(@Nullable Token token) {
+    if (token != null) {
+      tokens++;
+    }
+    return token;
+  }
+
+  /**
+   * Reads the next token by trying the readers one by one, and returns the first token read. This
+   * is called by {@link #next()} whenever the token at the cursor is not already known.
+   */
+  @Nullable
+  protected Token read() {
+    sync();
+    int[] ordinals = dispatch(types);
+    int count = ordinals == null ? types.size() : ordinals.length;
+    long mark = reader.mark();
+    try {
+      for (int i = 0; i < count; i++) {
+        attempts++;
+        Token token = types.reader(ordinals == null ? i : ordinals[i]).read(reader);
+        if (token == null) {
+          reader.reset(mark);
+        } else {
+          return token;
+        }
+      }
+      return null;
+    } finally {
+      reader.release(mark);
+    }
+  }
+
+  /** Returns the tokens that could be read at the cursor. The returned set cannot be modified. */
   @Nonnull
   @Override
   public Set<Token> candidates() {
-    Set<TokenType> types = registry.tokenTypes();
-    DocumentSnapshot snapshot = snapshot().create();
+    skipTrivia();
+    if (!reader.hasNext()) {
+      return unmodifiableSet(readCandidates());
+    }
+    refresh();
+    int cursor = reader.cursor();
+    int slot = memo.find(cursor);
+    if (slot >= 0 && memo.hasCandidates(slot)) {
+      return memo.candidates(slot);
+    }
+    Set<Token> candidates = unmodifiableSet(readCandidates());
+    memo.putCandidates(cursor, candidates);
+    return candidates;
+  }
+
+  private Set<Token> readCandidates() {
+    int[] ordinals = dispatch(types);
+    int count = ordinals == null ? types.size() : ordinals.length;
+    long mark = reader.mark();
     Set<Token> candidates = new HashSet<>();
-    for (TokenType type : types) {
-      TokenReader reader = registry.reader(type);
-      Token token = reader.read(this.reader);
-      if (token != null) {
-        candidates.add(token);
+    try {
+      for (int i = 0; i < count; i++) {
+        Token token = types.reader(ordinals == null ? i : ordinals[i]).read(this.reader);
+        if (token != null) {
+          candidates.add(token);
+        }
+        reader.reset(mark);
       }
-      snapshot().restore(snapshot);
+    } finally {
+      reader.release(mark);
     }
     return candidates;
   }
 
+  @Nonnull
+  @Override
+  public Set<TokenType> candidateTypes() {
+    skipTrivia();
+    if (reader.hasNext()) {
+      refresh();
+      int slot = memo.find(reader.cursor());
+      if (slot >= 0 && memo.hasCandidates(slot)) {
+        TokenTypeSet candidates = types.newSet();
+        memo.candidates(slot).forEach(token -> candidates.add(token.type()));
+        return candidates;
+      }
+    }
+    int[] ordinals = dispatch(types);
+    int count = ordinals == null ? types.size() : ordinals.length;
+    long mark = reader.mark();
+    TokenTypeSet candidates = types.newSet();
+    try {
+      for (int i = 0; i < count; i++) {
+        int ordinal = ordinals == null ? i : ordinals[i];
+        TokenReader tokenReader = types.reader(ordinal);
+        if (tokenReader.read(this.reader) != null) {
+          candidates.addOrdinal(ordinal);
+        }
+        reader.reset(mark);
+      }
+    } finally {
+      reader.release(mark);
+    }
+    return candidates;
+  }
+
+  /**
+   * Returns a spliterator over the rest of the tokens. If the registry declares {@link
+   * TokenTypeRegistry#boundaries() boundaries}, and the whole document is available in memory, the
+   * spliterator can be split at those boundaries, so that a {@link #stream() parallel stream}
+   * tokenizes the chunks of the document in parallel. As long as the spliterator is not split, it
+   * moves this tokenizer along the same way a sequential spliterator does.
+   */
+  @Override
+  public Spliterator<Token> spliterator() {
+    CharPredicate boundaries = registry.boundaries();
+    if (boundaries == null || !(reader instanceof SimpleDocumentReader)) {
+      return DocumentTokenizer.super.spliterator();
+    }
+    sync();
+    return new ChunkedTokenSpliterator(
+        types,
+        reader.source(),
+        boundaries,
+        reader.cursor(),
+        reader.length(),
+        reader.line(),
+        reader.cursor() - reader.offset() + 1,
+        interner,
+        this);
+  }
+
+  /**
+   * Makes this tokenizer return the tokens it reads through the given interner. Tokens are interned
+   * as they are read for the first time at each position, so going back and reading them again
+   * returns the same instances.
+   */
+  @Override
+  public SimpleDocumentTokenizer internWith(TokenInterner interner) {
+    this.interner = checkNotNull(interner, "interner cannot be null");
+    return this;
+  }
+
   @Override
   public DocumentTokenizer rewind(Token token) {
     checkNotNull(token, "token cannot be null");
-    reader.rewind(token.length());
+    refresh();
+    if (buffer.behind() > 0 && buffer.token(-1) == token) {
+      reader.rewind(reader.cursor() - buffer.start(-1));
+    } else {
+      // The cursor might have been moved past skipped tokens after the token, which do not count.
+      reader.rewind(reader.cursor() - trimmed() + token.length());
+    }
     return this;
   }
 }
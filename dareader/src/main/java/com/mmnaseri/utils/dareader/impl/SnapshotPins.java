@@ -0,0 +1,98 @@
+package com.mmnaseri.utils.dareader.impl;
+
+import com.mmnaseri.utils.dareader.DocumentSnapshot;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+
+/**
+ * Keeps track of the snapshots that are still reachable, so that the oldest position that might be
+ * restored can be determined. Snapshots are only referenced weakly, which means once the code that
+ * created a snapshot lets go of it, it stops pinning the document.
+ *
+ * <p>Positions can also be held on to directly, as is done for marks, in which case they stay
+ * pinned until they are explicitly let go of.
+ */
+final class SnapshotPins {
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private WeakReference<DocumentSnapshot>[] snapshots = new WeakReference[16];
+
+  private int[] cursors = new int[16];
+  private int size;
+  private int[] held = new int[16];
+  private int holds;
+
+  /** Pins the position of the given snapshot. */
+  void pin(DocumentSnapshot snapshot) {
+    if (size > 0 && snapshots[size - 1].get() == snapshot) {
+      // Snapshots are cached by the managers, so the same instance is often handed out many times.
+      return;
+    }
+    pin(new WeakReference<>(snapshot), snapshot.cursor());
+  }
+
+  /** Pins the given position until the given reference to a snapshot is cleared. */
+  void pin(WeakReference<DocumentSnapshot> snapshot, int cursor) {
+    if (size == snapshots.length) {
+      purge();
+      if (size * 2 > snapshots.length) {
+        snapshots = Arrays.copyOf(snapshots, snapshots.length * 2);
+        cursors = Arrays.copyOf(cursors, cursors.length * 2);
+      }
+    }
+    snapshots[size] = snapshot;
+    cursors[size] = cursor;
+    size++;
+  }
+
+  /** Pins the given position until it is {@link #release(int) released}. */
+  void hold(int cursor) {
+    if (holds == held.length) {
+      held = Arrays.copyOf(held, held.length * 2);
+    }
+    held[holds++] = cursor;
+  }
+
+  /** Releases one hold on the given position, if there is one. */
+  void release(int cursor) {
+    // Positions are usually released in the reverse order of being held.
+    for (int i = holds - 1; i >= 0; i--) {
+      if (held[i] == cursor) {
+        System.arraycopy(held, i + 1, held, i, holds - i - 1);
+        holds--;
+        return;
+      }
+    }
+  }
+
+  /**
+   * Returns the lowest cursor pinned by a snapshot that is still reachable, or held on to, or the
+   * given fallback value if it is lower than all pinned cursors.
+   */
+  int lowWaterMark(int fallback) {
+    purge();
+    int lowest = fallback;
+    for (int i = 0; i < size; i++) {
+      lowest = Math.min(lowest, cursors[i]);
+    }
+    for (int i = 0; i < holds; i++) {
+      lowest = Math.min(lowest, held[i]);
+    }
+    return lowest;
+  }
+
+  /** Removes all pins for snapshots that have been garbage-collected. */
+  private void purge() {
+    int kept = 0;
+    for (int i = 0; i < size; i++) {
+      if (snapshots[i].get() != null) {
+        snapshots[kept] = snapshots[i];
+        cursors[kept] = cursors[i];
+        kept++;
+      }
+    }
+    Arrays.fill(snapshots, kept, size, null);
+    size = kept;
+  }
+}
@@ -0,0 +1,409 @@
+package com.mmnaseri.utils.dareader.impl;
+
+import com.mmnaseri.utils.dareader.DocumentReader;
+import com.mmnaseri.utils.dareader.DocumentSnapshot;
+import com.mmnaseri.utils.dareader.DocumentSnapshotManager;
+import com.mmnaseri.utils.dareader.error.DocumentReaderException;
+import com.mmnaseri.utils.dareader.utils.CharPredicate;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static com.mmnaseri.utils.dareader.error.DocumentReaderExceptions.expectDistance;
+import static com.mmnaseri.utils.dareader.error.DocumentReaderExceptions.expectMore;
+import static com.mmnaseri.utils.dareader.error.DocumentReaderExceptions.expectRemaining;
+import static com.mmnaseri.utils.dareader.error.DocumentReaderExceptions.expectUncut;
+import static com.mmnaseri.utils.dareader.utils.Precondition.checkArgument;
+import static com.mmnaseri.utils.dareader.utils.Precondition.checkNotNull;
+import static com.mmnaseri.utils.dareader.utils.Precondition.checkState;
+
+/**
+ * A {@link DocumentReader} that reads its document from a {@link Reader} as needed, and only keeps
+ * a sliding window of the text in memory.
+ *
+ * <p>The window always starts at the lowest position that can still be returned to, which is either
+ * the current cursor, or the cursor of the oldest snapshot created via {@link #snapshot()} that is
+ * still reachable, or of the oldest {@link #mark() mark} that has not been released, unless the
+ * document has been {@link #cut() cut} after that. Any text before that point is thrown away the
+ * next time more input is needed. Rewinding to a point before the window is an error. This means
+ * that the memory needed to read a document is bounded by the longest span of text that is
+ * backtracked over, rather than by the size of the document.
+ *
+ * <p>Since the document is not fully known until the input is exhausted, {@link #length()} reports
+ * the number of characters read from the input so far.
+ */
+public class StreamingDocumentReader implements DocumentReader {
+
+  /** The default number of characters the window can hold before it has to grow. */
+  public static final int DEFAULT_CAPACITY = 8 * 1024;
+
+  private static final int MAX_CACHED_MATCHERS = 64;
+
+  private final Reader source;
+  private final Window window;
+  private final PinningSnapshotManager snapshotManager;
+  private final SnapshotPins pins;
+  private final LineIndex lineIndex;
+  private final Map<Pattern, Matcher> matchers;
+  private final int generation = Marks.generation();
+  private char[] buffer;
+  private int base;
+  private int filled;
+  private int cursor;
+  private int floor;
+  private boolean exhausted;
+
+  public StreamingDocumentReader(Reader source) {
+    this(source, DEFAULT_CAPACITY);
+  }
+
+  public StreamingDocumentReader(Reader source, int capacity) {
+    checkArgument(capacity > 0, "capacity", "capacity must be positive");
+    this.source = checkNotNull(source, "source cannot be null");
+    buffer = new char[capacity];
+    window = new Window();
+    pins = new SnapshotPins();
+    snapshotManager = new PinningSnapshotManager();
+    lineIndex = new LineIndex(this);
+    matchers =
+        new LinkedHashMap<Pattern, Matcher>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<Pattern, Matcher> eldest) {
+            return size() > MAX_CACHED_MATCHERS;
+          }
+        };
+    base = 0;
+    filled = 0;
+    cursor = 0;
+    exhausted = false;
+  }
+
+  /**
+   * Reads more text from the source into the window. Returns {@code false} if the source was
+   * already exhausted.
+   */
+  private boolean fill() {
+    if (exhausted) {
+      return false;
+    }
+    if (filled - base == buffer.length) {
+      makeRoom();
+    }
+    try {
+      int read = source.read(buffer, filled - base, buffer.length - (filled - base));
+      if (read < 0) {
+        exhausted = true;
+        return false;
+      }
+      filled += read;
+      return true;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /** Makes sure the window holds the text up to the given position, if the document has it. */
+  private boolean ensure(int position) {
+    while (filled < position) {
+      if (!fill()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Makes room for more text in the window, either by dropping the text that can no longer be
+   * returned to, or by growing the window.
+   */
+  private void makeRoom() {
+    // Nothing before the cut can be returned to, even if it is still pinned.
+    int lowWaterMark = Math.max(pins.lowWaterMark(cursor), floor);
+    if (lowWaterMark > base) {
+      // Record the line breaks that are about to be thrown away.
+      lineIndex.discard(lowWaterMark);
+      System.arraycopy(buffer, lowWaterMark - base, buffer, 0, filled - lowWaterMark);
+      base = lowWaterMark;
+    }
+    if (filled - base > buffer.length / 2) {
+      buffer = Arrays.copyOf(buffer, buffer.length * 2);
+    }
+  }
+
+  private Matcher matcher(Pattern pattern, int end) {
+    Matcher matcher = matchers.get(pattern);
+    if (matcher == null) {
+      matcher = pattern.matcher(window).useTransparentBounds(true).useAnchoringBounds(false);
+      matchers.put(pattern, matcher);
+    }
+    return matcher.region(cursor - base, end - base);
+  }
+
+  private void moveTo(int position) {
+    cursor = position;
+    snapshotManager.reset();
+  }
+
+  @Override
+  public char read() {
+    expectMore(this);
+    char character = buffer[cursor - base];
+    moveTo(cursor + 1);
+    return character;
+  }
+
+  @Nullable
+  @Override
+  public String read(Pattern pattern, int group) {
+    expectMore(this);
+    checkNotNull(pattern, "pattern cannot be null");
+    checkArgument(group >= 0, "group", "group must be non-negative.");
+    Matcher matcher = matcher(pattern, filled);
+    boolean found = matcher.lookingAt();
+    // As long as the pattern might have matched differently given more input, keep reading.
+    while (matcher.hitEnd() && fill()) {
+      matcher = matcher(pattern, filled);
+      found = matcher.lookingAt();
+    }
+    if (!found) {
+      return null;
+    }
+    String value = matcher.group(group);
+    moveTo(base + matcher.end());
+    return value;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>Note that this will keep reading the input until a match is found, which means that in the
+   * worst case, the entirety of the remaining document is loaded into memory.
+   */
+  @Override
+  public boolean has(Pattern pattern) {
+    checkNotNull(pattern, "pattern cannot be null");
+    ensure(cursor + 1);
+    Matcher matcher = matcher(pattern, filled);
+    boolean found = matcher.find();
+    while (matcher.hitEnd() && fill()) {
+      matcher = matcher(pattern, filled);
+      found = matcher.find();
+    }
+    return found;
+  }
+
+  @Override
+  public boolean has(Pattern pattern, int lookahead) {
+    checkNotNull(pattern, "pattern cannot be null");
+    checkArgument(lookahead >= 0, "lookahead", "lookahead must be non-negative.");
+    int end = (int) Math.min(Integer.MAX_VALUE, (long) cursor + lookahead);
+    ensure(end);
+    return matcher(pattern, Math.min(end, filled)).lookingAt();
+  }
+
+  @Override
+  public int peek(int offset) {
+    checkArgument(offset >= 0, "offset", "offset must be non-negative.");
+    int position = (int) Math.min(Integer.MAX_VALUE - 1, (long) cursor + offset);
+    return ensure(position + 1) ? buffer[position - base] : -1;
+  }
+
+  @Override
+  public int span(CharPredicate predicate, int offset) {
+    checkNotNull(predicate, "predicate cannot be null");
+    checkArgument(offset >= 0, "offset", "offset must be non-negative.");
+    int start = (int) Math.min(Integer.MAX_VALUE - 1, (long) cursor + offset);
+    int position = start;
+    // Filling the window might move its contents around, so the base is read again every time.
+    while ((position < filled || ensure(position + 1)) && predicate.test(buffer[position - base])) {
+      position++;
+    }
+    return position - start;
+  }
+
+  @Override
+  public DocumentReader rewind(int length) {
+    expectDistance(this, length);
+    expectRetained(cursor - length);
+    moveTo(cursor - length);
+    return this;
+  }
+
+  @Override
+  public DocumentReader advance(int length) {
+    checkArgument(length >= 0, "length", "length must be non-negative.");
+    ensure((int) Math.min(Integer.MAX_VALUE, (long) cursor + length));
+    expectRemaining(this, length);
+    moveTo(cursor + length);
+    return this;
+  }
+
+  private void expectRetained(int position) {
+    expectUncut(this, position);
+    if (position < base) {
+      throw new DocumentReaderException(
+          this,
+          "Cannot move back to position "
+              + position
+              + " since the text before position "
+              + base
+              + " has already been discarded");
+    }
+  }
+
+  @Override
+  public DocumentSnapshotManager snapshot() {
+    return snapshotManager;
+  }
+
+  /**
+   * Marks the cursor, and keeps the text after it until the mark is {@link #release(long)
+   * released}.
+   */
+  @Override
+  public long mark() {
+    pins.hold(cursor);
+    return Marks.of(generation, cursor);
+  }
+
+  @Override
+  public void reset(long mark) {
+    checkOwnership(mark);
+    expectRetained(Marks.cursor(mark));
+    moveTo(Marks.cursor(mark));
+  }
+
+  @Override
+  public void release(long mark) {
+    checkOwnership(mark);
+    pins.release(Marks.cursor(mark));
+  }
+
+  @Override
+  public void cut() {
+    floor = cursor;
+  }
+
+  @Override
+  public int floor() {
+    return floor;
+  }
+
+  private void checkOwnership(long mark) {
+    checkState(
+        Marks.generation(mark) == generation,
+        "The provided mark does not belong to this document.");
+  }
+
+  @Override
+  public boolean hasNext() {
+    return cursor < filled || ensure(cursor + 1);
+  }
+
+  @Override
+  public int line() {
+    return lineIndex.line(cursor);
+  }
+
+  @Override
+  public int offset() {
+    return lineIndex.offset(cursor);
+  }
+
+  @Override
+  public int cursor() {
+    return cursor;
+  }
+
+  /** Returns the number of characters read from the input so far. */
+  @Override
+  public int length() {
+    return filled;
+  }
+
+  /**
+   * Returns the character at the given position, reading more input if needed. Positions before the
+   * current window cannot be accessed anymore.
+   */
+  @Override
+  public char charAt(int index) {
+    if (index < base || !ensure(index + 1)) {
+      throw new IndexOutOfBoundsException(
+          "index: " + index + ", available: [" + base + ", " + filled + ")");
+    }
+    return buffer[index - base];
+  }
+
+  @Override
+  public CharSequence subSequence(int start, int end) {
+    checkArgument(
+        start >= base && start <= end && ensure(end),
+        "range",
+        "Range [%d, %d) is not available",
+        start,
+        end);
+    return new String(buffer, start - base, end - start);
+  }
+
+  /** Returns the text currently held in the window, with the cursor position marked. */
+  @Override
+  @Nonnull
+  public String toString() {
+    return new String(buffer, 0, cursor - base)
+        + "^"
+        + new String(buffer, cursor - base, filled - cursor);
+  }
+
+  /** A view over the current window, indexed relative to its start, for running matchers on. */
+  private class Window implements CharSequence {
+
+    @Override
+    public int length() {
+      return filled - base;
+    }
+
+    @Override
+    public char charAt(int index) {
+      return buffer[index];
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+      return new String(buffer, start, end - start);
+    }
+
+    @Override
+    @Nonnull
+    public String toString() {
+      return new String(buffer, 0, filled - base);
+    }
+  }
+
+  /** A snapshot manager that pins the snapshots it hands out so that they can be restored. */
+  private class PinningSnapshotManager extends ReferenceBasedSnapshotManager {
+
+    private PinningSnapshotManager() {
+      super(
+          StreamingDocumentReader.this,
+          snapshot -> {
+            expectRetained(snapshot.cursor());
+            cursor = snapshot.cursor();
+          });
+    }
+
+    @Override
+    public DocumentSnapshot create() {
+      DocumentSnapshot snapshot = super.create();
+      pins.pin(snapshot);
+      return snapshot;
+    }
+  }
+}
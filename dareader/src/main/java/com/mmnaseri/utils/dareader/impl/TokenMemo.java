@@ -0,0 +1,161 @@
+package com.mmnaseri.utils.dareader.impl;
+
+import com.mmnaseri.utils.dareader.token.Token;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * Remembers what a tokenizer has read at each position of the document, so that reading from the
+ * same position again after backtracking does not run the token readers again. This is an
+ * open-addressing table keyed by the cursor, with linear probing, which does not box the keys or
+ * allocate entries.
+ *
+ * <p>The table only grows up to a fixed capacity. Once that is reached, it is cleared and starts
+ * over, since backtracking rarely goes far back, and remembering every position of a large document
+ * would take up as much memory as the tokens themselves.
+ */
+final class TokenMemo {
+
+  private static final int INITIAL_CAPACITY = 64;
+  private static final int MAX_CAPACITY = 1 << 16;
+  private static final byte TOKEN = 1;
+  private static final byte CANDIDATES = 2;
+
+  /** The cursor of each entry, plus one, so that {@code 0} marks an empty slot. */
+  private int[] keys;
+
+  private byte[] known;
+  private Token[] tokens;
+  private int[] ends;
+  private Object[] candidates;
+  private int size;
+
+  TokenMemo() {
+    allocate(INITIAL_CAPACITY);
+  }
+
+  private void allocate(int capacity) {
+    keys = new int[capacity];
+    known = new byte[capacity];
+    tokens = new Token[capacity];
+    ends = new int[capacity];
+    candidates = new Object[capacity];
+    size = 0;
+  }
+
+  private static int hash(int key) {
+    int hash = key * 0x9E3779B9;
+    return hash ^ (hash >>> 16);
+  }
+
+  /** Returns the slot for the given cursor, or {@code -1} if nothing is known about it. */
+  int find(int cursor) {
+    int key = cursor + 1;
+    int mask = keys.length - 1;
+    for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+      if (keys[slot] == key) {
+        return slot;
+      }
+      if (keys[slot] == 0) {
+        return -1;
+      }
+    }
+  }
+
+  /** Determines if the token read at the cursor of the given slot is known. */
+  boolean hasToken(int slot) {
+    return (known[slot] & TOKEN) != 0;
+  }
+
+  /** Returns the token read at the cursor of the given slot, or {@code null} if there was none. */
+  @Nullable
+  Token token(int slot) {
+    return tokens[slot];
+  }
+
+  /** Returns the cursor after reading the token at the cursor of the given slot. */
+  int end(int slot) {
+    return ends[slot];
+  }
+
+  /** Determines if the candidates at the cursor of the given slot are known. */
+  boolean hasCandidates(int slot) {
+    return (known[slot] & CANDIDATES) != 0;
+  }
+
+  @SuppressWarnings("unchecked")
+  Set<Token> candidates(int slot) {
+    return (Set<Token>) candidates[slot];
+  }
+
+  /** Records the token read at the given cursor, and the cursor after reading it. */
+  void putToken(int cursor, @Nullable Token token, int end) {
+    int slot = insert(cursor);
+    known[slot] |= TOKEN;
+    tokens[slot] = token;
+    ends[slot] = end;
+  }
+
+  /** Records the candidates at the given cursor. */
+  void putCandidates(int cursor, Set<Token> candidates) {
+    int slot = insert(cursor);
+    known[slot] |= CANDIDATES;
+    this.candidates[slot] = candidates;
+  }
+
+  /** Forgets everything. */
+  void clear() {
+    if (size == 0) {
+      return;
+    }
+    Arrays.fill(keys, 0);
+    Arrays.fill(known, (byte) 0);
+    Arrays.fill(tokens, null);
+    Arrays.fill(candidates, null);
+    size = 0;
+  }
+
+  private int insert(int cursor) {
+    int key = cursor + 1;
+    int mask = keys.length - 1;
+    int slot = hash(key) & mask;
+    while (keys[slot] != 0) {
+      if (keys[slot] == key) {
+        return slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+    if ((size + 1) * 2 > keys.length) {
+      if (keys.length < MAX_CAPACITY) {
+        grow();
+      } else {
+        clear();
+      }
+      return insert(cursor);
+    }
+    keys[slot] = key;
+    size++;
+    return slot;
+  }
+
+  private void grow() {
+    int[] oldKeys = keys;
+    byte[] oldKnown = known;
+    Token[] oldTokens = tokens;
+    int[] oldEnds = ends;
+    Object[] oldCandidates = candidates;
+    allocate(oldKeys.length * 2);
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldKeys[i] == 0) {
+        continue;
+      }
+      int slot = insert(oldKeys[i] - 1);
+      known[slot] = oldKnown[i];
+      tokens[slot] = oldTokens[i];
+      ends[slot] = oldEnds[i];
+      candidates[slot] = oldCandidates[i];
+    }
+  }
+}
@@ -0,0 +1,67 @@
+package com.mmnaseri.utils.dareader.impl;
+
+import com.mmnaseri.utils.dareader.token.Token;
+
+import java.util.Arrays;
+
+/**
+ * Parallel arrays holding a run of tokens, along with the positions at which they start and end,
+ * and the line and offset at their ends. The arrays are accessed directly by their owners, who
+ * decide how the indices map to tokens.
+ */
+final class TokenTrail {
+
+  Token[] tokens;
+  int[] starts;
+  int[] ends;
+  int[] lines;
+  int[] offsets;
+
+  TokenTrail(int capacity) {
+    tokens = new Token[capacity];
+    starts = new int[capacity];
+    ends = new int[capacity];
+    lines = new int[capacity];
+    offsets = new int[capacity];
+  }
+
+  int capacity() {
+    return tokens.length;
+  }
+
+  void set(int index, Token token, int start, int end, int line, int offset) {
+    tokens[index] = token;
+    starts[index] = start;
+    ends[index] = end;
+    lines[index] = line;
+    offsets[index] = offset;
+  }
+
+  /** Copies the entry at the given index to the given index of the other trail. */
+  void copy(int index, TokenTrail target, int to) {
+    target.set(to, tokens[index], starts[index], ends[index], lines[index], offsets[index]);
+  }
+
+  /** Makes room for at least the given number of entries. */
+  void grow(int capacity) {
+    if (capacity <= tokens.length) {
+      return;
+    }
+    int size = Math.max(capacity, tokens.length * 2);
+    tokens = Arrays.copyOf(tokens, size);
+    starts = Arrays.copyOf(starts, size);
+    ends = Arrays.copyOf(ends, size);
+    lines = Arrays.copyOf(lines, size);
+    offsets = Arrays.copyOf(offsets, size);
+  }
+
+  /** Drops the given number of entries from the front, out of the given number of entries. */
+  void drop(int count, int size) {
+    System.arraycopy(tokens, count, tokens, 0, size - count);
+    System.arraycopy(starts, count, starts, 0, size - count);
+    System.arraycopy(ends, count, ends, 0, size - count);
+    System.arraycopy(lines, count, lines, 0, size - count);
+    System.arraycopy(offsets, count, offsets, 0, size - count);
+    Arrays.fill(tokens, size - count, size, null);
+  }
+}
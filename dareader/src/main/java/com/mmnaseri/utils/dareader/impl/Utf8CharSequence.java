@@ -0,0 +1,216 @@
+package com.mmnaseri.utils.dareader.impl;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static com.mmnaseri.utils.dareader.utils.Precondition.checkArgument;
+import static com.mmnaseri.utils.dareader.utils.Precondition.checkNotNull;
+
+/**
+ * A character sequence view over a byte buffer holding UTF-8 text. The buffer is split into chunks
+ * that never cut a code point in half, and the index of the first character in each chunk is
+ * recorded up front. Characters are then decoded one chunk at a time as they are accessed, and only
+ * the two most recently used chunks are kept in decoded form.
+ *
+ * <p>The sequence can be read from several threads at once. Decoded chunks are never changed once
+ * they are published, and each chunk is decoded with a decoder of its own. The chunks are still
+ * kept for all threads together though, so threads reading far apart parts of the document keep
+ * decoding the chunks the others have just replaced, unless each of them reads from a {@link
+ * #copy() copy} of its own.
+ *
+ * <p>The input is expected to be well-formed UTF-8. Malformed input is reported as an {@link
+ * UncheckedIOException} when the offending chunk is first decoded.
+ */
+class Utf8CharSequence implements CharSequence {
+
+  /** The approximate number of bytes in each chunk. */
+  private static final int CHUNK_SIZE = 64 * 1024;
+
+  private final ByteBuffer buffer;
+  private final int[] byteStarts;
+  private final int[] charStarts;
+  private final int chunks;
+  private final int length;
+  @Nullable private volatile Decoded decoded;
+
+  Utf8CharSequence(ByteBuffer buffer) {
+    this.buffer = checkNotNull(buffer, "buffer cannot be null").duplicate();
+    int size = this.buffer.limit();
+    int capacity = size / CHUNK_SIZE + 2;
+    int[] byteStarts = new int[capacity];
+    int[] charStarts = new int[capacity];
+    int chunks = 0;
+    int characters = 0;
+    int position = this.buffer.position();
+    while (position < size) {
+      int end = Math.min(size, position + CHUNK_SIZE);
+      // Never split a multi-byte sequence by ending the chunk on a continuation byte.
+      while (end < size && end > position && (this.buffer.get(end) & 0xC0) == 0x80) {
+        end--;
+      }
+      if (end == position) {
+        // This can only happen with malformed input, which will be reported when decoding.
+        end = Math.min(size, position + CHUNK_SIZE);
+      }
+      byteStarts[chunks] = position;
+      charStarts[chunks] = characters;
+      chunks++;
+      characters += count(this.buffer, position, end);
+      position = end;
+    }
+    byteStarts[chunks] = size;
+    charStarts[chunks] = characters;
+    this.byteStarts = byteStarts;
+    this.charStarts = charStarts;
+    this.chunks = chunks;
+    length = characters;
+  }
+
+  private Utf8CharSequence(Utf8CharSequence other) {
+    buffer = other.buffer;
+    byteStarts = other.byteStarts;
+    charStarts = other.charStarts;
+    chunks = other.chunks;
+    length = other.length;
+  }
+
+  /**
+   * Returns a view of the same text, which shares everything with this one except for the chunks it
+   * has decoded.
+   */
+  Utf8CharSequence copy() {
+    return new Utf8CharSequence(this);
+  }
+
+  /**
+   * Counts the number of UTF-16 characters encoded in the given range, assuming it is well-formed.
+   * Every byte that is not a continuation byte starts a new character, and four-byte sequences
+   * produce a surrogate pair.
+   */
+  private static int count(ByteBuffer buffer, int start, int end) {
+    int count = 0;
+    for (int i = start; i < end; i++) {
+      int value = buffer.get(i) & 0xFF;
+      if ((value & 0xC0) != 0x80) {
+        count++;
+      }
+      if (value >= 0xF0) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  @Override
+  public int length() {
+    return length;
+  }
+
+  @Override
+  public char charAt(int index) {
+    if (index < 0 || index >= length) {
+      throw new IndexOutOfBoundsException("index: " + index + ", length: " + length);
+    }
+    Decoded recent = decoded;
+    if (recent != null) {
+      if (index >= charStarts[recent.chunk] && index < charStarts[recent.chunk + 1]) {
+        return recent.characters[index - charStarts[recent.chunk]];
+      }
+      int previous = recent.previousChunk;
+      if (previous >= 0 && index >= charStarts[previous] && index < charStarts[previous + 1]) {
+        return recent.previousCharacters[index - charStarts[previous]];
+      }
+    }
+    int chunk = Arrays.binarySearch(charStarts, 0, chunks, index);
+    if (chunk < 0) {
+      chunk = -chunk - 2;
+    }
+    // Chunks that decode to no characters cannot exist, so the search always lands on the chunk.
+    char[] characters = decode(chunk);
+    // Whichever thread publishes last wins, which at worst means a chunk is decoded again.
+    decoded =
+        recent == null
+            ? new Decoded(chunk, characters, -1, null)
+            : new Decoded(chunk, characters, recent.chunk, recent.characters);
+    return characters[index - charStarts[chunk]];
+  }
+
+  /** Decodes the given chunk into a new array. */
+  private char[] decode(int chunk) {
+    int characters = charStarts[chunk + 1] - charStarts[chunk];
+    char[] target = new char[characters];
+    ByteBuffer input = buffer.duplicate();
+    input.limit(byteStarts[chunk + 1]).position(byteStarts[chunk]);
+    CharBuffer output = CharBuffer.wrap(target);
+    CharsetDecoder decoder =
+        StandardCharsets.UTF_8
+            .newDecoder()
+            .onMalformedInput(CodingErrorAction.REPORT)
+            .onUnmappableCharacter(CodingErrorAction.REPORT);
+    try {
+      CoderResult result = decoder.decode(input, output, true);
+      if (!result.isUnderflow()) {
+        result.throwException();
+      }
+      result = decoder.flush(output);
+      if (!result.isUnderflow()) {
+        result.throwException();
+      }
+    } catch (CharacterCodingException e) {
+      throw new UncheckedIOException("Malformed UTF-8 input in chunk " + chunk, e);
+    }
+    if (output.position() != characters) {
+      throw new UncheckedIOException(
+          "Malformed UTF-8 input in chunk " + chunk, new CharacterCodingException());
+    }
+    return target;
+  }
+
+  @Override
+  public CharSequence subSequence(int start, int end) {
+    checkArgument(
+        start >= 0 && start <= end && end <= length,
+        "range",
+        "Invalid range [%d, %d) for length %d",
+        start,
+        end,
+        length);
+    StringBuilder builder = new StringBuilder(end - start);
+    for (int i = start; i < end; i++) {
+      builder.append(charAt(i));
+    }
+    return builder.toString();
+  }
+
+  @Nonnull
+  @Override
+  public String toString() {
+    return subSequence(0, length).toString();
+  }
+
+  /** The most recently decoded chunk, along with the one before it. */
+  private static final class Decoded {
+
+    private final int chunk;
+    private final char[] characters;
+    private final int previousChunk;
+    @Nullable private final char[] previousCharacters;
+
+    private Decoded(
+        int chunk, char[] characters, int previousChunk, @Nullable char[] previousCharacters) {
+      this.chunk = chunk;
+      this.characters = characters;
+      this.previousChunk = previousChunk;
+      this.previousCharacters = previousCharacters;
+    }
+  }
+}
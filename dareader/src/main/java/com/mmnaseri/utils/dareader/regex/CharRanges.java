@@ -0,0 +1,117 @@
+package com.mmnaseri.utils.dareader.regex;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * An immutable set of characters, stored as a sorted list of disjoint, non-adjacent ranges. Each
+ * range is stored as a pair of bounds, the first of which is inclusive and the second exclusive.
+ */
+final class CharRanges {
+
+  /** One past the largest character. */
+  private static final int LIMIT = Character.MAX_VALUE + 1;
+
+  static final CharRanges NONE = new CharRanges(new int[0]);
+  static final CharRanges ALL = range(Character.MIN_VALUE, Character.MAX_VALUE);
+
+  private final int[] bounds;
+
+  private CharRanges(int[] bounds) {
+    this.bounds = bounds;
+  }
+
+  /** Returns the set consisting only of the given character. */
+  static CharRanges of(char character) {
+    return range(character, character);
+  }
+
+  /** Returns the set of characters between the given two, inclusive. */
+  static CharRanges range(char from, char to) {
+    if (from > to) {
+      return NONE;
+    }
+    return new CharRanges(new int[] {from, to + 1});
+  }
+
+  /** Returns the set of characters that are in either of the sets. */
+  CharRanges union(CharRanges other) {
+    int[] merged = new int[bounds.length + other.bounds.length];
+    int size = 0;
+    int left = 0;
+    int right = 0;
+    while (left < bounds.length || right < other.bounds.length) {
+      int start;
+      int end;
+      if (right == other.bounds.length
+          || (left < bounds.length && bounds[left] <= other.bounds[right])) {
+        start = bounds[left];
+        end = bounds[left + 1];
+        left += 2;
+      } else {
+        start = other.bounds[right];
+        end = other.bounds[right + 1];
+        right += 2;
+      }
+      if (size > 0 && start <= merged[size - 1]) {
+        merged[size - 1] = Math.max(merged[size - 1], end);
+      } else {
+        merged[size++] = start;
+        merged[size++] = end;
+      }
+    }
+    return new CharRanges(Arrays.copyOf(merged, size));
+  }
+
+  /** Returns the set of all characters that are not in this set. */
+  CharRanges complement() {
+    int[] flipped = new int[bounds.length + 2];
+    int size = 0;
+    int previous = 0;
+    for (int i = 0; i < bounds.length; i += 2) {
+      if (bounds[i] > previous) {
+        flipped[size++] = previous;
+        flipped[size++] = bounds[i];
+      }
+      previous = bounds[i + 1];
+    }
+    if (previous < LIMIT) {
+      flipped[size++] = previous;
+      flipped[size++] = LIMIT;
+    }
+    return new CharRanges(Arrays.copyOf(flipped, size));
+  }
+
+  boolean contains(int character) {
+    int index = Arrays.binarySearch(bounds, character);
+    // A hit on a bound is a hit on the start of a range if the bound is a start bound, and the
+    // insertion point of a miss is inside a range if it comes right after a start bound.
+    return index >= 0 ? (index & 1) == 0 : (-index - 1 & 1) == 1;
+  }
+
+  /** Returns the only character in this set, or {@code -1} if there are more or no characters. */
+  int single() {
+    return bounds.length == 2 && bounds[1] - bounds[0] == 1 ? bounds[0] : -1;
+  }
+
+  boolean isEmpty() {
+    return bounds.length == 0;
+  }
+
+  /** Adds the points at which membership in this set changes to the given collection. */
+  void addBoundaries(Collection<Integer> boundaries) {
+    for (int bound : bounds) {
+      boundaries.add(bound);
+    }
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    return this == o || o instanceof CharRanges && Arrays.equals(bounds, ((CharRanges) o).bounds);
+  }
+
+  @Override
+  public int hashCode() {
+    return Arrays.hashCode(bounds);
+  }
+}
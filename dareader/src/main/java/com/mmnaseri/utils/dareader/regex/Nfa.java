@@ -0,0 +1,80 @@
+package com.mmnaseri.utils.dareader.regex;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A non-deterministic automaton made of three kinds of states: states that consume a single
+ * character from a set, states that split into two alternatives, and states that accept the input
+ * for a given pattern.
+ *
+ * <p>The two alternatives of a split are ordered, with the first one being preferred over the
+ * second. This ordering is how the backtracking semantics of {@link java.util.regex.Pattern}, such
+ * as greedy and reluctant quantifiers and the order of alternatives, is carried over to the
+ * automaton.
+ */
+final class Nfa {
+
+  static final int CHARS = 0;
+  static final int SPLIT = 1;
+  static final int MATCH = 2;
+
+  private final List<Integer> kinds = new ArrayList<>();
+  private final List<Integer> firsts = new ArrayList<>();
+  private final List<Integer> seconds = new ArrayList<>();
+  private final List<CharRanges> ranges = new ArrayList<>();
+
+  private int add(int kind, int first, int second, CharRanges characters) {
+    kinds.add(kind);
+    firsts.add(first);
+    seconds.add(second);
+    ranges.add(characters);
+    return kinds.size() - 1;
+  }
+
+  /** Adds a state that consumes a character from the given set and moves on to the next state. */
+  int chars(CharRanges characters, int next) {
+    return add(CHARS, next, -1, characters);
+  }
+
+  /** Adds a state that prefers the first state to the second. */
+  int split(int first, int second) {
+    return add(SPLIT, first, second, null);
+  }
+
+  /** Changes the alternatives of a split, which is needed when building loops. */
+  void patch(int split, int first, int second) {
+    firsts.set(split, first);
+    seconds.set(split, second);
+  }
+
+  /** Adds a state that accepts the input on behalf of the pattern with the given index. */
+  int match(int pattern) {
+    return add(MATCH, pattern, -1, null);
+  }
+
+  int size() {
+    return kinds.size();
+  }
+
+  int kind(int state) {
+    return kinds.get(state);
+  }
+
+  /**
+   * Returns the state a character state moves to, the preferred alternative of a split, or the
+   * index of the pattern a match state accepts.
+   */
+  int first(int state) {
+    return firsts.get(state);
+  }
+
+  /** Returns the second alternative of a split. */
+  int second(int state) {
+    return seconds.get(state);
+  }
+
+  CharRanges ranges(int state) {
+    return ranges.get(state);
+  }
+}
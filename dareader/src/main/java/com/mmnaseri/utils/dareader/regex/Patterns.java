@@ -0,0 +1,38 @@
+package com.mmnaseri.utils.dareader.regex;
+
+import com.mmnaseri.utils.dareader.utils.CharClass;
+import com.mmnaseri.utils.dareader.utils.CharPredicate;
+
+import javax.annotation.Nullable;
+import java.util.regex.Pattern;
+
+import static com.mmnaseri.utils.dareader.utils.Precondition.checkNotNull;
+
+/** Utility methods for analyzing regular expressions. */
+public final class Patterns {
+
+  private Patterns() throws IllegalAccessException {
+    throw new IllegalAccessException("This type should not be instantiated.");
+  }
+
+  /**
+   * Returns the characters that any match of the given pattern starts with, or {@code null} if that
+   * cannot be determined, either because the pattern can match the empty string, or because it uses
+   * constructs that fall outside of what {@link TokenAutomaton#supports(Pattern) automata support}.
+   */
+  @Nullable
+  public static CharPredicate firstCharacters(Pattern pattern) {
+    checkNotNull(pattern, "pattern cannot be null");
+    RegexNode node;
+    try {
+      node = RegexParser.parse(pattern);
+    } catch (UnsupportedPatternException e) {
+      return null;
+    }
+    if (node.nullable()) {
+      return null;
+    }
+    CharRanges first = node.first();
+    return CharClass.of(first::contains);
+  }
+}
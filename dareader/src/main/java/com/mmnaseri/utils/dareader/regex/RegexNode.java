@@ -0,0 +1,198 @@
+package com.mmnaseri.utils.dareader.regex;
+
+import java.util.List;
+
+/** A node in the syntax tree of a regular expression. */
+abstract class RegexNode {
+
+  /** The maximum value of a repetition, for repetitions that are unbounded. */
+  static final int UNBOUNDED = -1;
+
+  /** Determines if this node can match the empty string. */
+  abstract boolean nullable();
+
+  /**
+   * Returns the set of characters that a match of this node can start with, not taking into account
+   * what comes after the node in case it is nullable.
+   */
+  abstract CharRanges first();
+
+  /**
+   * Adds the states that match this node to the automaton, and returns the state to start from.
+   * Once the node has been matched, the automaton moves on to the indicated state.
+   */
+  abstract int compile(Nfa nfa, int next);
+
+  /** Adds the character sets used by this node to the given list. */
+  abstract void collect(List<CharRanges> sets);
+
+  /** Matches a single character from a set. */
+  static final class Chars extends RegexNode {
+
+    private final CharRanges characters;
+
+    Chars(CharRanges characters) {
+      this.characters = characters;
+    }
+
+    @Override
+    boolean nullable() {
+      return false;
+    }
+
+    @Override
+    CharRanges first() {
+      return characters;
+    }
+
+    @Override
+    int compile(Nfa nfa, int next) {
+      return nfa.chars(characters, next);
+    }
+
+    @Override
+    void collect(List<CharRanges> sets) {
+      sets.add(characters);
+    }
+  }
+
+  /** Matches each of a number of nodes, one after the other. */
+  static final class Sequence extends RegexNode {
+
+    private final List<RegexNode> nodes;
+
+    Sequence(List<RegexNode> nodes) {
+      this.nodes = nodes;
+    }
+
+    @Override
+    boolean nullable() {
+      return nodes.stream().allMatch(RegexNode::nullable);
+    }
+
+    @Override
+    CharRanges first() {
+      CharRanges first = CharRanges.NONE;
+      for (RegexNode node : nodes) {
+        first = first.union(node.first());
+        if (!node.nullable()) {
+          break;
+        }
+      }
+      return first;
+    }
+
+    @Override
+    int compile(Nfa nfa, int next) {
+      int start = next;
+      for (int i = nodes.size() - 1; i >= 0; i--) {
+        start = nodes.get(i).compile(nfa, start);
+      }
+      return start;
+    }
+
+    @Override
+    void collect(List<CharRanges> sets) {
+      nodes.forEach(node -> node.collect(sets));
+    }
+  }
+
+  /** Matches one of a number of alternatives, preferring the ones that come first. */
+  static final class Choice extends RegexNode {
+
+    private final List<RegexNode> alternatives;
+
+    Choice(List<RegexNode> alternatives) {
+      this.alternatives = alternatives;
+    }
+
+    @Override
+    boolean nullable() {
+      return alternatives.stream().anyMatch(RegexNode::nullable);
+    }
+
+    @Override
+    CharRanges first() {
+      CharRanges first = CharRanges.NONE;
+      for (RegexNode alternative : alternatives) {
+        first = first.union(alternative.first());
+      }
+      return first;
+    }
+
+    @Override
+    int compile(Nfa nfa, int next) {
+      int start = alternatives.get(alternatives.size() - 1).compile(nfa, next);
+      for (int i = alternatives.size() - 2; i >= 0; i--) {
+        start = nfa.split(alternatives.get(i).compile(nfa, next), start);
+      }
+      return start;
+    }
+
+    @Override
+    void collect(List<CharRanges> sets) {
+      alternatives.forEach(alternative -> alternative.collect(sets));
+    }
+  }
+
+  /**
+   * Matches a node repeatedly, between a minimum and a maximum number of times. Greedy repetitions
+   * prefer matching the node once more to stopping, while reluctant ones prefer stopping.
+   */
+  static final class Repetition extends RegexNode {
+
+    private final RegexNode node;
+    private final int min;
+    private final int max;
+    private final boolean greedy;
+
+    Repetition(RegexNode node, int min, int max, boolean greedy) {
+      this.node = node;
+      this.min = min;
+      this.max = max;
+      this.greedy = greedy;
+    }
+
+    @Override
+    boolean nullable() {
+      return min == 0 || node.nullable();
+    }
+
+    @Override
+    CharRanges first() {
+      return max == 0 ? CharRanges.NONE : node.first();
+    }
+
+    @Override
+    int compile(Nfa nfa, int next) {
+      int start;
+      if (max == UNBOUNDED) {
+        int loop = nfa.split(-1, -1);
+        int body = node.compile(nfa, loop);
+        if (greedy) {
+          nfa.patch(loop, body, next);
+        } else {
+          nfa.patch(loop, next, body);
+        }
+        start = loop;
+      } else {
+        // Optional repetitions are nested, so that each one is only attempted if the one before it
+        // was matched, which is how the regular expression engine tries them as well.
+        start = next;
+        for (int i = min; i < max; i++) {
+          int body = node.compile(nfa, start);
+          start = greedy ? nfa.split(body, next) : nfa.split(next, body);
+        }
+      }
+      for (int i = 0; i < min; i++) {
+        start = node.compile(nfa, start);
+      }
+      return start;
+    }
+
+    @Override
+    void collect(List<CharRanges> sets) {
+      node.collect(sets);
+    }
+  }
+}
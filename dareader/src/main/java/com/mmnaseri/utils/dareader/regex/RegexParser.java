@@ -0,0 +1,340 @@
+package com.mmnaseri.utils.dareader.regex;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Parses the regular subset of {@link Pattern}'s syntax, i.e. the constructs that can be matched by
+ * a finite automaton: literals, character classes, groups, alternations and quantifiers.
+ *
+ * <p>Anything that falls outside of this subset, such as anchors, look-arounds, back-references,
+ * possessive quantifiers and most flags, is rejected with an {@link UnsupportedPatternException}.
+ * So is anything that, while regular, would be matched differently by the automaton, such as
+ * repeating a group that can match the empty string.
+ */
+final class RegexParser {
+
+  /** The largest bounded repetition that is expanded into the automaton. */
+  private static final int MAX_REPETITION = 256;
+
+  private static final int SUPPORTED_FLAGS =
+      Pattern.DOTALL | Pattern.MULTILINE | Pattern.UNIX_LINES;
+
+  private static final CharRanges DIGITS = CharRanges.range('0', '9');
+  private static final CharRanges WHITESPACE =
+      CharRanges.range('\t', '\r').union(CharRanges.of(' '));
+  private static final CharRanges WORD =
+      CharRanges.range('a', 'z')
+          .union(CharRanges.range('A', 'Z'))
+          .union(DIGITS)
+          .union(CharRanges.of('_'));
+  private static final CharRanges LINE_TERMINATORS =
+      CharRanges.of('\n')
+          .union(CharRanges.of('\r'))
+          .union(CharRanges.of('\u0085'))
+          .union(CharRanges.range('\u2028', '\u2029'));
+
+  private final String source;
+  private final int flags;
+  private int position;
+
+  private RegexParser(Pattern pattern) {
+    source = pattern.pattern();
+    flags = pattern.flags();
+  }
+
+  /** Parses the given pattern. */
+  static RegexNode parse(Pattern pattern) {
+    return new RegexParser(pattern).parse();
+  }
+
+  private RegexNode parse() {
+    if ((flags & ~SUPPORTED_FLAGS) != 0) {
+      throw unsupported("flags " + flags);
+    }
+    RegexNode node = alternation();
+    if (position < source.length()) {
+      throw unsupported("unbalanced parenthesis");
+    }
+    return node;
+  }
+
+  private UnsupportedPatternException unsupported(String construct) {
+    return new UnsupportedPatternException(source, position, construct);
+  }
+
+  private boolean more() {
+    return position < source.length();
+  }
+
+  private char peek() {
+    return source.charAt(position);
+  }
+
+  private boolean accept(char expected) {
+    if (more() && peek() == expected) {
+      position++;
+      return true;
+    }
+    return false;
+  }
+
+  private char next() {
+    if (!more()) {
+      throw unsupported("unexpected end of pattern");
+    }
+    return source.charAt(position++);
+  }
+
+  private RegexNode alternation() {
+    List<RegexNode> alternatives = new ArrayList<>();
+    alternatives.add(sequence());
+    while (accept('|')) {
+      alternatives.add(sequence());
+    }
+    return alternatives.size() == 1 ? alternatives.get(0) : new RegexNode.Choice(alternatives);
+  }
+
+  private RegexNode sequence() {
+    List<RegexNode> nodes = new ArrayList<>();
+    while (more() && peek() != '|' && peek() != ')') {
+      nodes.add(quantified());
+    }
+    return nodes.size() == 1 ? nodes.get(0) : new RegexNode.Sequence(nodes);
+  }
+
+  private RegexNode quantified() {
+    RegexNode node = atom();
+    while (more()) {
+      int min;
+      int max;
+      char quantifier = peek();
+      if (quantifier == '*') {
+        min = 0;
+        max = RegexNode.UNBOUNDED;
+      } else if (quantifier == '+') {
+        min = 1;
+        max = RegexNode.UNBOUNDED;
+      } else if (quantifier == '?') {
+        min = 0;
+        max = 1;
+      } else if (quantifier == '{') {
+        position++;
+        min = number();
+        max = min;
+        if (accept(',')) {
+          max = more() && peek() == '}' ? RegexNode.UNBOUNDED : number();
+        }
+        if (!more() || peek() != '}') {
+          throw unsupported("repetition");
+        }
+        if (max > MAX_REPETITION || (max == RegexNode.UNBOUNDED && min > MAX_REPETITION)) {
+          throw unsupported("repetition larger than " + MAX_REPETITION);
+        }
+      } else {
+        break;
+      }
+      position++;
+      boolean greedy = true;
+      if (accept('?')) {
+        greedy = false;
+      } else if (more() && peek() == '+') {
+        throw unsupported("possessive quantifier");
+      }
+      if (node.nullable() && max != 1) {
+        throw unsupported("repetition of an expression that can be empty");
+      }
+      node = new RegexNode.Repetition(node, min, max, greedy);
+    }
+    return node;
+  }
+
+  private int number() {
+    int start = position;
+    while (more() && Character.isDigit(peek())) {
+      position++;
+    }
+    if (start == position || position - start > 4) {
+      throw unsupported("repetition");
+    }
+    return Integer.parseInt(source.substring(start, position));
+  }
+
+  private RegexNode atom() {
+    char character = next();
+    switch (character) {
+      case '(':
+        return group();
+      case '[':
+        return new RegexNode.Chars(characterClass());
+      case '.':
+        return new RegexNode.Chars(dot());
+      case '\\':
+        return new RegexNode.Chars(escape(false));
+      case '^':
+      case '$':
+        throw unsupported("anchor");
+      case '*':
+      case '+':
+      case '?':
+      case '{':
+        throw unsupported("dangling quantifier");
+      default:
+        return new RegexNode.Chars(literal(character));
+    }
+  }
+
+  private RegexNode group() {
+    if (accept('?')) {
+      if (accept(':')) {
+        // A non-capturing group.
+      } else if (accept('<') && more() && Character.isLetter(peek())) {
+        // A named group. The name has no bearing on what the group matches.
+        while (more() && Character.isLetterOrDigit(peek())) {
+          position++;
+        }
+        if (!accept('>')) {
+          throw unsupported("group name");
+        }
+      } else {
+        throw unsupported("special group");
+      }
+    }
+    RegexNode node = alternation();
+    if (!accept(')')) {
+      throw unsupported("unbalanced parenthesis");
+    }
+    return node;
+  }
+
+  private CharRanges dot() {
+    if ((flags & Pattern.DOTALL) != 0) {
+      return CharRanges.ALL;
+    }
+    if ((flags & Pattern.UNIX_LINES) != 0) {
+      return CharRanges.of('\n').complement();
+    }
+    return LINE_TERMINATORS.complement();
+  }
+
+  private CharRanges literal(char character) {
+    if (Character.isSurrogate(character)) {
+      throw unsupported("supplementary character");
+    }
+    return CharRanges.of(character);
+  }
+
+  private CharRanges characterClass() {
+    boolean negated = accept('^');
+    if (more() && peek() == ']') {
+      throw unsupported("empty character class");
+    }
+    CharRanges characters = CharRanges.NONE;
+    while (!accept(']')) {
+      char character = next();
+      if (character == '[' || (character == '&' && more() && peek() == '&')) {
+        throw unsupported("nested character class");
+      }
+      CharRanges item;
+      if (character == '\\') {
+        item = escape(true);
+      } else {
+        item = literal(character);
+      }
+      if (more()
+          && peek() == '-'
+          && position + 1 < source.length()
+          && source.charAt(position + 1) != ']') {
+        position++;
+        char to = next();
+        if (to == '[') {
+          throw unsupported("nested character class");
+        }
+        CharRanges upper = to == '\\' ? escape(true) : literal(to);
+        if (item.single() < 0 || upper.single() < 0) {
+          throw unsupported("character range");
+        }
+        item = CharRanges.range((char) item.single(), (char) upper.single());
+      }
+      characters = characters.union(item);
+    }
+    return negated ? characters.complement() : characters;
+  }
+
+  /** Parses the escape sequence following a backslash, either inside or outside of a class. */
+  private CharRanges escape(boolean inClass) {
+    char character = next();
+    switch (character) {
+      case 't':
+        return CharRanges.of('\t');
+      case 'n':
+        return CharRanges.of('\n');
+      case 'r':
+        return CharRanges.of('\r');
+      case 'f':
+        return CharRanges.of('\f');
+      case 'a':
+        return CharRanges.of('\u0007');
+      case 'e':
+        return CharRanges.of('\u001B');
+      case '0':
+        return CharRanges.of(octal());
+      case 'x':
+        return CharRanges.of(hex(2));
+      case 'u':
+        return literal(hex(4));
+      case 'd':
+        return DIGITS;
+      case 'D':
+        return DIGITS.complement();
+      case 's':
+        return WHITESPACE;
+      case 'S':
+        return WHITESPACE.complement();
+      case 'w':
+        return WORD;
+      case 'W':
+        return WORD.complement();
+      default:
+        if (Character.isLetterOrDigit(character)) {
+          throw unsupported(
+              "escape sequence \\" + character + (inClass ? " in character class" : ""));
+        }
+        return literal(character);
+    }
+  }
+
+  private char octal() {
+    int value = 0;
+    int digits = 0;
+    while (more() && peek() >= '0' && peek() <= '7' && digits < 3) {
+      int next = value * 8 + (peek() - '0');
+      if (next > 0377) {
+        break;
+      }
+      value = next;
+      digits++;
+      position++;
+    }
+    if (digits == 0) {
+      throw unsupported("octal escape");
+    }
+    return (char) value;
+  }
+
+  private char hex(int digits) {
+    if (position + digits > source.length()) {
+      throw unsupported("hexadecimal escape");
+    }
+    int value = 0;
+    for (int i = 0; i < digits; i++) {
+      int digit = Character.digit(next(), 16);
+      if (digit < 0) {
+        throw unsupported("hexadecimal escape");
+      }
+      value = value * 16 + digit;
+    }
+    return (char) value;
+  }
+}
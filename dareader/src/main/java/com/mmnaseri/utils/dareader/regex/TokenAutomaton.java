@@ -0,0 +1,314 @@
+package com.mmnaseri.utils.dareader.regex;
+
+import com.mmnaseri.utils.dareader.DocumentReader;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+import static com.mmnaseri.utils.dareader.utils.Precondition.checkNotNull;
+
+/**
+ * A deterministic automaton that matches a list of patterns at the cursor of a document in a single
+ * pass, and reports the first pattern in the list that matches, along with the length of its match.
+ *
+ * <p>This gives the same result as trying each pattern with {@link
+ * java.util.regex.Matcher#lookingAt()} in order, and stopping at the first one that matches,
+ * including the length of the match, which follows the backtracking semantics of the regular
+ * expression engine rather than being the longest possible match. To achieve this, each state of
+ * the automaton is an ordered list of the states of the underlying non-deterministic automaton,
+ * with the states of earlier patterns coming first and the states that the engine would try first
+ * coming before the others. Once one of those states accepts the input, the states that come after
+ * it are dropped, since the engine would never get to try them.
+ *
+ * <p>Only the patterns that can be parsed by {@link RegexParser}, and that cannot match the empty
+ * string, are compiled; the others are skipped. The automaton is built eagerly, and is immutable
+ * afterwards, so it can be shared between threads.
+ *
+ * @see #supports(Pattern)
+ */
+public final class TokenAutomaton {
+
+  /** The value returned by {@link #match(DocumentReader)} when none of the patterns match. */
+  public static final long NO_MATCH = -1;
+
+  /**
+   * The value returned by {@link #match(DocumentReader)} when the text at the cursor cannot be
+   * matched by the automaton, in which case the patterns have to be tried one by one. This happens
+   * when the text contains surrogate pairs, which the regular expression engine matches as a single
+   * code point.
+   */
+  public static final long UNDECIDED = -2;
+
+  /** The maximum number of states the automaton can have. */
+  private static final int MAX_STATES = 10_000;
+
+  private static final int DEAD = -1;
+
+  private final boolean[] compiled;
+  private final int[] classStarts;
+  private final int[] asciiClasses;
+  private final int classCount;
+  private final int[] transitions;
+  private final int[] accepting;
+  private final int start;
+
+  private TokenAutomaton(
+      boolean[] compiled,
+      int[] classStarts,
+      int[] asciiClasses,
+      int[] transitions,
+      int[] accepting,
+      int start) {
+    this.compiled = compiled;
+    this.classStarts = classStarts;
+    this.asciiClasses = asciiClasses;
+    this.classCount = classStarts.length;
+    this.transitions = transitions;
+    this.accepting = accepting;
+    this.start = start;
+  }
+
+  /** Determines if the given pattern can be made part of an automaton. */
+  public static boolean supports(Pattern pattern) {
+    checkNotNull(pattern, "pattern cannot be null");
+    try {
+      return !RegexParser.parse(pattern).nullable();
+    } catch (UnsupportedPatternException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Compiles the given patterns into an automaton. Patterns that are not {@link #supports(Pattern)
+   * supported} are left out, and so are all patterns if the automaton would get too large.
+   */
+  public static TokenAutomaton compile(List<Pattern> patterns) {
+    checkNotNull(patterns, "patterns cannot be null");
+    RegexNode[] nodes = new RegexNode[patterns.size()];
+    for (int i = 0; i < nodes.length; i++) {
+      if (supports(patterns.get(i))) {
+        nodes[i] = RegexParser.parse(patterns.get(i));
+      }
+    }
+    TokenAutomaton automaton = new Builder(nodes).build();
+    if (automaton == null) {
+      return new Builder(new RegexNode[patterns.size()]).build();
+    }
+    return automaton;
+  }
+
+  /** Determines if the pattern with the given index is part of this automaton. */
+  public boolean compiled(int pattern) {
+    return compiled[pattern];
+  }
+
+  /** Returns the number of states in this automaton. */
+  public int states() {
+    return accepting.length;
+  }
+
+  /**
+   * Matches the compiled patterns against the text at the cursor of the given reader, without
+   * moving the cursor. Returns either {@link #NO_MATCH}, {@link #UNDECIDED}, or a match, whose
+   * pattern and length can be extracted via {@link #pattern(long)} and {@link #length(long)}.
+   */
+  public long match(DocumentReader reader) {
+    long match = NO_MATCH;
+    int state = start;
+    for (int offset = 0; state != DEAD; offset++) {
+      int character = reader.peek(offset);
+      if (character < 0) {
+        break;
+      }
+      if (Character.isSurrogate((char) character)) {
+        return UNDECIDED;
+      }
+      state = transitions[state * classCount + classOf(character)];
+      if (state != DEAD && accepting[state] >= 0) {
+        match = ((long) accepting[state] << 32) | (offset + 1);
+      }
+    }
+    return match;
+  }
+
+  /** Returns the index of the pattern that produced the given match. */
+  public static int pattern(long match) {
+    return (int) (match >>> 32);
+  }
+
+  /** Returns the length of the given match. */
+  public static int length(long match) {
+    return (int) match;
+  }
+
+  private int classOf(int character) {
+    if (character < asciiClasses.length) {
+      return asciiClasses[character];
+    }
+    int index = Arrays.binarySearch(classStarts, character);
+    return index >= 0 ? index : -index - 2;
+  }
+
+  /** Builds the automaton from the non-deterministic one via the subset construction. */
+  private static final class Builder {
+
+    private final RegexNode[] nodes;
+    private final Nfa nfa = new Nfa();
+    private final Map<StateKey, Integer> states = new HashMap<>();
+    private final List<int[]> threads = new ArrayList<>();
+    private final List<Integer> accepting = new ArrayList<>();
+    private final Deque<Integer> pending = new ArrayDeque<>();
+
+    private Builder(RegexNode[] nodes) {
+      this.nodes = nodes;
+    }
+
+    private TokenAutomaton build() {
+      boolean[] compiled = new boolean[nodes.length];
+      List<CharRanges> sets = new ArrayList<>();
+      int[] starts = new int[nodes.length];
+      for (int i = 0; i < nodes.length; i++) {
+        starts[i] = -1;
+        if (nodes[i] != null) {
+          compiled[i] = true;
+          nodes[i].collect(sets);
+          starts[i] = nodes[i].compile(nfa, nfa.match(i));
+        }
+      }
+      // Characters that are not told apart by any of the sets behave the same, so they are grouped
+      // into classes, each of which starts at one of the boundaries of the sets.
+      TreeSet<Integer> boundaries = new TreeSet<>();
+      boundaries.add(0);
+      sets.forEach(set -> set.addBoundaries(boundaries));
+      boundaries.remove(Character.MAX_VALUE + 1);
+      int[] classStarts = boundaries.stream().mapToInt(Integer::intValue).toArray();
+      int[] asciiClasses = new int[128];
+      for (int character = 0, current = 0; character < asciiClasses.length; character++) {
+        if (current + 1 < classStarts.length && classStarts[current + 1] == character) {
+          current++;
+        }
+        asciiClasses[character] = current;
+      }
+      List<Integer> initial = new ArrayList<>();
+      BitSet seen = new BitSet(nfa.size());
+      for (int state : starts) {
+        if (state >= 0) {
+          close(state, initial, seen);
+        }
+      }
+      int start = state(initial);
+      int[] transitions = new int[0];
+      int built = 0;
+      while (!pending.isEmpty()) {
+        int state = pending.poll();
+        if (threads.size() > MAX_STATES) {
+          return null;
+        }
+        if (transitions.length < threads.size() * classStarts.length) {
+          transitions = Arrays.copyOf(transitions, threads.size() * classStarts.length * 2);
+        }
+        for (int characterClass = 0; characterClass < classStarts.length; characterClass++) {
+          transitions[state * classStarts.length + characterClass] =
+              step(threads.get(state), classStarts[characterClass]);
+        }
+        built++;
+      }
+      return new TokenAutomaton(
+          compiled,
+          classStarts,
+          asciiClasses,
+          Arrays.copyOf(transitions, built * classStarts.length),
+          accepting.stream().mapToInt(Integer::intValue).toArray(),
+          start);
+    }
+
+    /**
+     * Adds the states reachable from the given state without consuming any input to the list, in
+     * the order in which the regular expression engine would try them.
+     */
+    private void close(int state, List<Integer> list, BitSet seen) {
+      if (seen.get(state)) {
+        return;
+      }
+      seen.set(state);
+      if (nfa.kind(state) == Nfa.SPLIT) {
+        close(nfa.first(state), list, seen);
+        close(nfa.second(state), list, seen);
+      } else {
+        list.add(state);
+      }
+    }
+
+    private int step(int[] from, int character) {
+      List<Integer> next = new ArrayList<>();
+      BitSet seen = new BitSet(nfa.size());
+      for (int state : from) {
+        if (nfa.kind(state) == Nfa.CHARS && nfa.ranges(state).contains(character)) {
+          close(nfa.first(state), next, seen);
+        }
+      }
+      return state(next);
+    }
+
+    /** Returns the deterministic state for the given list of states, creating it if needed. */
+    private int state(List<Integer> list) {
+      int accepts = -1;
+      for (int i = 0; i < list.size(); i++) {
+        int state = list.get(i);
+        if (nfa.kind(state) == Nfa.MATCH) {
+          // Whatever comes after the first accepting state would never be tried.
+          accepts = nfa.first(state);
+          list = list.subList(0, i);
+          break;
+        }
+      }
+      if (list.isEmpty() && accepts < 0) {
+        return DEAD;
+      }
+      StateKey key = new StateKey(list.stream().mapToInt(Integer::intValue).toArray(), accepts);
+      Integer existing = states.get(key);
+      if (existing != null) {
+        return existing;
+      }
+      int index = threads.size();
+      threads.add(key.threads);
+      accepting.add(accepts);
+      states.put(key, index);
+      pending.add(index);
+      return index;
+    }
+  }
+
+  private static final class StateKey {
+
+    private final int[] threads;
+    private final int accepts;
+
+    private StateKey(int[] threads, int accepts) {
+      this.threads = threads;
+      this.accepts = accepts;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof StateKey)) {
+        return false;
+      }
+      StateKey that = (StateKey) o;
+      return accepts == that.accepts && Arrays.equals(threads, that.threads);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * Arrays.hashCode(threads) + accepts;
+    }
+  }
+}
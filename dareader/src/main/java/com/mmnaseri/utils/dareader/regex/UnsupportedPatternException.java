@@ -0,0 +1,14 @@
+package com.mmnaseri.utils.dareader.regex;
+
+/**
+ * Thrown when a pattern uses a construct that cannot be compiled into an automaton. The pattern
+ * itself is valid, and can still be matched by the regular expression engine.
+ */
+class UnsupportedPatternException extends RuntimeException {
+
+  private static final long serialVersionUID = 1L;
+
+  UnsupportedPatternException(String pattern, int position, String construct) {
+    super("Unsupported construct (" + construct + ") at " + position + " in pattern " + pattern);
+  }
+}
@@ -0,0 +1,61 @@
+package com.mmnaseri.utils.dareader.token;
+
+import com.mmnaseri.utils.dareader.token.impl.TokenTypeSet;
+
+/**
+ * An immutable {@link TokenTypeRegistry}, where the token types are sorted by their tags and
+ * assigned dense ordinals, starting at {@code 0}. Looking up types and readers by their ordinal
+ * does not allocate anything, which makes this the preferred registry for tokenizers.
+ *
+ * @see TokenTypeRegistry#freeze()
+ */
+public interface FrozenTokenTypeRegistry extends TokenTypeRegistry {
+
+  /** Returns the number of token types in the registry. */
+  int size();
+
+  /** Returns the token type with the given ordinal. */
+  TokenType type(int ordinal);
+
+  /** Returns the reader for the token type with the given ordinal. */
+  TokenReader reader(int ordinal);
+
+  /** Returns the ordinal of the given token type, or {@code -1} if it is not in the registry. */
+  int ordinal(TokenType tokenType);
+
+  /**
+   * Returns the ordinals of the token types whose readers can read a token that starts with the
+   * given character, in ascending order. These are the readers whose {@link
+   * TokenReader#firstCharacters() first characters} include the character, along with the readers
+   * that do not declare their first characters. The returned array is shared, and must not be
+   * modified.
+   */
+  int[] candidates(char character);
+
+  /**
+   * Returns the ordinals of the {@link #isSkipped(TokenType) skipped} token types, in ascending
+   * order. The returned array is shared, and must not be modified.
+   */
+  int[] skipped();
+
+  /** Determines if the token type with the given ordinal is skipped. */
+  boolean isSkipped(int ordinal);
+
+  /** Returns a new, empty set that can hold the token types in this registry. */
+  default TokenTypeSet newSet() {
+    return new TokenTypeSet(this);
+  }
+
+  /**
+   * Always throws an {@link UnsupportedOperationException}, since the registry cannot be modified.
+   * Use {@link #copy()} to get a registry that can be.
+   */
+  @Override
+  TokenTypeRegistry add(TokenType tokenType, TokenReader reader);
+
+  /** Returns the same instance, since it is already frozen. */
+  @Override
+  default FrozenTokenTypeRegistry freeze() {
+    return this;
+  }
+}
@@ -1,6 +1,7 @@
 package com.mmnaseri.utils.dareader.token;
 
 import com.mmnaseri.utils.dareader.token.impl.SimpleToken;
+import com.mmnaseri.utils.dareader.token.impl.SpanToken;
 
 import javax.annotation.Nonnull;
 
@@ -20,6 +21,14 @@ public interface Token {
     return new SimpleToken(type, value, length);
   }
 
+  /**
+   * Creates a new token that refers to the given span of the document, and uses all of it as its
+   * value.
+   */
+  static Token span(TokenType type, CharSequence document, int start, int length) {
+    return new SpanToken(type, document, start, length);
+  }
+
   /** The type of token this token is. */
   @Nonnull
   TokenType type();
@@ -33,4 +42,21 @@ public interface Token {
    * the length of the content represented in {@link #value()}.
    */
   int length();
+
+  /**
+   * The value of this token as a sequence of characters, which, unlike {@link #value()}, might
+   * refer to the document instead of being a copy of the value.
+   */
+  @Nonnull
+  default CharSequence valueView() {
+    return value();
+  }
+
+  /**
+   * The position in the document at which this token starts, or {@code -1} if the token does not
+   * know where it was read from.
+   */
+  default int start() {
+    return -1;
+  }
 }
@@ -1,10 +1,14 @@
 package com.mmnaseri.utils.dareader.token;
 
 import com.mmnaseri.utils.dareader.DocumentReader;
-import com.mmnaseri.utils.dareader.DocumentSnapshot;
+import com.mmnaseri.utils.dareader.impl.Marks;
+import com.mmnaseri.utils.dareader.token.impl.TokenBuffer;
+import com.mmnaseri.utils.dareader.utils.CharPredicate;
 
 import javax.annotation.Nullable;
 
+import static com.mmnaseri.utils.dareader.utils.Precondition.checkNotNull;
+
 /** Reads a token from the input. */
 public interface TokenReader {
 
@@ -18,6 +22,42 @@ public interface TokenReader {
   @Nullable
   Token read(DocumentReader reader);
 
+  /**
+   * Reads the next token into the given buffer, rather than returning it, and returns {@code true},
+   * or returns {@code false} if no token can be read, in which case the cursor has to be restored
+   * by the caller, same as with {@link #read(DocumentReader)}. Readers that can tell where their
+   * tokens start and end without creating them should override this, so that reading tokens in
+   * batches does not create an object per token.
+   */
+  default boolean read(DocumentReader reader, TokenBuffer buffer) {
+    int start = reader.cursor();
+    Token token = read(reader);
+    if (token == null) {
+      return false;
+    }
+    buffer.add(token, start);
+    return true;
+  }
+
+  /**
+   * Moves the cursor past the token at the cursor without keeping it, and returns the length of the
+   * token, or returns {@code 0} without moving the cursor if no token can be read. This is how
+   * tokenizers get past the tokens of {@link TokenTypeRegistry#isSkipped(TokenType) skipped} types.
+   * Readers that can measure their tokens without creating them should override this.
+   */
+  default int skip(DocumentReader reader) {
+    long mark = reader.mark();
+    try {
+      if (read(reader) == null) {
+        reader.reset(mark);
+        return 0;
+      }
+      return reader.cursor() - Marks.cursor(mark);
+    } finally {
+      reader.release(mark);
+    }
+  }
+
   /**
    * Returns a reader that first attempts to read the token designated by the current reader and
    * then the one from the other reader. If either of these two returns {@code null}, the document
@@ -26,19 +66,64 @@ public interface TokenReader {
    * <p>If both readers return a token, the last token is returned.
    */
   default TokenReader then(TokenReader other) {
-    return reader -> {
-      DocumentSnapshot snapshot = reader.snapshot().create();
-      Token first = read(reader);
-      if (first == null) {
-        reader.snapshot().restore(snapshot);
-        return null;
+    TokenReader composed =
+        reader -> {
+          long mark = reader.mark();
+          try {
+            Token second = read(reader) == null ? null : other.read(reader);
+            if (second == null) {
+              reader.reset(mark);
+            }
+            return second;
+          } finally {
+            reader.release(mark);
+          }
+        };
+    CharPredicate first = firstCharacters();
+    return first == null ? composed : composed.startingWith(first);
+  }
+
+  /**
+   * Returns the characters that the tokens read by this reader can start with, or {@code null} if
+   * that is not known. This allows tokenizers to skip this reader altogether when the document
+   * continues with any other character. A reader that declares its first characters must not read
+   * anything when the document has no more characters.
+   */
+  @Nullable
+  default CharPredicate firstCharacters() {
+    return null;
+  }
+
+  /**
+   * Returns a reader that reads the same tokens as this one, and declares that they start with one
+   * of the given characters.
+   *
+   * @see #firstCharacters()
+   */
+  default TokenReader startingWith(CharPredicate characters) {
+    checkNotNull(characters, "characters cannot be null");
+    TokenReader delegate = this;
+    return new TokenReader() {
+      @Nullable
+      @Override
+      public Token read(DocumentReader reader) {
+        return delegate.read(reader);
+      }
+
+      @Override
+      public boolean read(DocumentReader reader, TokenBuffer buffer) {
+        return delegate.read(reader, buffer);
       }
-      Token second = other.read(reader);
-      if (second == null) {
-        reader.snapshot().restore(snapshot);
-        return null;
+
+      @Override
+      public int skip(DocumentReader reader) {
+        return delegate.skip(reader);
+      }
+
+      @Override
+      public CharPredicate firstCharacters() {
+        return characters;
       }
-      return second;
     };
   }
 }
@@ -1,5 +1,9 @@
 package com.mmnaseri.utils.dareader.token;
 
+import com.mmnaseri.utils.dareader.token.impl.ImmutableTokenTypeRegistry;
+import com.mmnaseri.utils.dareader.utils.CharPredicate;
+
+import javax.annotation.Nullable;
 import java.util.Set;
 
 /**
@@ -30,4 +34,62 @@ public interface TokenTypeRegistry {
    * the other registry to it.
    */
   TokenTypeRegistry merge(TokenTypeRegistry other);
+
+  /**
+   * Returns the characters after which the document can be safely split into chunks that are
+   * tokenized independently, or {@code null} if that is never safe. Declaring a character this way
+   * promises that no token ever goes past it, i.e. that it can only ever appear as the last
+   * character of a token, and that the tokens after it do not depend on what came before. For
+   * line-oriented documents, this is usually the line break.
+   */
+  @Nullable
+  default CharPredicate boundaries() {
+    return null;
+  }
+
+  /**
+   * Declares the characters after which the document can be safely split, as described by {@link
+   * #boundaries()}, and returns this registry. Registries that cannot be modified throw an {@link
+   * UnsupportedOperationException}.
+   */
+  default TokenTypeRegistry boundaries(CharPredicate boundaries) {
+    throw new UnsupportedOperationException("Cannot declare boundaries on this registry");
+  }
+
+  /**
+   * Determines if tokens of the given type are skipped by tokenizers, rather than being returned.
+   * This is meant for token types that carry no meaning, such as whitespace and comments, which are
+   * then never seen by the readers of expressions. Skipped types are still read in the order of
+   * their tags, so they only ever take the place of other types that they would have taken anyway.
+   */
+  default boolean isSkipped(TokenType tokenType) {
+    return false;
+  }
+
+  /**
+   * Marks the given token type, which has to be in the registry, as {@link #isSkipped(TokenType)
+   * skipped}, and returns this registry. Registries that cannot be modified throw an {@link
+   * UnsupportedOperationException}.
+   */
+  default TokenTypeRegistry skip(TokenType tokenType) {
+    throw new UnsupportedOperationException("Cannot skip token types in this registry");
+  }
+
+  /**
+   * Returns a number that changes every time the registry is modified, which lets tokenizers know
+   * that what they have read so far may no longer be what they would read now. Registries that
+   * cannot be modified always return the same number.
+   */
+  default int version() {
+    return 0;
+  }
+
+  /**
+   * Returns an immutable view of the token types currently in the registry, which is not affected
+   * by later changes to this registry. Tokenizers created over a frozen registry do not need to
+   * look up or sort the token types every time they read a token.
+   */
+  default FrozenTokenTypeRegistry freeze() {
+    return new ImmutableTokenTypeRegistry(this);
+  }
 }
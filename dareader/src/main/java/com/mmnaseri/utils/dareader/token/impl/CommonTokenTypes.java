@@ -4,12 +4,17 @@ import com.mmnaseri.utils.dareader.token.ProjectableTokenType;
 import com.mmnaseri.utils.dareader.token.Token;
 import com.mmnaseri.utils.dareader.token.TokenReader;
 import com.mmnaseri.utils.dareader.token.TokenTypeRegistry;
+import com.mmnaseri.utils.dareader.utils.CharClass;
+import com.mmnaseri.utils.dareader.utils.Scanner;
 import com.mmnaseri.utils.dareader.utils.TokenReaders;
 
-import java.util.regex.Pattern;
-
+import static com.mmnaseri.utils.dareader.utils.CharClass.DIGIT;
+import static com.mmnaseri.utils.dareader.utils.CharClass.LOWERCASE;
 import static com.mmnaseri.utils.dareader.utils.Precondition.checkNotNull;
 import static com.mmnaseri.utils.dareader.utils.Precondition.checkState;
+import static com.mmnaseri.utils.dareader.utils.Scanners.literal;
+import static com.mmnaseri.utils.dareader.utils.Scanners.run;
+import static com.mmnaseri.utils.dareader.utils.Scanners.single;
 import static java.util.Arrays.stream;
 
 /**
@@ -19,32 +24,36 @@ import static java.util.Arrays.stream;
  */
 public enum CommonTokenTypes implements ProjectableTokenType {
   /** Signifies a continuous whitespace region read from the input. */
-  WHITESPACE(10_000_001, "\\s+"),
+  WHITESPACE(10_000_001, run(CharClass.WHITESPACE)),
   /** Signifies two sets of digits separated by a dot with no signage. Example: {@code 123.456}. */
-  UNSIGNED_FLOAT(10_000_002, "\\d+\\.\\d+"),
+  UNSIGNED_FLOAT(10_000_002, run(DIGIT).then(literal(".")).then(run(DIGIT))),
   /**
    * Signifies two sets of digits separated by a dot with a leading signage. Example: {@code
    * -123.456}, {@code +123.456}.
    */
-  SIGNED_FLOAT(10_000_003, "[\\-+]\\d+\\.\\d+"),
+  SIGNED_FLOAT(
+      10_000_003, single(CharClass.of("-+")).then(run(DIGIT)).then(literal(".")).then(run(DIGIT))),
   /** Signifies a single set of digits with no signage. Example: {@code 123}. */
-  UNSIGNED_INT(10_000_004, "\\d+"),
+  UNSIGNED_INT(10_000_004, run(DIGIT)),
   /**
    * Signifies a single set of digits with a leading signage. Example: {@code -123}, {@code +123}.
    */
-  SIGNED_INT(10_000_005, "[\\-+]\\d+"),
+  SIGNED_INT(10_000_005, single(CharClass.of("-+")).then(run(DIGIT))),
   /** Signifies a constant value meaningful to the application. Example: {@code true}. */
-  CONSTANT(10_000_006, "[a-z]+"),
+  CONSTANT(10_000_006, run(LOWERCASE)),
   /** Signifies an operator read from the input. Example: {@code +}. */
-  OPERATOR(10_000_007, "[+\\-/*]");
+  OPERATOR(10_000_007, single(CharClass.of("+-/*")));
 
   private final int tag;
   private final TokenReader reader;
 
-  CommonTokenTypes(int tag, String pattern) {
+  /**
+   * All of these tokens are simple runs of characters, so they are measured by scanners rather than
+   * regular expressions.
+   */
+  CommonTokenTypes(int tag, Scanner scanner) {
     this.tag = tag;
-    reader =
-        TokenReaders.pattern(this, Pattern.compile(pattern, Pattern.DOTALL | Pattern.MULTILINE));
+    reader = TokenReaders.scanner(this, scanner);
   }
 
   @Override
@@ -0,0 +1,92 @@
+package com.mmnaseri.utils.dareader.token.impl;
+
+import com.mmnaseri.utils.dareader.token.TokenReader;
+import com.mmnaseri.utils.dareader.utils.CharPredicate;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maps each character to the ordinals of the readers that can read a token starting with it, based
+ * on their {@link TokenReader#firstCharacters() first characters}. Readers that do not declare
+ * their first characters are listed for every character.
+ *
+ * <p>The entries for ASCII characters are built upfront. The entries for the rest of the characters
+ * are only built once one of them is looked up, since most documents never need them. Characters
+ * with the same readers share the same array, so the table for all 64K characters takes up no more
+ * than one index per character.
+ */
+final class DispatchTable {
+
+  private static final int ASCII = 128;
+
+  private final CharPredicate[] firsts;
+  private final int[][] ascii;
+  private volatile Wide wide;
+
+  DispatchTable(TokenReader[] readers) {
+    firsts = new CharPredicate[readers.length];
+    for (int i = 0; i < readers.length; i++) {
+      firsts[i] = readers[i].firstCharacters();
+    }
+    Map<BitSet, int[]> shared = new HashMap<>();
+    ascii = new int[ASCII][];
+    for (char character = 0; character < ASCII; character++) {
+      ascii[character] = shared.computeIfAbsent(readers(character), DispatchTable::ordinals);
+    }
+  }
+
+  /** Returns the ordinals of the readers to try for the given character, in order. */
+  int[] candidates(char character) {
+    if (character < ASCII) {
+      return ascii[character];
+    }
+    Wide table = wide;
+    if (table == null) {
+      // Building the table twice on a race is harmless, since the result is the same.
+      table = new Wide();
+      wide = table;
+    }
+    return table.arrays[table.index[character]];
+  }
+
+  private BitSet readers(char character) {
+    BitSet readers = new BitSet(firsts.length);
+    for (int i = 0; i < firsts.length; i++) {
+      if (firsts[i] == null || firsts[i].test(character)) {
+        readers.set(i);
+      }
+    }
+    return readers;
+  }
+
+  private static int[] ordinals(BitSet readers) {
+    return readers.stream().toArray();
+  }
+
+  /** The entries for all characters, each pointing to one of the distinct arrays of ordinals. */
+  private final class Wide {
+
+    private final char[] index = new char[Character.MAX_VALUE + 1];
+    private final int[][] arrays;
+
+    private Wide() {
+      Map<BitSet, Integer> positions = new HashMap<>();
+      List<int[]> arrays = new ArrayList<>();
+      for (int character = 0; character <= Character.MAX_VALUE; character++) {
+        BitSet readers = readers((char) character);
+        Integer position = positions.get(readers);
+        if (position == null) {
+          position = arrays.size();
+          positions.put(readers, position);
+          arrays.add(ordinals(readers));
+        }
+        index[character] = (char) (int) position;
+      }
+      this.arrays = arrays.toArray(new int[0][]);
+    }
+  }
+}
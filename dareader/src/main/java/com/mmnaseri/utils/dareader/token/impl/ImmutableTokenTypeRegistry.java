@@ -0,0 +1,145 @@
+package com.mmnaseri.utils.dareader.token.impl;
+
+import com.mmnaseri.utils.dareader.token.FrozenTokenTypeRegistry;
+import com.mmnaseri.utils.dareader.token.TokenReader;
+import com.mmnaseri.utils.dareader.token.TokenType;
+import com.mmnaseri.utils.dareader.token.TokenTypeRegistry;
+import com.mmnaseri.utils.dareader.utils.CharPredicate;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import static com.mmnaseri.utils.dareader.utils.Precondition.checkNotNull;
+import static com.mmnaseri.utils.dareader.utils.Precondition.checkState;
+
+/** A simple implementation for {@link FrozenTokenTypeRegistry}. */
+public class ImmutableTokenTypeRegistry implements FrozenTokenTypeRegistry {
+
+  private final TokenType[] types;
+  private final TokenReader[] readers;
+  private final int[] tags;
+  private final Set<TokenType> tokenTypes;
+  @Nullable private final CharPredicate boundaries;
+  private final int[] skipped;
+  private volatile DispatchTable dispatch;
+
+  public ImmutableTokenTypeRegistry(TokenTypeRegistry registry) {
+    checkNotNull(registry, "registry cannot be null");
+    types =
+        registry.tokenTypes().stream()
+            .sorted(Comparator.comparing(TokenType::tag))
+            .toArray(TokenType[]::new);
+    readers = new TokenReader[types.length];
+    tags = new int[types.length];
+    for (int i = 0; i < types.length; i++) {
+      readers[i] = registry.reader(types[i]);
+      tags[i] = types[i].tag();
+    }
+    TokenTypeSet all = newSet();
+    all.addAll(Arrays.asList(types));
+    tokenTypes = Collections.unmodifiableSet(all);
+    boundaries = registry.boundaries();
+    skipped = IntStream.range(0, types.length).filter(i -> registry.isSkipped(types[i])).toArray();
+  }
+
+  @Override
+  public int size() {
+    return types.length;
+  }
+
+  @Override
+  public TokenType type(int ordinal) {
+    return types[ordinal];
+  }
+
+  @Override
+  public TokenReader reader(int ordinal) {
+    return readers[ordinal];
+  }
+
+  @Override
+  public int ordinal(TokenType tokenType) {
+    int ordinal = Arrays.binarySearch(tags, tokenType.tag());
+    return ordinal < 0 ? -1 : ordinal;
+  }
+
+  @Override
+  public int[] candidates(char character) {
+    DispatchTable table = dispatch;
+    if (table == null) {
+      table = new DispatchTable(readers);
+      dispatch = table;
+    }
+    return table.candidates(character);
+  }
+
+  @Override
+  public int[] skipped() {
+    return skipped;
+  }
+
+  @Override
+  public boolean isSkipped(int ordinal) {
+    return Arrays.binarySearch(skipped, ordinal) >= 0;
+  }
+
+  @Override
+  public boolean isSkipped(TokenType tokenType) {
+    checkNotNull(tokenType, "Token type cannot be null");
+    int ordinal = ordinal(tokenType);
+    return ordinal >= 0 && isSkipped(ordinal);
+  }
+
+  @Override
+  public TokenTypeRegistry add(TokenType tokenType, TokenReader reader) {
+    throw new UnsupportedOperationException("Cannot add token types to a frozen registry");
+  }
+
+  @Override
+  public TokenReader reader(TokenType tokenType) {
+    checkNotNull(tokenType, "Token type cannot be null");
+    int ordinal = ordinal(tokenType);
+    checkState(ordinal >= 0, "No token reader for type %s exists", tokenType);
+    return readers[ordinal];
+  }
+
+  @Nullable
+  @Override
+  public CharPredicate boundaries() {
+    return boundaries;
+  }
+
+  /** Returns the token types in this registry, in the order of their tags. */
+  @Override
+  public Set<TokenType> tokenTypes() {
+    return tokenTypes;
+  }
+
+  /** Returns a registry with the same token types that can be modified. */
+  @Override
+  public TokenTypeRegistry copy() {
+    TokenTypeRegistry copy = new SimpleTokenTypeRegistry();
+    for (int i = 0; i < types.length; i++) {
+      copy.add(types[i], readers[i]);
+    }
+    if (boundaries != null) {
+      copy.boundaries(boundaries);
+    }
+    for (int ordinal : skipped) {
+      copy.skip(types[ordinal]);
+    }
+    return copy;
+  }
+
+  @Override
+  public TokenTypeRegistry merge(TokenTypeRegistry other) {
+    TokenTypeRegistry copy = copy();
+    other.tokenTypes().forEach(tokenType -> copy.add(tokenType, other.reader(tokenType)));
+    other.tokenTypes().stream().filter(other::isSkipped).forEach(copy::skip);
+    return copy;
+  }
+}
@@ -4,7 +4,6 @@ import com.mmnaseri.utils.dareader.token.Token;
 import com.mmnaseri.utils.dareader.token.TokenType;
 
 import javax.annotation.Nonnull;
-import java.util.Objects;
 
 import static com.mmnaseri.utils.dareader.utils.Precondition.checkArgument;
 import static com.mmnaseri.utils.dareader.utils.Precondition.checkNotNull;
@@ -49,12 +48,24 @@ public class SimpleToken implements Token {
       return false;
     }
     Token that = (Token) o;
+    if (that instanceof SpanToken) {
+      // Compare against the document rather than copying the value out of it.
+      return that.equals(this);
+    }
     return length() == that.length() && type().equals(that.type()) && value().equals(that.value());
   }
 
   @Override
   public int hashCode() {
-    return Objects.hash(type(), value(), length());
+    return hash(type(), value().hashCode(), length());
+  }
+
+  /**
+   * Combines the hash codes of the parts of a token the same way {@link java.util.Objects#hash}
+   * would, without creating an array to hold them.
+   */
+  static int hash(TokenType type, int valueHash, int length) {
+    return (31 * (31 + type.hashCode()) + valueHash) * 31 + length;
   }
 
   @Override
@@ -3,9 +3,12 @@ package com.mmnaseri.utils.dareader.token.impl;
 import com.mmnaseri.utils.dareader.token.TokenReader;
 import com.mmnaseri.utils.dareader.token.TokenType;
 import com.mmnaseri.utils.dareader.token.TokenTypeRegistry;
+import com.mmnaseri.utils.dareader.utils.CharPredicate;
 
+import javax.annotation.Nullable;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
@@ -17,6 +20,9 @@ import static java.util.stream.Collectors.toSet;
 public class SimpleTokenTypeRegistry implements TokenTypeRegistry {
 
   private final Map<Integer, TokenDefinition> types;
+  private final Set<Integer> skipped = new HashSet<>();
+  private int version;
+  @Nullable private CharPredicate boundaries;
 
   public SimpleTokenTypeRegistry() {
     this(Collections.emptyMap());
@@ -35,9 +41,43 @@ public class SimpleTokenTypeRegistry implements TokenTypeRegistry {
         types.get(tokenType.tag()),
         tokenType.tag());
     types.put(tokenType.tag(), new TokenDefinition(tokenType, reader));
+    version++;
     return this;
   }
 
+  @Nullable
+  @Override
+  public CharPredicate boundaries() {
+    return boundaries;
+  }
+
+  @Override
+  public TokenTypeRegistry boundaries(CharPredicate boundaries) {
+    this.boundaries = checkNotNull(boundaries, "boundaries cannot be null");
+    return this;
+  }
+
+  @Override
+  public boolean isSkipped(TokenType tokenType) {
+    checkNotNull(tokenType, "Token type cannot be null");
+    return skipped.contains(tokenType.tag());
+  }
+
+  @Override
+  public TokenTypeRegistry skip(TokenType tokenType) {
+    checkNotNull(tokenType, "Token type cannot be null");
+    checkState(types.containsKey(tokenType.tag()), "No token reader for type %s exists", tokenType);
+    if (skipped.add(tokenType.tag())) {
+      version++;
+    }
+    return this;
+  }
+
+  @Override
+  public int version() {
+    return version;
+  }
+
   @Override
   public TokenReader reader(TokenType tokenType) {
     checkNotNull(tokenType, "Token type cannot be null");
@@ -52,13 +92,17 @@ public class SimpleTokenTypeRegistry implements TokenTypeRegistry {
 
   @Override
   public TokenTypeRegistry copy() {
-    return new SimpleTokenTypeRegistry(types);
+    SimpleTokenTypeRegistry copy = new SimpleTokenTypeRegistry(types);
+    copy.boundaries = boundaries;
+    copy.skipped.addAll(skipped);
+    return copy;
   }
 
   @Override
   public TokenTypeRegistry merge(TokenTypeRegistry other) {
     final TokenTypeRegistry copy = copy();
     other.tokenTypes().forEach(tokenType -> copy.add(tokenType, reader(tokenType)));
+    other.tokenTypes().stream().filter(other::isSkipped).forEach(copy::skip);
     return copy;
   }
 
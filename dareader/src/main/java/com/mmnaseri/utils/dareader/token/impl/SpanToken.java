@@ -0,0 +1,168 @@
+package com.mmnaseri.utils.dareader.token.impl;
+
+import com.mmnaseri.utils.dareader.token.Token;
+import com.mmnaseri.utils.dareader.token.TokenType;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.nio.CharBuffer;
+
+import static com.mmnaseri.utils.dareader.utils.Precondition.checkArgument;
+import static com.mmnaseri.utils.dareader.utils.Precondition.checkNotNull;
+
+/**
+ * A token that refers to the span of the document it was read from, rather than holding on to a
+ * copy of its value. The value is only copied out of the document the first time it is asked for,
+ * and is kept afterwards.
+ *
+ * <p>The value of the token does not have to be the whole of the token, but it has to be a
+ * contiguous part of the document. Since the token refers to the document, the document has to stay
+ * the same for as long as the token is around.
+ *
+ * <p>Span tokens are equal to any other token of the same type, length and value, and have the same
+ * hash code as a {@link SimpleToken} would, so the two can be used interchangeably.
+ */
+public final class SpanToken implements Token {
+
+  private final TokenType type;
+  private final CharSequence document;
+  private final int start;
+  private final int length;
+  private final int valueStart;
+  private final int valueLength;
+  @Nullable private String value;
+
+  /** Creates a token whose value is the whole of the given span of the document. */
+  public SpanToken(TokenType type, CharSequence document, int start, int length) {
+    this(type, document, start, length, start, length);
+  }
+
+  /** Creates a token whose value is a part of the given span of the document. */
+  public SpanToken(
+      TokenType type,
+      CharSequence document,
+      int start,
+      int length,
+      int valueStart,
+      int valueLength) {
+    this.type = checkNotNull(type, "Type cannot be null");
+    this.document = checkNotNull(document, "Document cannot be null");
+    checkArgument(length > 0, "Token length should be positive");
+    checkArgument(
+        start >= 0 && start + length <= document.length(),
+        "start",
+        "Token should be within the document");
+    checkArgument(
+        valueLength >= 0 && valueStart >= 0 && valueStart + valueLength <= document.length(),
+        "valueStart",
+        "Value should be within the document");
+    this.start = start;
+    this.length = length;
+    this.valueStart = valueStart;
+    this.valueLength = valueLength;
+  }
+
+  @Nonnull
+  @Override
+  public TokenType type() {
+    return type;
+  }
+
+  @Nonnull
+  @Override
+  public String value() {
+    if (value == null) {
+      value = document.subSequence(valueStart, valueStart + valueLength).toString();
+    }
+    return value;
+  }
+
+  @Nonnull
+  @Override
+  public CharSequence valueView() {
+    if (value != null) {
+      return value;
+    }
+    return CharBuffer.wrap(document, valueStart, valueStart + valueLength);
+  }
+
+  @Override
+  public int length() {
+    return length;
+  }
+
+  @Override
+  public int start() {
+    return start;
+  }
+
+  /** Returns the document this token was read from. */
+  CharSequence document() {
+    return document;
+  }
+
+  /** Returns the position in the document at which the value of this token starts. */
+  public int valueStart() {
+    return valueStart;
+  }
+
+  /** Returns the length of the value of this token. */
+  public int valueLength() {
+    return valueLength;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof Token)) {
+      return false;
+    }
+    Token that = (Token) o;
+    if (length != that.length() || !type.equals(that.type())) {
+      return false;
+    }
+    if (that instanceof SpanToken) {
+      SpanToken span = (SpanToken) that;
+      return contentEquals(span.document, span.valueStart, span.valueLength);
+    }
+    String other = that.value();
+    return contentEquals(other, 0, other.length());
+  }
+
+  private boolean contentEquals(CharSequence other, int from, int count) {
+    if (count != valueLength) {
+      return false;
+    }
+    if (value != null && other instanceof String && from == 0 && other.length() == count) {
+      return value.equals(other);
+    }
+    for (int i = 0; i < count; i++) {
+      if (document.charAt(valueStart + i) != other.charAt(from + i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public int hashCode() {
+    int valueHash;
+    if (value != null) {
+      valueHash = value.hashCode();
+    } else {
+      // The same as the hash code of the value, without copying it.
+      valueHash = 0;
+      for (int i = valueStart; i < valueStart + valueLength; i++) {
+        valueHash = 31 * valueHash + document.charAt(i);
+      }
+    }
+    return SimpleToken.hash(type, valueHash, length);
+  }
+
+  @Override
+  public String toString() {
+    return "Token{type=" + type() + ",value=" + value() + ",length=" + length() + "}";
+  }
+}
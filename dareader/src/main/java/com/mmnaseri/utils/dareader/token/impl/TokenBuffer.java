@@ -0,0 +1,237 @@
+package com.mmnaseri.utils.dareader.token.impl;
+
+import com.mmnaseri.utils.dareader.DocumentReader;
+import com.mmnaseri.utils.dareader.DocumentSnapshot;
+import com.mmnaseri.utils.dareader.token.FrozenTokenTypeRegistry;
+import com.mmnaseri.utils.dareader.token.Token;
+import com.mmnaseri.utils.dareader.token.TokenType;
+
+import javax.annotation.Nullable;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.mmnaseri.utils.dareader.utils.Precondition.checkArgument;
+import static com.mmnaseri.utils.dareader.utils.Precondition.checkNotNull;
+import static com.mmnaseri.utils.dareader.utils.Precondition.checkState;
+
+/**
+ * A reusable batch of tokens, stored column by column in arrays of primitives rather than as token
+ * objects. For each token, the buffer holds the ordinal of its type in the registry, the position
+ * it starts at and its length, and optionally the line it starts on. The value of a token is only
+ * copied out of the document when it is asked for, which means that a batch of tokens can be read
+ * and processed without allocating anything per token.
+ *
+ * <p>Tokens whose type is not in the registry, which can happen if a reader returns tokens of a
+ * type other than the one it is registered for, get ordinals past the ones in the registry.
+ *
+ * <p>The text of the tokens stays available until the buffer is {@link #reset(DocumentReader)
+ * reset}, even if the document is being streamed, since the buffer holds on to a snapshot taken
+ * where its first token starts.
+ *
+ * @see com.mmnaseri.utils.dareader.DocumentTokenizer#nextBatch(TokenBuffer)
+ */
+public final class TokenBuffer {
+
+  private final FrozenTokenTypeRegistry registry;
+  private final int[] types;
+  private final int[] starts;
+  private final int[] lengths;
+  @Nullable private final int[] lines;
+  @Nullable private String[] values;
+  private final List<TokenType> others = new ArrayList<>();
+  @Nullable private DocumentReader document;
+  @Nullable private DocumentSnapshot pin;
+  private int size;
+  @Nullable private TokenType lastType;
+  private int lastOrdinal;
+
+  /** Creates a buffer that holds up to the given number of tokens, without their lines. */
+  public TokenBuffer(FrozenTokenTypeRegistry registry, int capacity) {
+    this(registry, capacity, false);
+  }
+
+  /** Creates a buffer that holds up to the given number of tokens, and optionally their lines. */
+  public TokenBuffer(FrozenTokenTypeRegistry registry, int capacity, boolean lines) {
+    this.registry = checkNotNull(registry, "registry cannot be null");
+    checkArgument(capacity > 0, "capacity", "capacity must be positive.");
+    types = new int[capacity];
+    starts = new int[capacity];
+    lengths = new int[capacity];
+    this.lines = lines ? new int[capacity] : null;
+  }
+
+  /** Returns the registry that the ordinals of the token types refer to. */
+  public FrozenTokenTypeRegistry registry() {
+    return registry;
+  }
+
+  /** Returns the number of tokens in the buffer. */
+  public int size() {
+    return size;
+  }
+
+  /** Returns the number of tokens the buffer can hold. */
+  public int capacity() {
+    return types.length;
+  }
+
+  public boolean isFull() {
+    return size == types.length;
+  }
+
+  /** Determines if the buffer records the line each token starts on. */
+  public boolean tracksLines() {
+    return lines != null;
+  }
+
+  /** Returns the ordinal of the type of the token at the given index. */
+  public int type(int index) {
+    checkIndex(index);
+    return types[index];
+  }
+
+  /** Returns the type of the token at the given index. */
+  public TokenType tokenType(int index) {
+    int ordinal = type(index);
+    return ordinal < registry.size()
+        ? registry.type(ordinal)
+        : others.get(ordinal - registry.size());
+  }
+
+  /** Returns the position in the document at which the token at the given index starts. */
+  public int start(int index) {
+    checkIndex(index);
+    return starts[index];
+  }
+
+  /** Returns the length of the token at the given index. */
+  public int length(int index) {
+    checkIndex(index);
+    return lengths[index];
+  }
+
+  /** Returns the line the token at the given index starts on, if the buffer tracks lines. */
+  public int line(int index) {
+    checkState(lines != null, "This buffer does not track lines");
+    checkIndex(index);
+    return lines[index];
+  }
+
+  /**
+   * Returns the document the tokens were read from, which can be used to look at the text of the
+   * tokens without copying it, or {@code null} if the tokens were not read directly from it.
+   */
+  @Nullable
+  public CharSequence document() {
+    return document;
+  }
+
+  /**
+   * Returns the text of the token at the given index, as it appears in the document. The text is a
+   * view over the document rather than a copy, so it is only good for as long as the buffer is not
+   * reset.
+   */
+  public CharSequence text(int index) {
+    checkIndex(index);
+    if (document == null) {
+      return values[index];
+    }
+    return CharBuffer.wrap(document, starts[index], starts[index] + lengths[index]);
+  }
+
+  /**
+   * Returns the value of the token at the given index, which is the text of the token, unless the
+   * reader of the token decided otherwise.
+   */
+  public String value(int index) {
+    checkIndex(index);
+    if (values != null && values[index] != null) {
+      return values[index];
+    }
+    return text(index).toString();
+  }
+
+  /**
+   * Creates the token at the given index, which refers to the document rather than copying its
+   * value, if the document is {@link DocumentReader#source() held in memory}.
+   */
+  public Token token(int index) {
+    checkIndex(index);
+    CharSequence source = document == null ? null : document.source();
+    if (source != null && (values == null || values[index] == null)) {
+      return new SpanToken(tokenType(index), source, starts[index], lengths[index]);
+    }
+    return new SimpleToken(tokenType(index), value(index), length(index));
+  }
+
+  /**
+   * Empties the buffer, so that it can be filled with tokens read from the given document, starting
+   * at its cursor. If no document is given, the values of all tokens have to be given as they are
+   * added.
+   */
+  public void reset(@Nullable DocumentReader document) {
+    if (values != null) {
+      Arrays.fill(values, 0, size, null);
+    }
+    size = 0;
+    this.document = document;
+    pin = document == null ? null : document.snapshot().create();
+  }
+
+  /**
+   * Adds a token of the given type, which starts at the given position in the document and has the
+   * given length. Unless a value is given, the value of the token is its text.
+   */
+  public void add(TokenType type, int start, int length, @Nullable String value) {
+    checkState(!isFull(), "The buffer is full");
+    checkState(value != null || document != null, "Tokens need a value or a document");
+    types[size] = ordinal(type);
+    starts[size] = start;
+    lengths[size] = length;
+    if (value != null) {
+      if (values == null) {
+        values = new String[types.length];
+      }
+      values[size] = value;
+    }
+    size++;
+  }
+
+  /** Adds a token that has already been read, which started at the given position. */
+  public void add(Token token, int start) {
+    add(token.type(), start, token.length(), token.value());
+  }
+
+  /** Records the line on which the last token added to the buffer starts. */
+  public void recordLine(int line) {
+    checkState(lines != null, "This buffer does not track lines");
+    checkState(size > 0, "There are no tokens in the buffer");
+    lines[size - 1] = line;
+  }
+
+  private int ordinal(TokenType type) {
+    if (type == lastType) {
+      return lastOrdinal;
+    }
+    int ordinal = registry.ordinal(type);
+    if (ordinal < 0 || !registry.type(ordinal).equals(type)) {
+      int index = others.indexOf(type);
+      if (index < 0) {
+        index = others.size();
+        others.add(type);
+      }
+      ordinal = registry.size() + index;
+    }
+    lastType = type;
+    lastOrdinal = ordinal;
+    return ordinal;
+  }
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("index: " + index + ", size: " + size);
+    }
+  }
+}
@@ -0,0 +1,217 @@
+package com.mmnaseri.utils.dareader.token.impl;
+
+import com.mmnaseri.utils.dareader.token.Token;
+import com.mmnaseri.utils.dareader.token.TokenType;
+
+import java.util.Arrays;
+
+import static com.mmnaseri.utils.dareader.utils.Precondition.checkArgument;
+import static com.mmnaseri.utils.dareader.utils.Precondition.checkNotNull;
+
+/**
+ * A bounded table of canonical tokens, which lets documents that repeat the same short tokens over
+ * and over, such as keywords and operators, share a single instance for each of them. Tokens are
+ * looked up by their type, length and value, and for {@link SpanToken}s, the value is hashed and
+ * compared right in the document, without copying it. The canonical tokens hold their own copy of
+ * the value, and do not keep the document around.
+ *
+ * <p>Values longer than a maximum length are never interned. Neither are values seen for the first
+ * time, so that values that only appear once, such as most identifiers and numbers, do not push the
+ * ones that repeat out of the table. Each slot of the table can be tried by a few values, and once
+ * they are all taken, the oldest value in the first slot makes room for the new one.
+ *
+ * <p>An interner can be shared between tokenizers, including ones used from different threads.
+ *
+ * @see com.mmnaseri.utils.dareader.DocumentTokenizerFactory#interning(TokenInterner)
+ */
+public final class TokenInterner {
+
+  /** The number of tokens an interner holds by default. */
+  public static final int DEFAULT_CAPACITY = 4096;
+
+  /** The length of the longest value an interner interns by default. */
+  public static final int DEFAULT_MAX_LENGTH = 16;
+
+  /** The number of slots a value can be put in. */
+  private static final int PROBES = 4;
+
+  /**
+   * A rough number of bytes taken by a token and its value, besides the characters of the value,
+   * assuming compressed references and compact strings.
+   */
+  private static final int OVERHEAD = 64;
+
+  private final Token[] tokens;
+  private final int[] hashes;
+  private final int[] seen;
+  private final int mask;
+  private final int maxLength;
+  private int size;
+  private long retained;
+  private long hits;
+  private long misses;
+  private long bypassed;
+
+  public TokenInterner() {
+    this(DEFAULT_CAPACITY, DEFAULT_MAX_LENGTH);
+  }
+
+  /**
+   * Creates an interner that holds up to the given number of tokens, rounded up to a power of two,
+   * and interns values of up to the given length.
+   */
+  public TokenInterner(int capacity, int maxLength) {
+    checkArgument(capacity > 0 && capacity <= 1 << 30, "capacity", "capacity is out of range.");
+    checkArgument(maxLength > 0, "maxLength", "maxLength must be positive.");
+    int size = Integer.highestOneBit(capacity);
+    if (size < capacity) {
+      size <<= 1;
+    }
+    tokens = new Token[size];
+    hashes = new int[size];
+    seen = new int[size];
+    mask = size - 1;
+    this.maxLength = maxLength;
+  }
+
+  /**
+   * Returns the canonical instance for the given token, which is the token itself if it is not
+   * interned. Canonical tokens are equal to the tokens they stand for, but do not know where they
+   * were read from.
+   */
+  public synchronized Token intern(Token token) {
+    checkNotNull(token, "token cannot be null");
+    CharSequence text;
+    int from;
+    int count;
+    if (token instanceof SpanToken) {
+      SpanToken span = (SpanToken) token;
+      text = span.document();
+      from = span.valueStart();
+      count = span.valueLength();
+    } else {
+      text = token.value();
+      from = 0;
+      count = text.length();
+    }
+    if (count > maxLength) {
+      bypassed++;
+      return token;
+    }
+    TokenType type = token.type();
+    int valueHash = 0;
+    for (int i = from; i < from + count; i++) {
+      valueHash = 31 * valueHash + text.charAt(i);
+    }
+    int hash = SimpleToken.hash(type, valueHash, token.length());
+    int slot = mix(hash) & mask;
+    for (int probe = 0; probe < PROBES; probe++) {
+      int index = (slot + probe) & mask;
+      Token candidate = tokens[index];
+      if (candidate == null) {
+        break;
+      }
+      if (hashes[index] == hash && matches(candidate, token, text, from, count)) {
+        hits++;
+        return candidate;
+      }
+    }
+    misses++;
+    if (seen[slot] != hash) {
+      // Only values that have been seen before are worth keeping.
+      seen[slot] = hash;
+      return token;
+    }
+    Token canonical =
+        token instanceof SimpleToken
+            ? token
+            : new SimpleToken(
+                type, text.subSequence(from, from + count).toString(), token.length());
+    int index = slot;
+    for (int probe = 0; probe < PROBES; probe++) {
+      if (tokens[(slot + probe) & mask] == null) {
+        index = (slot + probe) & mask;
+        break;
+      }
+    }
+    if (tokens[index] == null) {
+      size++;
+    } else {
+      retained -= OVERHEAD + tokens[index].value().length();
+    }
+    tokens[index] = canonical;
+    hashes[index] = hash;
+    retained += OVERHEAD + count;
+    return canonical;
+  }
+
+  private static boolean matches(
+      Token candidate, Token token, CharSequence text, int from, int count) {
+    if (candidate.length() != token.length() || !candidate.type().equals(token.type())) {
+      return false;
+    }
+    String value = candidate.value();
+    if (value.length() != count) {
+      return false;
+    }
+    for (int i = 0; i < count; i++) {
+      if (value.charAt(i) != text.charAt(from + i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Spreads the bits of the hash, so that the lower bits used for the slot depend on all of them.
+   */
+  private static int mix(int hash) {
+    hash *= 0x9E3779B9;
+    return hash ^ (hash >>> 16);
+  }
+
+  /** Returns the number of tokens in the table. */
+  public synchronized int size() {
+    return size;
+  }
+
+  /**
+   * Returns an estimate of the number of bytes taken by the tokens in the table, assuming
+   * compressed references and compact strings.
+   */
+  public synchronized long retainedSize() {
+    return retained;
+  }
+
+  /** Returns the number of tokens for which a canonical instance was found. */
+  public synchronized long hits() {
+    return hits;
+  }
+
+  /** Returns the number of tokens that were looked up, but for which there was no canonical one. */
+  public synchronized long misses() {
+    return misses;
+  }
+
+  /** Returns the number of tokens that were not looked up, since their values were too long. */
+  public synchronized long bypassed() {
+    return bypassed;
+  }
+
+  /** Returns the ratio of the tokens for which a canonical instance was found to all tokens. */
+  public synchronized double hitRate() {
+    long total = hits + misses + bypassed;
+    return total == 0 ? 0 : (double) hits / total;
+  }
+
+  /** Removes all tokens from the table, and resets the statistics. */
+  public synchronized void clear() {
+    Arrays.fill(tokens, null);
+    Arrays.fill(seen, 0);
+    size = 0;
+    retained = 0;
+    hits = 0;
+    misses = 0;
+    bypassed = 0;
+  }
+}
@@ -0,0 +1,153 @@
+package com.mmnaseri.utils.dareader.token.impl;
+
+import com.mmnaseri.utils.dareader.token.FrozenTokenTypeRegistry;
+import com.mmnaseri.utils.dareader.token.TokenType;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import static com.mmnaseri.utils.dareader.utils.Precondition.checkArgument;
+import static com.mmnaseri.utils.dareader.utils.Precondition.checkNotNull;
+
+/**
+ * A set of token types from a {@link FrozenTokenTypeRegistry}, stored as a bit set indexed by the
+ * ordinals of the types. Checking for membership is a single bit test, and iterating over the set
+ * yields the types in the order of their tags.
+ *
+ * <p>Only the token types in the registry can be added to the set. Token types from elsewhere are
+ * never contained in it.
+ */
+public final class TokenTypeSet extends AbstractSet<TokenType> {
+
+  private final FrozenTokenTypeRegistry registry;
+  private final long[] words;
+  private int size;
+
+  public TokenTypeSet(FrozenTokenTypeRegistry registry) {
+    this.registry = checkNotNull(registry, "registry cannot be null");
+    words = new long[(registry.size() + Long.SIZE - 1) / Long.SIZE];
+    size = 0;
+  }
+
+  /** Returns a set containing the given types, all of which must be in the registry. */
+  public static TokenTypeSet of(FrozenTokenTypeRegistry registry, TokenType... types) {
+    TokenTypeSet set = new TokenTypeSet(registry);
+    for (TokenType type : types) {
+      set.add(type);
+    }
+    return set;
+  }
+
+  /** Returns the registry whose token types this set holds. */
+  public FrozenTokenTypeRegistry registry() {
+    return registry;
+  }
+
+  /** Determines if the token type with the given ordinal is in the set. */
+  public boolean containsOrdinal(int ordinal) {
+    return ordinal >= 0
+        && ordinal < registry.size()
+        && (words[ordinal / Long.SIZE] & (1L << ordinal)) != 0;
+  }
+
+  /** Adds the token type with the given ordinal to the set. */
+  public boolean addOrdinal(int ordinal) {
+    checkArgument(
+        ordinal >= 0 && ordinal < registry.size(), "ordinal", "Invalid ordinal: %d", ordinal);
+    if (containsOrdinal(ordinal)) {
+      return false;
+    }
+    words[ordinal / Long.SIZE] |= 1L << ordinal;
+    size++;
+    return true;
+  }
+
+  @Override
+  public boolean contains(Object o) {
+    return o instanceof TokenType && containsOrdinal(registry.ordinal((TokenType) o));
+  }
+
+  @Override
+  public boolean add(TokenType tokenType) {
+    checkNotNull(tokenType, "Token type cannot be null");
+    int ordinal = registry.ordinal(tokenType);
+    checkArgument(ordinal >= 0, "tokenType", "Token type %s is not in the registry", tokenType);
+    return addOrdinal(ordinal);
+  }
+
+  @Override
+  public boolean remove(Object o) {
+    if (!contains(o)) {
+      return false;
+    }
+    int ordinal = registry.ordinal((TokenType) o);
+    words[ordinal / Long.SIZE] &= ~(1L << ordinal);
+    size--;
+    return true;
+  }
+
+  @Override
+  public void clear() {
+    for (int i = 0; i < words.length; i++) {
+      words[i] = 0;
+    }
+    size = 0;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public Iterator<TokenType> iterator() {
+    return new Iterator<TokenType>() {
+
+      private int next = nextOrdinal(0);
+      private int last = -1;
+
+      @Override
+      public boolean hasNext() {
+        return next >= 0;
+      }
+
+      @Override
+      public TokenType next() {
+        if (next < 0) {
+          throw new NoSuchElementException();
+        }
+        last = next;
+        next = nextOrdinal(next + 1);
+        return registry.type(last);
+      }
+
+      @Override
+      public void remove() {
+        if (last < 0) {
+          throw new IllegalStateException();
+        }
+        TokenTypeSet.this.remove(registry.type(last));
+        last = -1;
+      }
+    };
+  }
+
+  /** Returns the first ordinal in the set that is not less than the given one, or {@code -1}. */
+  private int nextOrdinal(int from) {
+    int index = from / Long.SIZE;
+    if (index >= words.length) {
+      return -1;
+    }
+    long word = words[index] & (-1L << from);
+    while (true) {
+      if (word != 0) {
+        return index * Long.SIZE + Long.numberOfTrailingZeros(word);
+      }
+      if (++index == words.length) {
+        return -1;
+      }
+      word = words[index];
+    }
+  }
+}
@@ -0,0 +1,162 @@
+package com.mmnaseri.utils.dareader.token.impl;
+
+import com.mmnaseri.utils.dareader.token.ProjectableTokenType;
+import com.mmnaseri.utils.dareader.token.Token;
+import com.mmnaseri.utils.dareader.token.TokenType;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+
+import static com.mmnaseri.utils.dareader.utils.Precondition.checkNotNull;
+import static com.mmnaseri.utils.dareader.utils.Precondition.checkState;
+
+/**
+ * Keeps the spans of the tokens a tokenizer has {@link
+ * com.mmnaseri.utils.dareader.token.TokenTypeRegistry#isSkipped(TokenType) skipped}, in the order
+ * in which they appear in the document, so that the document can still be projected back from the
+ * tokens that were returned. For each skipped token, only its type, start and length are kept, and
+ * its text is read from the document when it is asked for. Only for documents that are not held in
+ * memory is the text copied as the tokens are skipped.
+ *
+ * <p>Since a tokenizer can go back and skip the same tokens again, tokens that do not come after
+ * the ones already kept are ignored.
+ */
+public final class TriviaTable {
+
+  private static final int INITIAL_CAPACITY = 16;
+
+  @Nullable private final CharSequence document;
+  private TokenType[] types = new TokenType[INITIAL_CAPACITY];
+  private int[] starts = new int[INITIAL_CAPACITY];
+  private int[] lengths = new int[INITIAL_CAPACITY];
+  @Nullable private String[] values;
+  private int size;
+
+  /**
+   * Creates a table for the given document, or for a document that is not held in memory, in which
+   * case the values of the tokens have to be given as they are added.
+   */
+  public TriviaTable(@Nullable CharSequence document) {
+    this.document = document;
+    if (document == null) {
+      values = new String[INITIAL_CAPACITY];
+    }
+  }
+
+  /** Returns the number of skipped tokens in the table. */
+  public int size() {
+    return size;
+  }
+
+  /** Returns the type of the skipped token at the given index. */
+  public TokenType type(int index) {
+    checkIndex(index);
+    return types[index];
+  }
+
+  /** Returns the position in the document at which the skipped token at the given index starts. */
+  public int start(int index) {
+    checkIndex(index);
+    return starts[index];
+  }
+
+  /** Returns the length of the skipped token at the given index. */
+  public int length(int index) {
+    checkIndex(index);
+    return lengths[index];
+  }
+
+  /** Returns the text of the skipped token at the given index. */
+  public String value(int index) {
+    checkIndex(index);
+    if (document == null) {
+      return values[index];
+    }
+    return document.subSequence(starts[index], starts[index] + lengths[index]).toString();
+  }
+
+  /** Creates the skipped token at the given index. */
+  public Token token(int index) {
+    checkIndex(index);
+    if (document == null) {
+      return new SimpleToken(types[index], values[index], lengths[index]);
+    }
+    return new SpanToken(types[index], document, starts[index], lengths[index]);
+  }
+
+  /**
+   * Returns the index of the first skipped token that starts at or after the given position, which
+   * is {@link #size()} if there is none.
+   */
+  public int indexOf(int position) {
+    int index = Arrays.binarySearch(starts, 0, size, position);
+    return index >= 0 ? index : -index - 1;
+  }
+
+  /**
+   * Adds a token that has been skipped, unless it comes before the end of the last one, in which
+   * case it has been added already.
+   */
+  public void add(TokenType type, int start, int length, @Nullable String value) {
+    checkNotNull(type, "Type cannot be null");
+    checkState(document != null || value != null, "Tokens need a value or a document");
+    if (size > 0 && start < starts[size - 1] + lengths[size - 1]) {
+      return;
+    }
+    if (size == types.length) {
+      int capacity = size * 2;
+      types = Arrays.copyOf(types, capacity);
+      starts = Arrays.copyOf(starts, capacity);
+      lengths = Arrays.copyOf(lengths, capacity);
+      if (values != null) {
+        values = Arrays.copyOf(values, capacity);
+      }
+    }
+    types[size] = type;
+    starts[size] = start;
+    lengths[size] = length;
+    if (values != null) {
+      values[size] = value;
+    }
+    size++;
+  }
+
+  /**
+   * Projects the given tokens, which have been read one after the other starting at the given
+   * position, back into the text they were read from, putting back the skipped tokens in between.
+   * Tokens whose type is a {@link ProjectableTokenType} are projected by it, and the others are
+   * projected as their values.
+   */
+  public String project(Iterable<? extends Token> tokens, int from) {
+    checkNotNull(tokens, "tokens cannot be null");
+    StringBuilder builder = new StringBuilder();
+    int position = from;
+    int index = indexOf(from);
+    for (Token token : tokens) {
+      while (index < size && starts[index] == position) {
+        builder.append(project(token(index)));
+        position += lengths[index++];
+      }
+      builder.append(project(token));
+      position += token.length();
+    }
+    while (index < size && starts[index] == position) {
+      builder.append(project(token(index)));
+      position += lengths[index++];
+    }
+    return builder.toString();
+  }
+
+  private static String project(Token token) {
+    if (token.type() instanceof ProjectableTokenType) {
+      return ((ProjectableTokenType) token.type()).project(token);
+    }
+    return token.value();
+  }
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("index: " + index + ", size: " + size);
+    }
+  }
+}
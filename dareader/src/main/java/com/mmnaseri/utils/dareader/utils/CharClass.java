@@ -0,0 +1,115 @@
+package com.mmnaseri.utils.dareader.utils;
+
+import javax.annotation.Nullable;
+
+import static com.mmnaseri.utils.dareader.utils.Precondition.checkArgument;
+import static com.mmnaseri.utils.dareader.utils.Precondition.checkNotNull;
+
+/**
+ * An immutable set of characters, the way a character class such as {@code [a-z0-9]} would describe
+ * it in a regular expression. Membership of ASCII characters is looked up in a 128-bit table, while
+ * any other character is tested against an optional fallback predicate.
+ */
+public final class CharClass implements CharPredicate {
+
+  /** The characters matched by {@code \s} in a regular expression. */
+  public static final CharClass WHITESPACE = of(" \t\n\u000B\f\r");
+
+  /** The characters matched by {@code \d} in a regular expression. */
+  public static final CharClass DIGIT = range('0', '9');
+
+  /** The lowercase ASCII letters. */
+  public static final CharClass LOWERCASE = range('a', 'z');
+
+  /** The uppercase ASCII letters. */
+  public static final CharClass UPPERCASE = range('A', 'Z');
+
+  /** The characters matched by {@code \w} in a regular expression. */
+  public static final CharClass WORD = LOWERCASE.union(UPPERCASE).union(DIGIT).union(of("_"));
+
+  private final long low;
+  private final long high;
+  @Nullable private final CharPredicate wide;
+
+  private CharClass(long low, long high, @Nullable CharPredicate wide) {
+    this.low = low;
+    this.high = high;
+    this.wide = wide;
+  }
+
+  /** Returns a character class consisting of exactly the given characters. */
+  public static CharClass of(CharSequence characters) {
+    checkNotNull(characters, "characters cannot be null");
+    CharClass result = new CharClass(0, 0, null);
+    for (int i = 0; i < characters.length(); i++) {
+      char character = characters.charAt(i);
+      result = result.union(range(character, character));
+    }
+    return result;
+  }
+
+  /** Returns a character class consisting of all characters between the two, inclusive. */
+  public static CharClass range(char from, char to) {
+    checkArgument(from <= to, "range", "Invalid range [%s, %s]", from, to);
+    long low = 0;
+    long high = 0;
+    for (int character = from; character <= Math.min(to, 127); character++) {
+      if (character < 64) {
+        low |= 1L << character;
+      } else {
+        high |= 1L << (character - 64);
+      }
+    }
+    CharPredicate wide = null;
+    if (to >= 128) {
+      char start = (char) Math.max(from, 128);
+      wide = character -> character >= start && character <= to;
+    }
+    return new CharClass(low, high, wide);
+  }
+
+  /** Returns a character class that accepts any character accepted by the given predicate. */
+  public static CharClass of(CharPredicate predicate) {
+    checkNotNull(predicate, "predicate cannot be null");
+    if (predicate instanceof CharClass) {
+      return (CharClass) predicate;
+    }
+    long low = 0;
+    long high = 0;
+    for (char character = 0; character < 128; character++) {
+      if (predicate.test(character)) {
+        if (character < 64) {
+          low |= 1L << character;
+        } else {
+          high |= 1L << (character - 64);
+        }
+      }
+    }
+    return new CharClass(low, high, predicate);
+  }
+
+  /** Returns a character class that contains the characters from both classes. */
+  public CharClass union(CharClass other) {
+    checkNotNull(other, "other cannot be null");
+    CharPredicate wide;
+    if (this.wide == null) {
+      wide = other.wide;
+    } else if (other.wide == null) {
+      wide = this.wide;
+    } else {
+      wide = this.wide.or(other.wide);
+    }
+    return new CharClass(low | other.low, high | other.high, wide);
+  }
+
+  @Override
+  public boolean test(char character) {
+    if (character < 64) {
+      return (low & (1L << character)) != 0;
+    }
+    if (character < 128) {
+      return (high & (1L << character)) != 0;
+    }
+    return wide != null && wide.test(character);
+  }
+}
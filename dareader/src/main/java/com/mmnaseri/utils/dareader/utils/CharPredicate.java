@@ -0,0 +1,33 @@
+package com.mmnaseri.utils.dareader.utils;
+
+import static com.mmnaseri.utils.dareader.utils.Precondition.checkNotNull;
+
+/**
+ * A predicate on a single character. This exists so that characters can be tested without being
+ * boxed, which {@link java.util.function.Predicate} would require.
+ *
+ * @see CharClass
+ */
+@FunctionalInterface
+public interface CharPredicate {
+
+  /** Determines if the given character satisfies this predicate. */
+  boolean test(char character);
+
+  /** Returns a predicate that is satisfied by any character that satisfies either predicate. */
+  default CharPredicate or(CharPredicate other) {
+    checkNotNull(other, "other cannot be null");
+    return character -> test(character) || other.test(character);
+  }
+
+  /** Returns a predicate that is satisfied by any character that satisfies both predicates. */
+  default CharPredicate and(CharPredicate other) {
+    checkNotNull(other, "other cannot be null");
+    return character -> test(character) && other.test(character);
+  }
+
+  /** Returns a predicate that is satisfied by any character that does not satisfy this one. */
+  default CharPredicate negate() {
+    return character -> !test(character);
+  }
+}
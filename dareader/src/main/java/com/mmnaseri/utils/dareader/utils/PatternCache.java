@@ -0,0 +1,126 @@
+package com.mmnaseri.utils.dareader.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import static com.mmnaseri.utils.dareader.utils.Precondition.checkArgument;
+import static com.mmnaseri.utils.dareader.utils.Precondition.checkNotNull;
+
+/**
+ * A thread-safe, size-bounded cache of compiled patterns. All patterns are compiled with {@link
+ * Pattern#DOTALL} and {@link Pattern#MULTILINE} set, which is how the string overloads throughout
+ * this library interpret their input. Once the cache is full, the least recently used pattern is
+ * evicted.
+ *
+ * <p>The {@link #shared() shared} instance is used by the string overloads of {@link
+ * com.mmnaseri.utils.dareader.DocumentReader} and {@link TokenReaders}. Its capacity can be set
+ * through the {@value #CAPACITY_PROPERTY} system property, and it can be warmed up at startup
+ * through {@link #warmUp(Iterable)}.
+ */
+public class PatternCache {
+
+  /** The system property that determines the capacity of the shared cache. */
+  public static final String CAPACITY_PROPERTY = "dareader.patternCache.capacity";
+
+  /** The capacity of the shared cache if none is specified via {@link #CAPACITY_PROPERTY}. */
+  public static final int DEFAULT_CAPACITY = 256;
+
+  private static final PatternCache SHARED =
+      new PatternCache(Integer.getInteger(CAPACITY_PROPERTY, DEFAULT_CAPACITY));
+
+  private final int capacity;
+  private final Map<String, Pattern> patterns;
+  private long hits;
+  private long misses;
+  private long evictions;
+
+  public PatternCache(int capacity) {
+    checkArgument(capacity > 0, "capacity", "capacity must be positive");
+    this.capacity = capacity;
+    patterns =
+        new LinkedHashMap<String, Pattern>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, Pattern> eldest) {
+            if (size() > PatternCache.this.capacity) {
+              evictions++;
+              return true;
+            }
+            return false;
+          }
+        };
+  }
+
+  /** Returns the process-wide cache. */
+  public static PatternCache shared() {
+    return SHARED;
+  }
+
+  /**
+   * Returns the compiled version of the given pattern, compiling and caching it if it is not
+   * already known.
+   */
+  public Pattern compile(String pattern) {
+    checkNotNull(pattern, "pattern cannot be null");
+    synchronized (this) {
+      Pattern compiled = patterns.get(pattern);
+      if (compiled != null) {
+        hits++;
+        return compiled;
+      }
+      misses++;
+    }
+    // Compile outside of the lock so that a slow pattern does not block other threads.
+    Pattern compiled = Pattern.compile(pattern, Pattern.DOTALL | Pattern.MULTILINE);
+    synchronized (this) {
+      Pattern existing = patterns.putIfAbsent(pattern, compiled);
+      return existing == null ? compiled : existing;
+    }
+  }
+
+  /**
+   * Compiles all the given patterns and adds them to the cache without affecting the hit and miss
+   * counters. Returns the same instance for convenience.
+   */
+  public PatternCache warmUp(Iterable<String> patterns) {
+    checkNotNull(patterns, "patterns cannot be null");
+    for (String pattern : patterns) {
+      checkNotNull(pattern, "pattern cannot be null");
+      Pattern compiled = Pattern.compile(pattern, Pattern.DOTALL | Pattern.MULTILINE);
+      synchronized (this) {
+        this.patterns.putIfAbsent(pattern, compiled);
+      }
+    }
+    return this;
+  }
+
+  /** Removes all cached patterns. The counters are left intact. */
+  public synchronized void clear() {
+    patterns.clear();
+  }
+
+  /** The maximum number of patterns this cache will hold. */
+  public int capacity() {
+    return capacity;
+  }
+
+  /** The number of patterns currently held in the cache. */
+  public synchronized int size() {
+    return patterns.size();
+  }
+
+  /** The number of lookups that were served from the cache. */
+  public synchronized long hits() {
+    return hits;
+  }
+
+  /** The number of lookups that required the pattern to be compiled. */
+  public synchronized long misses() {
+    return misses;
+  }
+
+  /** The number of patterns removed from the cache to make room for new ones. */
+  public synchronized long evictions() {
+    return evictions;
+  }
+}
@@ -1,11 +1,13 @@
 package com.mmnaseri.utils.dareader.utils;
 
 import com.mmnaseri.utils.dareader.DocumentReader;
-import com.mmnaseri.utils.dareader.DocumentSnapshot;
+import com.mmnaseri.utils.dareader.regex.Patterns;
 import com.mmnaseri.utils.dareader.token.Token;
 import com.mmnaseri.utils.dareader.token.TokenReader;
 import com.mmnaseri.utils.dareader.token.TokenType;
 import com.mmnaseri.utils.dareader.token.impl.SimpleToken;
+import com.mmnaseri.utils.dareader.token.impl.SpanToken;
+import com.mmnaseri.utils.dareader.token.impl.TokenBuffer;
 
 import javax.annotation.Nullable;
 import java.util.regex.Pattern;
@@ -16,6 +18,7 @@ public class PatternTokenReader implements TokenReader {
   private final TokenType tokenType;
   private final Pattern pattern;
   private final int group;
+  @Nullable private final CharPredicate firstCharacters;
 
   PatternTokenReader(TokenType tokenType, Pattern pattern) {
     this(tokenType, pattern, 0);
@@ -25,17 +28,88 @@ public class PatternTokenReader implements TokenReader {
     this.pattern = pattern;
     this.group = group;
     this.tokenType = tokenType;
+    this.firstCharacters = Patterns.firstCharacters(pattern);
   }
 
+  /** Returns the pattern this reader matches. */
+  public Pattern pattern() {
+    return pattern;
+  }
+
+  /** Returns the group of the pattern that makes up the value of the tokens. */
+  public int group() {
+    return group;
+  }
+
+  /**
+   * Returns the characters that the tokens can start with, as determined by looking at the pattern,
+   * or {@code null} if the pattern is too complex to tell.
+   */
+  @Nullable
+  @Override
+  public CharPredicate firstCharacters() {
+    return firstCharacters;
+  }
+
+  /**
+   * Reads the token at the cursor. If the value of the token is the whole match, and the document
+   * is {@link DocumentReader#source() held in memory}, the token refers to the document rather than
+   * holding a copy of its value.
+   */
   @Nullable
   @Override
   public Token read(DocumentReader reader) {
-    DocumentSnapshot snapshot = reader.snapshot().create();
+    CharSequence source = group == 0 ? reader.source() : null;
+    if (source != null) {
+      int length = reader.match(pattern);
+      if (length < 0) {
+        return null;
+      }
+      if (length > 0) {
+        int start = reader.cursor();
+        reader.advance(length);
+        return new SpanToken(tokenType, source, start, length);
+      }
+    }
+    int start = reader.cursor();
     final String value = reader.read(pattern, group);
     if (value == null) {
-      reader.snapshot().restore(snapshot);
+      // The pattern might have matched without the group, in which case the cursor has moved.
+      if (reader.cursor() != start) {
+        reader.rewind(reader.cursor() - start);
+      }
       return null;
     }
-    return new SimpleToken(tokenType, value, snapshot.distance(reader));
+    return new SimpleToken(tokenType, value, reader.cursor() - start);
+  }
+
+  /** Moves past the match without copying any of it, if the value is the whole match. */
+  @Override
+  public int skip(DocumentReader reader) {
+    if (group != 0 || !reader.hasNext()) {
+      return TokenReader.super.skip(reader);
+    }
+    int length = Math.max(reader.match(pattern), 0);
+    reader.advance(length);
+    return length;
+  }
+
+  /** Reads the token into the buffer without copying its value, if the value is the whole match. */
+  @Override
+  public boolean read(DocumentReader reader, TokenBuffer buffer) {
+    if (group != 0) {
+      return TokenReader.super.read(reader, buffer);
+    }
+    int length = reader.match(pattern);
+    if (length < 0) {
+      return false;
+    }
+    if (length == 0) {
+      // Let the reader fail the same way it does when reading an empty token.
+      return TokenReader.super.read(reader, buffer);
+    }
+    buffer.add(tokenType, reader.cursor(), length, null);
+    reader.advance(length);
+    return true;
   }
 }
@@ -0,0 +1,86 @@
+package com.mmnaseri.utils.dareader.utils;
+
+import com.mmnaseri.utils.dareader.DocumentReader;
+
+import javax.annotation.Nullable;
+
+import static com.mmnaseri.utils.dareader.utils.Precondition.checkNotNull;
+
+/**
+ * Measures a piece of text in the document without consuming it. Scanners are a lightweight
+ * alternative to regular expressions for simple lexical rules, since they look at the characters of
+ * the document one at a time and do not allocate anything while doing so.
+ *
+ * @see Scanners
+ */
+@FunctionalInterface
+public interface Scanner {
+
+  /** The value returned by {@link #scan(DocumentReader, int)} when the text does not match. */
+  int NO_MATCH = -1;
+
+  /**
+   * Returns the number of characters that match, starting {@code offset} characters after the
+   * current {@link DocumentReader#cursor()}, or {@link #NO_MATCH} if the text there does not match.
+   * The cursor of the reader must not be moved.
+   */
+  int scan(DocumentReader reader, int offset);
+
+  /**
+   * Returns a scanner that matches the text matched by this scanner, immediately followed by the
+   * text matched by the other scanner.
+   */
+  default Scanner then(Scanner other) {
+    checkNotNull(other, "other cannot be null");
+    Scanner scanner =
+        (reader, offset) -> {
+          int first = scan(reader, offset);
+          if (first == NO_MATCH) {
+            return NO_MATCH;
+          }
+          int second = other.scan(reader, offset + first);
+          if (second == NO_MATCH) {
+            return NO_MATCH;
+          }
+          return first + second;
+        };
+    CharPredicate first = firstCharacters();
+    return first == null ? scanner : scanner.startingWith(first);
+  }
+
+  /** Returns a scanner that matches the text matched by this scanner, or nothing at all. */
+  default Scanner optional() {
+    return (reader, offset) -> Math.max(0, scan(reader, offset));
+  }
+
+  /**
+   * Returns the characters that the text matched by this scanner can start with, or {@code null} if
+   * that is not known. A scanner that declares its first characters never matches the empty string.
+   */
+  @Nullable
+  default CharPredicate firstCharacters() {
+    return null;
+  }
+
+  /**
+   * Returns a scanner that matches the same text as this one, and declares that the text starts
+   * with one of the given characters.
+   *
+   * @see #firstCharacters()
+   */
+  default Scanner startingWith(CharPredicate characters) {
+    checkNotNull(characters, "characters cannot be null");
+    Scanner delegate = this;
+    return new Scanner() {
+      @Override
+      public int scan(DocumentReader reader, int offset) {
+        return delegate.scan(reader, offset);
+      }
+
+      @Override
+      public CharPredicate firstCharacters() {
+        return characters;
+      }
+    };
+  }
+}
@@ -0,0 +1,84 @@
+package com.mmnaseri.utils.dareader.utils;
+
+import com.mmnaseri.utils.dareader.DocumentReader;
+import com.mmnaseri.utils.dareader.token.Token;
+import com.mmnaseri.utils.dareader.token.TokenReader;
+import com.mmnaseri.utils.dareader.token.TokenType;
+import com.mmnaseri.utils.dareader.token.impl.SimpleToken;
+import com.mmnaseri.utils.dareader.token.impl.SpanToken;
+import com.mmnaseri.utils.dareader.token.impl.TokenBuffer;
+
+import javax.annotation.Nullable;
+
+/**
+ * Token reader that measures its token with a {@link Scanner}. Since the scanner does not move the
+ * cursor, nothing needs to be restored when there is no match, and the only object created for a
+ * match is the token itself, which refers to the document rather than copying its value whenever
+ * the document is {@link DocumentReader#source() held in memory}.
+ */
+public class ScannerTokenReader implements TokenReader {
+
+  private final TokenType tokenType;
+  private final Scanner scanner;
+  @Nullable private final String value;
+
+  ScannerTokenReader(TokenType tokenType, Scanner scanner) {
+    this(tokenType, scanner, null);
+  }
+
+  /**
+   * Creates a reader whose tokens all have the given value, which saves copying it out of the
+   * document, e.g. for literals.
+   */
+  ScannerTokenReader(TokenType tokenType, Scanner scanner, @Nullable String value) {
+    this.tokenType = tokenType;
+    this.scanner = scanner;
+    this.value = value;
+  }
+
+  @Nullable
+  @Override
+  public Token read(DocumentReader reader) {
+    int length = scanner.scan(reader, 0);
+    if (length <= 0) {
+      return null;
+    }
+    int start = reader.cursor();
+    CharSequence source = reader.source();
+    Token token;
+    if (value != null) {
+      token = new SimpleToken(tokenType, value, length);
+    } else if (source != null) {
+      token = new SpanToken(tokenType, source, start, length);
+    } else {
+      token =
+          new SimpleToken(tokenType, reader.subSequence(start, start + length).toString(), length);
+    }
+    reader.advance(length);
+    return token;
+  }
+
+  @Override
+  public boolean read(DocumentReader reader, TokenBuffer buffer) {
+    int length = scanner.scan(reader, 0);
+    if (length <= 0) {
+      return false;
+    }
+    buffer.add(tokenType, reader.cursor(), length, value);
+    reader.advance(length);
+    return true;
+  }
+
+  @Override
+  public int skip(DocumentReader reader) {
+    int length = Math.max(scanner.scan(reader, 0), 0);
+    reader.advance(length);
+    return length;
+  }
+
+  @Nullable
+  @Override
+  public CharPredicate firstCharacters() {
+    return scanner.firstCharacters();
+  }
+}
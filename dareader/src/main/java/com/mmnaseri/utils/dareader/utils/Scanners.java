@@ -0,0 +1,53 @@
+package com.mmnaseri.utils.dareader.utils;
+
+import static com.mmnaseri.utils.dareader.utils.Precondition.checkArgument;
+import static com.mmnaseri.utils.dareader.utils.Precondition.checkNotNull;
+
+/** A container for the most common {@link Scanner}s. */
+public final class Scanners {
+
+  private Scanners() throws IllegalAccessException {
+    throw new IllegalAccessException("This type should not be instantiated.");
+  }
+
+  /** Returns a scanner that matches a single character that satisfies the given predicate. */
+  public static Scanner single(CharPredicate predicate) {
+    checkNotNull(predicate, "predicate cannot be null");
+    Scanner scanner =
+        (reader, offset) -> {
+          int character = reader.peek(offset);
+          return character >= 0 && predicate.test((char) character) ? 1 : Scanner.NO_MATCH;
+        };
+    return scanner.startingWith(predicate);
+  }
+
+  /**
+   * Returns a scanner that matches the longest run of one or more characters that satisfy the given
+   * predicate.
+   */
+  public static Scanner run(CharPredicate predicate) {
+    checkNotNull(predicate, "predicate cannot be null");
+    Scanner scanner =
+        (reader, offset) -> {
+          int length = reader.span(predicate, offset);
+          return length == 0 ? Scanner.NO_MATCH : length;
+        };
+    return scanner.startingWith(predicate);
+  }
+
+  /** Returns a scanner that matches exactly the given text. */
+  public static Scanner literal(String text) {
+    checkNotNull(text, "text cannot be null");
+    checkArgument(!text.isEmpty(), "text", "text cannot be empty");
+    Scanner scanner =
+        (reader, offset) -> {
+          for (int i = 0; i < text.length(); i++) {
+            if (reader.peek(offset + i) != text.charAt(i)) {
+              return Scanner.NO_MATCH;
+            }
+          }
+          return text.length();
+        };
+    return scanner.startingWith(CharClass.of(text.substring(0, 1)));
+  }
+}
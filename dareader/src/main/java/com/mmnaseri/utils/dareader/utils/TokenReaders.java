@@ -13,7 +13,7 @@ public final class TokenReaders {
   }
 
   public static TokenReader pattern(TokenType type, String pattern) {
-    return pattern(type, Pattern.compile(pattern, Pattern.DOTALL | Pattern.MULTILINE));
+    return pattern(type, PatternCache.shared().compile(pattern));
   }
 
   public static TokenReader pattern(TokenType type, Pattern pattern) {
@@ -21,10 +21,30 @@ public final class TokenReaders {
   }
 
   public static TokenReader pattern(TokenType type, String pattern, int group) {
-    return pattern(type, Pattern.compile(pattern, Pattern.DOTALL | Pattern.MULTILINE), group);
+    return pattern(type, PatternCache.shared().compile(pattern), group);
   }
 
   public static TokenReader pattern(TokenType type, Pattern pattern, int group) {
     return new PatternTokenReader(type, pattern, group);
   }
+
+  /**
+   * Returns a reader for tokens that consist of a run of one or more characters from the given
+   * class, such as {@code [a-z]+}, that does not go through the regular expression engine.
+   *
+   * @see CharClass
+   */
+  public static TokenReader charClass(TokenType type, CharPredicate characters) {
+    return scanner(type, Scanners.run(CharClass.of(characters)));
+  }
+
+  /** Returns a reader for tokens that consist of the exact given text. */
+  public static TokenReader literal(TokenType type, String text) {
+    return new ScannerTokenReader(type, Scanners.literal(text), text);
+  }
+
+  /** Returns a reader for tokens that are measured by the given scanner. */
+  public static TokenReader scanner(TokenType type, Scanner scanner) {
+    return new ScannerTokenReader(type, scanner);
+  }
 }
@@ -1,7 +1,12 @@
 package com.mmnaseri.utils.dareader;
 
 import com.mmnaseri.utils.dareader.error.DocumentReaderExceptions;
+import com.mmnaseri.utils.dareader.impl.ByteDocuments;
+import com.mmnaseri.utils.dareader.impl.FileDocuments;
+import com.mmnaseri.utils.dareader.impl.Marks;
+import com.mmnaseri.utils.dareader.regex.Patterns;
 import com.mmnaseri.utils.dareader.utils.Precondition;
+import com.mmnaseri.utils.dareader.utils.Scanners;
 import com.mmnaseri.utils.dareader.utils.TokenReaders;
 import org.testng.annotations.Test;
 
@@ -19,7 +24,15 @@ import static org.testng.Assert.expectThrows;
 public class UtilityClassTests {
 
   private static final List<Class<?>> UTILITY_CLASSES =
-      Arrays.asList(DocumentReaderExceptions.class, TokenReaders.class, Precondition.class);
+      Arrays.asList(
+          DocumentReaderExceptions.class,
+          TokenReaders.class,
+          Precondition.class,
+          FileDocuments.class,
+          ByteDocuments.class,
+          Marks.class,
+          Scanners.class,
+          Patterns.class);
 
   @Test
   public void testConstruction() throws Exception {
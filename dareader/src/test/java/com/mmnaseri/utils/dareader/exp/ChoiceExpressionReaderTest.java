@@ -0,0 +1,126 @@
+package com.mmnaseri.utils.dareader.exp;
+
+import com.mmnaseri.utils.dareader.DocumentTokenizer;
+import com.mmnaseri.utils.dareader.token.Token;
+import com.mmnaseri.utils.dareader.token.TokenType;
+import com.mmnaseri.utils.dareader.token.impl.CommonTokenTypes;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.mmnaseri.utils.dareader.token.impl.CommonTokenTypes.CONSTANT;
+import static com.mmnaseri.utils.dareader.token.impl.CommonTokenTypes.OPERATOR;
+import static com.mmnaseri.utils.dareader.token.impl.CommonTokenTypes.UNSIGNED_INT;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+/** Tests for {@link ExpressionReader#choice(ExpressionReader...)}. */
+public class ChoiceExpressionReaderTest {
+
+  private static DocumentTokenizer tokenizer(String document) {
+    return DocumentTokenizer.with(
+            CommonTokenTypes.registry().copy().skip(CommonTokenTypes.WHITESPACE).freeze())
+        .create(document);
+  }
+
+  /** Returns a reader for a single token of the given type, which counts its reads. */
+  private static ExpressionReader token(TokenType type, AtomicInteger reads) {
+    return tokenizer -> {
+      reads.incrementAndGet();
+      Token token = tokenizer.peek();
+      if (token == null || !token.type().equals(type)) {
+        return null;
+      }
+      return Expression.newBuilder(ExpressionType.OPTIONAL).addToken(tokenizer.next()).build();
+    };
+  }
+
+  @Test
+  public void readingTheSameExpressionsAsOrderedChoice() {
+    AtomicInteger reads = new AtomicInteger();
+    ExpressionReader integers = token(UNSIGNED_INT, reads).startingWith(UNSIGNED_INT);
+    ExpressionReader constants = token(CONSTANT, reads).startingWith(CONSTANT);
+    ExpressionReader operators = token(OPERATOR, reads).startingWith(OPERATOR);
+    ExpressionReader[] alternatives = {
+      integers.and(constants), integers.and(operators), constants.repeated(), operators
+    };
+    ExpressionReader ordered =
+        alternatives[0].or(alternatives[1]).or(alternatives[2]).or(alternatives[3]);
+    ExpressionReader predicted = ExpressionReader.choice(alternatives);
+    String[] documents = {"1 x", "1 +", "x y", "+", "1 1", ""};
+
+    for (String document : documents) {
+      DocumentTokenizer expected = tokenizer(document);
+      DocumentTokenizer actual = tokenizer(document);
+
+      Expression expression = predicted.read(actual);
+
+      assertThat(document, expression, is(ordered.read(expected)));
+      assertThat(document, actual.cursor(), is(expected.cursor()));
+      assertThat(document, predicted.compiled().read(tokenizer(document)), is(expression));
+    }
+  }
+
+  @Test
+  public void onlyTryingAlternativesThatCanStartWithTheNextToken() {
+    AtomicInteger integers = new AtomicInteger();
+    AtomicInteger constants = new AtomicInteger();
+    AtomicInteger operators = new AtomicInteger();
+    ExpressionReader reader =
+        ExpressionReader.choice(
+            token(UNSIGNED_INT, integers).startingWith(UNSIGNED_INT).times(2),
+            token(CONSTANT, constants).startingWith(CONSTANT).and(token(OPERATOR, operators)),
+            token(OPERATOR, operators).startingWith(OPERATOR).then(expression -> expression));
+
+    assertThat(reader.read(tokenizer("+")), is(notNullValue()));
+    assertThat(integers.get(), is(0));
+    assertThat(constants.get(), is(0));
+    assertThat(operators.get(), is(1));
+
+    assertThat(reader.read(tokenizer("1")), is(nullValue()));
+    assertThat(integers.get(), is(2));
+    assertThat(constants.get(), is(0));
+    assertThat(operators.get(), is(1));
+  }
+
+  @Test
+  public void alwaysTryingAlternativesThatCanStartWithAnything() {
+    AtomicInteger reads = new AtomicInteger();
+    AtomicInteger unknown = new AtomicInteger();
+    ExpressionReader reader =
+        ExpressionReader.choice(
+            token(CONSTANT, reads).startingWith(CONSTANT),
+            token(OPERATOR, unknown).optional(),
+            token(UNSIGNED_INT, reads).startingWith(UNSIGNED_INT));
+
+    Expression expression = reader.read(tokenizer("1"));
+
+    // The optional alternative comes first, and matches without reading anything.
+    assertThat(expression.type(), is(ExpressionType.OPTIONAL));
+    assertThat(expression.children().isEmpty(), is(true));
+    assertThat(unknown.get(), is(1));
+    assertThat(reads.get(), is(0));
+  }
+
+  @Test
+  public void predictingRecursiveRules() {
+    AtomicInteger reads = new AtomicInteger();
+    ExpressionRule list = ExpressionReader.rule("list");
+    ExpressionReader constant = token(CONSTANT, reads).startingWith(CONSTANT);
+    list.define(constant.and(token(OPERATOR, reads).and(list).optional()));
+    ExpressionReader reader =
+        ExpressionReader.choice(token(UNSIGNED_INT, reads).startingWith(UNSIGNED_INT), list);
+
+    DocumentTokenizer tokenizer = tokenizer("x + y");
+    assertThat(reader.read(tokenizer), is(notNullValue()));
+    assertThat(tokenizer.hasNext(), is(false));
+    assertThat(reads.get(), is(4));
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void choosingBetweenNothing() {
+    ExpressionReader.choice();
+  }
+}
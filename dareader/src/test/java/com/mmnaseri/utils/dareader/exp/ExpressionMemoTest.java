@@ -0,0 +1,210 @@
+package com.mmnaseri.utils.dareader.exp;
+
+import com.mmnaseri.utils.dareader.DocumentSnapshot;
+import com.mmnaseri.utils.dareader.DocumentTokenizer;
+import com.mmnaseri.utils.dareader.token.Token;
+import com.mmnaseri.utils.dareader.token.impl.CommonTokenTypes;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+/** Tests for {@link ExpressionMemo}. */
+public class ExpressionMemoTest {
+
+  private static DocumentTokenizer tokenizer(String document) {
+    return DocumentTokenizer.with(
+            CommonTokenTypes.registry().copy().skip(CommonTokenTypes.WHITESPACE).freeze())
+        .create(document);
+  }
+
+  /** Returns a reader for a single token with the given value, which counts its reads. */
+  private static ExpressionReader token(String value, AtomicInteger reads) {
+    return tokenizer -> {
+      reads.incrementAndGet();
+      long mark = tokenizer.mark();
+      try {
+        Token token = tokenizer.next();
+        if (token == null || !token.value().equals(value)) {
+          tokenizer.reset(mark);
+          return null;
+        }
+        return Expression.newBuilder(ExpressionType.OPTIONAL).addToken(token).build();
+      } finally {
+        tokenizer.release(mark);
+      }
+    };
+  }
+
+  /**
+   * Returns a grammar that nests alternatives sharing a prefix to the given depth, which takes
+   * exponential time to read unless the prefixes are memoized.
+   */
+  private static ExpressionReader nested(int depth, AtomicInteger reads, boolean memoized) {
+    ExpressionReader reader = token("x", reads);
+    for (int i = 0; i < depth; i++) {
+      if (memoized) {
+        reader = reader.memoized();
+      }
+      reader = reader.and(token("y", reads)).or(reader.and(token("z", reads)));
+    }
+    return reader;
+  }
+
+  private static String document(int depth) {
+    StringBuilder builder = new StringBuilder("x");
+    for (int i = 0; i < depth; i++) {
+      builder.append(" z");
+    }
+    return builder.toString();
+  }
+
+  @Test
+  public void readingNestedAlternativesInLinearTime() {
+    AtomicInteger plain = new AtomicInteger();
+    AtomicInteger memoized = new AtomicInteger();
+
+    Expression expected = nested(12, plain, false).read(tokenizer(document(12)));
+    DocumentTokenizer tokenizer = tokenizer(document(12));
+    Expression expression = nested(12, memoized, true).read(tokenizer);
+
+    assertThat(expression, is(notNullValue()));
+    assertThat(expression, is(expected));
+    assertThat(tokenizer.hasNext(), is(false));
+    assertThat(plain.get(), is(greaterThan(1 << 12)));
+    assertThat(memoized.get(), is(lessThan(12 * 4)));
+  }
+
+  @Test
+  public void movingToWhereTheReaderStopped() {
+    AtomicInteger reads = new AtomicInteger();
+    ExpressionReader reader = token("x", reads).and(token("y", reads)).memoized();
+    ExpressionReader grammar = reader.and(token("w", reads)).or(reader.and(token("y", reads)));
+    DocumentTokenizer tokenizer = tokenizer("x y y");
+
+    Expression expression = grammar.read(tokenizer);
+
+    assertThat(expression, is(notNullValue()));
+    assertThat(expression.tokens().size() + expression.children().size(), is(3));
+    assertThat(tokenizer.hasNext(), is(false));
+    // The second alternative got x and y out of the memo, instead of reading them again.
+    assertThat(reads.get(), is(4));
+  }
+
+  @Test
+  public void rememberingFailures() {
+    AtomicInteger reads = new AtomicInteger();
+    ExpressionMemo memo = new ExpressionMemo();
+    ExpressionReader reader = token("y", reads).memoized(memo);
+    DocumentTokenizer tokenizer = tokenizer("x y");
+
+    assertThat(reader.read(tokenizer), is(nullValue()));
+    assertThat(reader.read(tokenizer), is(nullValue()));
+
+    assertThat(tokenizer.cursor(), is(0));
+    assertThat(reads.get(), is(1));
+    assertThat(memo.hits(), is(1L));
+    assertThat(memo.misses(), is(1L));
+  }
+
+  @Test
+  public void forgettingResultsOfOtherTokenizers() {
+    AtomicInteger reads = new AtomicInteger();
+    ExpressionMemo memo = new ExpressionMemo();
+    ExpressionReader reader = token("x", reads).memoized(memo);
+
+    Expression first = reader.read(tokenizer("x"));
+    Expression second = reader.read(tokenizer("x"));
+
+    assertThat(second, is(first));
+    assertThat(reads.get(), is(2));
+    assertThat(memo.size(), is(1));
+  }
+
+  @Test
+  public void clearingTheMemoForEachSession() {
+    AtomicInteger reads = new AtomicInteger();
+    ExpressionMemo memo = new ExpressionMemo();
+    ExpressionReader reader = token("x", reads).memoized(memo);
+    ExpressionReader grammar = memo.session(reader.and(token("y", reads)).or(reader));
+    DocumentTokenizer tokenizer = tokenizer("x");
+
+    Expression expression = grammar.read(tokenizer);
+
+    assertThat(expression, is(notNullValue()));
+    assertThat(memo.hits(), is(1L));
+    assertThat(memo.size(), is(0));
+  }
+
+  @Test
+  public void evictingResultsOnceFull() {
+    AtomicInteger reads = new AtomicInteger();
+    ExpressionMemo memo = new ExpressionMemo(8);
+    ExpressionReader item = token("x", reads).memoized(memo);
+    ExpressionReader reader = item.and(token("y", reads)).or(item).repeated();
+    StringBuilder document = new StringBuilder();
+    for (int i = 0; i < 100; i++) {
+      document.append("x ");
+    }
+    DocumentTokenizer tokenizer = tokenizer(document.toString());
+
+    Expression expression = reader.read(tokenizer);
+
+    assertThat(expression.children().size(), is(100));
+    assertThat(tokenizer.hasNext(), is(false));
+    assertThat(memo.size(), is(lessThanOrEqualTo(memo.capacity())));
+    assertThat(memo.evictions(), is(greaterThan(0L)));
+  }
+
+  @Test
+  public void droppingResultsFromBeforeTheCut() {
+    AtomicInteger reads = new AtomicInteger();
+    ExpressionMemo memo = new ExpressionMemo(16);
+    ExpressionMemo uncut = new ExpressionMemo(16);
+    StringBuilder document = new StringBuilder();
+    for (int i = 0; i < 1000; i++) {
+      document.append("x y ");
+    }
+    DocumentTokenizer tokenizer = tokenizer(document.toString());
+
+    Expression expression =
+        token("x", reads)
+            .memoized(memo)
+            .cut()
+            .and(token("y", reads).memoized(memo))
+            .repeated()
+            .read(tokenizer);
+    token("x", reads)
+        .memoized(uncut)
+        .and(token("y", reads).memoized(uncut))
+        .repeated()
+        .read(tokenizer(document.toString()));
+
+    assertThat(expression.children().size(), is(1000));
+    assertThat(tokenizer.hasNext(), is(false));
+    assertThat(memo.evictions(), is(0L));
+    assertThat(uncut.evictions(), is(greaterThan(0L)));
+  }
+
+  @Test
+  public void returningTheSameExpression() {
+    AtomicInteger reads = new AtomicInteger();
+    ExpressionReader reader = token("x", reads).memoized();
+    DocumentTokenizer tokenizer = tokenizer("x");
+
+    DocumentSnapshot snapshot = tokenizer.snapshot().create();
+    Expression first = reader.read(tokenizer);
+    snapshot.apply();
+
+    assertThat(reader.read(tokenizer), is(sameInstance(first)));
+    assertThat(tokenizer.hasNext(), is(false));
+  }
+}
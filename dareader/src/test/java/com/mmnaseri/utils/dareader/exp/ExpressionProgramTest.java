@@ -0,0 +1,146 @@
+package com.mmnaseri.utils.dareader.exp;
+
+import com.mmnaseri.utils.dareader.DocumentTokenizer;
+import com.mmnaseri.utils.dareader.error.DocumentReaderException;
+import com.mmnaseri.utils.dareader.token.Token;
+import com.mmnaseri.utils.dareader.token.impl.CommonTokenTypes;
+import org.testng.annotations.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.testng.Assert.expectThrows;
+
+/** Tests for {@link ExpressionProgram}. */
+public class ExpressionProgramTest {
+
+  private static final ExpressionType NESTED = ExpressionType.of(1, "NESTED");
+  private static final ExpressionType MISSING = ExpressionType.of(2, "MISSING");
+
+  private static DocumentTokenizer tokenizer(String document) {
+    return DocumentTokenizer.with(
+            CommonTokenTypes.registry().copy().skip(CommonTokenTypes.WHITESPACE).freeze())
+        .create(document);
+  }
+
+  /** Returns a reader for a single token with the given value. */
+  private static ExpressionReader token(String value) {
+    return tokenizer -> {
+      Token token = tokenizer.peek();
+      if (token == null || !token.value().equals(value)) {
+        return null;
+      }
+      return Expression.newBuilder(ExpressionType.OPTIONAL).addToken(tokenizer.next()).build();
+    };
+  }
+
+  /** Returns a rule that reads {@code x}, preceded by any number of {@code -}. */
+  private static ExpressionRule nested() {
+    ExpressionRule rule = ExpressionReader.rule("nested");
+    return rule.define(
+        token("-")
+            .and(rule)
+            .then(
+                expression -> Expression.newBuilder(NESTED).children(expression.children()).build())
+            .or(token("x")));
+  }
+
+  @Test
+  public void readingTheSameExpressionsAsTheGrammar() {
+    ExpressionReader grammar =
+        token("a")
+            .and(token("b").optional())
+            .and(token("c").or(token("d").times(2)))
+            .and(token("e").repeated())
+            .and(token("f").negate(MISSING))
+            .and(token("g").atLeastOnce().or(token("h").times(0)));
+    ExpressionProgram program = grammar.compiled();
+    String[] documents = {
+      "a c", "a b c", "a d d e e g", "a d e", "a b d d e e e g g", "a c f", "b", "a c e e h", ""
+    };
+
+    for (String document : documents) {
+      DocumentTokenizer expected = tokenizer(document);
+      DocumentTokenizer actual = tokenizer(document);
+
+      Expression expression = program.read(actual);
+
+      assertThat(document, expression, is(grammar.read(expected)));
+      assertThat(document, actual.cursor(), is(expected.cursor()));
+    }
+  }
+
+  @Test
+  public void readingNothingWithoutMovingTheCursor() {
+    DocumentTokenizer tokenizer = tokenizer("a b d");
+
+    Expression expression = token("a").and(token("b")).and(token("c")).compiled().read(tokenizer);
+
+    assertThat(expression, is(nullValue()));
+    assertThat(tokenizer.cursor(), is(0));
+  }
+
+  @Test
+  public void readingRecursiveRules() {
+    DocumentTokenizer tokenizer = tokenizer("- - x");
+
+    Expression expression = nested().compiled().read(tokenizer);
+
+    assertThat(expression, is(nested().read(tokenizer("- - x"))));
+    assertThat(tokenizer.hasNext(), is(false));
+  }
+
+  @Test
+  public void readingExpressionsNestedDeeperThanTheStack() {
+    int depth = 100_000;
+    StringBuilder document = new StringBuilder();
+    for (int i = 0; i < depth; i++) {
+      document.append("- ");
+    }
+    document.append("x");
+    DocumentTokenizer tokenizer = tokenizer(document.toString());
+
+    Expression expression = nested().compiled().read(tokenizer);
+
+    assertThat(expression, is(notNullValue()));
+    assertThat(tokenizer.hasNext(), is(false));
+    int levels = 0;
+    while (expression.type().equals(NESTED)) {
+      expression = expression.children(1);
+      levels++;
+    }
+    assertThat(levels, is(depth));
+    assertThat(expression.tokens(0).value(), is("x"));
+  }
+
+  @Test
+  public void compilingProgramsOnlyOnce() {
+    ExpressionProgram program = token("a").or(token("b")).compiled();
+
+    assertThat(program.compiled(), is(program));
+    assertThat(program.size(), is(5));
+  }
+
+  @Test
+  public void failingPastCuts() {
+    ExpressionReader grammar =
+        token("a").cut().and(token("b")).or(token("a").and(token("c"))).repeated();
+    ExpressionProgram program = grammar.compiled();
+
+    assertThat(program.read(tokenizer("a b a b")), is(grammar.read(tokenizer("a b a b"))));
+    DocumentTokenizer tokenizer = tokenizer("a b a c");
+    expectThrows(DocumentReaderException.class, () -> program.read(tokenizer));
+    assertThat(tokenizer.floor(), is(5));
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void compilingUndefinedRules() {
+    token("a").and(ExpressionReader.rule("undefined")).compiled();
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void definingRulesTwice() {
+    nested().define(token("x"));
+  }
+}
@@ -2,6 +2,7 @@ package com.mmnaseri.utils.dareader.exp;
 
 import com.mmnaseri.utils.dareader.DocumentSnapshot;
 import com.mmnaseri.utils.dareader.DocumentTokenizer;
+import com.mmnaseri.utils.dareader.error.DocumentReaderException;
 import com.mmnaseri.utils.dareader.impl.SimpleDocumentTokenizer;
 import com.mmnaseri.utils.dareader.token.Token;
 import com.mmnaseri.utils.dareader.token.TokenReader;
@@ -22,6 +23,7 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.hamcrest.Matchers.nullValue;
+import static org.testng.Assert.expectThrows;
 
 /** Tests for {@link ExpressionReader}. */
 public class ExpressionReaderTest {
@@ -178,6 +180,31 @@ public class ExpressionReaderTest {
     checkNotMatch(evenReader.atLeastOnce(), "xacebb");
   }
 
+  @Test
+  public void testCutMatching() {
+    ExpressionReader reader = evenReader.cut().and(evenReader).or(evenReader.and(oddReader));
+
+    assertThat(
+        reader.read(tokenizer("ac")),
+        is(
+            Expression.compose(
+                StatTokens.STATIC_TOKEN_A.expression(), StatTokens.STATIC_TOKEN_C.expression())));
+    // Failing before the cut still tries the other alternatives.
+    assertThat(
+        oddReader.cut().or(evenReader).read(tokenizer("a")),
+        is(StatTokens.STATIC_TOKEN_A.expression()));
+  }
+
+  @Test
+  public void testCutNotMatching() {
+    ExpressionReader reader = evenReader.cut().and(evenReader).or(evenReader.and(oddReader));
+    DocumentTokenizer tokenizer = tokenizer("ab");
+
+    // Once past the cut, the other alternative is never tried.
+    expectThrows(DocumentReaderException.class, () -> reader.read(tokenizer));
+    assertThat(tokenizer.floor(), is(1));
+  }
+
   private void checkNotMatch(ExpressionReader reader, String document) {
     DocumentTokenizer tokenizer = tokenizer(document);
     int cursor = tokenizer.cursor();
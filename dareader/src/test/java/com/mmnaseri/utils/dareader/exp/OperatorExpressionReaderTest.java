@@ -0,0 +1,128 @@
+package com.mmnaseri.utils.dareader.exp;
+
+import com.mmnaseri.utils.dareader.DocumentTokenizer;
+import com.mmnaseri.utils.dareader.token.Token;
+import com.mmnaseri.utils.dareader.token.impl.CommonTokenTypes;
+import org.testng.annotations.Test;
+
+import static com.mmnaseri.utils.dareader.exp.OperatorTable.Associativity.RIGHT;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+/** Tests for {@link ExpressionReader#operators(ExpressionReader, OperatorTable)}. */
+public class OperatorExpressionReaderTest {
+
+  private static final ExpressionType OPERAND = ExpressionType.of(1, "OPERAND");
+
+  private static final ExpressionReader OPERANDS =
+      tokenizer -> {
+        Token token = tokenizer.peek();
+        if (token == null
+            || token.type() != CommonTokenTypes.UNSIGNED_INT
+                && token.type() != CommonTokenTypes.CONSTANT) {
+          return null;
+        }
+        return Expression.newBuilder(OPERAND).addToken(tokenizer.next()).build();
+      };
+
+  private static DocumentTokenizer tokenizer(String document) {
+    return DocumentTokenizer.with(
+            CommonTokenTypes.registry().copy().skip(CommonTokenTypes.WHITESPACE).freeze())
+        .create(document);
+  }
+
+  private static OperatorTable arithmetic() {
+    return new OperatorTable().infix("+", 1).infix("-", 1).infix("*", 2).infix("/", 2);
+  }
+
+  /** Renders the given expression as an s-expression. */
+  private static String render(Expression expression) {
+    if (expression.type().equals(OPERAND)) {
+      return expression.tokens(0).value();
+    }
+    StringBuilder builder = new StringBuilder("(").append(expression.tokens(0).value());
+    if (expression.type().equals(ExpressionType.POSTFIX)) {
+      builder.append("post");
+    }
+    for (Expression child : expression.children()) {
+      builder.append(' ').append(render(child));
+    }
+    return builder.append(')').toString();
+  }
+
+  private static String read(OperatorTable table, String document) {
+    Expression expression = ExpressionReader.operators(OPERANDS, table).read(tokenizer(document));
+    assertThat(expression, is(notNullValue()));
+    return render(expression);
+  }
+
+  @Test
+  public void readingALoneOperand() {
+    assertThat(read(arithmetic(), "x"), is("x"));
+  }
+
+  @Test
+  public void applyingPrecedenceAndLeftAssociativity() {
+    assertThat(read(arithmetic(), "1 + 2 * 3 - 4"), is("(- (+ 1 (* 2 3)) 4)"));
+    assertThat(read(arithmetic(), "a / b / c * d"), is("(* (/ (/ a b) c) d)"));
+  }
+
+  @Test
+  public void applyingRightAssociativity() {
+    OperatorTable table = arithmetic().infix("/", 3, RIGHT);
+
+    assertThat(read(table, "a / b / c + d"), is("(+ (/ a (/ b c)) d)"));
+  }
+
+  @Test
+  public void applyingPrefixAndPostfixOperators() {
+    OperatorTable table = new OperatorTable().infix("+", 1).prefix("-", 2).postfix("*", 3);
+
+    assertThat(read(table, "- a * + - - b"), is("(+ (- (*post a)) (- (- b)))"));
+    assertThat(read(table, "a * * + b"), is("(+ (*post (*post a)) b)"));
+  }
+
+  @Test
+  public void stoppingAtTokensThatAreNotOperators() {
+    DocumentTokenizer tokenizer = tokenizer("a + b c");
+
+    Expression expression = ExpressionReader.operators(OPERANDS, arithmetic()).read(tokenizer);
+
+    assertThat(render(expression), is("(+ a b)"));
+    assertThat(tokenizer.peek().value(), is("c"));
+  }
+
+  @Test
+  public void readingNothingForDanglingOperators() {
+    DocumentTokenizer tokenizer = tokenizer("a + b *");
+
+    Expression expression = ExpressionReader.operators(OPERANDS, arithmetic()).read(tokenizer);
+
+    assertThat(expression, is(nullValue()));
+    assertThat(tokenizer.cursor(), is(0));
+  }
+
+  @Test
+  public void readingLongExpressions() {
+    StringBuilder document = new StringBuilder("0");
+    for (int i = 1; i < 10_000; i++) {
+      document.append(i % 2 == 0 ? " + " : " * ").append(i);
+    }
+    DocumentTokenizer tokenizer = tokenizer(document.toString());
+
+    Expression expression = ExpressionReader.operators(OPERANDS, arithmetic()).read(tokenizer);
+
+    assertThat(tokenizer.hasNext(), is(false));
+    int additions = 0;
+    while (expression.type().equals(ExpressionType.BINARY)
+        && expression.tokens(0).value().equals("+")) {
+      assertThat(render(expression.children(1)), is(notNullValue()));
+      expression = expression.children(0);
+      additions++;
+    }
+    assertThat(additions, is(4_999));
+    assertThat(render(expression), is("(* 0 1)"));
+  }
+}
@@ -0,0 +1,147 @@
+package com.mmnaseri.utils.dareader.impl;
+
+import com.mmnaseri.utils.dareader.DocumentReader;
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+
+/** Tests for {@link ByteDocuments}. */
+public class ByteDocumentsTest {
+
+  private static ByteBuffer direct(String text) {
+    byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+    ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+    buffer.put(bytes).flip();
+    return buffer;
+  }
+
+  @Test
+  public void detectingAscii() {
+    assertThat(ByteDocuments.isAscii(ByteBuffer.wrap(new byte[0])), is(true));
+    assertThat(
+        ByteDocuments.isAscii(ByteBuffer.wrap("hello, world!".getBytes(StandardCharsets.UTF_8))),
+        is(true));
+    assertThat(
+        ByteDocuments.isAscii(
+            ByteBuffer.wrap("hello, w\u00f6rld!".getBytes(StandardCharsets.UTF_8))),
+        is(false));
+    assertThat(ByteDocuments.isAscii(direct("0123456789abcdef\u00e9")), is(false));
+  }
+
+  @Test
+  public void viewingAscii() {
+    CharSequence heap =
+        ByteDocuments.view(
+            ByteBuffer.wrap("abc\ndef".getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8);
+    CharSequence offHeap = ByteDocuments.view(direct("abc\ndef"), StandardCharsets.US_ASCII);
+
+    for (CharSequence sequence : new CharSequence[] {heap, offHeap}) {
+      assertThat(sequence, is(instanceOf(Latin1CharSequence.class)));
+      assertThat(sequence.length(), is(7));
+      assertThat(sequence.charAt(3), is('\n'));
+      assertThat(sequence.toString(), is("abc\ndef"));
+      assertThat(sequence.subSequence(4, 7).toString(), is("def"));
+      assertThat(sequence.subSequence(4, 7).subSequence(1, 2).toString(), is("e"));
+    }
+  }
+
+  @Test
+  public void viewingArraySlices() {
+    ByteBuffer buffer = ByteBuffer.wrap("xxabcxx".getBytes(StandardCharsets.UTF_8), 2, 3).slice();
+
+    CharSequence sequence = ByteDocuments.view(buffer, StandardCharsets.UTF_8);
+
+    assertThat(sequence.toString(), is("abc"));
+    assertThat(sequence.charAt(0), is('a'));
+  }
+
+  @Test
+  public void fallingBackForNonAscii() {
+    CharSequence sequence = ByteDocuments.view(direct("d\u00e9j\u00e0 vu"), StandardCharsets.UTF_8);
+
+    assertThat(sequence, is(instanceOf(Utf8CharSequence.class)));
+    assertThat(sequence.toString(), is("d\u00e9j\u00e0 vu"));
+  }
+
+  @Test
+  public void readingNonAsciiFromSeveralThreads() throws Exception {
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; builder.length() < 1 << 20; i++) {
+      builder.append("l\u00ednea ").append(i).append(" \u20ac\n");
+    }
+    String text = builder.toString();
+    CharSequence sequence = ByteDocuments.view(direct(text), StandardCharsets.UTF_8);
+    int threads = 4;
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<Integer>> mismatches = new ArrayList<>();
+      for (int t = 0; t < threads; t++) {
+        int from = t * text.length() / threads;
+        int to = (t + 1) * text.length() / threads;
+        mismatches.add(
+            executor.submit(
+                () -> {
+                  int count = 0;
+                  for (int round = 0; round < 4; round++) {
+                    for (int i = from; i < to; i++) {
+                      if (sequence.charAt(i) != text.charAt(i)) {
+                        count++;
+                      }
+                    }
+                  }
+                  return count;
+                }));
+      }
+
+      for (Future<Integer> future : mismatches) {
+        assertThat(future.get(), is(0));
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void findingLineBreaks() {
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < 100; i++) {
+      builder.append(i % 3 == 0 ? "\n" : "ab").append(i % 10 == 0 ? "\n\n" : "c");
+    }
+    String text = builder.toString();
+    Latin1CharSequence sequence =
+        (Latin1CharSequence) ByteDocuments.view(direct(text), StandardCharsets.UTF_8);
+
+    int from = 0;
+    while (true) {
+      int expected = text.indexOf('\n', from);
+      int actual = sequence.nextLineBreak(from, text.length());
+      assertThat(actual, is(expected));
+      if (actual < 0) {
+        break;
+      }
+      from = actual + 1;
+    }
+  }
+
+  @Test
+  public void readingBytes() {
+    DocumentReader reader = DocumentReader.of("abc 123\nxyz".getBytes(StandardCharsets.UTF_8));
+
+    assertThat(reader.read("[a-z]+"), is("abc"));
+    assertThat(reader.read("\\s+(\\d+)\\s+", 1), is("123"));
+    assertThat(reader.line(), is(2));
+    assertThat(reader.offset(), is(1));
+    assertThat(reader.read(".+"), is("xyz"));
+    assertThat(reader.hasNext(), is(false));
+  }
+}
@@ -0,0 +1,146 @@
+package com.mmnaseri.utils.dareader.impl;
+
+import com.mmnaseri.utils.dareader.DocumentTokenizer;
+import com.mmnaseri.utils.dareader.error.DocumentReaderException;
+import com.mmnaseri.utils.dareader.token.Token;
+import com.mmnaseri.utils.dareader.token.TokenType;
+import com.mmnaseri.utils.dareader.token.TokenTypeRegistry;
+import com.mmnaseri.utils.dareader.token.impl.CommonTokenTypes;
+import com.mmnaseri.utils.dareader.token.impl.SimpleTokenTypeRegistry;
+import com.mmnaseri.utils.dareader.utils.CharClass;
+import com.mmnaseri.utils.dareader.utils.TokenReaders;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.Spliterator;
+
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.testng.Assert.expectThrows;
+
+/** Tests for {@link ChunkedTokenSpliterator}. */
+public class ChunkedTokenSpliteratorTest {
+
+  /** Reads a line break as a token whose value is the line and offset it was found at. */
+  private static final TokenType NEWLINE = () -> 0;
+
+  private static final TokenType ACCENTED = () -> 2;
+
+  private static TokenTypeRegistry registry() {
+    TokenTypeRegistry registry = new SimpleTokenTypeRegistry();
+    registry.add(
+        NEWLINE,
+        reader -> {
+          if (reader.peek(0) != '\n') {
+            return null;
+          }
+          String value = reader.line() + ":" + reader.offset();
+          reader.advance(1);
+          return Token.create(NEWLINE, value);
+        });
+    registry.add(CommonTokenTypes.WHITESPACE, TokenReaders.charClass(() -> 1, CharClass.of(" ")));
+    registry.add(ACCENTED, TokenReaders.charClass(ACCENTED, CharClass.range('\u00c0', '\u017f')));
+    for (CommonTokenTypes type : CommonTokenTypes.values()) {
+      if (type != CommonTokenTypes.WHITESPACE) {
+        registry.add(type, CommonTokenTypes.registry().reader(type));
+      }
+    }
+    return registry.boundaries(CharClass.of("\n"));
+  }
+
+  private static String document(int lines) {
+    return document(lines, "+-*/");
+  }
+
+  private static String document(int lines, String operators) {
+    Random random = new Random(0);
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < lines; i++) {
+      int tokens = random.nextInt(20);
+      for (int j = 0; j < tokens; j++) {
+        builder
+            .append(random.nextInt(1000))
+            .append(' ')
+            .append(operators.charAt(j % operators.length()))
+            .append(' ');
+      }
+      builder.append('\n');
+    }
+    return builder.toString();
+  }
+
+  @Test
+  public void tokenizingChunksInParallel() {
+    String document = document(20_000);
+    TokenTypeRegistry registry = registry().freeze();
+    List<Token> sequential =
+        DocumentTokenizer.with(registry.copy().freeze()).create(document).stream()
+            .sequential()
+            .collect(toList());
+
+    Spliterator<Token> spliterator =
+        DocumentTokenizer.with(registry).create(document).spliterator();
+    assertThat(spliterator.estimateSize(), is((long) document.length()));
+    assertThat(spliterator.trySplit(), is(notNullValue()));
+
+    List<Token> parallel =
+        DocumentTokenizer.with(registry).create(document).stream().parallel().collect(toList());
+
+    assertThat(sequential.size(), is(greaterThan(100_000)));
+    assertThat(parallel, is(sequential));
+  }
+
+  @Test
+  public void tokenizingChunksOfNonAsciiFilesInParallel() throws IOException {
+    String document = document(20_000, "+-\u00e9\u00e0\u0153");
+    TokenTypeRegistry registry = registry().freeze();
+    Path file = Files.createTempFile("dareader", ".txt");
+    try {
+      Files.write(file, document.getBytes(StandardCharsets.UTF_8));
+      List<Token> expected =
+          DocumentTokenizer.with(registry).create(document).stream().sequential().collect(toList());
+
+      List<Token> parallel =
+          DocumentTokenizer.with(registry).create(file).stream().parallel().collect(toList());
+
+      assertThat(parallel, is(expected));
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  @Test
+  public void movingTheTokenizerAlongUntilSplit() {
+    DocumentTokenizer tokenizer = DocumentTokenizer.with(registry()).create("1 + 2\n3");
+
+    assertThat(tokenizer.spliterator().trySplit(), is(nullValue()));
+    assertThat(tokenizer.stream().count(), is(7L));
+    assertThat(tokenizer.hasNext(), is(false));
+  }
+
+  @Test
+  public void failingWhenATokenGoesPastABoundary() {
+    // Whitespace is read in runs that span line breaks, so the line breaks are not real boundaries.
+    StringBuilder document = new StringBuilder();
+    for (int i = 0; i < 40_000; i++) {
+      document.append("1\n \n");
+    }
+    TokenTypeRegistry registry = CommonTokenTypes.registry().copy().boundaries(CharClass.of("\n"));
+
+    expectThrows(
+        DocumentReaderException.class,
+        () ->
+            DocumentTokenizer.with(registry).create(document.toString()).stream()
+                .parallel()
+                .count());
+  }
+}
@@ -0,0 +1,84 @@
+package com.mmnaseri.utils.dareader.impl;
+
+import com.mmnaseri.utils.dareader.DocumentTokenizer;
+import com.mmnaseri.utils.dareader.DocumentTokenizerFactory;
+import com.mmnaseri.utils.dareader.token.TokenTypeRegistry;
+import com.mmnaseri.utils.dareader.token.impl.CommonTokenTypes;
+import com.mmnaseri.utils.dareader.token.impl.SimpleTokenTypeRegistry;
+import com.mmnaseri.utils.dareader.utils.TokenReaders;
+
+import java.util.Random;
+
+/**
+ * Compares reading tokens one reader at a time with reading them through a compiled lexer, on a
+ * large document made of numbers and operators. This is not a test, and is meant to be run by hand.
+ */
+public class CompiledDocumentTokenizerBenchmark {
+
+  private static final int ROUNDS = 10;
+
+  /** The common token types, read via the patterns that define them. */
+  static TokenTypeRegistry registry() {
+    TokenTypeRegistry registry = new SimpleTokenTypeRegistry();
+    String[] patterns = {
+      "\\s+", "\\d+\\.\\d+", "[\\-+]\\d+\\.\\d+", "\\d+", "[\\-+]\\d+", "[a-z]+", "[+\\-/*]"
+    };
+    CommonTokenTypes[] types = CommonTokenTypes.values();
+    for (int i = 0; i < types.length; i++) {
+      registry.add(types[i], TokenReaders.pattern(types[i], patterns[i]));
+    }
+    return registry;
+  }
+
+  static String document(int tokens) {
+    Random random = new Random(0);
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < tokens; i++) {
+      switch (random.nextInt(4)) {
+        case 0:
+          builder.append(random.nextInt(100_000));
+          break;
+        case 1:
+          builder.append(random.nextInt(1_000)).append('.').append(random.nextInt(1_000));
+          break;
+        case 2:
+          builder.append("+-".charAt(random.nextInt(2))).append(random.nextInt(1_000));
+          break;
+        default:
+          builder.append("+-*/".charAt(random.nextInt(4)));
+      }
+      // Numbers cannot follow each other directly, or they would be read as one.
+      builder.append(random.nextBoolean() ? " " : "\n ");
+    }
+    return builder.toString();
+  }
+
+  private static long run(DocumentTokenizerFactory factory, String document) {
+    DocumentTokenizer tokenizer = factory.create(document);
+    long count = 0;
+    while (tokenizer.hasNext() && tokenizer.next() != null) {
+      count++;
+    }
+    return count;
+  }
+
+  private static void measure(String name, DocumentTokenizerFactory factory, String document) {
+    long tokens = 0;
+    long best = Long.MAX_VALUE;
+    for (int round = 0; round < ROUNDS; round++) {
+      long start = System.nanoTime();
+      tokens = run(factory, document);
+      best = Math.min(best, System.nanoTime() - start);
+    }
+    System.out.printf(
+        "%-10s %,d tokens in %,d ms (%.1f ns/token)%n",
+        name, tokens, best / 1_000_000, (double) best / tokens);
+  }
+
+  public static void main(String[] args) {
+    String document = document(args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000);
+    TokenTypeRegistry registry = registry();
+    measure("per-reader", DocumentTokenizer.with(registry), document);
+    measure("compiled", DocumentTokenizer.compiled(registry), document);
+  }
+}
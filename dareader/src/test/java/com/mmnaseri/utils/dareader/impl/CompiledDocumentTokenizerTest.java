@@ -0,0 +1,104 @@
+package com.mmnaseri.utils.dareader.impl;
+
+import com.mmnaseri.utils.dareader.DocumentTokenizer;
+import com.mmnaseri.utils.dareader.token.Token;
+import com.mmnaseri.utils.dareader.token.TokenTypeRegistry;
+import com.mmnaseri.utils.dareader.token.impl.CommonTokenTypes;
+import com.mmnaseri.utils.dareader.token.impl.SimpleTokenTypeRegistry;
+import com.mmnaseri.utils.dareader.token.impl.TokenBuffer;
+import com.mmnaseri.utils.dareader.utils.TokenReaders;
+import org.testng.annotations.Test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+/** Tests for {@link CompiledDocumentTokenizer}. */
+public class CompiledDocumentTokenizerTest {
+
+  /**
+   * Returns a registry that mixes readers that can be compiled with ones that cannot, in order to
+   * make sure the order of the tags is respected across the two.
+   */
+  static TokenTypeRegistry registry() {
+    return new SimpleTokenTypeRegistry()
+        .add(CommonTokenTypes.WHITESPACE, TokenReaders.pattern(CommonTokenTypes.WHITESPACE, "\\s+"))
+        .add(
+            CommonTokenTypes.UNSIGNED_FLOAT,
+            TokenReaders.pattern(CommonTokenTypes.UNSIGNED_FLOAT, "\\d+\\.\\d+"))
+        .add(
+            CommonTokenTypes.SIGNED_FLOAT,
+            TokenReaders.pattern(CommonTokenTypes.SIGNED_FLOAT, "(?<![\\d)])[\\-+]\\d+\\.\\d+"))
+        .add(
+            CommonTokenTypes.UNSIGNED_INT,
+            TokenReaders.pattern(CommonTokenTypes.UNSIGNED_INT, "\\d+"))
+        .add(
+            CommonTokenTypes.SIGNED_INT,
+            TokenReaders.pattern(CommonTokenTypes.SIGNED_INT, "(?<![\\d)])[\\-+]\\d+"))
+        .add(CommonTokenTypes.CONSTANT, TokenReaders.pattern(CommonTokenTypes.CONSTANT, "[a-z]+"))
+        .add(
+            CommonTokenTypes.OPERATOR,
+            TokenReaders.pattern(CommonTokenTypes.OPERATOR, "[+\\-/*()]"));
+  }
+
+  /** Reads tokens until the end of the document, or until no more tokens can be recognized. */
+  private static List<Token> tokens(DocumentTokenizer tokenizer) {
+    List<Token> tokens = new ArrayList<>();
+    Token token;
+    while (tokenizer.hasNext() && (token = tokenizer.next()) != null) {
+      tokens.add(token);
+    }
+    return tokens;
+  }
+
+  @Test
+  public void compilingRegularPatterns() {
+    CompiledLexer lexer = CompiledLexer.compile(registry());
+
+    assertThat(lexer.compiled(), is(5));
+  }
+
+  @Test
+  public void readingTheSameTokens() {
+    String document = "1 + 2.5 * (x - -3) -4.25/y+-7 \uD83D\uDE00 12";
+    List<Token> expected = tokens(DocumentTokenizer.with(registry()).create(document));
+
+    assertThat(expected.size(), is(22));
+    assertThat(tokens(DocumentTokenizer.compiled(registry()).create(document)), is(expected));
+    assertThat(
+        tokens(DocumentTokenizer.compiled(registry()).create(new StringReader(document))),
+        is(expected));
+  }
+
+  @Test
+  public void readingFromTheEnd() {
+    DocumentTokenizer tokenizer =
+        DocumentTokenizer.compiled(CommonTokenTypes.registry()).create("");
+
+    assertThat(tokenizer.next(), is(nullValue()));
+  }
+
+  @Test
+  public void readingTokensInBatches() {
+    String document = "1 + 2.5 * (x - -3) -4.25/y+-7 \uD83D\uDE00 12";
+    List<Token> expected = tokens(DocumentTokenizer.with(registry()).create(document));
+    TokenBuffer buffer = new TokenBuffer(registry().freeze(), 5);
+    for (DocumentTokenizer tokenizer :
+        new DocumentTokenizer[] {
+          DocumentTokenizer.compiled(registry()).create(document),
+          DocumentTokenizer.compiled(registry()).create(new StringReader(document))
+        }) {
+      List<Token> tokens = new ArrayList<>();
+      while (tokenizer.nextBatch(buffer) > 0) {
+        for (int i = 0; i < buffer.size(); i++) {
+          tokens.add(buffer.token(i));
+        }
+      }
+      assertThat(tokens, is(expected));
+    }
+  }
+}
@@ -0,0 +1,135 @@
+package com.mmnaseri.utils.dareader.impl;
+
+import com.mmnaseri.utils.dareader.DocumentReader;
+import com.mmnaseri.utils.dareader.DocumentTokenizer;
+import com.mmnaseri.utils.dareader.token.Token;
+import com.mmnaseri.utils.dareader.token.impl.CommonTokenTypes;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.testng.Assert.expectThrows;
+
+/** Tests for {@link FileDocuments}. */
+public class FileDocumentsTest {
+
+  private Path file;
+
+  @BeforeMethod
+  public void setUp() throws IOException {
+    file = Files.createTempFile("dareader", ".txt");
+  }
+
+  @AfterMethod
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(file);
+  }
+
+  private CharSequence map(String text, Charset charset) throws IOException {
+    Files.write(file, text.getBytes(charset));
+    return FileDocuments.map(file, charset);
+  }
+
+  private static void assertSameContent(CharSequence actual, String expected) {
+    assertThat(actual.length(), is(expected.length()));
+    for (int i = 0; i < expected.length(); i++) {
+      assertThat(actual.charAt(i), is(expected.charAt(i)));
+    }
+    assertThat(actual.toString(), is(expected));
+  }
+
+  @Test
+  public void mappingAscii() throws IOException {
+    CharSequence sequence = map("hello\nworld", StandardCharsets.UTF_8);
+
+    assertThat(sequence, is(instanceOf(Latin1CharSequence.class)));
+    assertSameContent(sequence, "hello\nworld");
+    assertThat(sequence.subSequence(6, 11).toString(), is("world"));
+  }
+
+  @Test
+  public void mappingLatin1() throws IOException {
+    CharSequence sequence = map("caf\u00e9 cr\u00e8me", StandardCharsets.ISO_8859_1);
+
+    assertThat(sequence, is(instanceOf(Latin1CharSequence.class)));
+    assertSameContent(sequence, "caf\u00e9 cr\u00e8me");
+  }
+
+  @Test
+  public void mappingUtf8AcrossChunks() throws IOException {
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; builder.length() < 200_000; i++) {
+      builder.append("caf\u00e9 \u4e16\u754c \ud83d\ude00 ").append(i).append('\n');
+    }
+    String text = builder.toString();
+    CharSequence sequence = map(text, StandardCharsets.UTF_8);
+
+    assertThat(sequence, is(instanceOf(Utf8CharSequence.class)));
+    assertSameContent(sequence, text);
+    assertThat(
+        sequence.subSequence(100_000, 100_050).toString(), is(text.substring(100_000, 100_050)));
+    // Jump back and forth between chunks.
+    assertThat(sequence.charAt(10), is(text.charAt(10)));
+    assertThat(sequence.charAt(199_000), is(text.charAt(199_000)));
+    assertThat(sequence.charAt(11), is(text.charAt(11)));
+  }
+
+  @Test
+  public void malformedUtf8() {
+    CharSequence sequence =
+        new Utf8CharSequence(ByteBuffer.wrap(new byte[] {'a', (byte) 0xC3, 'b', 'c'}));
+
+    expectThrows(UncheckedIOException.class, () -> sequence.charAt(0));
+  }
+
+  @Test
+  public void otherCharsets() throws IOException {
+    CharSequence sequence = map("h\u00e9llo", StandardCharsets.UTF_16);
+
+    assertSameContent(sequence, "h\u00e9llo");
+  }
+
+  @Test
+  public void readingAFile() throws IOException {
+    Files.write(file, "ab\u00e9 12\ncd".getBytes(StandardCharsets.UTF_8));
+    DocumentReader reader = DocumentReader.of(file);
+
+    assertThat(reader.read("\\S+"), is("ab\u00e9"));
+    assertThat(reader.read("\\s+(\\d+)", 1), is("12"));
+    reader.read();
+    assertThat(reader.line(), is(2));
+    assertThat(reader.offset(), is(1));
+    assertThat(reader.read(".+"), is("cd"));
+    assertThat(reader.hasNext(), is(false));
+  }
+
+  @Test
+  public void tokenizingAFile() throws IOException {
+    Files.write(file, "a 12 b".getBytes(StandardCharsets.US_ASCII));
+    List<Token> tokens =
+        DocumentTokenizer.with(CommonTokenTypes.registry()).create(file).stream().collect(toList());
+
+    assertThat(
+        tokens,
+        contains(
+            Token.create(CommonTokenTypes.CONSTANT, "a"),
+            Token.create(CommonTokenTypes.WHITESPACE, " "),
+            Token.create(CommonTokenTypes.UNSIGNED_INT, "12"),
+            Token.create(CommonTokenTypes.WHITESPACE, " "),
+            Token.create(CommonTokenTypes.CONSTANT, "b")));
+  }
+}
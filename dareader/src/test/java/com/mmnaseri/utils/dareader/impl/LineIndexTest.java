@@ -0,0 +1,86 @@
+package com.mmnaseri.utils.dareader.impl;
+
+import org.testng.annotations.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+/** Tests for {@link LineIndex}. */
+public class LineIndexTest {
+
+  @Test
+  public void emptyDocument() {
+    LineIndex index = new LineIndex("");
+
+    assertThat(index.line(0), is(1));
+    assertThat(index.offset(0), is(1));
+  }
+
+  @Test
+  public void lookingUpForward() {
+    LineIndex index = new LineIndex("ab\ncd\n\nef");
+
+    assertThat(index.line(0), is(1));
+    assertThat(index.offset(0), is(1));
+    assertThat(index.line(2), is(1));
+    assertThat(index.offset(2), is(3));
+    assertThat(index.line(3), is(2));
+    assertThat(index.offset(3), is(1));
+    assertThat(index.line(6), is(3));
+    assertThat(index.offset(6), is(1));
+    assertThat(index.line(9), is(4));
+    assertThat(index.offset(9), is(3));
+  }
+
+  @Test
+  public void lookingUpBackward() {
+    LineIndex index = new LineIndex("ab\ncd\n\nef");
+
+    assertThat(index.line(9), is(4));
+    assertThat(index.line(7), is(4));
+    assertThat(index.offset(7), is(1));
+    assertThat(index.line(5), is(2));
+    assertThat(index.offset(5), is(3));
+    assertThat(index.line(1), is(1));
+    assertThat(index.offset(1), is(2));
+  }
+
+  @Test
+  public void growing() {
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < 100; i++) {
+      builder.append("line\n");
+    }
+    LineIndex index = new LineIndex(builder);
+
+    assertThat(index.line(builder.length()), is(101));
+    assertThat(index.line(52), is(11));
+    assertThat(index.offset(52), is(3));
+  }
+
+  @Test
+  public void scanningLongStrings() {
+    StringBuilder builder = new StringBuilder();
+    int lines = 1;
+    for (int i = 0; i < 3000; i++) {
+      if (i % 7 == 0 || i % 13 == 0) {
+        builder.append('\n');
+        lines++;
+      } else {
+        // Include characters that only differ from a line break in the high bits of each lane.
+        builder.append(i % 2 == 0 ? '\u010A' : 'x');
+      }
+    }
+    String document = builder.toString();
+    LineIndex index = new LineIndex(document);
+
+    assertThat(index.line(document.length()), is(lines));
+    int line = 1;
+    for (int i = 0; i < document.length(); i++) {
+      assertThat(index.line(i), is(line));
+      if (document.charAt(i) == '\n') {
+        line++;
+      }
+    }
+  }
+}
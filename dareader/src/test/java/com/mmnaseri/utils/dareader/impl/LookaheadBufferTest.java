@@ -0,0 +1,86 @@
+package com.mmnaseri.utils.dareader.impl;
+
+import com.mmnaseri.utils.dareader.token.Token;
+import com.mmnaseri.utils.dareader.token.impl.CommonTokenTypes;
+import org.testng.annotations.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.testng.Assert.expectThrows;
+
+/** Tests for {@link LookaheadBuffer}. */
+public class LookaheadBufferTest {
+
+  private static Token token(int index) {
+    return Token.create(CommonTokenTypes.UNSIGNED_INT, String.valueOf(index));
+  }
+
+  @Test
+  public void followingTheCursor() {
+    LookaheadBuffer buffer = new LookaheadBuffer();
+    for (int i = 0; i < 3; i++) {
+      buffer.push(i * 2, token(i), i * 2 + 2);
+    }
+
+    assertThat(buffer.ahead(), is(3));
+    assertThat(buffer.token(1), is(token(1)));
+    assertThat(buffer.end(2), is(6));
+
+    buffer.moveTo(4);
+    assertThat(buffer.ahead(), is(1));
+    assertThat(buffer.token(0), is(token(2)));
+
+    buffer.moveTo(6);
+    assertThat(buffer.ahead(), is(0));
+
+    buffer.moveTo(0);
+    assertThat(buffer.ahead(), is(3));
+
+    buffer.moveTo(3);
+    assertThat(buffer.ahead(), is(0));
+    buffer.moveTo(0);
+    assertThat(buffer.ahead(), is(0));
+  }
+
+  @Test
+  public void makingRoomByDroppingTokensBehindTheCursor() {
+    LookaheadBuffer buffer = new LookaheadBuffer();
+    for (int i = 0; i < LookaheadBuffer.CAPACITY; i++) {
+      buffer.push(i, token(i), i + 1);
+    }
+
+    expectThrows(IllegalStateException.class, () -> buffer.push(16, token(16), 17));
+
+    buffer.consume();
+    buffer.consume();
+    buffer.push(16, token(16), 17);
+    buffer.moveTo(1);
+
+    assertThat(buffer.ahead(), is(LookaheadBuffer.CAPACITY));
+    assertThat(buffer.token(LookaheadBuffer.CAPACITY - 1), is(token(16)));
+    expectThrows(IllegalStateException.class, () -> buffer.push(17, token(17), 18));
+
+    buffer.moveTo(0);
+    assertThat(buffer.ahead(), is(0));
+  }
+
+  @Test
+  public void standingInForTheSkippedTextBeforeAToken() {
+    LookaheadBuffer buffer = new LookaheadBuffer();
+    buffer.push(0, token(0), 2);
+    buffer.push(5, token(1), 7);
+
+    buffer.moveTo(3);
+    assertThat(buffer.ahead(), is(1));
+    assertThat(buffer.token(0), is(token(1)));
+
+    buffer.moveTo(2);
+    assertThat(buffer.ahead(), is(1));
+
+    buffer.moveTo(1);
+    assertThat(buffer.ahead(), is(0));
+    // Tokens can have gaps between them, but cannot overlap.
+    buffer.push(0, token(0), 2);
+    expectThrows(IllegalStateException.class, () -> buffer.push(1, token(1), 3));
+  }
+}
@@ -0,0 +1,252 @@
+package com.mmnaseri.utils.dareader.impl;
+
+import com.mmnaseri.utils.dareader.DocumentSnapshot;
+import com.mmnaseri.utils.dareader.DocumentTokenizer;
+import com.mmnaseri.utils.dareader.error.DocumentReaderException;
+import com.mmnaseri.utils.dareader.token.Token;
+import com.mmnaseri.utils.dareader.token.TokenType;
+import com.mmnaseri.utils.dareader.token.TokenTypeRegistry;
+import com.mmnaseri.utils.dareader.token.impl.CommonTokenTypes;
+import com.mmnaseri.utils.dareader.utils.CharClass;
+import com.mmnaseri.utils.dareader.utils.TokenReaders;
+import org.testng.SkipException;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.testng.Assert.expectThrows;
+
+/** Tests for {@link PipelinedDocumentTokenizer}. */
+public class PipelinedDocumentTokenizerTest {
+
+  private ExecutorService executor;
+
+  @BeforeMethod
+  public void setUp() {
+    executor = Executors.newSingleThreadExecutor();
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  private static String document(int lines) {
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < lines; i++) {
+      builder.append("x").append(i).append(" + ").append(i * 7).append(" * y\n");
+    }
+    return builder.toString();
+  }
+
+  private static DocumentTokenizer tokenizer(String document) {
+    return DocumentTokenizer.with(CommonTokenTypes.registry()).create(document);
+  }
+
+  private static List<Token> drain(DocumentTokenizer tokenizer) {
+    List<Token> tokens = new ArrayList<>();
+    Token token;
+    while (tokenizer.hasNext() && (token = tokenizer.next()) != null) {
+      tokens.add(token);
+    }
+    return tokens;
+  }
+
+  private static List<String> values(List<Token> tokens) {
+    return tokens.stream().map(Token::value).collect(toList());
+  }
+
+  @Test
+  public void readingTheSameTokensAsTheSource() {
+    String document = document(2_000);
+    DocumentTokenizer expected = tokenizer(document);
+    PipelinedDocumentTokenizer tokenizer = tokenizer(document).pipelined(executor, 16);
+
+    List<Token> tokens = drain(tokenizer);
+
+    assertThat(tokens, is(drain(expected)));
+    assertThat(tokenizer.hasNext(), is(false));
+    assertThat(tokenizer.next(), is(nullValue()));
+    assertThat(tokenizer.cursor(), is(expected.cursor()));
+    assertThat(tokenizer.line(), is(expected.line()));
+    assertThat(tokenizer.offset(), is(expected.offset()));
+  }
+
+  @Test
+  public void readingTheSameValuesFromNonAsciiFiles() throws IOException {
+    StringBuilder document = new StringBuilder();
+    for (int i = 0; i < 20_000; i++) {
+      document.append("x").append(i).append(" + \u00e9t\u00e9 * ").append(i * 7).append("\n");
+    }
+    TokenTypeRegistry registry = CommonTokenTypes.registry().copy();
+    TokenType accented = () -> 1;
+    registry.add(accented, TokenReaders.charClass(accented, CharClass.range('\u00c0', '\u017f')));
+    Path file = Files.createTempFile("dareader", ".txt");
+    try {
+      Files.write(file, document.toString().getBytes(StandardCharsets.UTF_8));
+      List<String> expected = values(drain(DocumentTokenizer.with(registry).create(file)));
+
+      PipelinedDocumentTokenizer tokenizer =
+          DocumentTokenizer.with(registry).create(file).pipelined(executor, 1 << 16);
+
+      assertThat(values(drain(tokenizer)), is(expected));
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  @Test
+  public void peekingAheadOfTheCursor() {
+    PipelinedDocumentTokenizer tokenizer = tokenizer("a + b").pipelined(executor, 2);
+
+    assertThat(tokenizer.peek(4).value(), is("b"));
+    assertThat(tokenizer.peek(5), is(nullValue()));
+    assertThat(tokenizer.next().value(), is("a"));
+    assertThat(tokenizer.cursor(), is(1));
+    assertThat(tokenizer.peek().value(), is(" "));
+  }
+
+  @Test
+  public void restoringSnapshotsAfterReadingPastTheHistory() {
+    String document = document(100);
+    List<Token> expected = drain(tokenizer(document));
+    PipelinedDocumentTokenizer tokenizer = tokenizer(document).pipelined(executor, 4);
+    for (int i = 0; i < 10; i++) {
+      tokenizer.next();
+    }
+    int cursor = tokenizer.cursor();
+    int line = tokenizer.line();
+    DocumentSnapshot snapshot = tokenizer.snapshot().create();
+    for (int i = 0; i < PipelinedDocumentTokenizer.HISTORY * 20; i++) {
+      tokenizer.next();
+    }
+
+    tokenizer.snapshot().restore(snapshot);
+
+    assertThat(tokenizer.cursor(), is(cursor));
+    assertThat(tokenizer.line(), is(line));
+    assertThat(drain(tokenizer), is(expected.subList(10, expected.size())));
+  }
+
+  @Test
+  public void creatingSnapshotsWithoutMovingTheCursor() {
+    TokenTypeRegistry registry =
+        CommonTokenTypes.registry().copy().skip(CommonTokenTypes.WHITESPACE).freeze();
+    PipelinedDocumentTokenizer tokenizer =
+        DocumentTokenizer.with(registry).create("a + b   ").pipelined(executor, 4);
+    for (int i = 0; i < 3; i++) {
+      tokenizer.next();
+    }
+
+    DocumentSnapshot snapshot = tokenizer.snapshot().create();
+
+    assertThat(snapshot.cursor(), is(5));
+    assertThat(tokenizer.cursor(), is(5));
+    assertThat(tokenizer.hasNext(), is(false));
+    assertThat(tokenizer.cursor(), is(8));
+  }
+
+  @Test
+  public void forgettingTokensPinnedByDroppedSnapshots() {
+    PipelinedDocumentTokenizer tokenizer = tokenizer(document(100)).pipelined(executor, 4);
+    WeakReference<DocumentSnapshot> snapshot = new WeakReference<>(tokenizer.snapshot().create());
+    Token first = tokenizer.next();
+
+    for (int i = 0; i < 100 && snapshot.get() != null; i++) {
+      System.gc();
+    }
+    if (snapshot.get() != null) {
+      throw new SkipException("The snapshot was not collected");
+    }
+    for (int i = 0; i < PipelinedDocumentTokenizer.HISTORY * 20; i++) {
+      tokenizer.next();
+    }
+
+    expectThrows(DocumentReaderException.class, () -> tokenizer.rewind(first));
+  }
+
+  @Test
+  public void rewindingTokens() {
+    PipelinedDocumentTokenizer tokenizer = tokenizer(document(100)).pipelined(executor, 4);
+    Token first = tokenizer.next();
+    Token second = tokenizer.next();
+
+    tokenizer.rewind(second);
+    assertThat(tokenizer.cursor(), is(first.length()));
+    assertThat(tokenizer.next(), is(second));
+
+    tokenizer.rewind(second).rewind(first);
+    assertThat(tokenizer.cursor(), is(0));
+    assertThat(tokenizer.next(), is(first));
+  }
+
+  @Test
+  public void failingToMoveToForgottenPositions() {
+    PipelinedDocumentTokenizer tokenizer = tokenizer(document(100)).pipelined(executor, 4);
+    Token first = tokenizer.next();
+    for (int i = 0; i < PipelinedDocumentTokenizer.HISTORY * 20; i++) {
+      tokenizer.next();
+    }
+    int cursor = tokenizer.cursor();
+
+    expectThrows(DocumentReaderException.class, () -> tokenizer.rewind(first));
+    assertThat(tokenizer.cursor(), is(cursor));
+  }
+
+  @Test
+  public void stoppingWhereTheSourceGetsStuck() {
+    PipelinedDocumentTokenizer tokenizer = tokenizer("a + #b").pipelined(executor, 4);
+
+    assertThat(drain(tokenizer).size(), is(4));
+    assertThat(tokenizer.hasNext(), is(true));
+    assertThat(tokenizer.next(), is(nullValue()));
+    assertThat(tokenizer.cursor(), is(4));
+  }
+
+  @Test
+  public void rethrowingTheErrorsOfTheSource() {
+    TokenTypeRegistry registry = CommonTokenTypes.registry().copy();
+    registry.add(
+        () -> 100,
+        reader -> {
+          if (reader.peek(0) == '#') {
+            throw new IllegalStateException("#");
+          }
+          return null;
+        });
+    PipelinedDocumentTokenizer tokenizer =
+        DocumentTokenizer.with(registry).create("a + #b").pipelined(executor, 4);
+
+    for (int i = 0; i < 4; i++) {
+      assertThat(tokenizer.next() == null, is(false));
+    }
+    expectThrows(IllegalStateException.class, tokenizer::hasNext);
+  }
+
+  @Test
+  public void stoppingTheProducerWhenClosed() throws Exception {
+    PipelinedDocumentTokenizer tokenizer = tokenizer(document(10_000)).pipelined(executor, 4);
+    Token first = tokenizer.next();
+
+    tokenizer.close();
+    executor.shutdown();
+
+    assertThat(executor.awaitTermination(10, TimeUnit.SECONDS), is(true));
+    assertThat(first.value(), is("x"));
+  }
+}
@@ -3,9 +3,10 @@ package com.mmnaseri.utils.dareader.impl;
 import com.mmnaseri.utils.dareader.DocumentReader;
 import com.mmnaseri.utils.dareader.DocumentSnapshot;
 import com.mmnaseri.utils.dareader.error.DocumentReaderException;
+import com.mmnaseri.utils.dareader.utils.CharClass;
 import org.testng.annotations.Test;
-import org.w3c.dom.ranges.DocumentRange;
 
+import java.nio.charset.StandardCharsets;
 import java.util.regex.Pattern;
 
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -60,6 +61,28 @@ public class SimpleDocumentReaderTest {
     assertThat(reader.offset(), is(1));
   }
 
+  @Test
+  public void readAPatternThatOnlyMatchesLater() {
+    DocumentReader reader = DocumentReader.of("ab12");
+
+    assertThat(reader.read("\\d+"), is(nullValue()));
+    assertThat(reader.cursor(), is(0));
+
+    assertThat(reader.read("[a-z]+"), is("ab"));
+    assertThat(reader.read("\\d+"), is("12"));
+  }
+
+  @Test
+  public void readAPatternWithLookBehind() {
+    DocumentReader reader = DocumentReader.of("ab12");
+    reader.read("[a-z]+");
+
+    assertThat(reader.read("(?<=b)\\d"), is("1"));
+    assertThat(reader.read("(?<=b)\\d"), is(nullValue()));
+    assertThat(reader.read("^\\d"), is(nullValue()));
+    assertThat(reader.read("\\d$"), is("2"));
+  }
+
   @Test
   public void expectAPattern() {
     DocumentReader reader = DocumentReader.of("a1\na2");
@@ -92,6 +115,17 @@ public class SimpleDocumentReaderTest {
     assertThat(reader.has("a1c"), is(false));
   }
 
+  @Test
+  public void hasAPatternWithinLookahead() {
+    DocumentReader reader = DocumentReader.of("a1b2");
+
+    assertThat(reader.has("a1b", 3), is(true));
+    assertThat(reader.has("a1b", 2), is(false));
+    assertThat(reader.has("1b", 10), is(false));
+    assertThat(reader.has("a\\d+", 10), is(true));
+    assertThat(reader.cursor(), is(0));
+  }
+
   @Test
   public void toStringValue() {
     DocumentReader reader = DocumentReader.of("abc");
@@ -164,4 +198,114 @@ public class SimpleDocumentReaderTest {
     assertThat(reader.read(".+"), is("def"));
     assertThat(reader.hasNext(), is(false));
   }
+
+  @Test
+  public void snapshotAfterRewindingAndRestoring() {
+    DocumentReader reader = DocumentReader.of("abc\ndef");
+    DocumentSnapshot start = reader.snapshot().create();
+    reader.read(".{5}");
+    DocumentSnapshot middle = reader.snapshot().create();
+
+    reader.rewind(2);
+
+    assertThat(reader.snapshot().create().cursor(), is(3));
+    assertThat(reader.snapshot().create().line(), is(1));
+    assertThat(reader.snapshot().create().offset(), is(4));
+
+    middle.apply();
+    start.apply();
+
+    assertThat(reader.snapshot().create().cursor(), is(0));
+    assertThat(reader.line(), is(1));
+    assertThat(reader.offset(), is(1));
+  }
+
+  @Test
+  public void advancing() {
+    DocumentReader reader = DocumentReader.of("abc\ndef");
+    DocumentSnapshot snapshot = reader.snapshot().create();
+
+    reader.advance(5);
+
+    assertThat(reader.cursor(), is(5));
+    assertThat(reader.line(), is(2));
+    assertThat(reader.offset(), is(2));
+    assertThat(reader.snapshot().create().cursor(), is(5));
+
+    reader.skip(2);
+
+    assertThat(reader.cursor(), is(7));
+    assertThat(reader.hasNext(), is(false));
+
+    expectThrows(DocumentReaderException.class, () -> reader.advance(1));
+    expectThrows(IllegalArgumentException.class, () -> reader.advance(-1));
+
+    snapshot.apply();
+    expectThrows(DocumentReaderException.class, () -> reader.advance(8));
+    assertThat(reader.cursor(), is(0));
+  }
+
+  @Test
+  public void scanningWithoutMoving() {
+    DocumentReader reader = DocumentReader.of("  ab1");
+
+    assertThat(reader.peek(0), is((int) ' '));
+    assertThat(reader.peek(4), is((int) '1'));
+    assertThat(reader.peek(5), is(-1));
+    assertThat(reader.span(CharClass.WHITESPACE, 0), is(2));
+    assertThat(reader.span(CharClass.LOWERCASE, 2), is(2));
+    assertThat(reader.span(CharClass.LOWERCASE, 0), is(0));
+    assertThat(reader.span(CharClass.DIGIT, 10), is(0));
+    assertThat(reader.cursor(), is(0));
+  }
+
+  @Test
+  public void readingWhileCharactersMatch() {
+    DocumentReader reader = DocumentReader.of("  ab1".getBytes(StandardCharsets.US_ASCII));
+
+    assertThat(reader.readWhile(CharClass.LOWERCASE), is(nullValue()));
+    assertThat(reader.skipWhile(CharClass.WHITESPACE), is(2));
+    assertThat(reader.skipWhile(CharClass.WHITESPACE), is(0));
+    assertThat(reader.readWhile(CharClass.LOWERCASE), is("ab"));
+    assertThat(reader.readWhile(CharClass.WORD), is("1"));
+    assertThat(reader.hasNext(), is(false));
+    assertThat(reader.readWhile(CharClass.WORD), is(nullValue()));
+  }
+
+  @Test
+  public void markingPositions() {
+    DocumentReader reader = DocumentReader.of("ab\ncd");
+    reader.advance(1);
+    long mark = reader.mark();
+
+    reader.advance(3);
+    assertThat(reader.line(), is(2));
+    reader.reset(mark);
+
+    assertThat(reader.cursor(), is(1));
+    assertThat(reader.line(), is(1));
+    assertThat(reader.offset(), is(2));
+    expectThrows(IllegalStateException.class, () -> DocumentReader.of("ab\ncd").reset(mark));
+  }
+
+  @Test
+  public void cuttingTheDocument() {
+    DocumentReader reader = DocumentReader.of("abcdef");
+    long start = reader.mark();
+    reader.advance(2);
+    DocumentSnapshot snapshot = reader.snapshot().create();
+    reader.advance(1);
+    long mark = reader.mark();
+    reader.cut();
+    reader.advance(2);
+
+    assertThat(reader.floor(), is(3));
+    expectThrows(DocumentReaderException.class, () -> reader.reset(start));
+    expectThrows(DocumentReaderException.class, () -> reader.rewind(3));
+    expectThrows(DocumentReaderException.class, snapshot::apply);
+    reader.reset(mark);
+    assertThat(reader.cursor(), is(3));
+    reader.rewind(0);
+    assertThat(reader.read(), is('d'));
+  }
 }
@@ -0,0 +1,59 @@
+package com.mmnaseri.utils.dareader.impl;
+
+import com.mmnaseri.utils.dareader.token.TokenTypeRegistry;
+import com.mmnaseri.utils.dareader.token.impl.CommonTokenTypes;
+import com.mmnaseri.utils.dareader.token.impl.TokenBuffer;
+
+/**
+ * Compares trying every reader at each token with only trying the readers that can start with the
+ * character at the cursor, which is what the tokenizer does for frozen registries. Along with the
+ * time, this reports how many readers are tried for each token that is read. It also compares
+ * reading the tokens one by one with reading them in batches, which does not create the tokens.
+ * This is not a test, and is meant to be run by hand.
+ */
+public class SimpleDocumentTokenizerBenchmark {
+
+  private static final int ROUNDS = 10;
+
+  private static void measure(
+      String name, TokenTypeRegistry registry, String document, boolean batched) {
+    SimpleDocumentTokenizer tokenizer = null;
+    TokenBuffer buffer = new TokenBuffer(registry.freeze(), 1024);
+    long best = Long.MAX_VALUE;
+    for (int round = 0; round < ROUNDS; round++) {
+      long start = System.nanoTime();
+      tokenizer = new SimpleDocumentTokenizer(registry, document);
+      if (batched) {
+        while (tokenizer.nextBatch(buffer) > 0) {
+          // Keep reading.
+        }
+      } else {
+        while (tokenizer.hasNext() && tokenizer.next() != null) {
+          // Keep reading.
+        }
+      }
+      best = Math.min(best, System.nanoTime() - start);
+    }
+    System.out.printf(
+        "%-20s %,d tokens in %,d ms (%.1f ns/token, %.2f attempts/token)%n",
+        name,
+        tokenizer.tokens(),
+        best / 1_000_000,
+        (double) best / tokenizer.tokens(),
+        (double) tokenizer.attempts() / tokenizer.tokens());
+  }
+
+  public static void main(String[] args) {
+    String document =
+        CompiledDocumentTokenizerBenchmark.document(
+            args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000);
+    TokenTypeRegistry patterns = CompiledDocumentTokenizerBenchmark.registry();
+    measure("patterns", patterns, document, false);
+    measure("patterns, frozen", patterns.freeze(), document, false);
+    measure("patterns, batched", patterns.freeze(), document, true);
+    TokenTypeRegistry scanners = CommonTokenTypes.registry();
+    measure("scanners", scanners, document, false);
+    measure("scanners, frozen", scanners.freeze(), document, false);
+    measure("scanners, batched", scanners.freeze(), document, true);
+  }
+}
@@ -1,23 +1,37 @@
 package com.mmnaseri.utils.dareader.impl;
 
+import com.mmnaseri.utils.dareader.DocumentReader;
+import com.mmnaseri.utils.dareader.DocumentSnapshot;
 import com.mmnaseri.utils.dareader.DocumentTokenizer;
+import com.mmnaseri.utils.dareader.error.DocumentReaderException;
 import com.mmnaseri.utils.dareader.token.Token;
+import com.mmnaseri.utils.dareader.token.TokenType;
+import com.mmnaseri.utils.dareader.token.TokenTypeRegistry;
 import com.mmnaseri.utils.dareader.token.impl.CommonTokenTypes;
+import com.mmnaseri.utils.dareader.token.impl.TokenBuffer;
+import com.mmnaseri.utils.dareader.token.impl.TriviaTable;
+import com.mmnaseri.utils.dareader.token.impl.TokenTypeSet;
+import com.mmnaseri.utils.dareader.utils.TokenReaders;
 import org.testng.annotations.Test;
 
+import java.io.StringReader;
 import java.util.List;
 import java.util.Set;
 
+import static java.util.Arrays.asList;
 import static java.util.stream.Collectors.toList;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
 import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.hamcrest.Matchers.nullValue;
+import static org.testng.Assert.expectThrows;
 
 /** Tests for {@link SimpleDocumentTokenizer}. */
 public class SimpleDocumentTokenizerTest {
@@ -92,6 +106,27 @@ public class SimpleDocumentTokenizerTest {
     assertThat(tokenizer.cursor(), is(0));
   }
 
+  @Test
+  public void rewindingTokenAfterSkippingTokens() {
+    TokenTypeRegistry registry =
+        CommonTokenTypes.registry().copy().skip(CommonTokenTypes.WHITESPACE).freeze();
+    DocumentTokenizer tokenizer =
+        new SimpleDocumentTokenizer(registry, DocumentReader.of("true false"));
+
+    Token token = tokenizer.next();
+    assertThat(tokenizer.hasNext(), is(true));
+    tokenizer.rewind(token);
+
+    assertThat(tokenizer.cursor(), is(0));
+    assertThat(tokenizer.next().value(), is("true"));
+    assertThat(tokenizer.peek().value(), is("false"));
+    tokenizer.rewind(token);
+
+    assertThat(tokenizer.cursor(), is(0));
+    assertThat(tokenizer.next().value(), is("true"));
+    assertThat(tokenizer.next().value(), is("false"));
+  }
+
   @Test
   public void streamingTokens() {
     List<Token> tokens = tokenizer("a 12 b").stream().collect(toList());
@@ -106,4 +141,190 @@ public class SimpleDocumentTokenizerTest {
             Token.create(CommonTokenTypes.WHITESPACE, " "),
             Token.create(CommonTokenTypes.CONSTANT, "b")));
   }
+
+  @Test
+  public void readingFromAFrozenRegistry() {
+    DocumentTokenizer tokenizer =
+        DocumentTokenizer.with(CommonTokenTypes.registry().freeze()).create("-12.34 hello");
+
+    assertThat(
+        tokenizer.candidateTypes(),
+        contains(
+            CommonTokenTypes.SIGNED_FLOAT, CommonTokenTypes.SIGNED_INT, CommonTokenTypes.OPERATOR));
+    assertThat(tokenizer.candidateTypes(), is(instanceOf(TokenTypeSet.class)));
+    assertThat(tokenizer.next(), is(Token.create(CommonTokenTypes.SIGNED_FLOAT, "-12.34")));
+    assertThat(tokenizer.next(), is(Token.create(CommonTokenTypes.WHITESPACE, " ")));
+    assertThat(tokenizer.candidates(), contains(Token.create(CommonTokenTypes.CONSTANT, "hello")));
+  }
+
+  @Test
+  public void onlyTryingReadersThatCanStartAtTheCursor() {
+    String text = "-12.34 hello + 7";
+    SimpleDocumentTokenizer all = new SimpleDocumentTokenizer(CommonTokenTypes.registry(), text);
+    SimpleDocumentTokenizer dispatched =
+        new SimpleDocumentTokenizer(CommonTokenTypes.registry().freeze(), text);
+
+    assertThat(dispatched.stream().collect(toList()), is(all.stream().collect(toList())));
+    assertThat(dispatched.tokens(), is(7L));
+    assertThat(all.tokens(), is(7L));
+    assertThat(dispatched.attempts(), is(lessThan(all.attempts())));
+    // The signed numbers are tried before the operator, and floats before integers.
+    assertThat(dispatched.attempts(), is(10L));
+  }
+
+  @Test
+  public void rememberingTokensAfterBacktracking() {
+    SimpleDocumentTokenizer tokenizer =
+        new SimpleDocumentTokenizer(CommonTokenTypes.registry().freeze(), "12 + 34");
+    DocumentSnapshot snapshot = tokenizer.snapshot().create();
+    List<Token> tokens = tokenizer.stream().collect(toList());
+    long attempts = tokenizer.attempts();
+
+    tokenizer.snapshot().restore(snapshot);
+
+    assertThat(tokenizer.stream().collect(toList()), is(tokens));
+    assertThat(tokenizer.attempts(), is(attempts));
+    assertThat(tokenizer.tokens(), is(10L));
+    assertThat(tokenizer.cursor(), is(7));
+    assertThat(tokenizer.offset(), is(8));
+  }
+
+  @Test
+  public void forgettingTokensOnceTheRegistryChanges() {
+    TokenType keyword = () -> -1;
+    TokenTypeRegistry registry = CommonTokenTypes.registry().copy();
+    SimpleDocumentTokenizer tokenizer = new SimpleDocumentTokenizer(registry, "if");
+
+    assertThat(tokenizer.candidates(), hasSize(1));
+    assertThat(tokenizer.next(), is(Token.create(CommonTokenTypes.CONSTANT, "if")));
+    tokenizer.rewind(Token.create(CommonTokenTypes.CONSTANT, "if"));
+    registry.add(keyword, TokenReaders.literal(keyword, "if"));
+
+    assertThat(tokenizer.candidates(), hasSize(2));
+    assertThat(tokenizer.next(), is(Token.create(keyword, "if")));
+  }
+
+  @Test
+  public void peekingAheadWithoutLexingTwice() {
+    SimpleDocumentTokenizer tokenizer =
+        new SimpleDocumentTokenizer(CommonTokenTypes.registry().freeze(), "a + 12");
+
+    assertThat(tokenizer.peek(), is(Token.create(CommonTokenTypes.CONSTANT, "a")));
+    assertThat(tokenizer.peek(2), is(Token.create(CommonTokenTypes.OPERATOR, "+")));
+    assertThat(tokenizer.peek(4), is(Token.create(CommonTokenTypes.UNSIGNED_INT, "12")));
+    assertThat(tokenizer.peek(5), is(nullValue()));
+    assertThat(tokenizer.peek(20), is(nullValue()));
+    assertThat(tokenizer.cursor(), is(0));
+    long attempts = tokenizer.attempts();
+
+    assertThat(tokenizer.consume(), is(Token.create(CommonTokenTypes.CONSTANT, "a")));
+    assertThat(tokenizer.consume(), is(Token.create(CommonTokenTypes.WHITESPACE, " ")));
+    Token operator = tokenizer.consume();
+    tokenizer.rewind(operator);
+    assertThat(tokenizer.peek(), is(operator));
+    assertThat(tokenizer.stream().collect(toList()), hasSize(3));
+    assertThat(tokenizer.attempts(), is(attempts));
+    expectThrows(DocumentReaderException.class, tokenizer::consume);
+  }
+
+  @Test
+  public void readingTokensInBatches() {
+    String document = "x * 12.5 -\n  y - -3\n\t+ z";
+    DocumentTokenizer expected = tokenizer(document);
+    List<Token> tokens = expected.stream().collect(toList());
+    DocumentTokenizer batched = tokenizer(document);
+    TokenBuffer buffer = new TokenBuffer(CommonTokenTypes.registry().freeze(), 4, true);
+    // Peeking ahead leaves some tokens in the lookahead buffer, which the batch picks up.
+    batched.peek(2);
+
+    int index = 0;
+    int count;
+    while ((count = batched.nextBatch(buffer)) > 0) {
+      for (int i = 0; i < count; i++, index++) {
+        assertThat(buffer.token(i), is(tokens.get(index)));
+        assertThat(buffer.line(i), is(lines(document, buffer.start(i))));
+      }
+    }
+    assertThat(index, is(tokens.size()));
+    assertThat(batched.hasNext(), is(false));
+  }
+
+  /** Returns the line the given position in the document falls on. */
+  private static int lines(String document, int position) {
+    return (int) document.substring(0, position).chars().filter(c -> c == '\n').count() + 1;
+  }
+
+  @Test
+  public void skippingTokens() {
+    String document = "  12 +\n abc ";
+    TokenTypeRegistry registry =
+        CommonTokenTypes.registry().copy().skip(CommonTokenTypes.WHITESPACE);
+    List<Token> expected =
+        asList(
+            Token.create(CommonTokenTypes.UNSIGNED_INT, "12"),
+            Token.create(CommonTokenTypes.OPERATOR, "+"),
+            Token.create(CommonTokenTypes.CONSTANT, "abc"));
+
+    assertThat(
+        DocumentTokenizer.with(registry).create(document).stream().collect(toList()), is(expected));
+
+    DocumentTokenizer tokenizer = DocumentTokenizer.with(registry.freeze()).create(document);
+    assertThat(tokenizer.peek(2), is(expected.get(2)));
+    assertThat(tokenizer.next(), is(expected.get(0)));
+    assertThat(tokenizer.cursor(), is(4));
+    assertThat(tokenizer.next(), is(expected.get(1)));
+    assertThat(tokenizer.next(), is(expected.get(2)));
+    assertThat(tokenizer.hasNext(), is(false));
+
+    TokenBuffer buffer = new TokenBuffer(registry.freeze(), 8, true);
+    assertThat(DocumentTokenizer.with(registry.freeze()).create(document).nextBatch(buffer), is(3));
+    assertThat(buffer.token(2), is(expected.get(2)));
+    assertThat(buffer.start(2), is(8));
+    assertThat(buffer.line(2), is(2));
+  }
+
+  @Test
+  public void skippingOnlyTokensThatWouldBeRead() {
+    // Floats come before integers, so skipping integers does not skip the start of a float.
+    TokenTypeRegistry registry =
+        CommonTokenTypes.registry().copy().skip(CommonTokenTypes.UNSIGNED_INT).freeze();
+
+    List<Token> tokens =
+        DocumentTokenizer.with(registry).create("12.5 7 8").stream().collect(toList());
+
+    assertThat(
+        tokens,
+        contains(
+            Token.create(CommonTokenTypes.UNSIGNED_FLOAT, "12.5"),
+            Token.create(CommonTokenTypes.WHITESPACE, " "),
+            Token.create(CommonTokenTypes.WHITESPACE, " ")));
+  }
+
+  @Test
+  public void keepingSkippedTokensForProjection() {
+    String document = " x +\t12 - y  ";
+    TokenTypeRegistry registry =
+        CommonTokenTypes.registry().copy().skip(CommonTokenTypes.WHITESPACE).freeze();
+    for (DocumentReader reader :
+        new DocumentReader[] {
+          DocumentReader.of(document), DocumentReader.of(new StringReader(document))
+        }) {
+      SimpleDocumentTokenizer tokenizer = new SimpleDocumentTokenizer(registry, reader);
+      TriviaTable trivia = tokenizer.keepTrivia();
+      // Going back and reading the same tokens again does not keep the skipped ones twice.
+      DocumentSnapshot snapshot = tokenizer.snapshot().create();
+      tokenizer.next();
+      tokenizer.next();
+      tokenizer.snapshot().restore(snapshot);
+
+      List<Token> tokens = tokenizer.stream().collect(toList());
+
+      assertThat(tokens, hasSize(5));
+      assertThat(trivia.size(), is(6));
+      assertThat(trivia.type(0), is(CommonTokenTypes.WHITESPACE));
+      assertThat(trivia.start(2), is(4));
+      assertThat(trivia.value(2), is("\t"));
+      assertThat(trivia.project(tokens, 0), is(document));
+    }
+  }
 }
@@ -0,0 +1,79 @@
+package com.mmnaseri.utils.dareader.impl;
+
+import com.mmnaseri.utils.dareader.DocumentReader;
+import com.mmnaseri.utils.dareader.DocumentSnapshot;
+import org.testng.annotations.Test;
+
+import java.lang.ref.WeakReference;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+/** Tests for {@link SnapshotPins}. */
+public class SnapshotPinsTest {
+
+  private static DocumentSnapshot snapshot(int cursor) {
+    DocumentReader reader = DocumentReader.of("0123456789");
+    reader.advance(cursor);
+    return reader.snapshot().create();
+  }
+
+  @Test
+  public void pinningSnapshots() {
+    SnapshotPins pins = new SnapshotPins();
+    DocumentSnapshot snapshot = snapshot(3);
+
+    pins.pin(snapshot);
+    pins.pin(snapshot);
+
+    assertThat(pins.lowWaterMark(8), is(3));
+    assertThat(pins.lowWaterMark(2), is(2));
+  }
+
+  @Test
+  public void unpinningClearedSnapshots() {
+    SnapshotPins pins = new SnapshotPins();
+    DocumentSnapshot snapshot = snapshot(3);
+    WeakReference<DocumentSnapshot> first = new WeakReference<>(snapshot);
+    WeakReference<DocumentSnapshot> second = new WeakReference<>(snapshot(5));
+    pins.pin(first, 3);
+    pins.pin(second, 5);
+
+    first.clear();
+    assertThat(pins.lowWaterMark(8), is(5));
+
+    second.clear();
+    assertThat(pins.lowWaterMark(8), is(8));
+  }
+
+  @Test
+  public void unpinningManyClearedSnapshots() {
+    SnapshotPins pins = new SnapshotPins();
+    DocumentSnapshot snapshot = snapshot(3);
+    for (int i = 0; i < 100; i++) {
+      WeakReference<DocumentSnapshot> reference = new WeakReference<>(snapshot);
+      pins.pin(reference, i);
+      reference.clear();
+    }
+    pins.pin(snapshot);
+
+    assertThat(pins.lowWaterMark(8), is(3));
+  }
+
+  @Test
+  public void holdingPositionsUntilReleased() {
+    SnapshotPins pins = new SnapshotPins();
+
+    pins.hold(4);
+    pins.hold(2);
+    pins.hold(4);
+    assertThat(pins.lowWaterMark(8), is(2));
+
+    pins.release(2);
+    pins.release(4);
+    assertThat(pins.lowWaterMark(8), is(4));
+
+    pins.release(4);
+    assertThat(pins.lowWaterMark(8), is(8));
+  }
+}
@@ -0,0 +1,189 @@
+package com.mmnaseri.utils.dareader.impl;
+
+import com.mmnaseri.utils.dareader.DocumentReader;
+import com.mmnaseri.utils.dareader.DocumentSnapshot;
+import com.mmnaseri.utils.dareader.DocumentTokenizer;
+import com.mmnaseri.utils.dareader.error.DocumentReaderException;
+import com.mmnaseri.utils.dareader.token.Token;
+import com.mmnaseri.utils.dareader.token.impl.CommonTokenTypes;
+import com.mmnaseri.utils.dareader.utils.CharClass;
+import org.testng.SkipException;
+import org.testng.annotations.Test;
+
+import java.io.StringReader;
+import java.lang.ref.WeakReference;
+import java.util.List;
+
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.nullValue;
+import static org.testng.Assert.expectThrows;
+
+/** Tests for {@link StreamingDocumentReader}. */
+public class StreamingDocumentReaderTest {
+
+  private static StreamingDocumentReader reader(String text) {
+    return new StreamingDocumentReader(new StringReader(text), 4);
+  }
+
+  private static String lines(int count) {
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < count; i++) {
+      builder.append("line ").append(i).append('\n');
+    }
+    return builder.toString();
+  }
+
+  @Test
+  public void readingPatternsLongerThanTheWindow() {
+    DocumentReader reader = reader("abcdefghij 1234567890");
+
+    assertThat(reader.read("[a-z]+"), is("abcdefghij"));
+    assertThat(reader.read("\\d+"), is(nullValue()));
+    assertThat(reader.read("\\s+(\\d+)", 1), is("1234567890"));
+    assertThat(reader.hasNext(), is(false));
+    assertThat(reader.length(), is(21));
+  }
+
+  @Test
+  public void checkingForPatterns() {
+    DocumentReader reader = reader("abcdefghij 1234567890");
+
+    assertThat(reader.has("\\d{3}"), is(true));
+    assertThat(reader.has("abc", 3), is(true));
+    assertThat(reader.has("abcdef", 3), is(false));
+    assertThat(reader.has("[a-z]+ \\d", 12), is(true));
+    assertThat(reader.cursor(), is(0));
+  }
+
+  @Test
+  public void scanningPastTheWindow() {
+    DocumentReader reader = reader("abcdefghij 1234567890");
+
+    assertThat(reader.span(CharClass.LOWERCASE, 0), is(10));
+    assertThat(reader.peek(11), is((int) '1'));
+    assertThat(reader.peek(21), is(-1));
+    assertThat(reader.readWhile(CharClass.LOWERCASE), is("abcdefghij"));
+    assertThat(reader.skipWhile(CharClass.WHITESPACE), is(1));
+    assertThat(reader.readWhile(CharClass.DIGIT), is("1234567890"));
+    assertThat(reader.hasNext(), is(false));
+  }
+
+  @Test
+  public void discardingText() {
+    String text = lines(1000);
+    DocumentReader reader = reader(text);
+
+    for (int i = 0; i < 500; i++) {
+      reader.expect("[^\\n]*\\n");
+    }
+
+    assertThat(reader.line(), is(501));
+    assertThat(reader.offset(), is(1));
+    // Only a small portion of the document is still in memory.
+    assertThat(reader.toString().length(), is(lessThan(100)));
+    expectThrows(DocumentReaderException.class, () -> reader.rewind(100));
+
+    reader.advance(5);
+    assertThat(reader.read("\\d+"), is("500"));
+    assertThat(reader.offset(), is(9));
+  }
+
+  @Test
+  public void snapshotsPinTheWindow() {
+    String text = lines(100);
+    DocumentReader reader = reader(text);
+    reader.expect("[^\\n]*\\n");
+    DocumentSnapshot snapshot = reader.snapshot().create();
+
+    while (reader.hasNext()) {
+      reader.read();
+    }
+    assertThat(reader.line(), is(101));
+
+    snapshot.apply();
+
+    assertThat(reader.cursor(), is(7));
+    assertThat(reader.line(), is(2));
+    assertThat(reader.read("[^\\n]*"), is("line 1"));
+    reader.rewind(6);
+    assertThat(reader.cursor(), is(7));
+  }
+
+  @Test
+  public void droppedSnapshotsStopPinningTheWindow() {
+    DocumentReader reader = reader(lines(1000));
+    reader.expect("[^\\n]*\\n");
+    WeakReference<DocumentSnapshot> snapshot = new WeakReference<>(reader.snapshot().create());
+    reader.expect("[^\\n]*\\n");
+
+    for (int i = 0; i < 100 && snapshot.get() != null; i++) {
+      System.gc();
+    }
+    if (snapshot.get() != null) {
+      throw new SkipException("The snapshot was not collected");
+    }
+    while (reader.hasNext()) {
+      reader.expect("[^\\n]*\\n");
+    }
+
+    assertThat(reader.toString().length(), is(lessThan(100)));
+  }
+
+  @Test
+  public void marksPinTheWindowUntilReleased() {
+    String text = lines(100);
+    DocumentReader reader = reader(text);
+    reader.expect("[^\\n]*\\n");
+    long mark = reader.mark();
+
+    for (int i = 0; i < 10; i++) {
+      reader.expect("[^\\n]*\\n");
+    }
+    reader.reset(mark);
+
+    assertThat(reader.cursor(), is(7));
+    assertThat(reader.line(), is(2));
+    assertThat(reader.read("[^\\n]*"), is("line 1"));
+
+    reader.release(mark);
+    while (reader.hasNext()) {
+      reader.read();
+    }
+    expectThrows(DocumentReaderException.class, () -> reader.reset(mark));
+  }
+
+  @Test
+  public void cutsUnpinTheWindow() {
+    DocumentReader reader = reader(lines(1000));
+    long mark = reader.mark();
+
+    while (reader.hasNext()) {
+      reader.expect("[^\\n]*\\n");
+      reader.cut();
+    }
+
+    assertThat(reader.floor(), is(reader.cursor()));
+    // The mark no longer keeps the text before the cut in memory.
+    assertThat(reader.toString().length(), is(lessThan(100)));
+    expectThrows(DocumentReaderException.class, () -> reader.reset(mark));
+    reader.release(mark);
+  }
+
+  @Test
+  public void tokenizingAStream() {
+    List<Token> tokens =
+        DocumentTokenizer.with(CommonTokenTypes.registry())
+            .create(new StringReader("ab 12.5 +cd"))
+            .stream()
+            .collect(toList());
+
+    assertThat(
+        tokens,
+        is(
+            DocumentTokenizer.with(CommonTokenTypes.registry()).create("ab 12.5 +cd").stream()
+                .collect(toList())));
+  }
+}
@@ -0,0 +1,60 @@
+package com.mmnaseri.utils.dareader.impl;
+
+import com.mmnaseri.utils.dareader.token.Token;
+import com.mmnaseri.utils.dareader.token.impl.CommonTokenTypes;
+import org.testng.annotations.Test;
+
+import java.util.Collections;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+/** Tests for {@link TokenMemo}. */
+public class TokenMemoTest {
+
+  @Test
+  public void rememberingTokensAndCandidates() {
+    TokenMemo memo = new TokenMemo();
+    Token token = Token.create(CommonTokenTypes.UNSIGNED_INT, "12");
+
+    assertThat(memo.find(0), is(-1));
+
+    memo.putToken(0, token, 2);
+    memo.putToken(2, null, 2);
+    memo.putCandidates(2, Collections.emptySet());
+
+    assertThat(memo.hasToken(memo.find(0)), is(true));
+    assertThat(memo.token(memo.find(0)), is(token));
+    assertThat(memo.end(memo.find(0)), is(2));
+    assertThat(memo.hasCandidates(memo.find(0)), is(false));
+    assertThat(memo.hasToken(memo.find(2)), is(true));
+    assertThat(memo.token(memo.find(2)), is(nullValue()));
+    assertThat(memo.candidates(memo.find(2)).isEmpty(), is(true));
+
+    memo.clear();
+
+    assertThat(memo.find(0), is(-1));
+    assertThat(memo.find(2), is(-1));
+  }
+
+  @Test
+  public void growingAndStartingOverWhenFull() {
+    TokenMemo memo = new TokenMemo();
+    Token token = Token.create(CommonTokenTypes.UNSIGNED_INT, "1");
+
+    for (int cursor = 0; cursor < 1_000; cursor++) {
+      memo.putToken(cursor, token, cursor + 1);
+    }
+    for (int cursor = 0; cursor < 1_000; cursor++) {
+      assertThat(memo.end(memo.find(cursor)), is(cursor + 1));
+    }
+
+    for (int cursor = 1_000; cursor < 100_000; cursor++) {
+      memo.putToken(cursor, token, cursor + 1);
+    }
+
+    assertThat(memo.find(0), is(-1));
+    assertThat(memo.end(memo.find(99_999)), is(100_000));
+  }
+}
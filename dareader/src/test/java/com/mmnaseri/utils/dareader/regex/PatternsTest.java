@@ -0,0 +1,67 @@
+package com.mmnaseri.utils.dareader.regex;
+
+import com.mmnaseri.utils.dareader.utils.CharPredicate;
+import org.testng.annotations.Test;
+
+import java.util.regex.Pattern;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+/** Tests for {@link Patterns}. */
+public class PatternsTest {
+
+  private static CharPredicate first(String pattern) {
+    CharPredicate first = Patterns.firstCharacters(Pattern.compile(pattern));
+    assertThat(first, is(notNullValue()));
+    return first;
+  }
+
+  @Test
+  public void findingTheFirstCharacters() {
+    CharPredicate number = first("[\\-+]?\\d+(\\.\\d+)?");
+    assertThat(number.test('-'), is(true));
+    assertThat(number.test('+'), is(true));
+    assertThat(number.test('7'), is(true));
+    assertThat(number.test('.'), is(false));
+    assertThat(number.test('a'), is(false));
+
+    CharPredicate keyword = first("if|else|(?:wh)ile");
+    assertThat(keyword.test('i'), is(true));
+    assertThat(keyword.test('e'), is(true));
+    assertThat(keyword.test('w'), is(true));
+    assertThat(keyword.test('h'), is(false));
+
+    CharPredicate text = first("[^\"]+");
+    assertThat(text.test('a'), is(true));
+    assertThat(text.test('\u00e9'), is(true));
+    assertThat(text.test('"'), is(false));
+  }
+
+  @Test
+  public void agreeingWithTheEngine() {
+    String[] patterns = {"a*b", "(?:ab|c)+d?", "x{0,2}[0-9]", "\\s*\\w", ".", "[^a-z]"};
+    for (String source : patterns) {
+      Pattern pattern = Pattern.compile(source);
+      CharPredicate first = first(source);
+      for (char character = 0; character < 512; character++) {
+        String text = character + "bd1a";
+        if (pattern.matcher(text).lookingAt()) {
+          assertThat(source + " at " + (int) character, first.test(character), is(true));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void givingUpOnPatternsThatCanBeEmptyOrAreUnsupported() {
+    assertThat(Patterns.firstCharacters(Pattern.compile("a*")), is(nullValue()));
+    assertThat(Patterns.firstCharacters(Pattern.compile("a|")), is(nullValue()));
+    assertThat(Patterns.firstCharacters(Pattern.compile("^a")), is(nullValue()));
+    assertThat(Patterns.firstCharacters(Pattern.compile("(?=a)\\w")), is(nullValue()));
+    assertThat(
+        Patterns.firstCharacters(Pattern.compile("a", Pattern.CASE_INSENSITIVE)), is(nullValue()));
+  }
+}
@@ -0,0 +1,105 @@
+package com.mmnaseri.utils.dareader.regex;
+
+import com.mmnaseri.utils.dareader.DocumentReader;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+/** Tests for {@link TokenAutomaton}. */
+public class TokenAutomatonTest {
+
+  /** Tries the compiled patterns one by one, the way the automaton is supposed to. */
+  private static long expected(TokenAutomaton automaton, List<Pattern> patterns, String text) {
+    for (int i = 0; i < patterns.size(); i++) {
+      if (!automaton.compiled(i)) {
+        continue;
+      }
+      Matcher matcher = patterns.get(i).matcher(text);
+      if (matcher.lookingAt()) {
+        return ((long) i << 32) | matcher.end();
+      }
+    }
+    return TokenAutomaton.NO_MATCH;
+  }
+
+  private static void assertMatchesLikeTheEngine(List<String> sources, String alphabet) {
+    List<Pattern> patterns = sources.stream().map(Pattern::compile).collect(toList());
+    TokenAutomaton automaton = TokenAutomaton.compile(patterns);
+    Random random = new Random(42);
+    for (int i = 0; i < 5_000; i++) {
+      StringBuilder text = new StringBuilder();
+      int length = random.nextInt(10);
+      for (int j = 0; j < length; j++) {
+        text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+      }
+      assertThat(
+          "Text: " + text,
+          automaton.match(DocumentReader.of(text.toString())),
+          is(expected(automaton, patterns, text.toString())));
+    }
+  }
+
+  @Test
+  public void supportedPatterns() {
+    assertThat(TokenAutomaton.supports(Pattern.compile("[a-z]+")), is(true));
+    assertThat(TokenAutomaton.supports(Pattern.compile("(?:ab|c)*?d")), is(true));
+    assertThat(
+        TokenAutomaton.supports(Pattern.compile("(?<name>\\w+)\\.\\x41\\u0042\\0101")), is(true));
+    assertThat(TokenAutomaton.supports(Pattern.compile("[^\\s\\d-]{2,5}")), is(true));
+    assertThat(TokenAutomaton.supports(Pattern.compile("a*")), is(false));
+    assertThat(TokenAutomaton.supports(Pattern.compile("^a")), is(false));
+    assertThat(TokenAutomaton.supports(Pattern.compile("a\\b")), is(false));
+    assertThat(TokenAutomaton.supports(Pattern.compile("(a)\\1")), is(false));
+    assertThat(TokenAutomaton.supports(Pattern.compile("a(?=b)")), is(false));
+    assertThat(TokenAutomaton.supports(Pattern.compile("a++")), is(false));
+    assertThat(TokenAutomaton.supports(Pattern.compile("(a?)+b")), is(false));
+    assertThat(TokenAutomaton.supports(Pattern.compile("[a-z&&[^c]]")), is(false));
+    assertThat(TokenAutomaton.supports(Pattern.compile("a", Pattern.CASE_INSENSITIVE)), is(false));
+    assertThat(TokenAutomaton.supports(Pattern.compile("\\p{Alpha}")), is(false));
+  }
+
+  @Test
+  public void matchingCommonTokens() {
+    assertMatchesLikeTheEngine(
+        Arrays.asList(
+            "\\s+", "\\d+\\.\\d+", "[\\-+]\\d+\\.\\d+", "\\d+", "[\\-+]\\d+", "[a-z]+", "[+\\-/*]"),
+        "ab19.+-* \n");
+  }
+
+  @Test
+  public void followingBacktrackingSemantics() {
+    // None of these match the longest possible prefix.
+    assertMatchesLikeTheEngine(
+        Arrays.asList("a|ab", "a*(ab)?", "(a|ab)(c|bcd)", "a+?b?", "a{1,3}?c", "x"), "abcdx");
+  }
+
+  @Test
+  public void preferringEarlierPatterns() {
+    assertMatchesLikeTheEngine(
+        Arrays.asList("b", "a+b", "a+", "(?:ab)+c", "[ab]{2}", "a*", "."), "abc\n");
+  }
+
+  @Test
+  public void matchingOtherCharacters() {
+    assertMatchesLikeTheEngine(
+        Arrays.asList("[^a-c]+", "\\W\\S", ".", "\\u00e9+"), "ab\u00e9\u4e2d\r\u2028 ");
+  }
+
+  @Test
+  public void deferringOnSurrogates() {
+    TokenAutomaton automaton = TokenAutomaton.compile(Arrays.asList(Pattern.compile(".")));
+
+    assertThat(automaton.match(DocumentReader.of("\uD83D\uDE00")), is(TokenAutomaton.UNDECIDED));
+    assertThat(automaton.match(DocumentReader.of("")), is(TokenAutomaton.NO_MATCH));
+    assertThat(TokenAutomaton.length(automaton.match(DocumentReader.of("ab"))), is(1));
+    assertThat(TokenAutomaton.pattern(automaton.match(DocumentReader.of("ab"))), is(0));
+  }
+}
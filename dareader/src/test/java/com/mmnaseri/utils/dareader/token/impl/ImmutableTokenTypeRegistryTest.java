@@ -0,0 +1,105 @@
+package com.mmnaseri.utils.dareader.token.impl;
+
+import com.mmnaseri.utils.dareader.token.FrozenTokenTypeRegistry;
+import com.mmnaseri.utils.dareader.token.TokenType;
+import com.mmnaseri.utils.dareader.token.TokenTypeRegistry;
+import com.mmnaseri.utils.dareader.utils.CharClass;
+import com.mmnaseri.utils.dareader.utils.TokenReaders;
+import org.testng.annotations.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.testng.Assert.expectThrows;
+
+/** Tests for {@link ImmutableTokenTypeRegistry}. */
+public class ImmutableTokenTypeRegistryTest {
+
+  @Test
+  public void assigningOrdinalsInTagOrder() {
+    FrozenTokenTypeRegistry registry = CommonTokenTypes.registry().freeze();
+
+    assertThat(registry.size(), is(CommonTokenTypes.values().length));
+    for (CommonTokenTypes type : CommonTokenTypes.values()) {
+      assertThat(registry.ordinal(type), is(type.ordinal()));
+      assertThat(registry.type(type.ordinal()), is(type));
+      assertThat(
+          registry.reader(type.ordinal()),
+          is(sameInstance(CommonTokenTypes.registry().reader(type))));
+      assertThat(registry.reader(type), is(sameInstance(registry.reader(type.ordinal()))));
+    }
+    assertThat(registry.ordinal(() -> 42), is(-1));
+    assertThat(registry.tokenTypes(), contains((Object[]) CommonTokenTypes.values()));
+    assertThat(registry.freeze(), is(sameInstance(registry)));
+  }
+
+  @Test
+  public void keepingTheRegistryIntact() {
+    TokenTypeRegistry original = CommonTokenTypes.registry().copy();
+    FrozenTokenTypeRegistry registry = original.freeze();
+    TokenType other = () -> 42;
+
+    original.add(other, TokenReaders.literal(other, "x"));
+
+    assertThat(registry.tokenTypes(), hasSize(CommonTokenTypes.values().length));
+    expectThrows(IllegalStateException.class, () -> registry.reader(other));
+    expectThrows(
+        UnsupportedOperationException.class,
+        () -> registry.add(other, TokenReaders.literal(other, "x")));
+    expectThrows(UnsupportedOperationException.class, () -> registry.tokenTypes().clear());
+    assertThat(registry.copy().add(other, original.reader(other)).tokenTypes(), hasSize(8));
+    assertThat(
+        registry
+            .merge(new SimpleTokenTypeRegistry().add(other, original.reader(other)))
+            .tokenTypes(),
+        hasSize(8));
+  }
+
+  @Test
+  public void dispatchingOnTheFirstCharacter() {
+    TokenType word = () -> 1;
+    TokenType anything = () -> 2;
+    TokenType number = () -> 3;
+    TokenType accented = () -> 4;
+    FrozenTokenTypeRegistry registry =
+        new SimpleTokenTypeRegistry()
+            .add(word, TokenReaders.charClass(word, CharClass.WORD))
+            .add(anything, reader -> null)
+            .add(number, TokenReaders.pattern(number, "[\\-+]?\\d+"))
+            .add(accented, TokenReaders.literal(accented, "\u00e9"))
+            .freeze();
+
+    assertThat(registry.candidates('a'), is(new int[] {0, 1}));
+    assertThat(registry.candidates('7'), is(new int[] {0, 1, 2}));
+    assertThat(registry.candidates('-'), is(new int[] {1, 2}));
+    assertThat(registry.candidates(' '), is(new int[] {1}));
+    assertThat(registry.candidates('\u00e9'), is(new int[] {1, 3}));
+    assertThat(registry.candidates('\u4e2d'), is(new int[] {1}));
+    assertThat(registry.candidates('x'), is(sameInstance(registry.candidates('y'))));
+  }
+
+  @Test
+  public void skippingTokenTypes() {
+    TokenTypeRegistry registry = CommonTokenTypes.registry().copy();
+    int version = registry.version();
+    registry.skip(CommonTokenTypes.WHITESPACE);
+
+    assertThat(registry.version(), is(not(version)));
+    assertThat(registry.isSkipped(CommonTokenTypes.WHITESPACE), is(true));
+    assertThat(registry.isSkipped(CommonTokenTypes.CONSTANT), is(false));
+    expectThrows(IllegalStateException.class, () -> registry.skip(() -> 42));
+
+    FrozenTokenTypeRegistry frozen = registry.freeze();
+
+    assertThat(frozen.skipped().length, is(1));
+    assertThat(frozen.skipped()[0], is(CommonTokenTypes.WHITESPACE.ordinal()));
+    assertThat(frozen.isSkipped(CommonTokenTypes.WHITESPACE.ordinal()), is(true));
+    assertThat(frozen.isSkipped(CommonTokenTypes.WHITESPACE), is(true));
+    assertThat(frozen.isSkipped(() -> 42), is(false));
+    assertThat(frozen.copy().isSkipped(CommonTokenTypes.WHITESPACE), is(true));
+    assertThat(CommonTokenTypes.registry().isSkipped(CommonTokenTypes.WHITESPACE), is(false));
+  }
+}
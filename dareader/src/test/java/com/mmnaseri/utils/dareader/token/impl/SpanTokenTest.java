@@ -0,0 +1,62 @@
+package com.mmnaseri.utils.dareader.token.impl;
+
+import com.mmnaseri.utils.dareader.token.Token;
+import org.testng.annotations.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.testng.Assert.expectThrows;
+
+/** Tests for {@link SpanToken}. */
+public class SpanTokenTest {
+
+  @Test
+  public void referringToTheDocument() {
+    String document = "say \"hello\" twice";
+    SpanToken token = new SpanToken(CommonTokenTypes.CONSTANT, document, 4, 7, 5, 5);
+
+    assertThat(token.start(), is(4));
+    assertThat(token.length(), is(7));
+    assertThat(token.valueStart(), is(5));
+    assertThat(token.valueView().toString(), is("hello"));
+    String value = token.value();
+    assertThat(value, is("hello"));
+    // The value is only copied once.
+    assertThat(token.value(), is(sameInstance(value)));
+    assertThat(token.valueView(), is(sameInstance(value)));
+  }
+
+  @Test
+  public void comparingWithOtherTokens() {
+    String document = "abc abc abd";
+    Token first = Token.span(CommonTokenTypes.CONSTANT, document, 0, 3);
+    Token second = Token.span(CommonTokenTypes.CONSTANT, document, 4, 3);
+    Token simple = Token.create(CommonTokenTypes.CONSTANT, "abc");
+
+    assertThat(first, is(second));
+    assertThat(first, is(simple));
+    assertThat(simple, is(first));
+    assertThat(first.hashCode(), is(simple.hashCode()));
+    assertThat(second.hashCode(), is(simple.hashCode()));
+    assertThat(first, is(not(Token.span(CommonTokenTypes.CONSTANT, document, 8, 3))));
+    assertThat(first, is(not(Token.span(CommonTokenTypes.OPERATOR, document, 4, 3))));
+    assertThat(first.toString(), is(simple.toString()));
+    // Copying the value has no bearing on the hash code.
+    first.value();
+    assertThat(first.hashCode(), is(simple.hashCode()));
+    // Once copied, the value is still compared with the span of the other token, not its document.
+    assertThat(first, is(Token.span(CommonTokenTypes.CONSTANT, "abc d", 0, 3)));
+  }
+
+  @Test
+  public void stayingWithinTheDocument() {
+    expectThrows(
+        IllegalArgumentException.class,
+        () -> new SpanToken(CommonTokenTypes.CONSTANT, "abc", 2, 2));
+    expectThrows(
+        IllegalArgumentException.class,
+        () -> new SpanToken(CommonTokenTypes.CONSTANT, "abc", 0, 3, 1, 3));
+  }
+}
@@ -0,0 +1,94 @@
+package com.mmnaseri.utils.dareader.token.impl;
+
+import com.mmnaseri.utils.dareader.DocumentReader;
+import com.mmnaseri.utils.dareader.token.FrozenTokenTypeRegistry;
+import com.mmnaseri.utils.dareader.token.TokenType;
+import org.testng.annotations.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.testng.Assert.expectThrows;
+
+/** Tests for {@link TokenBuffer}. */
+public class TokenBufferTest {
+
+  private static final FrozenTokenTypeRegistry REGISTRY = CommonTokenTypes.registry().freeze();
+
+  @Test
+  public void readingValuesFromTheDocument() {
+    DocumentReader reader = DocumentReader.of("abc 12");
+    TokenBuffer buffer = new TokenBuffer(REGISTRY, 4);
+    buffer.reset(reader);
+    buffer.add(CommonTokenTypes.CONSTANT, 0, 3, null);
+    buffer.add(CommonTokenTypes.WHITESPACE, 3, 1, null);
+    buffer.add(new SimpleToken(CommonTokenTypes.UNSIGNED_INT, "twelve", 2), 4);
+
+    assertThat(buffer.size(), is(3));
+    assertThat(buffer.isFull(), is(false));
+    assertThat(buffer.type(0), is(CommonTokenTypes.CONSTANT.ordinal()));
+    assertThat(buffer.tokenType(2), is(CommonTokenTypes.UNSIGNED_INT));
+    assertThat(buffer.start(2), is(4));
+    assertThat(buffer.length(2), is(2));
+    assertThat(buffer.text(0).toString(), is("abc"));
+    assertThat(buffer.text(0), is(not(instanceOf(String.class))));
+    assertThat(buffer.value(0), is("abc"));
+    // Values given by the readers take precedence over the text of the token.
+    assertThat(buffer.text(2).toString(), is("12"));
+    assertThat(buffer.value(2), is("twelve"));
+    assertThat(buffer.token(1), is(new SimpleToken(CommonTokenTypes.WHITESPACE, " ", 1)));
+    expectThrows(IndexOutOfBoundsException.class, () -> buffer.type(3));
+  }
+
+  @Test
+  public void reusingTheBuffer() {
+    TokenBuffer buffer = new TokenBuffer(REGISTRY, 2);
+    buffer.reset(DocumentReader.of("ab"));
+    buffer.add(CommonTokenTypes.CONSTANT, 0, 1, "x");
+    buffer.add(CommonTokenTypes.CONSTANT, 1, 1, null);
+
+    assertThat(buffer.isFull(), is(true));
+    expectThrows(
+        IllegalStateException.class, () -> buffer.add(CommonTokenTypes.CONSTANT, 2, 1, "c"));
+
+    buffer.reset(null);
+
+    assertThat(buffer.size(), is(0));
+    assertThat(buffer.document(), is(nullValue()));
+    // Without a document to read them from, the values have to be given.
+    expectThrows(
+        IllegalStateException.class, () -> buffer.add(CommonTokenTypes.CONSTANT, 0, 1, null));
+    buffer.add(CommonTokenTypes.CONSTANT, 0, 1, "y");
+    assertThat(buffer.value(0), is("y"));
+  }
+
+  @Test
+  public void keepingTypesThatAreNotInTheRegistry() {
+    TokenType first = () -> 1000;
+    TokenType second = () -> 1001;
+    TokenBuffer buffer = new TokenBuffer(REGISTRY, 4);
+    buffer.reset(null);
+    buffer.add(first, 0, 1, "a");
+    buffer.add(second, 1, 1, "b");
+    buffer.add(first, 2, 1, "c");
+
+    assertThat(buffer.type(0), is(REGISTRY.size()));
+    assertThat(buffer.type(1), is(REGISTRY.size() + 1));
+    assertThat(buffer.type(2), is(REGISTRY.size()));
+    assertThat(buffer.tokenType(1), is(second));
+  }
+
+  @Test
+  public void trackingLines() {
+    TokenBuffer buffer = new TokenBuffer(REGISTRY, 4, true);
+    buffer.reset(null);
+    buffer.add(CommonTokenTypes.CONSTANT, 0, 1, "a");
+    buffer.recordLine(3);
+
+    assertThat(buffer.tracksLines(), is(true));
+    assertThat(buffer.line(0), is(3));
+    expectThrows(IllegalStateException.class, () -> new TokenBuffer(REGISTRY, 4).line(0));
+  }
+}
@@ -0,0 +1,94 @@
+package com.mmnaseri.utils.dareader.token.impl;
+
+import com.mmnaseri.utils.dareader.DocumentTokenizer;
+import com.mmnaseri.utils.dareader.token.Token;
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+
+/** Tests for {@link TokenInterner}. */
+public class TokenInternerTest {
+
+  @Test
+  public void sharingRepeatedTokens() {
+    String document = "true true true";
+    TokenInterner interner = new TokenInterner();
+    Token first = Token.span(CommonTokenTypes.CONSTANT, document, 0, 4);
+    Token second = Token.span(CommonTokenTypes.CONSTANT, document, 5, 4);
+    Token third = Token.span(CommonTokenTypes.CONSTANT, document, 10, 4);
+
+    // Values are only interned once they have been seen before.
+    assertThat(interner.intern(first), is(sameInstance(first)));
+    Token canonical = interner.intern(second);
+    assertThat(canonical, is(not(sameInstance(second))));
+    assertThat(canonical, is(second));
+    assertThat(canonical.start(), is(-1));
+    assertThat(interner.intern(third), is(sameInstance(canonical)));
+    assertThat(interner.intern(Token.create(CommonTokenTypes.CONSTANT, "true")), is(canonical));
+    assertThat(
+        interner.intern(Token.create(CommonTokenTypes.OPERATOR, "true")),
+        is(not(sameInstance(canonical))));
+
+    assertThat(interner.size(), is(1));
+    assertThat(interner.hits(), is(2L));
+    assertThat(interner.misses(), is(3L));
+    assertThat(interner.retainedSize(), is(greaterThan(0L)));
+  }
+
+  @Test
+  public void bypassingLongValues() {
+    TokenInterner interner = new TokenInterner(16, 3);
+    Token token = Token.create(CommonTokenTypes.CONSTANT, "abcd");
+
+    assertThat(interner.intern(token), is(sameInstance(token)));
+    assertThat(interner.intern(token), is(sameInstance(token)));
+    assertThat(interner.bypassed(), is(2L));
+    assertThat(interner.size(), is(0));
+    assertThat(interner.hitRate(), is(0.0));
+  }
+
+  @Test
+  public void stayingWithinItsCapacity() {
+    TokenInterner interner = new TokenInterner(4, 8);
+    for (int i = 0; i < 100; i++) {
+      Token token = Token.create(CommonTokenTypes.UNSIGNED_INT, String.valueOf(i));
+      interner.intern(token);
+      interner.intern(token);
+    }
+
+    assertThat(interner.size(), is(4));
+
+    interner.clear();
+
+    assertThat(interner.size(), is(0));
+    assertThat(interner.retainedSize(), is(0L));
+    assertThat(interner.misses(), is(0L));
+  }
+
+  @Test
+  public void interningTokensReadByTokenizers() {
+    String document = "a + b + a + b";
+    TokenInterner interner = new TokenInterner();
+
+    List<Token> tokens =
+        DocumentTokenizer.with(CommonTokenTypes.registry().freeze())
+            .interning(interner)
+            .create(document)
+            .stream()
+            .collect(toList());
+
+    assertThat(tokens.size(), is(13));
+    // The first "+" is only seen, the second one is interned, and the third is found.
+    assertThat(tokens.get(6), is(not(sameInstance(tokens.get(2)))));
+    assertThat(tokens.get(10), is(sameInstance(tokens.get(6))));
+    assertThat(tokens.get(11), is(sameInstance(tokens.get(5))));
+    assertThat(interner.hitRate(), is(greaterThan(0.0)));
+  }
+}
@@ -0,0 +1,87 @@
+package com.mmnaseri.utils.dareader.token.impl;
+
+import com.mmnaseri.utils.dareader.token.FrozenTokenTypeRegistry;
+import com.mmnaseri.utils.dareader.token.TokenType;
+import com.mmnaseri.utils.dareader.token.TokenTypeRegistry;
+import com.mmnaseri.utils.dareader.utils.TokenReaders;
+import org.testng.annotations.Test;
+
+import java.util.Iterator;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.testng.Assert.expectThrows;
+
+/** Tests for {@link TokenTypeSet}. */
+public class TokenTypeSetTest {
+
+  private static FrozenTokenTypeRegistry registry(int size) {
+    TokenTypeRegistry registry = new SimpleTokenTypeRegistry();
+    for (int i = 0; i < size; i++) {
+      int tag = size - i;
+      TokenType type = new SimpleTokenType(tag);
+      registry.add(type, TokenReaders.literal(type, "x"));
+    }
+    return registry.freeze();
+  }
+
+  @Test
+  public void addingAndRemovingTypes() {
+    FrozenTokenTypeRegistry registry = CommonTokenTypes.registry().freeze();
+    TokenTypeSet set =
+        TokenTypeSet.of(registry, CommonTokenTypes.OPERATOR, CommonTokenTypes.WHITESPACE);
+
+    assertThat(set, contains(CommonTokenTypes.WHITESPACE, CommonTokenTypes.OPERATOR));
+    assertThat(set.contains(CommonTokenTypes.OPERATOR), is(true));
+    assertThat(set.contains(CommonTokenTypes.CONSTANT), is(false));
+    assertThat(set.contains("OPERATOR"), is(false));
+    assertThat(set.add(CommonTokenTypes.OPERATOR), is(false));
+    assertThat(set.remove(CommonTokenTypes.OPERATOR), is(true));
+    assertThat(set.remove(CommonTokenTypes.OPERATOR), is(false));
+    assertThat(set, contains(CommonTokenTypes.WHITESPACE));
+    expectThrows(IllegalArgumentException.class, () -> set.add(new SimpleTokenType(42)));
+
+    set.clear();
+
+    assertThat(set, is(empty()));
+  }
+
+  @Test
+  public void spanningSeveralWords() {
+    FrozenTokenTypeRegistry registry = registry(150);
+    TokenTypeSet set = registry.newSet();
+    for (int ordinal = 0; ordinal < registry.size(); ordinal += 7) {
+      set.addOrdinal(ordinal);
+    }
+
+    assertThat(set, hasSize(22));
+    assertThat(set.containsOrdinal(63), is(true));
+    assertThat(set.containsOrdinal(64), is(false));
+    assertThat(set.containsOrdinal(147), is(true));
+    assertThat(set.containsOrdinal(150), is(false));
+    int expected = 0;
+    for (Iterator<TokenType> iterator = set.iterator(); iterator.hasNext(); expected += 7) {
+      TokenType type = iterator.next();
+      assertThat(registry.ordinal(type), is(expected));
+      iterator.remove();
+    }
+    assertThat(set, is(empty()));
+  }
+
+  private static final class SimpleTokenType implements TokenType {
+
+    private final int tag;
+
+    private SimpleTokenType(int tag) {
+      this.tag = tag;
+    }
+
+    @Override
+    public int tag() {
+      return tag;
+    }
+  }
+}
@@ -0,0 +1,56 @@
+package com.mmnaseri.utils.dareader.utils;
+
+import org.testng.annotations.Test;
+
+import java.util.regex.Pattern;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.testng.Assert.expectThrows;
+
+/** Tests for {@link CharClass}. */
+public class CharClassTest {
+
+  private static void assertEquivalent(CharPredicate predicate, String pattern) {
+    Pattern compiled = Pattern.compile(pattern);
+    for (char character = 0; character < 512; character++) {
+      assertThat(
+          "Character " + (int) character,
+          predicate.test(character),
+          is(compiled.matcher(String.valueOf(character)).matches()));
+    }
+  }
+
+  @Test
+  public void predefinedClasses() {
+    assertEquivalent(CharClass.WHITESPACE, "\\s");
+    assertEquivalent(CharClass.DIGIT, "\\d");
+    assertEquivalent(CharClass.LOWERCASE, "[a-z]");
+    assertEquivalent(CharClass.UPPERCASE, "[A-Z]");
+    assertEquivalent(CharClass.WORD, "\\w");
+  }
+
+  @Test
+  public void individualCharacters() {
+    assertEquivalent(CharClass.of("+-/*"), "[+\\-/*]");
+    assertEquivalent(CharClass.of(""), "[^\\s\\S]");
+  }
+
+  @Test
+  public void ranges() {
+    assertEquivalent(CharClass.range('a', 'f'), "[a-f]");
+    assertEquivalent(CharClass.range('?', 'A'), "[?-A]");
+    assertEquivalent(CharClass.range('x', '\u0150'), "[x-\u0150]");
+    assertEquivalent(CharClass.range('\u0100', '\u0101'), "[\u0100\u0101]");
+    expectThrows(IllegalArgumentException.class, () -> CharClass.range('b', 'a'));
+  }
+
+  @Test
+  public void combiningClasses() {
+    assertEquivalent(CharClass.DIGIT.union(CharClass.of(".")), "[0-9.]");
+    assertEquivalent(CharClass.of(Character::isLetter), "\\p{javaLetter}");
+    assertEquivalent(CharClass.DIGIT.or(CharClass.LOWERCASE).negate(), "[^0-9a-z]");
+    assertEquivalent(CharClass.WORD.and(CharClass.DIGIT.negate()), "[a-zA-Z_]");
+    assertThat(CharClass.of(CharClass.DIGIT), is(CharClass.DIGIT));
+  }
+}
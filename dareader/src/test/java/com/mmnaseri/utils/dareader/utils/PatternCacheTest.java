@@ -0,0 +1,82 @@
+package com.mmnaseri.utils.dareader.utils;
+
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.regex.Pattern;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.testng.Assert.expectThrows;
+
+/** Tests for {@link PatternCache}. */
+public class PatternCacheTest {
+
+  @Test
+  public void invalidCapacity() {
+    expectThrows(IllegalArgumentException.class, () -> new PatternCache(0));
+  }
+
+  @Test
+  public void compilingWithFlags() {
+    Pattern pattern = new PatternCache(1).compile("a.b");
+
+    assertThat(pattern.flags(), is(Pattern.DOTALL | Pattern.MULTILINE));
+    assertThat(pattern.matcher("a\nb").matches(), is(true));
+  }
+
+  @Test
+  public void hitsAndMisses() {
+    PatternCache cache = new PatternCache(4);
+
+    Pattern first = cache.compile("a+");
+    Pattern second = cache.compile("a+");
+    cache.compile("b+");
+
+    assertThat(second, is(sameInstance(first)));
+    assertThat(cache.hits(), is(1L));
+    assertThat(cache.misses(), is(2L));
+    assertThat(cache.evictions(), is(0L));
+    assertThat(cache.size(), is(2));
+  }
+
+  @Test
+  public void evictingLeastRecentlyUsed() {
+    PatternCache cache = new PatternCache(2);
+
+    Pattern a = cache.compile("a");
+    Pattern b = cache.compile("b");
+    // Touch "a" so that "b" becomes the eldest entry.
+    cache.compile("a");
+    cache.compile("c");
+
+    assertThat(cache.size(), is(2));
+    assertThat(cache.evictions(), is(1L));
+    assertThat(cache.compile("a"), is(sameInstance(a)));
+    assertThat(cache.compile("b"), is(not(sameInstance(b))));
+  }
+
+  @Test
+  public void warmingUp() {
+    PatternCache cache = new PatternCache(8).warmUp(Arrays.asList("a", "b", "c"));
+
+    assertThat(cache.size(), is(3));
+    assertThat(cache.misses(), is(0L));
+
+    cache.compile("b");
+
+    assertThat(cache.hits(), is(1L));
+    assertThat(cache.misses(), is(0L));
+  }
+
+  @Test
+  public void clearing() {
+    PatternCache cache = new PatternCache(8).warmUp(Arrays.asList("a", "b"));
+
+    cache.clear();
+
+    assertThat(cache.size(), is(0));
+  }
+}
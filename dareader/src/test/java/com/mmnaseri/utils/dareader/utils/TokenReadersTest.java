@@ -0,0 +1,112 @@
+package com.mmnaseri.utils.dareader.utils;
+
+import com.mmnaseri.utils.dareader.DocumentReader;
+import com.mmnaseri.utils.dareader.token.Token;
+import com.mmnaseri.utils.dareader.token.TokenReader;
+import com.mmnaseri.utils.dareader.token.impl.CommonTokenTypes;
+import com.mmnaseri.utils.dareader.token.impl.SimpleToken;
+import com.mmnaseri.utils.dareader.token.impl.SpanToken;
+import org.testng.annotations.Test;
+
+import java.io.StringReader;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+/** Tests for the scanner-based readers in {@link TokenReaders}. */
+public class TokenReadersTest {
+
+  @Test
+  public void readingCharacterClasses() {
+    TokenReader tokenReader =
+        TokenReaders.charClass(CommonTokenTypes.CONSTANT, CharClass.LOWERCASE);
+    DocumentReader reader = DocumentReader.of("abc1");
+
+    assertThat(tokenReader.read(reader), is(Token.create(CommonTokenTypes.CONSTANT, "abc")));
+    assertThat(reader.cursor(), is(3));
+    assertThat(tokenReader.read(reader), is(nullValue()));
+    assertThat(reader.cursor(), is(3));
+  }
+
+  @Test
+  public void readingLiterals() {
+    String literal = "true";
+    TokenReader tokenReader = TokenReaders.literal(CommonTokenTypes.CONSTANT, literal);
+    DocumentReader reader = DocumentReader.of("truetru");
+
+    Token token = tokenReader.read(reader);
+
+    assertThat(token, is(Token.create(CommonTokenTypes.CONSTANT, "true")));
+    assertThat(token.value(), is(sameInstance(literal)));
+    assertThat(tokenReader.read(reader), is(nullValue()));
+    assertThat(reader.cursor(), is(4));
+  }
+
+  @Test
+  public void readingWithScanners() {
+    Scanner number =
+        Scanners.run(CharClass.DIGIT)
+            .then(Scanners.literal(".").then(Scanners.run(CharClass.DIGIT)).optional());
+    TokenReader tokenReader = TokenReaders.scanner(CommonTokenTypes.UNSIGNED_FLOAT, number);
+    DocumentReader reader = DocumentReader.of("12.5+3.+");
+
+    assertThat(tokenReader.read(reader).value(), is("12.5"));
+    assertThat(tokenReader.read(reader), is(nullValue()));
+    reader.advance(1);
+    assertThat(tokenReader.read(reader).value(), is("3"));
+    assertThat(reader.cursor(), is(6));
+    assertThat(Scanners.single(CharClass.of(".+")).scan(reader, 1), is(1));
+    assertThat(Scanners.single(CharClass.of(".+")).scan(reader, 2), is(Scanner.NO_MATCH));
+  }
+
+  @Test
+  public void declaringFirstCharacters() {
+    TokenReader word = TokenReaders.charClass(CommonTokenTypes.CONSTANT, CharClass.WORD);
+    TokenReader literal = TokenReaders.literal(CommonTokenTypes.CONSTANT, "true");
+    TokenReader number =
+        TokenReaders.scanner(
+            CommonTokenTypes.SIGNED_INT,
+            Scanners.single(CharClass.of("-+")).optional().then(Scanners.run(CharClass.DIGIT)));
+    TokenReader declared = number.startingWith(CharClass.of("-+0123456789"));
+
+    assertThat(word.firstCharacters().test('_'), is(true));
+    assertThat(word.firstCharacters().test('-'), is(false));
+    assertThat(literal.firstCharacters().test('t'), is(true));
+    assertThat(literal.firstCharacters().test('r'), is(false));
+    assertThat(literal.then(word).firstCharacters().test('t'), is(true));
+    assertThat(number.firstCharacters(), is(nullValue()));
+    assertThat(declared.firstCharacters().test('-'), is(true));
+    assertThat(declared.read(DocumentReader.of("-12")).value(), is("-12"));
+  }
+
+  @Test
+  public void referringToTheDocument() {
+    TokenReader pattern = TokenReaders.pattern(CommonTokenTypes.UNSIGNED_INT, "\\d+");
+    TokenReader word = TokenReaders.charClass(CommonTokenTypes.CONSTANT, CharClass.LOWERCASE);
+    DocumentReader reader = DocumentReader.of("abc123");
+
+    Token first = word.read(reader);
+    Token second = pattern.read(reader);
+
+    assertThat(first, is(instanceOf(SpanToken.class)));
+    assertThat(first.start(), is(0));
+    assertThat(second, is(instanceOf(SpanToken.class)));
+    assertThat(second.start(), is(3));
+    assertThat(second, is(Token.create(CommonTokenTypes.UNSIGNED_INT, "123")));
+  }
+
+  @Test
+  public void copyingFromStreamedDocuments() {
+    TokenReader word = TokenReaders.charClass(CommonTokenTypes.CONSTANT, CharClass.LOWERCASE);
+    DocumentReader reader = DocumentReader.of(new StringReader("abc123"));
+
+    Token token = word.read(reader);
+
+    assertThat(token, is(instanceOf(SimpleToken.class)));
+    assertThat(token.start(), is(-1));
+    assertThat(token, is(Token.create(CommonTokenTypes.CONSTANT, "abc")));
+  }
+}